@@ -3784,8 +3784,15 @@ public abstract class Concourse implements AutoCloseable {
                 public Boolean call() throws Exception {
                     final TransactionToken token = transaction;
                     transaction = null;
-                    return token != null ? client.commit(creds, token,
-                            environment) : false;
+                    try {
+                        return token != null ? client.commit(creds, token,
+                                environment) : false;
+                    }
+                    catch (com.cinchapi.concourse.thrift.TransactionException e) {
+                        // The transaction was still staged when the commit
+                        // failed
+                        throw new TransactionException();
+                    }
                 }
 
             });
@@ -6170,7 +6177,17 @@ public abstract class Concourse implements AutoCloseable {
                 return execute(callable);
             }
             catch (com.cinchapi.concourse.thrift.TransactionException e) {
-                throw new TransactionException();
+                if(transaction != null) {
+                    throw new TransactionException();
+                }
+                else {
+                    // Outside of a transaction, the server only throws a
+                    // TransactionException when it rejects a write because
+                    // it is overloaded
+                    throw new TransactionException(
+                            "The server is too busy to accept the write, so "
+                                    + "nothing was written. Please try again.");
+                }
             }
             catch (com.cinchapi.concourse.thrift.DuplicateEntryException e) {
                 throw new DuplicateEntryException(e);
@@ -37,6 +37,12 @@ package com.cinchapi.concourse;
  * 
  * </p>
  * <p>
+ * This exception is also thrown, outside of a transaction, when the server is
+ * configured to reject writes while it is overloaded (see the
+ * {@code buffer_backpressure_policy} preference). In that case, nothing was
+ * written and the operation can be retried once the server catches up.
+ * </p>
+ * <p>
  * <em>Please note that this and all descendant exceptions are unchecked for
  * backwards compatibility, but they may be changed to be checked in a future
  * API breaking release.</em>
@@ -54,4 +60,13 @@ public class TransactionException extends RuntimeException {
                 + "continue. Please abort the transaction and try again.");
     }
 
+    /**
+     * Construct a new instance with a custom {@code message}.
+     * 
+     * @param message
+     */
+    public TransactionException(String message) {
+        super(message);
+    }
+
 }
@@ -33,7 +33,6 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
-import java.util.Map.Entry;
 import java.util.concurrent.Executors;
 
 import javax.annotation.Nullable;
@@ -81,6 +80,7 @@ import com.cinchapi.concourse.server.jmx.ManagedOperation;
 import com.cinchapi.concourse.server.model.TObjectSorter;
 import com.cinchapi.concourse.server.storage.AtomicOperation;
 import com.cinchapi.concourse.server.storage.AtomicStateException;
+import com.cinchapi.concourse.server.storage.BackpressureException;
 import com.cinchapi.concourse.server.storage.BufferedStore;
 import com.cinchapi.concourse.server.storage.AtomicSupport;
 import com.cinchapi.concourse.server.storage.Engine;
@@ -112,7 +112,6 @@ import com.cinchapi.concourse.util.Logger;
 import com.cinchapi.concourse.util.TCollections;
 import com.cinchapi.concourse.util.TSets;
 import com.cinchapi.concourse.util.TMaps;
-import com.cinchapi.concourse.util.Timestamps;
 import com.cinchapi.concourse.util.Version;
 import com.cinchapi.concourse.util.Convert.ResolvableLink;
 import com.google.common.base.Preconditions;
@@ -338,6 +337,30 @@ public class ConcourseServer implements ConcourseRuntime, ConcourseServerMXBean
         }
     }
 
+    /**
+     * Do the work to chronologize (generate a chronology of values) for
+     * {@code key} in {@code record} between {@code start} (inclusive) and
+     * {@code end} (exclusive). Only the revisions within the window are
+     * audited, so the store can avoid reading the rest of the history.
+     * 
+     * @param key
+     * @param record
+     * @param start
+     * @param end
+     * @param result
+     * @param atomic
+     */
+    private static void chronologizeAtomic(String key, long record,
+            long start, long end, Map<Long, Set<TObject>> result,
+            AtomicOperation atomic) {
+        for (long timestamp : atomic.audit(key, record, start, end).keySet()) {
+            Set<TObject> values = atomic.select(key, record, timestamp);
+            if(!values.isEmpty()) {
+                result.put(timestamp, values);
+            }
+        }
+    }
+
     /**
      * Remove all the values mapped from the {@code key} in {@code record} using
      * the specified {@code atomic} operation.
@@ -819,21 +842,8 @@ public class ConcourseServer implements ConcourseRuntime, ConcourseServerMXBean
             long start, long end, AccessToken creds,
             TransactionToken transaction, String environment) throws TException {
         checkAccess(creds, transaction);
-        AtomicSupport store = getStore(transaction, environment);
-        Map<Long, String> base = store.audit(key, record);
-        Map<Long, String> result = TMaps.newLinkedHashMapWithCapacity(base
-                .size());
-        int index = Timestamps.findNearestSuccessorForTimestamp(base.keySet(),
-                start);
-        Entry<Long, String> entry = null;
-        for (int i = index; i < base.size(); ++i) {
-            entry = Iterables.get(base.entrySet(), i);
-            if(entry.getKey() >= end) {
-                break;
-            }
-            result.put(entry.getKey(), entry.getValue());
-        }
-        return result;
+        return getStore(transaction, environment).audit(key, record, start,
+                end);
     }
 
     @Override
@@ -885,21 +895,7 @@ public class ConcourseServer implements ConcourseRuntime, ConcourseServerMXBean
             long end, AccessToken creds, TransactionToken transaction,
             String environment) throws TException {
         checkAccess(creds, transaction);
-        AtomicSupport store = getStore(transaction, environment);
-        Map<Long, String> base = store.audit(record);
-        Map<Long, String> result = TMaps.newLinkedHashMapWithCapacity(base
-                .size());
-        int index = Timestamps.findNearestSuccessorForTimestamp(base.keySet(),
-                start);
-        Entry<Long, String> entry = null;
-        for (int i = index; i < base.size(); ++i) {
-            entry = Iterables.get(base.entrySet(), i);
-            if(entry.getKey() >= end) {
-                break;
-            }
-            result.put(entry.getKey(), entry.getValue());
-        }
-        return result;
+        return getStore(transaction, environment).audit(record, start, end);
     }
 
     @Override
@@ -1039,25 +1035,25 @@ public class ConcourseServer implements ConcourseRuntime, ConcourseServerMXBean
     }
 
     @Override
+    @Atomic
     @AutoRetry
     @ThrowsThriftExceptions
     public Map<Long, Set<TObject>> chronologizeKeyRecordStartEnd(String key,
             long record, long start, long end, AccessToken creds,
             TransactionToken transaction, String environment) throws TException {
-        // TODO review this implementation
-        Map<Long, Set<TObject>> base = chronologizeKeyRecord(key, record,
-                creds, transaction, environment);
-        Map<Long, Set<TObject>> result = TMaps
-                .newLinkedHashMapWithCapacity(base.size());
-        int index = Timestamps.findNearestSuccessorForTimestamp(base.keySet(),
-                start);
-        Entry<Long, Set<TObject>> entry = null;
-        for (int i = index; i < base.size(); ++i) {
-            entry = Iterables.get(base.entrySet(), i);
-            if(entry.getKey() >= end) {
-                break;
+        checkAccess(creds, transaction);
+        AtomicSupport store = getStore(transaction, environment);
+        AtomicOperation atomic = null;
+        Map<Long, Set<TObject>> result = null;
+        while (atomic == null || !atomic.commit()) {
+            atomic = store.startAtomicOperation();
+            result = Maps.newLinkedHashMap();
+            try {
+                chronologizeAtomic(key, record, start, end, result, atomic);
+            }
+            catch (AtomicStateException e) {
+                atomic = null;
             }
-            result.put(entry.getKey(), entry.getValue());
         }
         return result;
     }
@@ -2028,6 +2024,11 @@ public class ConcourseServer implements ConcourseRuntime, ConcourseServerMXBean
         return getEngine(env).getDumpList();
     }
 
+    @Override
+    public String verifyBlocks(String env) {
+        return getEngine(env).verifyBlocks();
+    }
+
     @Override
     @ThrowsThriftExceptions
     public Map<Long, TObject> getKeyCcl(String key, String ccl,
@@ -4332,6 +4333,15 @@ public class ConcourseServer implements ConcourseRuntime, ConcourseServerMXBean
                 assert e.getClass() == TransactionStateException.class;
                 throw new TransactionException();
             }
+            catch (BackpressureException e) {
+                // The write was rejected without being applied. There isn't a
+                // dedicated Thrift exception for this, so reuse the one that
+                // clients already know to retry. Outside of a transaction, the
+                // driver reports it as an overloaded server instead of a
+                // transaction conflict.
+                Logger.debug("A write was rejected: {}", e.getMessage());
+                throw new TransactionException();
+            }
             catch (java.lang.SecurityException e) {
                 throw new SecurityException(e.getMessage());
             }
@@ -31,6 +31,7 @@ import com.cinchapi.concourse.config.ConcourseServerPreferences;
 import com.cinchapi.concourse.server.io.FileSystem;
 import com.cinchapi.concourse.util.Networking;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Sets;
 
@@ -174,6 +175,154 @@ public final class GlobalState extends Constants {
     public static boolean ENABLE_CONSOLE_LOGGING = RUNNING_FROM_ECLIPSE ? true
             : false;
 
+    /**
+     * The policy that the Database uses to decide which adjacent blocks to
+     * merge in the background. Options are SIZE_TIERED, LEVELED and NONE.
+     */
+    public static String COMPACTION_POLICY = "SIZE_TIERED";
+
+    /**
+     * The maximum number of bytes per second that background compaction may
+     * read or write, so that foreground reads keep priority for disk I/O.
+     */
+    public static long COMPACTION_THROUGHPUT = 16 * 1024 * 1024;
+
+    /**
+     * The maximum size of a block that is produced by background compaction.
+     * Compaction merges blocks in memory, so this value should be well below
+     * the heap_size.
+     */
+    public static long COMPACTION_MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Whether newly synced blocks are stored in compressed pages. Blocks that
+     * were stored uncompressed remain readable regardless of this setting.
+     */
+    public static boolean BLOCK_COMPRESSION = false;
+
+    /**
+     * The maximum number of bytes that the cache of decompressed block pages
+     * may hold.
+     */
+    public static long BLOCK_PAGE_CACHE_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * The number of worker threads that seek blocks in parallel when a record
+     * that is not cached is loaded. A value of 1 disables parallel seeks.
+     */
+    public static int PARALLEL_SEEK_THREADS = Runtime.getRuntime()
+            .availableProcessors();
+
+    /**
+     * The minimum number of blocks that each parallel seek worker handles.
+     * Records that are spread across fewer than twice as many blocks are
+     * loaded serially.
+     */
+    public static int PARALLEL_SEEK_MIN_BLOCKS = 8;
+
+    /**
+     * The percentage of the heap that may be used to cache records that are
+     * loaded from the database. The budget is measured using the estimated
+     * size of each record instead of the number of records.
+     */
+    public static int RECORD_CACHE_HEAP_PERCENT = 25;
+
+    /**
+     * The rules that limit how much history the database keeps for each
+     * environment and key (i.e. {@code *:90d} or {@code production.status:10v}
+     * ). Revisions that are outside of the limits are dropped in the background
+     * and historical reads before the retained history fail. By default, all
+     * history is kept forever.
+     */
+    public static String[] HISTORY_RETENTION = new String[0];
+
+    /**
+     * The number of bytes in the blocks that were written after the latest
+     * snapshot of the present state of every record that trigger a new
+     * snapshot. Reads of the present state only replay the revisions that are
+     * newer than the snapshot. Snapshots are disabled (0) by default.
+     */
+    public static long SNAPSHOT_BYTE_THRESHOLD = 0;
+
+    /**
+     * The number of bytes that the current database blocks may hold before
+     * they are synced and replaced with new ones, even if the Buffer page that
+     * is being transported has not been fully transported. This bounds the
+     * size of a block when the buffer_page_size is large (i.e. for bulk
+     * loads). Set this to 0 to only replace blocks when a Buffer page is
+     * transported.
+     */
+    public static long BLOCK_ROLLOVER_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * The slower directories where database blocks are moved once their
+     * newest revision is older than a threshold, each in the form
+     * {@code <directory>:<age>} (i.e. {@code /mnt/archive:30d}). New and
+     * recently compacted blocks are always stored in the
+     * {@link #DATABASE_DIRECTORY}. By default, there are no other tiers.
+     */
+    public static String[] DATABASE_TIERS = new String[0];
+
+    /**
+     * Whether writes that must be durable are flushed to disk in batches by a
+     * dedicated thread instead of each write forcing the Buffer page itself.
+     * A write is still not acknowledged until the batch that contains it is
+     * on disk, but concurrent writers share the cost of each flush.
+     */
+    public static boolean BUFFER_GROUP_COMMIT = false;
+
+    /**
+     * The maximum number of milliseconds that a write waits for others to
+     * join its group commit batch before the batch is flushed. When this is
+     * 0, a batch is flushed as soon as the previous flush completes.
+     */
+    public static int BUFFER_GROUP_COMMIT_WINDOW = 0;
+
+    /**
+     * The number of writes that cause a group commit batch to be flushed
+     * without waiting for the {@link #BUFFER_GROUP_COMMIT_WINDOW}.
+     */
+    public static int BUFFER_GROUP_COMMIT_MAX_WRITES = 1000;
+
+    /**
+     * The number of bytes that cause a group commit batch to be flushed
+     * without waiting for the {@link #BUFFER_GROUP_COMMIT_WINDOW}.
+     */
+    public static long BUFFER_GROUP_COMMIT_MAX_BYTES = 1024 * 1024;
+
+    /**
+     * The number of lanes that transport data from the Buffer to the Database
+     * concurrently. Writes are assigned to lanes by record, so the writes for
+     * each record are still transported in order.
+     */
+    public static int BUFFER_TRANSPORT_LANES = 1;
+
+    /**
+     * The number of Buffer pages, including the page that is being written,
+     * above which writes are subject to the
+     * {@link #BUFFER_BACKPRESSURE_POLICY}. This keeps the Buffer from growing
+     * without bound when writes arrive faster than they can be transported.
+     * When this is 0, writes are never held back.
+     */
+    public static int BUFFER_BACKPRESSURE_PAGES = 0;
+
+    /**
+     * What happens to a write when the Buffer has more than
+     * {@link #BUFFER_BACKPRESSURE_PAGES} pages. Options are DELAY, which
+     * blocks the write until the Buffer drains or the
+     * {@link #BUFFER_BACKPRESSURE_MAX_DELAY} passes, and REJECT, which fails
+     * the write with an error that the client can retry. Any other value
+     * prevents the server from starting.
+     */
+    public static String BUFFER_BACKPRESSURE_POLICY = "DELAY";
+
+    /**
+     * The maximum number of milliseconds that the DELAY
+     * {@link #BUFFER_BACKPRESSURE_POLICY} holds back a write before letting
+     * it through.
+     */
+    public static int BUFFER_BACKPRESSURE_MAX_DELAY = 1000;
+
     static {
         ConcourseServerPreferences config;
         try {
@@ -228,6 +377,74 @@ public final class GlobalState extends Constants {
 
             DEFAULT_ENVIRONMENT = config.getString("default_environment",
                     DEFAULT_ENVIRONMENT);
+
+            COMPACTION_POLICY = config.getString("compaction_policy",
+                    COMPACTION_POLICY);
+
+            COMPACTION_THROUGHPUT = config.getSize("compaction_throughput",
+                    COMPACTION_THROUGHPUT);
+
+            COMPACTION_MAX_BLOCK_SIZE = config.getSize(
+                    "compaction_max_block_size", COMPACTION_MAX_BLOCK_SIZE);
+
+            BLOCK_COMPRESSION = config.getBoolean("block_compression",
+                    BLOCK_COMPRESSION);
+
+            BLOCK_PAGE_CACHE_SIZE = config.getSize("block_page_cache_size",
+                    BLOCK_PAGE_CACHE_SIZE);
+
+            PARALLEL_SEEK_THREADS = config.getInt("parallel_seek_threads",
+                    PARALLEL_SEEK_THREADS);
+
+            PARALLEL_SEEK_MIN_BLOCKS = config.getInt(
+                    "parallel_seek_min_blocks", PARALLEL_SEEK_MIN_BLOCKS);
+
+            RECORD_CACHE_HEAP_PERCENT = config.getInt(
+                    "record_cache_heap_percent", RECORD_CACHE_HEAP_PERCENT);
+
+            HISTORY_RETENTION = config.getStringArray("history_retention");
+
+            SNAPSHOT_BYTE_THRESHOLD = config.getSize(
+                    "snapshot_byte_threshold", SNAPSHOT_BYTE_THRESHOLD);
+
+            BLOCK_ROLLOVER_SIZE = config.getSize("block_rollover_size",
+                    BLOCK_ROLLOVER_SIZE);
+
+            DATABASE_TIERS = config.getStringArray("database_tiers");
+
+            BUFFER_GROUP_COMMIT = config.getBoolean("buffer_group_commit",
+                    BUFFER_GROUP_COMMIT);
+
+            BUFFER_GROUP_COMMIT_WINDOW = config.getInt(
+                    "buffer_group_commit_window", BUFFER_GROUP_COMMIT_WINDOW);
+
+            BUFFER_GROUP_COMMIT_MAX_WRITES = config.getInt(
+                    "buffer_group_commit_max_writes",
+                    BUFFER_GROUP_COMMIT_MAX_WRITES);
+
+            BUFFER_GROUP_COMMIT_MAX_BYTES = config.getSize(
+                    "buffer_group_commit_max_bytes",
+                    BUFFER_GROUP_COMMIT_MAX_BYTES);
+
+            BUFFER_TRANSPORT_LANES = config.getInt("buffer_transport_lanes",
+                    BUFFER_TRANSPORT_LANES);
+
+            BUFFER_BACKPRESSURE_PAGES = config.getInt(
+                    "buffer_backpressure_pages", BUFFER_BACKPRESSURE_PAGES);
+
+            BUFFER_BACKPRESSURE_POLICY = config.getString(
+                    "buffer_backpressure_policy", BUFFER_BACKPRESSURE_POLICY)
+                    .toUpperCase();
+            Preconditions.checkArgument(
+                    BUFFER_BACKPRESSURE_POLICY.equals("DELAY")
+                            || BUFFER_BACKPRESSURE_POLICY.equals("REJECT"),
+                    "%s is not a valid buffer_backpressure_policy. "
+                            + "Options are DELAY and REJECT",
+                    BUFFER_BACKPRESSURE_POLICY);
+
+            BUFFER_BACKPRESSURE_MAX_DELAY = config.getInt(
+                    "buffer_backpressure_max_delay",
+                    BUFFER_BACKPRESSURE_MAX_DELAY);
             // =================== PREF READING BLOCK ====================
         }
     }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.cli;
+
+import com.cinchapi.concourse.server.jmx.ConcourseServerMXBean;
+
+/**
+ * A CLI that performs a full scan of the storage blocks in an environment to
+ * check that none of them are corrupt.
+ * 
+ * @author Jeff Nelson
+ */
+public final class VerifyCli extends ManagedOperationCli {
+
+    /**
+     * Run the program...
+     * 
+     * @param args
+     */
+    public static void main(String... args) {
+        VerifyCli cli = new VerifyCli(args);
+        cli.run();
+    }
+
+    /**
+     * Construct a new instance.
+     * 
+     * @param args
+     */
+    public VerifyCli(String[] args) {
+        super(new EnvironmentOptions(), args);
+    }
+
+    @Override
+    protected void doTask(ConcourseServerMXBean bean) {
+        String environment = ((EnvironmentOptions) options).environment;
+        System.out.println("Verifying the storage blocks in the '"
+                + environment + "' environment. This reads all the data "
+                + "from disk, so it may take a while...");
+        System.out.println(bean.verifyBlocks(environment));
+    }
+
+}
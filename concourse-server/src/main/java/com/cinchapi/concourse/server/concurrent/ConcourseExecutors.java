@@ -16,11 +16,16 @@
 package com.cinchapi.concourse.server.concurrent;
 
 import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.cinchapi.concourse.annotate.UtilityClass;
 import com.cinchapi.concourse.util.Logger;
@@ -47,8 +52,13 @@ public final class ConcourseExecutors {
             Runnable... commands) {
         BlockingExecutorService executor = executors.get(threadNamePrefix);
         if(executor == null) {
+            // NOTE: This method may be called concurrently for the same
+            // prefix (i.e. by the Buffer's transport lanes), so only one
+            // executor can win
             executor = BlockingExecutorService.create(threadNamePrefix);
-            executors.put(threadNamePrefix, executor);
+            BlockingExecutorService existing = executors.putIfAbsent(
+                    threadNamePrefix, executor);
+            executor = existing != null ? existing : executor;
         }
         executor.execute(commands);
     }
@@ -82,6 +92,46 @@ public final class ConcourseExecutors {
                 .newCachedThreadPool(getThreadFactory(threadNamePrefix));
     }
 
+    /**
+     * Return a {@link ForkJoinPool} with {@code parallelism} worker threads,
+     * each whose name is prefixed with {@code threadNamePrefix}.
+     * 
+     * @param parallelism
+     * @param threadNamePrefix
+     * @return a new fork join pool
+     */
+    public static ForkJoinPool newForkJoinPool(int parallelism,
+            final String threadNamePrefix) {
+        return new ForkJoinPool(parallelism, new ForkJoinWorkerThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger(0);
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                        .newThread(pool);
+                thread.setName(threadNamePrefix + " #"
+                        + count.getAndIncrement());
+                return thread;
+            }
+
+        }, uncaughtExceptionHandler, false);
+    }
+
+    /**
+     * Return a single threaded {@link ScheduledExecutorService} whose thread is
+     * a daemon and whose name is prefixed with {@code threadNamePrefix}.
+     * 
+     * @param threadNamePrefix
+     * @return a new scheduled executor
+     */
+    public static ScheduledExecutorService newSingleThreadScheduledExecutor(
+            String threadNamePrefix) {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat(threadNamePrefix + " #%d").setDaemon(true)
+                .setUncaughtExceptionHandler(uncaughtExceptionHandler).build());
+    }
+
     /**
      * Return a {@link ExecutorService} thread pool with {@code num} threads,
      * each whose name is prefixed with {@code threadNamePrefix}.
@@ -112,8 +162,8 @@ public final class ConcourseExecutors {
      * A cache of ExecutorServices that are associated with a given
      * threadNamePrefix.
      */
-    private static final Map<String, BlockingExecutorService> executors = Maps
-            .newHashMap();
+    private static final ConcurrentMap<String, BlockingExecutorService> executors = Maps
+            .newConcurrentMap();
 
     /**
      * Catches exceptions thrown from pooled threads. For the Database,
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.io;
+
+import java.nio.ByteBuffer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A pure Java implementation of a fast LZ77 style codec that uses the LZ4
+ * block format. The codec favors speed over ratio, which makes it appropriate
+ * for compressing data that is read frequently (i.e. pages of a block file).
+ * <p>
+ * Each compressed sequence is made up of a token (the high 4 bits describe the
+ * number of literals and the low 4 bits describe the match length), the
+ * literals and a 2 byte little endian offset that points back to the match.
+ * Lengths that don't fit in 4 bits are extended with additional bytes. The
+ * final sequence only contains literals.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+public final class Compression {
+
+    /**
+     * The number of bits in a slot of the hash table.
+     */
+    private static final int HASH_LOG = 12;
+
+    /**
+     * The number of slots in the hash table.
+     */
+    private static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+
+    /**
+     * The number of bytes at the end of the input that are always encoded as
+     * literals.
+     */
+    private static final int LAST_LITERALS = 5;
+
+    /**
+     * The largest distance that a match can point back to.
+     */
+    private static final int MAX_DISTANCE = 0xFFFF;
+
+    /**
+     * The smallest match that is encoded.
+     */
+    private static final int MIN_MATCH = 4;
+
+    /**
+     * Compress the remaining bytes in {@code src} and return a buffer that
+     * contains the uncompressed length followed by the compressed bytes. The
+     * position of {@code src} is not modified.
+     *
+     * @param src
+     * @return the compressed bytes
+     */
+    public static ByteBuffer compress(ByteBuffer src) {
+        int length = src.remaining();
+        byte[] in = new byte[length];
+        src.duplicate().get(in);
+        byte[] out = new byte[4 + maxCompressedLength(length)];
+        int op = 4;
+        int anchor = 0;
+        int[] table = new int[HASH_TABLE_SIZE];
+        int limit = length - LAST_LITERALS - MIN_MATCH;
+        int ip = 0;
+        while (ip < limit) {
+            int sequence = readInt(in, ip);
+            int hash = hash(sequence);
+            int ref = table[hash] - 1;
+            table[hash] = ip + 1;
+            if(ref < 0 || ip - ref > MAX_DISTANCE
+                    || readInt(in, ref) != sequence) {
+                ++ip;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            int matchLimit = length - LAST_LITERALS;
+            while (ip + matchLength < matchLimit
+                    && in[ref + matchLength] == in[ip + matchLength]) {
+                ++matchLength;
+            }
+            op = writeSequence(in, anchor, ip - anchor, ip - ref, matchLength,
+                    out, op);
+            ip += matchLength;
+            anchor = ip;
+        }
+        op = writeLiterals(in, anchor, length - anchor, out, op);
+        ByteBuffer compressed = ByteBuffer.wrap(out, 0, op);
+        compressed.putInt(0, length);
+        return compressed;
+    }
+
+    /**
+     * Decompress the remaining bytes in {@code src}, which must have been
+     * produced by {@link #compress(ByteBuffer)}, and return the original
+     * bytes. The position of {@code src} is not modified.
+     *
+     * @param src
+     * @return the decompressed bytes
+     */
+    public static byte[] decompress(ByteBuffer src) {
+        src = src.duplicate();
+        byte[] out = new byte[src.getInt()];
+        int op = 0;
+        while (src.hasRemaining()) {
+            int token = src.get() & 0xFF;
+            int literals = readLength(src, token >>> 4);
+            src.get(out, op, literals);
+            op += literals;
+            if(!src.hasRemaining()) {
+                break;
+            }
+            int offset = (src.get() & 0xFF) | ((src.get() & 0xFF) << 8);
+            int matchLength = readLength(src, token & 0x0F) + MIN_MATCH;
+            Preconditions.checkState(offset > 0 && offset <= op,
+                    "Corrupted compressed data");
+            int ref = op - offset;
+            for (int i = 0; i < matchLength; ++i) {
+                out[op++] = out[ref++]; // byte by byte since the match may
+                                        // overlap the output
+            }
+        }
+        Preconditions.checkState(op == out.length, "Corrupted compressed data");
+        return out;
+    }
+
+    /**
+     * Return the hash table slot for a 4 byte {@code sequence}.
+     *
+     * @param sequence
+     * @return the slot
+     */
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    /**
+     * Return the largest number of bytes that can be produced when
+     * compressing {@code length} bytes.
+     *
+     * @param length
+     * @return the max compressed length
+     */
+    private static int maxCompressedLength(int length) {
+        return length + (length / 255) + 16;
+    }
+
+    /**
+     * Read the 4 bytes in {@code in} starting at {@code position} as an int.
+     *
+     * @param in
+     * @param position
+     * @return the int
+     */
+    private static int readInt(byte[] in, int position) {
+        return (in[position] & 0xFF) | ((in[position + 1] & 0xFF) << 8)
+                | ((in[position + 2] & 0xFF) << 16)
+                | ((in[position + 3] & 0xFF) << 24);
+    }
+
+    /**
+     * Read a length whose first 4 bits were stored in a token and return the
+     * full length after consuming any extension bytes from {@code src}.
+     *
+     * @param src
+     * @param length
+     * @return the length
+     */
+    private static int readLength(ByteBuffer src, int length) {
+        if(length == 0x0F) {
+            int b;
+            do {
+                b = src.get() & 0xFF;
+                length += b;
+            }
+            while (b == 0xFF);
+        }
+        return length;
+    }
+
+    /**
+     * Write the extension bytes for a {@code length} that does not fit in 4
+     * bits.
+     *
+     * @param length
+     * @param out
+     * @param op
+     * @return the new output position
+     */
+    private static int writeLength(int length, byte[] out, int op) {
+        while (length >= 0xFF) {
+            out[op++] = (byte) 0xFF;
+            length -= 0xFF;
+        }
+        out[op++] = (byte) length;
+        return op;
+    }
+
+    /**
+     * Write a final sequence that only contains {@code count} literals from
+     * {@code in}.
+     *
+     * @param in
+     * @param start
+     * @param count
+     * @param out
+     * @param op
+     * @return the new output position
+     */
+    private static int writeLiterals(byte[] in, int start, int count,
+            byte[] out, int op) {
+        if(count >= 0x0F) {
+            out[op++] = (byte) 0xF0;
+            op = writeLength(count - 0x0F, out, op);
+        }
+        else {
+            out[op++] = (byte) (count << 4);
+        }
+        System.arraycopy(in, start, out, op, count);
+        return op + count;
+    }
+
+    /**
+     * Write a sequence of {@code count} literals from {@code in} followed by
+     * a match of {@code matchLength} bytes that begins {@code offset} bytes
+     * back.
+     *
+     * @param in
+     * @param start
+     * @param count
+     * @param offset
+     * @param matchLength
+     * @param out
+     * @param op
+     * @return the new output position
+     */
+    private static int writeSequence(byte[] in, int start, int count,
+            int offset, int matchLength, byte[] out, int op) {
+        int tokenPosition = op++;
+        int token = 0;
+        if(count >= 0x0F) {
+            token = 0xF0;
+            op = writeLength(count - 0x0F, out, op);
+        }
+        else {
+            token = count << 4;
+        }
+        System.arraycopy(in, start, out, op, count);
+        op += count;
+        out[op++] = (byte) offset;
+        out[op++] = (byte) (offset >>> 8);
+        int extra = matchLength - MIN_MATCH;
+        if(extra >= 0x0F) {
+            token |= 0x0F;
+            op = writeLength(extra - 0x0F, out, op);
+        }
+        else {
+            token |= extra;
+        }
+        out[tokenPosition] = (byte) token;
+        return op;
+    }
+
+    private Compression() {/* noop */}
+
+}
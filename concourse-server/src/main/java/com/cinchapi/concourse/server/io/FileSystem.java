@@ -332,9 +332,30 @@ public final class FileSystem extends FileOps {
      */
     public static MappedByteBuffer map(String file, MapMode mode,
             long position, long size) {
+        return map(file, mode, position, size, true);
+    }
+
+    /**
+     * Return a {@link MappedByteBuffer} for {@code file} in {@code mode}
+     * starting at {@code position} and continuing for {@code size} bytes. If
+     * {@code load} is {@code false}, the content is not eagerly paged into
+     * memory, which is preferable for long lived mappings of large files that
+     * are only ever accessed piecemeal. This method will automatically create
+     * {@code file} if it does not already exist.
+     * 
+     * @param file
+     * @param mode
+     * @param position
+     * @param size
+     * @param load - set to {@code true} to page the entire region into memory
+     * @return the MappedByteBuffer
+     */
+    public static MappedByteBuffer map(String file, MapMode mode,
+            long position, long size, boolean load) {
         FileChannel channel = getFileChannel(file);
         try {
-            return channel.map(mode, position, size).load();
+            MappedByteBuffer buffer = channel.map(mode, position, size);
+            return load ? buffer.load() : buffer;
         }
         catch (IOException e) {
             throw Throwables.propagate(e);
@@ -147,6 +147,19 @@ public interface ConcourseServerMXBean {
      */
     public void revoke(byte[] username);
 
+    /**
+     * Perform a full scan of the storage blocks in {@code environment} that
+     * re-hashes every block file, compares it to the checksum that was
+     * recorded when the block was synced and loads each block's bloom
+     * filter. Return a report that describes any block that failed
+     * verification.
+     * 
+     * @param environment
+     * @return the verification report
+     */
+    @ManagedOperation
+    public String verifyBlocks(String environment);
+
     /**
      * Enable the user(i.e. the user can be authenticated with the correct password).
      * @param username
@@ -220,6 +220,27 @@ public class AtomicOperation extends BufferedStore implements
         return super.audit(key, record, true);
     }
 
+    @Override
+    public Map<Long, String> audit(long record, long start, long end)
+            throws AtomicStateException {
+        checkState();
+        Token token = Token.wrap(record);
+        source.addVersionChangeListener(token, this);
+        reads2Lock.add(token);
+        wideReads.put(record, token);
+        return super.audit(record, start, end, true);
+    }
+
+    @Override
+    public Map<Long, String> audit(String key, long record, long start,
+            long end) throws AtomicStateException {
+        checkState();
+        Token token = Token.wrap(key, record);
+        source.addVersionChangeListener(token, this);
+        reads2Lock.add(token);
+        return super.audit(key, record, start, end, true);
+    }
+
     @Override
     public boolean contains(long record) {
         checkState();
@@ -285,10 +306,28 @@ public class AtomicOperation extends BufferedStore implements
      * successful if all the grouped operations can be successfully applied to
      * the destination. If the commit fails, the caller should retry the atomic
      * operation.
+     * <p>
+     * If the destination is the {@link Engine}, the commit is subject to
+     * {@link Engine#applyBackpressure() backpressure} before any locks are
+     * grabbed.
+     * </p>
      * 
      * @return {@code true} if the atomic operation is completely applied
+     * @throws BackpressureException if the Engine rejects the commit, in which
+     *             case the atomic operation is aborted
      */
     public final boolean commit() throws AtomicStateException {
+        if(destination instanceof Engine && open.get() && !isReadOnly()) {
+            // Hold back the entire commit, before any locks are grabbed, so
+            // that it is applied completely or not at all
+            try {
+                ((Engine) destination).applyBackpressure();
+            }
+            catch (BackpressureException e) {
+                abort();
+                throw e;
+            }
+        }
         if(open.compareAndSet(true, false)) {
             if(grabLocks() && !notifiedAboutVersionChange
                     && finalizing.compareAndSet(false, true)) {
@@ -56,6 +56,35 @@ public interface AtomicSupport extends PermanentStore, VersionChangeNotifier {
      */
     public Map<Long, String> auditUnsafe(String key, long record);
 
+    /**
+     * Audit {@code record} between {@code start} (inclusive) and {@code end}
+     * (exclusive) WITHOUT grabbing any locks. This method is ONLY appropriate
+     * to call from the methods of {@link #AtomicOperation} class because in
+     * this case intermediate read {@link #Lock} is not required.
+     * 
+     * @param record
+     * @param start
+     * @param end
+     * @return {@code Map}
+     */
+    public Map<Long, String> auditUnsafe(long record, long start, long end);
+
+    /**
+     * Audit {@code key} in {@code record} between {@code start} (inclusive)
+     * and {@code end} (exclusive) WITHOUT grabbing any locks. This method is
+     * ONLY appropriate to call from the methods of {@link #AtomicOperation}
+     * class because in this case intermediate read {@link #Lock} is not
+     * required.
+     * 
+     * @param key
+     * @param record
+     * @param start
+     * @param end
+     * @return {@code Map}
+     */
+    public Map<Long, String> auditUnsafe(String key, long record, long start,
+            long end);
+
     /**
      * This method returns a log of revisions in {@code record} as
      * a Map WITHOUT grabbing any locks. This method is ONLY appropriate
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage;
+
+import com.cinchapi.concourse.server.GlobalState;
+
+/**
+ * An unchecked exception that is thrown when a write is rejected because the
+ * Buffer has more pages than the
+ * {@link GlobalState#BUFFER_BACKPRESSURE_PAGES high-water mark} and the
+ * {@link GlobalState#BUFFER_BACKPRESSURE_POLICY backpressure policy} is
+ * REJECT. Nothing is written, so the write can safely be retried once the
+ * Buffer drains.
+ * 
+ * @author Jeff Nelson
+ */
+public class BackpressureException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Construct a new instance.
+     * 
+     * @param message
+     */
+    public BackpressureException(String message) {
+        super(message);
+    }
+
+}
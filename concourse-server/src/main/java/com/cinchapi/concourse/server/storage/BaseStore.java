@@ -28,6 +28,33 @@ import com.cinchapi.concourse.thrift.TObject;
  */
 public abstract class BaseStore implements Store {
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * By default, this method filters the full {@link #audit(long) audit} of
+     * {@code record}. Children that can read a bounded range of revisions
+     * should override it.
+     * </p>
+     */
+    @Override
+    public Map<Long, String> audit(long record, long start, long end) {
+        return Stores.sliceAudit(audit(record), start, end);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * By default, this method filters the full {@link #audit(String, long)
+     * audit} of {@code key} in {@code record}. Children that can read a
+     * bounded range of revisions should override it.
+     * </p>
+     */
+    @Override
+    public Map<Long, String> audit(String key, long record, long start,
+            long end) {
+        return Stores.sliceAudit(audit(key, record), start, end);
+    }
+
     @Override
     public final Set<String> describe(long record) {
         return select(record).keySet();
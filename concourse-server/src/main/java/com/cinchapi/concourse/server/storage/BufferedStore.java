@@ -133,6 +133,17 @@ public abstract class BufferedStore extends BaseStore {
         return audit(key, record, false);
     }
 
+    @Override
+    public Map<Long, String> audit(long record, long start, long end) {
+        return audit(record, start, end, false);
+    }
+
+    @Override
+    public Map<Long, String> audit(String key, long record, long start,
+            long end) {
+        return audit(key, record, start, end, false);
+    }
+
     @Override
     public Map<TObject, Set<Long>> browse(String key) {
         return browse(key, false);
@@ -337,6 +348,55 @@ public abstract class BufferedStore extends BaseStore {
         return result;
     }
 
+    /**
+     * Audit {@code record} between {@code start} (inclusive) and {@code end}
+     * (exclusive) either using safe methods or unsafe methods.
+     * 
+     * @param record
+     * @param start
+     * @param end
+     * @param unsafe
+     * @return the revision log
+     */
+    protected Map<Long, String> audit(long record, long start, long end,
+            boolean unsafe) {
+        Map<Long, String> result;
+        if(unsafe && destination instanceof AtomicSupport) {
+            result = ((AtomicSupport) (destination)).auditUnsafe(record,
+                    start, end);
+        }
+        else {
+            result = destination.audit(record, start, end);
+        }
+        result.putAll(buffer.audit(record, start, end));
+        return result;
+    }
+
+    /**
+     * Audit {@code key} in {@code record} between {@code start} (inclusive)
+     * and {@code end} (exclusive) either using safe methods or unsafe methods.
+     * 
+     * @param key
+     * @param record
+     * @param start
+     * @param end
+     * @param unsafe
+     * @return the revision log
+     */
+    protected Map<Long, String> audit(String key, long record, long start,
+            long end, boolean unsafe) {
+        Map<Long, String> result;
+        if(unsafe && destination instanceof AtomicSupport) {
+            result = ((AtomicSupport) (destination)).auditUnsafe(key, record,
+                    start, end);
+        }
+        else {
+            result = destination.audit(key, record, start, end);
+        }
+        result.putAll(buffer.audit(key, record, start, end));
+        return result;
+    }
+
     /**
      * Browse {@code record} either using safe or unsafe methods.
      * <p>
@@ -53,6 +53,8 @@ import com.cinchapi.concourse.server.jmx.ManagedOperation;
 import com.cinchapi.concourse.server.model.Text;
 import com.cinchapi.concourse.server.model.Value;
 import com.cinchapi.concourse.server.storage.db.Database;
+import com.cinchapi.concourse.server.storage.db.RetentionPolicy;
+import com.cinchapi.concourse.server.storage.db.StorageTiers;
 import com.cinchapi.concourse.server.storage.temp.Buffer;
 import com.cinchapi.concourse.server.storage.temp.Write;
 import com.cinchapi.concourse.thrift.Operator;
@@ -318,6 +320,8 @@ public final class Engine extends BufferedStore implements
                 + File.separator + "meta" + File.separator + "inventory");
         buffer.setInventory(inventory);
         buffer.setThreadNamePrefix(environment + "-buffer");
+        database.setRetentionPolicy(RetentionPolicy.forEnvironment(environment));
+        database.setStorageTiers(StorageTiers.forEnvironment(environment));
     }
 
     @Override
@@ -326,6 +330,14 @@ public final class Engine extends BufferedStore implements
         accept(write, true);
     }
 
+    @Override
+    @DoNotInvoke
+    public void accept(List<Write> writes) {
+        for (Write write : writes) {
+            accept(write, true);
+        }
+    }
+
     /**
      * <p>
      * The Engine is the destination for Transaction commits, which means that
@@ -377,6 +389,7 @@ public final class Engine extends BufferedStore implements
 
     @Override
     public boolean add(String key, TObject value, long record) {
+        applyBackpressure();
         Token sharedToken = Token.wrap(record);
         Token writeToken = Token.wrap(key, record);
         RangeToken rangeToken = RangeToken.forWriting(Text.wrap(key),
@@ -434,6 +447,19 @@ public final class Engine extends BufferedStore implements
         }
     }
 
+    /**
+     * Hold back, or reject, a write that is about to be made to the Buffer
+     * if the Buffer is past its high-water mark. This must be called before
+     * any locks are grabbed for the write.
+     * 
+     * @throws BackpressureException if the write is rejected
+     * @see Buffer#applyBackpressure()
+     */
+    @Restricted
+    public void applyBackpressure() throws BackpressureException {
+        ((Buffer) buffer).applyBackpressure();
+    }
+
     @Override
     public Map<Long, String> audit(long record) {
         transportLock.readLock().lock();
@@ -462,6 +488,35 @@ public final class Engine extends BufferedStore implements
         }
     }
 
+    @Override
+    public Map<Long, String> audit(long record, long start, long end) {
+        transportLock.readLock().lock();
+        Lock read = lockService.getReadLock(record);
+        read.lock();
+        try {
+            return super.audit(record, start, end);
+        }
+        finally {
+            read.unlock();
+            transportLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Long, String> audit(String key, long record, long start,
+            long end) {
+        transportLock.readLock().lock();
+        Lock read = lockService.getReadLock(key, record);
+        read.lock();
+        try {
+            return super.audit(key, record, start, end);
+        }
+        finally {
+            read.unlock();
+            transportLock.readLock().unlock();
+        }
+    }
+
     @Override
     public Map<Long, String> auditUnsafe(long record) {
         transportLock.readLock().lock();
@@ -484,6 +539,29 @@ public final class Engine extends BufferedStore implements
         }
     }
 
+    @Override
+    public Map<Long, String> auditUnsafe(long record, long start, long end) {
+        transportLock.readLock().lock();
+        try {
+            return super.audit(record, start, end);
+        }
+        finally {
+            transportLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Long, String> auditUnsafe(String key, long record, long start,
+            long end) {
+        transportLock.readLock().lock();
+        try {
+            return super.audit(key, record, start, end);
+        }
+        finally {
+            transportLock.readLock().unlock();
+        }
+    }
+
     @Override
     public Map<TObject, Set<Long>> browse(String key) {
         transportLock.readLock().lock();
@@ -584,6 +662,46 @@ public final class Engine extends BufferedStore implements
         return sb.toString();
     }
     
+    /**
+     * Public interface for the {@link Buffer#getGroupCommitStats()} method.
+     * 
+     * @return the group commit stats
+     */
+    @ManagedOperation
+    public String getBufferGroupCommitStats() {
+        return ((Buffer) buffer).getGroupCommitStats();
+    }
+
+    /**
+     * Public interface for the {@link Buffer#getTransportLaneStats()} method.
+     * 
+     * @return the transport lane stats
+     */
+    @ManagedOperation
+    public String getBufferTransportLaneStats() {
+        return ((Buffer) buffer).getTransportLaneStats();
+    }
+
+    /**
+     * Public interface for the {@link Buffer#getTransportStats()} method.
+     * 
+     * @return the transport stats
+     */
+    @ManagedOperation
+    public String getBufferTransportStats() {
+        return ((Buffer) buffer).getTransportStats();
+    }
+
+    /**
+     * Public interface for the {@link Database#verifyBlocks()} method.
+     * 
+     * @return the verification report
+     */
+    @ManagedOperation
+    public String verifyBlocks() {
+        return ((Database) destination).verifyBlocks();
+    }
+
     @Override
     public Inventory getInventory() {
         return inventory;
@@ -626,6 +744,7 @@ public final class Engine extends BufferedStore implements
 
     @Override
     public boolean remove(String key, TObject value, long record) {
+        applyBackpressure();
         Token sharedToken = Token.wrap(record);
         Token writeToken = Token.wrap(key, record);
         RangeToken rangeToken = RangeToken.forWriting(Text.wrap(key),
@@ -733,6 +852,7 @@ public final class Engine extends BufferedStore implements
 
     @Override
     public void set(String key, TObject value, long record) {
+        applyBackpressure();
         Token sharedToken = Token.wrap(record);
         Token writeToken = Token.wrap(key, record);
         RangeToken rangeToken = RangeToken.forWriting(Text.wrap(key),
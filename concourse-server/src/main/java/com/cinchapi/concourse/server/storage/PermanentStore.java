@@ -15,6 +15,8 @@
  */
 package com.cinchapi.concourse.server.storage;
 
+import java.util.List;
+
 import com.cinchapi.concourse.server.storage.temp.Write;
 
 /**
@@ -43,6 +45,22 @@ public interface PermanentStore extends Store {
      */
     public void accept(Write write, boolean sync);
 
+    /**
+     * Process and store each of the {@code writes}, in order. This is
+     * equivalent to calling {@link #accept(Write)} for each write, but gives
+     * the store an opportunity to amortize any fixed cost of accepting a write
+     * across the entire batch.
+     * <p>
+     * When the {@link com.cinchapi.concourse.server.storage.temp.Buffer
+     * Buffer} transports with more than one lane, this method may be called
+     * concurrently with batches that contain the writes for different
+     * records.
+     * </p>
+     * 
+     * @param writes
+     */
+    public void accept(List<Write> writes);
+
     /**
      * Force the store to sync all of its writes to disk to guarantee that they
      * are durably persisted. Generally, this method will "fsync" pending writes
@@ -82,6 +82,43 @@ public interface Store {
      */
     public Map<Long, String> audit(String key, long record);
 
+    /**
+     * Audit {@code record} between {@code start} (inclusive) and {@code end}
+     * (exclusive).
+     * <p>
+     * This method returns the same log of revisions as {@link #audit(long)},
+     * but only includes the revisions with a timestamp that is greater than or
+     * equal to {@code start} and less than {@code end}. Implementations may use
+     * the bounds to avoid reading revisions that are outside of the window.
+     * </p>
+     * 
+     * @param record
+     * @param start
+     * @param end
+     * @return the revision log
+     */
+    public Map<Long, String> audit(long record, long start, long end);
+
+    /**
+     * Audit {@code key} in {@code record} between {@code start} (inclusive)
+     * and {@code end} (exclusive).
+     * <p>
+     * This method returns the same log of revisions as
+     * {@link #audit(String, long)}, but only includes the revisions with a
+     * timestamp that is greater than or equal to {@code start} and less than
+     * {@code end}. Implementations may use the bounds to avoid reading
+     * revisions that are outside of the window.
+     * </p>
+     * 
+     * @param key
+     * @param record
+     * @param start
+     * @param end
+     * @return the revision log
+     */
+    public Map<Long, String> audit(String key, long record, long start,
+            long end);
+
     /**
      * Browse {@code key}.
      * <p>
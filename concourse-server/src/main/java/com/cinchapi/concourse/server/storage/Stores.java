@@ -15,6 +15,7 @@
  */
 package com.cinchapi.concourse.server.storage;
 
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import com.cinchapi.concourse.Link;
@@ -23,6 +24,7 @@ import com.cinchapi.concourse.thrift.TObject;
 import com.cinchapi.concourse.util.Convert;
 import com.cinchapi.concourse.util.Strings;
 import com.cinchapi.concourse.util.TStrings;
+import com.google.common.collect.Maps;
 
 /**
  * {@link Store} based utility functions.
@@ -31,6 +33,28 @@ import com.cinchapi.concourse.util.TStrings;
  */
 public final class Stores {
 
+    /**
+     * Return a new, mutable revision log that contains the entries from
+     * {@code audit} with a timestamp that is greater than or equal to
+     * {@code start} and less than {@code end}.
+     * 
+     * @param audit
+     * @param start
+     * @param end
+     * @return the entries of the revision log within the bounds
+     */
+    public static Map<Long, String> sliceAudit(Map<Long, String> audit,
+            long start, long end) {
+        Map<Long, String> slice = Maps.newTreeMap();
+        for (Map.Entry<Long, String> entry : audit.entrySet()) {
+            long timestamp = entry.getKey();
+            if(timestamp >= start && timestamp < end) {
+                slice.put(timestamp, entry.getValue());
+            }
+        }
+        return slice;
+    }
+
     /**
      * Perform any necessary normalization on {@code operator} so that it can be
      * properly utilized in {@link Store} methods (i.e. convert a utility
@@ -24,6 +24,7 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -163,6 +164,13 @@ public final class Transaction extends AtomicOperation implements AtomicSupport
 
     }
 
+    @Override
+    public void accept(List<Write> writes) {
+        for (Write write : writes) {
+            accept(write);
+        }
+    }
+
     @Override
     @Restricted
     public void addVersionChangeListener(Token token,
@@ -185,6 +193,17 @@ public final class Transaction extends AtomicOperation implements AtomicSupport
         return audit(key, record);
     }
 
+    @Override
+    public Map<Long, String> auditUnsafe(long record, long start, long end) {
+        return audit(record, start, end);
+    }
+
+    @Override
+    public Map<Long, String> auditUnsafe(String key, long record, long start,
+            long end) {
+        return audit(key, record, start, end);
+    }
+
     @Override
     public Map<String, LinkedHashSet<TObject>> browseUnsafe(long record) {
         return select(record);
@@ -16,30 +16,56 @@
 package com.cinchapi.concourse.server.storage.cache;
 
 import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
-import jsr166e.StampedLock;
-
 import com.cinchapi.concourse.server.io.Byteable;
 import com.cinchapi.concourse.server.io.Composite;
 import com.cinchapi.concourse.server.io.FileSystem;
-import com.cinchapi.concourse.server.io.Serializables;
 import com.cinchapi.concourse.server.io.Syncable;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 
 /**
- * A wrapper around a {@link com.google.common.hash.BloomFilter} with methods
- * that make it easier to add one or more {@link Byteable} objects at a time
- * while also abstracting away the notion of funnels, etc.
+ * A <em>blocked</em> bloom filter for one or more {@link Byteable} objects.
+ * <p>
+ * The bits are divided into blocks of {@link #BLOCK_BITS} bits (the size of a
+ * cache line) and all of the probes for an element are set in a single block
+ * that is chosen by the hash of the element, so a lookup touches at most one
+ * cache line. The hash is computed incrementally over the bytes of each
+ * component, so a lookup does not allocate a {@link Composite} or copy any
+ * bytes.
+ * </p>
+ * <p>
+ * A filter is stored on disk in a flat binary format:
+ * 
+ * <pre>
+ * [magic (4)][version (4)][numHashFunctions (4)][blockCount (4)]
+ * [blockCount * block (64)]
+ * </pre>
+ * 
+ * A filter that is {@link #open(String) opened} from disk is immutable and
+ * reads its bits from a read only memory mapping of the file, so it does not
+ * need to be deserialized into the heap. A mutable filter holds its bits in
+ * an atomic array so that concurrent puts and lookups do not need to lock.
+ * </p>
+ * <p>
+ * Filters that were written by earlier versions (using Java serialization of a
+ * Guava filter) can still be opened, but report that they are
+ * {@link #isLegacy() legacy} so that the owner can rebuild them in the current
+ * format.
  * </p>
  * 
  * @author Jeff Nelson
@@ -53,8 +79,7 @@ public class BloomFilter implements Syncable {
      * <p>
      * Note that overflowing a BloomFilter with significantly more elements than
      * specified, will result in its saturation, and a sharp deterioration of
-     * its false positive probability (source:
-     * {@link BloomFilter#create(com.google.common.hash.Funnel, int)})
+     * its false positive probability.
      * <p>
      * 
      * @param expectedInsertions
@@ -70,8 +95,7 @@ public class BloomFilter implements Syncable {
      * <p>
      * Note that overflowing a BloomFilter with significantly more elements than
      * specified, will result in its saturation, and a sharp deterioration of
-     * its false positive probability (source:
-     * {@link BloomFilter#create(com.google.common.hash.Funnel, int)})
+     * its false positive probability.
      * <p>
      * 
      * @param file
@@ -83,28 +107,127 @@ public class BloomFilter implements Syncable {
     }
 
     /**
-     * Return the BloomFilter that is stored on disk in {@code file}.
+     * Return the BloomFilter that is stored on disk in {@code file}. If the
+     * filter was stored in the legacy format, it is deserialized into memory
+     * and {@link #isLegacy()} returns {@code true}.
      * 
      * @param file
      * @return the BloomFilter
      */
-    @SuppressWarnings({ "unchecked" })
     public static BloomFilter open(String file) {
+        if(FileSystem.getFileSize(file) >= HEADER_SIZE) {
+            MappedByteBuffer mapping = FileSystem.map(file,
+                    MapMode.READ_ONLY, 0, FileSystem.getFileSize(file), false);
+            if(mapping.getInt(0) == MAGIC) {
+                Preconditions.checkState(mapping.getInt(4) == VERSION,
+                        "Unsupported bloom filter version %s in %s",
+                        mapping.getInt(4), file);
+                if(mapping.capacity() < HEADER_SIZE
+                        + ((long) mapping.getInt(12) * BLOCK_WORDS * 8)) {
+                    FileSystem.unmap(mapping);
+                    throw Throwables.propagate(new EOFException(
+                            "The bloom filter in " + file + " is truncated"));
+                }
+                return new BloomFilter(file, mapping);
+            }
+            else {
+                FileSystem.unmap(mapping);
+            }
+        }
+        return openLegacy(file);
+    }
+
+    /**
+     * The number of bits in each block, which is the size of a cache line.
+     */
+    private static final int BLOCK_BITS = 512;
+
+    /**
+     * The number of longs in each block.
+     */
+    private static final int BLOCK_WORDS = BLOCK_BITS / 64;
+
+    /**
+     * The false positive probability that is used to size a filter. This is
+     * lower than the 3% that a standard filter would use to compensate for the
+     * uneven load of the blocks, so that a blocked filter has roughly the same
+     * false positive rate.
+     */
+    private static final double FPP = 0.02;
+
+    /**
+     * The first four bytes of a filter that is stored in the flat format. This
+     * can never be the first four bytes of a Java serialization stream.
+     */
+    private static final int MAGIC = 0xB100F117;
+
+    /**
+     * The number of bytes in the header of the flat format.
+     */
+    private static final int HEADER_SIZE = 16; // magic(4), version(4),
+                                               // numHashFunctions(4),
+                                               // blockCount(4)
+
+    /**
+     * The maximum number of hash functions.
+     */
+    private static final int MAX_HASH_FUNCTIONS = 16;
+
+    /**
+     * The version of the flat format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Return the 64 bit hash of the concatenated components in
+     * {@code byteables}. The bytes of each component are read in place, eight
+     * at a time, and the length of each component is mixed in so that the
+     * boundaries between components matter.
+     * 
+     * @param byteables
+     * @return the hash
+     */
+    private static long hash(Byteable... byteables) {
+        long hash = 0x9E3779B97F4A7C15L;
+        for (Byteable byteable : byteables) {
+            ByteBuffer bytes = byteable.getBytes();
+            int position = bytes.position();
+            int limit = bytes.limit();
+            while (limit - position >= 8) {
+                hash = (hash ^ mix(bytes.getLong(position)))
+                        * 0x9FB21C651E98DF25L;
+                position += 8;
+            }
+            long tail = limit - bytes.position();
+            for (int shift = 8; position < limit; ++position, shift += 8) {
+                tail ^= (bytes.get(position) & 0xFFL) << shift;
+            }
+            hash = (hash ^ mix(tail)) * 0x9FB21C651E98DF25L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Return the BloomFilter that is stored on disk in {@code file} using
+     * Java serialization of a Guava filter.
+     * 
+     * @param file
+     * @return the BloomFilter
+     */
+    @SuppressWarnings({ "unchecked" })
+    private static BloomFilter openLegacy(String file) {
         try {
-            final AtomicBoolean upgrade = new AtomicBoolean(false);
             ObjectInput input = new ObjectInputStream(new BufferedInputStream(
                     new FileInputStream(FileSystem.openFile(file)))) {
 
                 // In v0.3.0 the ByteableFunnel class was moved to a different
                 // package, so we must translate any old data that exists.
-                // TODO: remove this check if a post 0.3 version
                 @Override
                 protected ObjectStreamClass readClassDescriptor()
                         throws IOException, ClassNotFoundException {
                     ObjectStreamClass read = super.readClassDescriptor();
                     if(read.getName()
                             .equals("com.cinchapi.concourse.server.storage.ByteableFunnel")) {
-                        upgrade.set(true);
                         return ObjectStreamClass.lookup(ByteableFunnel.class);
                     }
                     return read;
@@ -115,9 +238,6 @@ public class BloomFilter implements Syncable {
                     (com.google.common.hash.BloomFilter<Composite>) input
                             .readObject());
             input.close();
-            if(upgrade.get()) {
-                filter.sync();
-            }
             return filter;
         }
         catch (IOException e) {
@@ -128,69 +248,119 @@ public class BloomFilter implements Syncable {
         }
     }
 
+    /**
+     * Return the result of applying the MurmurHash3 finalizer to
+     * {@code value}, which mixes every input bit into every output bit.
+     * 
+     * @param value
+     * @return the mixed value
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * The number of blocks in the filter.
+     */
+    private final int blockCount;
+
     /**
      * The file where the content is stored.
      */
-    private String file;
+    @Nullable
+    private final String file;
 
     /**
-     * Lock used to ensure the object is ThreadSafe. This lock provides access
-     * to a masterLock.readLock()() and masterLock.writeLock()().
+     * The wrapped Guava filter for a filter that was stored in the legacy
+     * format, or {@code null}.
      */
-    private final StampedLock lock = new StampedLock();
+    @Nullable
+    private final com.google.common.hash.BloomFilter<Composite> legacy;
 
     /**
-     * The wrapped bloom filter. This is where the data is actually stored.
+     * The read only mapping of the file for a filter that was opened from
+     * disk, or {@code null} if the filter is mutable.
      */
-    private final com.google.common.hash.BloomFilter<Composite> source;
+    @Nullable
+    private volatile MappedByteBuffer mapping;
 
     /**
-     * A flag that indicates if this BloomFilter instance does locking and is
-     * therefore thread safe under concurrent access. This is configurable using
-     * the {@link #enableThreadSafety()} and {@link #disableThreadSafety()}
-     * methods.
+     * The number of bits that are set for each element.
      */
-    private boolean threadSafe = true;
+    private final int numHashFunctions;
 
     /**
-     * Construct a new instance.
+     * The bits of a mutable filter, or {@code null} if the filter was opened
+     * from disk.
+     */
+    @Nullable
+    private final AtomicLongArray words;
+
+    /**
+     * Construct a new mutable instance.
      * 
      * @param file
-     * @param source
+     * @param expectedInsertions
      */
-    private BloomFilter(String file,
-            com.google.common.hash.BloomFilter<Composite> source) {
-        this.source = source;
+    private BloomFilter(@Nullable String file, int expectedInsertions) {
+        expectedInsertions = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(FPP)
+                / (Math.log(2) * Math.log(2)));
+        this.blockCount = (int) Math.max(1, (bits + BLOCK_BITS - 1)
+                / BLOCK_BITS);
+        this.numHashFunctions = (int) Math.max(1, Math.min(
+                MAX_HASH_FUNCTIONS,
+                Math.round((double) bits / expectedInsertions * Math.log(2))));
+        this.words = new AtomicLongArray(blockCount * BLOCK_WORDS);
+        this.mapping = null;
+        this.legacy = null;
         this.file = file;
     }
 
     /**
-     * Construct a new instance.
+     * Construct an immutable instance that reads from {@code mapping}.
      * 
-     * @param expectedInsertions
+     * @param file
+     * @param mapping
      */
-    private BloomFilter(String file, int expectedInsertions) {
-        this.source = com.google.common.hash.BloomFilter.create(
-                ByteableFunnel.INSTANCE, expectedInsertions); // uses 3% false
-                                                              // positive
-                                                              // probability
+    private BloomFilter(String file, MappedByteBuffer mapping) {
+        this.numHashFunctions = mapping.getInt(8);
+        this.blockCount = mapping.getInt(12);
+        this.mapping = mapping;
+        this.words = null;
+        this.legacy = null;
         this.file = file;
     }
 
     /**
-     * Turn off thread safety for this BloomFilter. Only do this when it is
-     * certain that the bloom filter will not see any additional writes from
-     * multiple concurrent threads.
+     * Construct an immutable instance that wraps a {@code legacy} filter.
+     * 
+     * @param file
+     * @param legacy
      */
-    public void disableThreadSafety() {
-        threadSafe = false;
+    private BloomFilter(String file,
+            com.google.common.hash.BloomFilter<Composite> legacy) {
+        this.legacy = legacy;
+        this.numHashFunctions = 0;
+        this.blockCount = 0;
+        this.mapping = null;
+        this.words = null;
+        this.file = file;
     }
 
     /**
-     * Turn on thread safety for this BloomFilter.
+     * Return {@code true} if this filter was stored in the legacy format and
+     * should be rebuilt.
+     * 
+     * @return {@code true} if the filter is a legacy filter
      */
-    public void enableThreadSafety() {
-        threadSafe = true;
+    public boolean isLegacy() {
+        return legacy != null;
     }
 
     /**
@@ -201,33 +371,43 @@ public class BloomFilter implements Syncable {
      * @return {@code true} if {@code byteables} might exist
      */
     public boolean mightContain(Byteable... byteables) {
-        Composite composite = Composite.create(byteables);
-        return mightContain(composite);
+        if(legacy != null) {
+            return legacy.mightContain(Composite.create(byteables));
+        }
+        long hash = hash(byteables);
+        int block = block(hash);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        ByteBuffer mapping = words == null ? mapping() : null;
+        for (int i = 0; i < numHashFunctions; ++i) {
+            int bit = (h1 + (i * h2)) & (BLOCK_BITS - 1);
+            int word = block + (bit >>> 6);
+            long value = mapping != null ? mapping.getLong(HEADER_SIZE
+                    + (word << 3)) : words.get(word);
+            if((value & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Return true if an element made up of a cached copy of the
-     * {@code byteables} might have been put in this filter or false if this is
-     * definitely not the case.
+     * Return true if an element made up of {@code byteables} might have been
+     * put in this filter or false if this is definitely not the case.
      * <p>
-     * Since caching is involved, this method is more prone to false positives
-     * than the {@link #mightContain(Byteable...)} alternative, but it will
-     * never return false negatives as long as the bits were added with the
-     * {@code #putCached(Byteable...)} method.
+     * This is the same as {@link #mightContain(Byteable...)}. It only exists
+     * for callers that used to trade precision for the ability to reuse cached
+     * {@link Composite Composites}, which are no longer necessary.
      * </p>
      * 
      * @param byteables
      * @return {@code true} if {@code byteables} might exist
      */
     public boolean mightContainCached(Byteable... byteables) {
-        Composite composite = Composite.createCached(byteables);
-        return mightContain(composite);
+        return mightContain(byteables);
     }
 
     /**
-     * <p>
-     * <strong>Copied from {@link BloomFilter#put(Object)}.</strong>
-     * </p>
      * Puts {@link byteables} into this BloomFilter as a single element.
      * Ensures that subsequent invocations of {@link #mightContain(Byteable...)}
      * with the same elements will always return true.
@@ -242,105 +422,121 @@ public class BloomFilter implements Syncable {
      *         called.
      */
     public boolean put(Byteable... byteables) {
-        return put(Composite.create(byteables));
+        Preconditions.checkState(words != null,
+                "Cannot add to a BloomFilter that was loaded from disk");
+        long hash = hash(byteables);
+        int block = block(hash);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        boolean changed = false;
+        for (int i = 0; i < numHashFunctions; ++i) {
+            int bit = (h1 + (i * h2)) & (BLOCK_BITS - 1);
+            int word = block + (bit >>> 6);
+            long mask = 1L << bit;
+            long value;
+            while (((value = words.get(word)) & mask) == 0) {
+                if(words.compareAndSet(word, value, value | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
     }
 
     /**
-     * <p>
-     * <strong>Copied from {@link BloomFilter#put(Object)}.</strong>
-     * </p>
-     * Puts {@link byteables} into this BloomFilter as a single element with
-     * support for caching Ensures that subsequent invocations of
-     * {@link #mightContainCached(Byteable...)} with the same elements will
-     * always return true.
+     * Puts {@link byteables} into this BloomFilter as a single element. This
+     * is the same as {@link #put(Byteable...)}.
      * 
      * @param byteables
      * @return {@code true} if the filter's bits changed as a result of this
-     *         operation. If the bits changed, this is definitely the first time
-     *         {@code byteables} have been added to the filter. If the bits
-     *         haven't changed, this might be the first time they have been
-     *         added. Note that put(t) always returns the opposite result to
-     *         what mightContain(t) would have returned at the time it is
-     *         called.
+     *         operation
+     * @see #mightContainCached(Byteable...)
      */
     public boolean putCached(Byteable... byteables) {
-        return put(Composite.createCached(byteables));
+        return put(byteables);
+    }
+
+    /**
+     * Release the mapping of the file for a filter that was opened from disk.
+     * The caller must guarantee that no lookups are in progress. If the filter
+     * is used again after being retired, a new mapping is created on demand.
+     */
+    public void retire() {
+        MappedByteBuffer mapping;
+        synchronized (this) {
+            mapping = this.mapping;
+            this.mapping = null;
+        }
+        if(mapping != null) {
+            FileSystem.unmap(mapping);
+        }
     }
 
     @Override
-    // NOTE: It seems counter intuitive, but we take a read lock in this
-    // method instead of a write lock so that readers can concurrently use
-    // the bloom filter in memory while the content is being written to
-    // disk.
     public void sync() {
         Preconditions.checkState(file != null, "Cannot sync a "
                 + "BloomFilter that does not have an associated file");
+        Preconditions.checkState(words != null,
+                "Cannot sync a BloomFilter that was loaded from disk");
+        // Concurrent puts may or may not be captured, which is no different
+        // than if they had happened after the sync.
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE
+                + (words.length() * 8));
+        bytes.putInt(MAGIC);
+        bytes.putInt(VERSION);
+        bytes.putInt(numHashFunctions);
+        bytes.putInt(blockCount);
+        for (int i = 0; i < words.length(); ++i) {
+            bytes.putLong(words.get(i));
+        }
+        bytes.flip();
         FileChannel channel = FileSystem.getFileChannel(file);
-        long stamp = lock.tryOptimisticRead();
-        Serializables.write(source, channel); // CON-164
-        if(!lock.validate(stamp)) {
-            stamp = lock.readLock();
-            try {
-                channel.position(0);
-                Serializables.write(source, channel); // CON-164
-            }
-            catch (IOException e) {
-                throw Throwables.propagate(e);
-            }
-            finally {
-                lock.unlockRead(stamp);
+        try {
+            channel.truncate(0);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
             }
+            channel.force(true);
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        finally {
+            FileSystem.closeFileChannel(channel); // CON-162
         }
-        FileSystem.closeFileChannel(channel);
     }
 
     /**
-     * Check the backing bloom filter to see if the composite might have been
-     * added.
+     * Return the index of the first word in the block for {@code hash}.
      * 
-     * @param composite
-     * @return {@code true} if the composite might exist
+     * @param hash
+     * @return the index of the block's first word
      */
-    private boolean mightContain(Composite composite) {
-        if(threadSafe) {
-            long stamp = lock.tryOptimisticRead();
-            boolean mightContain = source.mightContain(composite);
-            if(!lock.validate(stamp)) {
-                stamp = lock.readLock();
-                try {
-                    mightContain = source.mightContain(composite);
-                }
-                finally {
-                    lock.unlockRead(stamp);
-                }
-            }
-            return mightContain;
-        }
-        else {
-            return source.mightContain(composite);
-        }
+    private int block(long hash) {
+        return (int) ((mix(hash ^ 0x2545F4914F6CDD1DL) >>> 1) % blockCount)
+                * BLOCK_WORDS;
     }
 
     /**
-     * Place the {@code composite} in the backing bloom filter.
+     * Return the read only {@link #mapping} of the file, creating it if
+     * necessary.
      * 
-     * @param composite
-     * @return {@code true} if the bits have changed as a result of the addition
-     *         of the {@code composite}
+     * @return the mapping
      */
-    private boolean put(Composite composite) {
-        if(threadSafe) {
-            long stamp = lock.writeLock();
-            try {
-                return source.put(composite);
-            }
-            finally {
-                lock.unlockWrite(stamp);
+    private MappedByteBuffer mapping() {
+        MappedByteBuffer mapping = this.mapping;
+        if(mapping == null) {
+            synchronized (this) {
+                mapping = this.mapping;
+                if(mapping == null) {
+                    mapping = FileSystem.map(file, MapMode.READ_ONLY, 0,
+                            FileSystem.getFileSize(file), false);
+                    this.mapping = mapping;
+                }
             }
         }
-        else {
-            return source.put(composite);
-        }
+        return mapping;
     }
 
 }
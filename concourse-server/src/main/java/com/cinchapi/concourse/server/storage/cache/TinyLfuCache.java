@@ -0,0 +1,637 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * A cache that is bounded by the total weight (i.e. the estimated number of
+ * bytes) of its values instead of the number of entries and that uses a
+ * frequency aware admission policy so that a burst of one-off lookups (i.e. a
+ * scan) doesn't flush the entries that are accessed often.
+ * <p>
+ * New entries are placed in a small LRU <em>window</em>. When the window
+ * overflows, its least recently used entry becomes a candidate for the
+ * <em>main</em> LRU region. If the main region must evict entries to make room,
+ * the candidate is only admitted if it has been accessed more frequently than
+ * each of the entries it would displace; otherwise the candidate is discarded.
+ * Access frequencies are estimated with a compact count-min sketch of 4-bit
+ * counters that are periodically halved so that the history ages.
+ * </p>
+ * <p>
+ * The weight of an entry is recomputed whenever it is read, so values that
+ * grow in place (i.e. Records that have revisions appended) are eventually
+ * accounted for correctly. Entries that are heavier than the entire cache are
+ * never stored.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@ThreadSafe
+public class TinyLfuCache<K, V> {
+
+    /**
+     * Return a {@link TinyLfuCache} that holds no more than
+     * {@code maximumWeight} as measured by the {@code weigher}.
+     *
+     * @param maximumWeight
+     * @param weigher
+     * @return the TinyLfuCache
+     */
+    public static <K, V> TinyLfuCache<K, V> withMaximumWeight(
+            long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        return new TinyLfuCache<K, V>(maximumWeight, weigher);
+    }
+
+    /**
+     * The percentage of the maximum weight that is reserved for the admission
+     * window.
+     */
+    private static final int WINDOW_PERCENT = 1;
+
+    /**
+     * The entries in the cache.
+     */
+    private final ConcurrentMap<K, Node<K, V>> data = new ConcurrentHashMap<K, Node<K, V>>();
+
+    /**
+     * The number of lookups that found an entry.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * The number of lookups that did not find an entry.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The number of entries that were evicted or rejected by the admission
+     * policy.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * The lock that guards the policy state (i.e. the LRU regions, weights and
+     * frequency sketch). Reads only {@link ReentrantLock#tryLock() try} to
+     * acquire the lock so that contention never blocks a cache hit; a
+     * skipped policy update only makes the policy slightly less accurate.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The maximum total weight of the cache.
+     */
+    private final long maximumWeight;
+
+    /**
+     * The maximum weight of the window region.
+     */
+    private final long windowMaximumWeight;
+
+    /**
+     * The estimator for access frequencies.
+     */
+    @GuardedBy("lock")
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    /**
+     * The function that weighs each entry.
+     */
+    private final Weigher<? super K, ? super V> weigher;
+
+    /**
+     * The admission window, ordered from least to most recently used.
+     */
+    @GuardedBy("lock")
+    private final AccessOrder<K, V> window = new AccessOrder<K, V>();
+
+    /**
+     * The main region, ordered from least to most recently used.
+     */
+    @GuardedBy("lock")
+    private final AccessOrder<K, V> main = new AccessOrder<K, V>();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param maximumWeight
+     * @param weigher
+     */
+    private TinyLfuCache(long maximumWeight,
+            Weigher<? super K, ? super V> weigher) {
+        Preconditions.checkArgument(maximumWeight >= 0);
+        this.maximumWeight = maximumWeight;
+        this.windowMaximumWeight = Math.max(1, maximumWeight * WINDOW_PERCENT
+                / 100);
+        this.weigher = weigher;
+    }
+
+    /**
+     * Return the value associated with {@code key} in the cache, or
+     * {@code null} if there is no cached value. This lookup is counted in the
+     * {@link #stats() stats} and contributes to the access frequency of
+     * {@code key}.
+     *
+     * @param key
+     * @return the cached value or {@code null}
+     */
+    @Nullable
+    public V getIfPresent(K key) {
+        Node<K, V> node = data.get(key);
+        if(node == null) {
+            misses.incrementAndGet();
+            if(lock.tryLock()) {
+                try {
+                    sketch.increment(key);
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+            return null;
+        }
+        else {
+            hits.incrementAndGet();
+            if(lock.tryLock()) {
+                try {
+                    sketch.increment(key);
+                    if(node.region != null) {
+                        reweigh(node);
+                        node.region.moveToBack(node);
+                        evict();
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+            return node.value;
+        }
+    }
+
+    /**
+     * Remove all the entries from the cache.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            for (Node<K, V> node : data.values()) {
+                remove(node);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the entry for {@code key}, if it exists.
+     *
+     * @param key
+     */
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            Node<K, V> node = data.get(key);
+            if(node != null) {
+                remove(node);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the value associated with {@code key} in the cache without
+     * counting the lookup or affecting the eviction order. This is
+     * appropriate for internal maintenance (i.e. keeping cached values up to
+     * date) that should not make an entry look popular.
+     *
+     * @param key
+     * @return the cached value or {@code null}
+     */
+    @Nullable
+    public V peek(K key) {
+        Node<K, V> node = data.get(key);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Associate {@code value} with {@code key} in the cache, subject to the
+     * admission policy.
+     *
+     * @param key
+     * @param value
+     */
+    public void put(K key, V value) {
+        int weight = weigher.weigh(key, value);
+        lock.lock();
+        try {
+            Node<K, V> existing = data.get(key);
+            if(existing != null) {
+                remove(existing);
+            }
+            if(weight <= maximumWeight) {
+                Node<K, V> node = new Node<K, V>(key, value, weight);
+                data.put(key, node);
+                window.add(node);
+                evict();
+            }
+            else {
+                evictions.incrementAndGet();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the number of entries in the cache.
+     *
+     * @return the size
+     */
+    public long size() {
+        return data.size();
+    }
+
+    /**
+     * Return the statistics for the cache. Lookups made using
+     * {@link #peek(Object)} are not included.
+     *
+     * @return the stats
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.get(), misses.get(), 0, 0, 0,
+                evictions.get());
+    }
+
+    /**
+     * Return the total weight of all the entries in the cache.
+     *
+     * @return the weight
+     */
+    public long weight() {
+        lock.lock();
+        try {
+            return window.weight + main.weight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move entries out of the window and, if necessary, out of the main region
+     * until both are within their bounds.
+     */
+    @GuardedBy("lock")
+    private void evict() {
+        long mainMaximumWeight = maximumWeight - windowMaximumWeight;
+        while (window.weight > windowMaximumWeight) {
+            Node<K, V> candidate = window.first();
+            window.remove(candidate);
+            if(admit(candidate, mainMaximumWeight)) {
+                main.add(candidate);
+            }
+            else {
+                data.remove(candidate.key, candidate);
+                evictions.incrementAndGet();
+            }
+        }
+        // Entries that grew in place may push the cache over its bound even
+        // though no candidate was admitted.
+        while (window.weight + main.weight > maximumWeight) {
+            AccessOrder<K, V> region = main.first() != null ? main : window;
+            remove(region.first());
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Determine whether {@code candidate} should enter the main region. If so,
+     * evict the victims that must be displaced to make room.
+     *
+     * @param candidate
+     * @param mainMaximumWeight
+     * @return {@code true} if the candidate is admitted
+     */
+    @GuardedBy("lock")
+    private boolean admit(Node<K, V> candidate, long mainMaximumWeight) {
+        long excess = main.weight + candidate.weight - mainMaximumWeight;
+        if(excess <= 0) {
+            return true;
+        }
+        else if(candidate.weight > mainMaximumWeight) {
+            return false;
+        }
+        else {
+            int frequency = sketch.frequency(candidate.key);
+            Node<K, V> victim = main.first();
+            long freed = 0;
+            while (freed < excess) {
+                // Ties favor the victim, since it has already proven to be
+                // worth caching.
+                if(sketch.frequency(victim.key) >= frequency) {
+                    return false;
+                }
+                freed += victim.weight;
+                victim = victim.next;
+            }
+            while (main.weight + candidate.weight > mainMaximumWeight) {
+                remove(main.first());
+                evictions.incrementAndGet();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Remove {@code node} from the cache.
+     *
+     * @param node
+     */
+    @GuardedBy("lock")
+    private void remove(Node<K, V> node) {
+        if(node.region != null) {
+            node.region.remove(node);
+        }
+        data.remove(node.key, node);
+    }
+
+    /**
+     * Recompute the weight of {@code node} in case its value has changed.
+     *
+     * @param node
+     */
+    @GuardedBy("lock")
+    private void reweigh(Node<K, V> node) {
+        int weight = weigher.weigh(node.key, node.value);
+        node.region.weight += weight - node.weight;
+        node.weight = weight;
+    }
+
+    /**
+     * A doubly linked list of {@link Node nodes} in access order that also
+     * tracks the total weight of its nodes.
+     *
+     * @author Jeff Nelson
+     */
+    private static final class AccessOrder<K, V> {
+
+        private Node<K, V> head = null;
+        private Node<K, V> tail = null;
+        private long weight = 0;
+
+        /**
+         * Add {@code node} as the most recently used node.
+         *
+         * @param node
+         */
+        void add(Node<K, V> node) {
+            node.region = this;
+            node.prev = tail;
+            node.next = null;
+            if(tail == null) {
+                head = node;
+            }
+            else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        /**
+         * Return the least recently used node.
+         *
+         * @return the first node or {@code null}
+         */
+        @Nullable
+        Node<K, V> first() {
+            return head;
+        }
+
+        /**
+         * Mark {@code node} as the most recently used node.
+         *
+         * @param node
+         */
+        void moveToBack(Node<K, V> node) {
+            if(node != tail) {
+                remove(node);
+                add(node);
+            }
+        }
+
+        /**
+         * Remove {@code node}.
+         *
+         * @param node
+         */
+        void remove(Node<K, V> node) {
+            if(node.prev == null) {
+                head = node.next;
+            }
+            else {
+                node.prev.next = node.next;
+            }
+            if(node.next == null) {
+                tail = node.prev;
+            }
+            else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.region = null;
+            weight -= node.weight;
+        }
+
+    }
+
+    /**
+     * A count-min sketch that estimates how often each key has been accessed
+     * using four 4-bit counters per key. Once the number of increments reaches
+     * the sample size, every counter is halved so that old accesses are
+     * eventually forgotten. The table grows with the number of cached entries.
+     *
+     * @author Jeff Nelson
+     */
+    private final class FrequencySketch {
+
+        /**
+         * The seeds for each of the four hash functions.
+         */
+        private final long[] seeds = { 0xc3a5c85c97cb3127L,
+                0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+        /**
+         * The counters, sixteen of which are packed into each long.
+         */
+        private long[] table = new long[64];
+
+        /**
+         * The number of increments since the last reset.
+         */
+        private int additions = 0;
+
+        /**
+         * Return the estimated number of times that {@code key} was accessed.
+         *
+         * @param key
+         * @return the frequency
+         */
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = 15;
+            for (int i = 0; i < 4; ++i) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        /**
+         * Record an access of {@code key}.
+         *
+         * @param key
+         */
+        void increment(Object key) {
+            ensureCapacity();
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; ++i) {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                long mask = 0xFL << offset;
+                if((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if(added && ++additions >= sampleSize()) {
+                reset();
+            }
+        }
+
+        /**
+         * Grow the table, discarding the current history, if the cache holds
+         * more entries than the table can accurately describe.
+         */
+        private void ensureCapacity() {
+            int size = data.size();
+            if(size > table.length && table.length < (1 << 30)) {
+                table = new long[Integer.highestOneBit(size - 1) << 1];
+                additions = 0;
+            }
+        }
+
+        /**
+         * Return the index in the {@link #table} for the {@code i}th hash of
+         * {@code hash}.
+         *
+         * @param hash
+         * @param i
+         * @return the index
+         */
+        private int indexOf(int hash, int i) {
+            long h = (hash + seeds[i]) * seeds[i];
+            h += h >>> 32;
+            return ((int) h) & (table.length - 1);
+        }
+
+        /**
+         * Halve every counter.
+         */
+        private void reset() {
+            for (int i = 0; i < table.length; ++i) {
+                table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+            }
+            additions /= 2;
+        }
+
+        /**
+         * Return the number of increments after which the counters are
+         * halved.
+         *
+         * @return the sample size
+         */
+        private int sampleSize() {
+            return 10 * table.length;
+        }
+
+        /**
+         * Apply a supplemental hash to {@code hash} to defend against poor
+         * quality hash codes.
+         *
+         * @param hash
+         * @return the spread hash
+         */
+        private int spread(int hash) {
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            return (hash >>> 16) ^ hash;
+        }
+
+    }
+
+    /**
+     * A cache entry.
+     *
+     * @author Jeff Nelson
+     */
+    private static final class Node<K, V> {
+
+        private final K key;
+        private final V value;
+        private int weight;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+        @Nullable
+        private AccessOrder<K, V> region;
+
+        /**
+         * Construct a new instance.
+         *
+         * @param key
+         * @param value
+         * @param weight
+         */
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+    }
+
+}
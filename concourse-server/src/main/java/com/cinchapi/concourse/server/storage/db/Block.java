@@ -26,7 +26,9 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
@@ -41,6 +43,7 @@ import com.cinchapi.concourse.server.concurrent.Locks;
 import com.cinchapi.concourse.server.io.Byteable;
 import com.cinchapi.concourse.server.io.ByteableCollections;
 import com.cinchapi.concourse.server.io.Byteables;
+import com.cinchapi.concourse.server.io.Compression;
 import com.cinchapi.concourse.server.io.FileSystem;
 import com.cinchapi.concourse.server.io.Syncable;
 import com.cinchapi.concourse.server.storage.Action;
@@ -48,16 +51,21 @@ import com.cinchapi.concourse.server.storage.cache.BloomFilter;
 import com.cinchapi.concourse.util.Logger;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.ComparisonChain;
-import com.google.common.collect.SortedMultiset;
-import com.google.common.collect.TreeMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 /**
  * <p>
  * A Block is a sorted collection of Revisions that is used by the Database to
  * store indexed data. When a Block is initially created, it resides solely in
- * memory and is able to insert new revisions, which are sorted on the fly by a
- * {@link Sorter}. Once the Block is synced to disk it becomes immutable and all
+ * memory and is able to insert new revisions, which are appended to a
+ * {@link RevisionBuffer} and sorted by a {@link Sorter} when the Block is
+ * synced. Once the Block is synced to disk it becomes immutable and all
  * lookups are disk based. This means that writing to a block never incurs any
  * random disk I/O. A Block is not durable until the {@link #sync()} method is
  * called, so Block serialization and Buffer.Page deletion happen sequentially.
@@ -72,6 +80,14 @@ import com.google.common.collect.TreeMultiset;
  * disk I/O.
  * </p>
  * <p>
+ * If {@link GlobalState#BLOCK_COMPRESSION} is enabled when a Block is synced,
+ * its content is divided into pages of {@link #PAGE_SIZE} bytes that are each
+ * compressed and the BlockIndex records where each page begins in the block
+ * file. Seeks against a compressed Block decompress the relevant pages through
+ * a shared {@link PageCache}. Blocks that were stored uncompressed continue to
+ * be read directly from the block file.
+ * </p>
+ * <p>
  * Prior to 0.2, Concourse stored each logical Record in its own file, which had
  * the advantage of simplified deserialization (we only needed to locate one
  * file and read all of its content). The down side to that approach was that a
@@ -147,15 +163,47 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
      */
     private static final int EXPECTED_INSERTIONS = GlobalState.BUFFER_PAGE_SIZE;
 
+    /**
+     * The number of uncompressed bytes in each page of a compressed Block. The
+     * page size is small enough that a seek for a single locator or key
+     * usually only needs to decompress one page.
+     */
+    @PackagePrivate
+    static final int PAGE_SIZE = 64 * 1024;
+
+    /**
+     * The maximum number of bytes in each of the {@link #mapping segments}
+     * that are used to read an immutable block file. A single
+     * {@link MappedByteBuffer} cannot address more than 2GB, so larger block
+     * files are mapped in several segments.
+     */
+    @PackagePrivate
+    static final int SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * The cache of decompressed pages that is shared by all compressed Blocks.
+     */
+    @PackagePrivate
+    static final PageCache PAGES = new PageCache(
+            GlobalState.BLOCK_PAGE_CACHE_SIZE);
+
     /**
      * The extension for the {@link BloomFilter} file.
      */
-    private static final String FILTER_NAME_EXTENSION = ".fltr";
+    @PackagePrivate
+    static final String FILTER_NAME_EXTENSION = ".fltr";
 
     /**
      * The extension for the {@link BlockIndex} file.
      */
-    private static final String INDEX_NAME_EXTENSION = ".indx";
+    @PackagePrivate
+    static final String INDEX_NAME_EXTENSION = ".indx";
+
+    /**
+     * The extension for the {@link BlockMetadata} file.
+     */
+    @PackagePrivate
+    static final String METADATA_NAME_EXTENSION = ".meta";
 
     /**
      * The extension for the block file.
@@ -170,9 +218,19 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
 
     /**
      * A fixed size filter that is used to test whether elements are contained
-     * in the Block without actually looking through the Block.
+     * in the Block without actually looking through the Block. For a Block
+     * that is loaded from disk, the filter is not deserialized until it is
+     * first needed, so access it using {@link #filter()}.
+     */
+    @Nullable
+    private volatile BloomFilter filter;
+
+    /**
+     * The MD5 checksum of the block file, which is computed while the Block is
+     * synced, or {@code null} if the Block was not synced by this process.
      */
-    private BloomFilter filter;
+    @Nullable
+    private volatile HashCode checksum = null;
 
     /**
      * The unique id for the block. Each component of the block is named after
@@ -193,7 +251,28 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
      */
     private final BlockIndex index; // Since the index is only used for
                                     // immutable blocks, it is only populated
-                                    // during the call to #getBytes()
+                                    // while the revisions are serialized
+
+    /**
+     * The fence metadata for the Block, which is populated while the revisions
+     * are serialized. This is {@code null} for a Block that was synced
+     * before fence metadata was introduced, in which case the Block can never
+     * be skipped.
+     */
+    @Nullable
+    private BlockMetadata<L, K> metadata;
+
+    /**
+     * A long lived, read only mapping of the entire block file that is shared
+     * by all disk based seeks once the Block is immutable. Each seek reads
+     * from its own view of this mapping instead of creating a new one, which
+     * avoids a syscall and a short lived {@link MappedByteBuffer} per lookup.
+     * The file is mapped in consecutive segments of {@link #SEGMENT_SIZE}
+     * bytes. The mapping is created on the first disk based seek and released
+     * in {@link #retire()}.
+     */
+    @Nullable
+    private volatile MappedByteBuffer[] mapping = null;
 
     /**
      * The master lock for {@link #write} and {@link #read}. DO NOT use this
@@ -203,26 +282,26 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
 
     /**
      * A collection that contains all the Revisions that have been inserted into
-     * the Block. This collection is sorted on the fly as elements are inserted.
+     * the Block. This collection is only sorted once the Block is synced.
      * This collection is only maintained for a mutable Block. A Block that is
      * synced and subsequently read from disk does not rely on this collection
      * at all.
      */
     @Nullable
-    private SortedMultiset<Revision<L, K, V>> revisions;
+    private RevisionBuffer<L, K, V> revisions;
 
     /**
      * The running size of the Block. This number only refers to the size of the
      * Revisions that are stored in the block file. The size for the filter and
      * index are tracked separately.
      */
-    private transient int size;
+    private transient long size;
 
     /**
      * The size counter to use if this Block is {@link #concurrent} and uses the
      * {@link #insertUnsafe(Byteable, Byteable, Byteable, long, Action)} method.
      */
-    private transient AtomicInteger atomicSize = new AtomicInteger(0);
+    private transient AtomicLong atomicSize = new AtomicLong(0);
 
     /**
      * A soft reference to the {@link #revisions} that <em>may</em> stay in
@@ -230,22 +309,40 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
      * this reference in response to memory pressure at which point disk seeks
      * will be performed in the {@link #seek(Record, Byteable...)} method.
      */
-    private final SoftReference<SortedMultiset<Revision<L, K, V>>> softRevisions;
+    private final SoftReference<RevisionBuffer<L, K, V>> softRevisions;
 
     /**
      * A hint that this Block uses the
      * {@link #insertUnsafe(Byteable, Byteable, Byteable, long, Action)} method
-     * to add data without grabbing any locks. This is generally safe to do as
-     * long as {@link #createBackingStore(Comparator)} returns a concurrent
-     * collection that is thread safe.
+     * to add data without grabbing any locks. This is safe to do because the
+     * {@link RevisionBuffer} is thread safe.
      */
     protected transient boolean concurrent = false;
 
     /**
      * The flag that indicates whether the Block is mutable or not. A Block is
      * mutable until a call to {@link #sync()} stores it to disk.
+     * <p>
+     * Readers check this flag to decide whether a lock is needed, so it must
+     * be read once per operation: a sealed Block becomes immutable while
+     * readers are concurrently seeking it.
+     * </p>
+     */
+    protected transient volatile boolean mutable;
+
+    /**
+     * A flag that indicates whether the Block has been {@link #seal() sealed}
+     * and no longer accepts writes. A sealed Block is still mutable (i.e. its
+     * revisions are served from memory) until it has been flushed to disk.
+     */
+    private volatile boolean sealed = false;
+
+    /**
+     * A flag that indicates whether a {@link #sync()} has claimed the Block
+     * and is flushing it to disk.
      */
-    protected transient boolean mutable;
+    @GuardedBy("write")
+    private boolean flushing = false;
 
     /**
      * A shared lock that permits many readers and no writer. Use this lock to
@@ -275,93 +372,299 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
         this.file = directory + File.separator + id + BLOCK_NAME_EXTENSION;
         if(diskLoad) {
             this.mutable = false;
-            this.size = (int) FileSystem.getFileSize(this.file);
-            try {
-                this.filter = BloomFilter.open(directory + File.separator + id
-                        + FILTER_NAME_EXTENSION);
-                filter.disableThreadSafety();
-            }
-            catch (RuntimeException e) {
-                repair(e);
-            }
+            this.size = FileSystem.getFileSize(this.file);
             this.index = BlockIndex.open(directory + File.separator + id
                     + INDEX_NAME_EXTENSION);
+            this.filter = null; // loaded on demand in #filter()
+            String meta = directory + File.separator + id
+                    + METADATA_NAME_EXTENSION;
+            this.metadata = FileSystem.hasFile(meta) ? BlockMetadata.open(
+                    meta, xLocatorClass(), xKeyClass()) : null;
             this.revisions = null;
         }
         else {
             this.mutable = true;
             this.size = 0;
-            this.revisions = createBackingStore(Sorter.INSTANCE);
+            this.revisions = new RevisionBuffer<L, K, V>();
             this.filter = BloomFilter.create(
                     (directory + File.separator + id + FILTER_NAME_EXTENSION),
                     EXPECTED_INSERTIONS);
             this.index = BlockIndex.create(directory + File.separator + id
                     + INDEX_NAME_EXTENSION, EXPECTED_INSERTIONS);
+            this.metadata = BlockMetadata.create(directory + File.separator
+                    + id + METADATA_NAME_EXTENSION);
         }
-        this.softRevisions = new SoftReference<SortedMultiset<Revision<L, K, V>>>(
+        this.softRevisions = new SoftReference<RevisionBuffer<L, K, V>>(
+                revisions);
+        this.ignoreEmptySync = this instanceof SearchBlock;
+    }
+
+    /**
+     * Construct a new mutable instance whose filter and index are sized to
+     * hold {@code expectedInsertions} elements. This is used by the
+     * {@link Compactor} to create Blocks that are larger than a single Buffer
+     * page.
+     * 
+     * @param id
+     * @param directory
+     * @param expectedInsertions
+     */
+    protected Block(String id, String directory, int expectedInsertions) {
+        FileSystem.mkdirs(directory);
+        this.id = id;
+        this.file = directory + File.separator + id + BLOCK_NAME_EXTENSION;
+        this.mutable = true;
+        this.size = 0;
+        this.revisions = new RevisionBuffer<L, K, V>();
+        this.filter = BloomFilter.create(
+                (directory + File.separator + id + FILTER_NAME_EXTENSION),
+                expectedInsertions);
+        this.index = BlockIndex.create(directory + File.separator + id
+                + INDEX_NAME_EXTENSION, expectedInsertions);
+        this.metadata = BlockMetadata.create(directory + File.separator + id
+                + METADATA_NAME_EXTENSION);
+        this.softRevisions = new SoftReference<RevisionBuffer<L, K, V>>(
                 revisions);
         this.ignoreEmptySync = this instanceof SearchBlock;
     }
 
     @Override
-    public void copyTo(ByteBuffer buffer) {
-        Locks.lockIfCondition(read, mutable);
+    public void copyTo(final ByteBuffer buffer) {
+        final int base = buffer.position();
         try {
-            L locator = null;
-            K key = null;
-            int position = 0;
-            boolean populated = false;
-            for (Revision<L, K, V> revision : revisions) {
-                populated = true;
-                buffer.putInt(revision.size());
-                revision.copyTo(buffer);
-                position = buffer.position() - revision.size() - 4;
-                /*
-                 * States that trigger this condition to be true:
-                 * 1. This is the first locator we've seen
-                 * 2. This locator is different than the last one we've seen
-                 */
-                if(locator == null || !locator.equals(revision.getLocator())) {
-                    index.putStart(position, revision.getLocator());
-                    if(locator != null) {
-                        // There was a locator before us (we are not the first!)
-                        // and we need to record the end index.
-                        index.putEnd(position - 1, locator);
-                    }
+            serialize(new Sink() {
+
+                @Override
+                public long position() {
+                    return buffer.position() - base;
                 }
-                /*
-                 * NOTE: IF key == null, then it must be the case that locator
-                 * == null since they are set at the same time. Therefore we do
-                 * not need to explicitly check for that condition below
-                 * 
-                 * States that trigger this condition to be true:
-                 * 1. This is the first key we've seen
-                 * 2. This key is different than the last one we've seen
-                 * (regardless of whether the locator is different or the same!)
-                 * 3. This key is the same as the last one we've seen, but the
-                 * locator is different.
-                 */
-                if(key == null || !key.equals(revision.getKey())
-                        || !locator.equals(revision.getLocator())) {
-                    index.putStart(position, revision.getLocator(),
-                            revision.getKey());
-                    if(key != null) {
-                        // There was a locator, key before us (we are not the
-                        // first!) and we need to record the end index.
-                        index.putEnd(position - 1, locator, key);
-                    }
+
+                @Override
+                public void put(Revision<?, ?, ?> revision) {
+                    buffer.putInt(revision.size());
+                    revision.copyTo(buffer);
                 }
-                locator = revision.getLocator();
-                key = revision.getKey();
+
+            });
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Insert an existing {@code revision} into this Block without
+     * transforming or re-indexing any of its components. This is used to copy
+     * revisions from one Block to another (i.e. during compaction).
+     * 
+     * @param revision
+     * @throws IllegalStateException if the Block is not mutable
+     */
+    @PackagePrivate
+    void append(Revision<L, K, V> revision) throws IllegalStateException {
+        boolean locked = mutable;
+        Locks.lockIfCondition(write, locked);
+        try {
+            Preconditions.checkState(mutable && !sealed,
+                    "Cannot modify a block that is not mutable");
+            revisions.add(revision);
+            filter().put(revision.getLocator());
+            filter().put(revision.getLocator(), revision.getKey());
+            filter().put(revision.getLocator(), revision.getKey(),
+                    revision.getValue());
+            if(concurrent) {
+                atomicSize.addAndGet(revision.size() + 4);
             }
-            if(populated) {
-                position = buffer.position() - 1;
-                index.putEnd(position, locator);
-                index.putEnd(position, locator, key);
+            else {
+                size += revision.size() + 4;
             }
         }
         finally {
-            Locks.unlockIfCondition(read, mutable);
+            Locks.unlockIfCondition(write, locked);
+        }
+    }
+
+    /**
+     * Return the revisions that contain any key in {@code locator}, in the
+     * order that they should be appended to a {@link Record}, if it is
+     * <em>likely</em> that those revisions exist in this Block. Unlike
+     * {@link #seek(Byteable, Record)}, this method does not require a Record,
+     * so it can be used to seek many Blocks in parallel.
+     * 
+     * @param locator
+     * @return the revisions
+     */
+    @PackagePrivate
+    List<Revision<L, K, V>> collect(L locator) {
+        return seek(Long.MIN_VALUE, Long.MAX_VALUE, locator);
+    }
+
+    /**
+     * Return the revisions that contain any key in {@code locator} and have a
+     * version that is greater than or equal to {@code start} and less than
+     * {@code end}, in the order that they should be appended to a
+     * {@link Record}.
+     * 
+     * @param locator
+     * @param start
+     * @param end
+     * @return the revisions
+     */
+    @PackagePrivate
+    List<Revision<L, K, V>> collect(L locator, long start, long end) {
+        return seek(start, end, locator);
+    }
+
+    /**
+     * Return the revisions that contain {@code key} in {@code locator}, in the
+     * order that they should be appended to a {@link Record}, if it is
+     * <em>likely</em> that those revisions exist in this Block.
+     * 
+     * @param locator
+     * @param key
+     * @return the revisions
+     */
+    @PackagePrivate
+    List<Revision<L, K, V>> collect(L locator, K key) {
+        return seek(Long.MIN_VALUE, Long.MAX_VALUE, locator, key);
+    }
+
+    /**
+     * Return the revisions that contain {@code key} in {@code locator} and
+     * have a version that is greater than or equal to {@code start} and less
+     * than {@code end}, in the order that they should be appended to a
+     * {@link Record}.
+     * 
+     * @param locator
+     * @param key
+     * @param start
+     * @param end
+     * @return the revisions
+     */
+    @PackagePrivate
+    List<Revision<L, K, V>> collect(L locator, K key, long start, long end) {
+        return seek(start, end, locator, key);
+    }
+
+    /**
+     * Return the revisions that contain a key within {@code range} in
+     * {@code locator}, in the order that they should be appended to a
+     * {@link Record}, if it is <em>likely</em> that those revisions exist in
+     * this Block.
+     * 
+     * @param locator
+     * @param range
+     * @return the revisions
+     */
+    @PackagePrivate
+    List<Revision<L, K, V>> collect(L locator, Range<K> range) {
+        return seek(locator, range, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Return the revisions that contain a key within {@code range} in
+     * {@code locator} and have a version that is greater than or equal to
+     * {@code start} and less than {@code end}, in the order that they should
+     * be appended to a {@link Record}.
+     * 
+     * @param locator
+     * @param range
+     * @param start
+     * @param end
+     * @return the revisions
+     */
+    @PackagePrivate
+    List<Revision<L, K, V>> collect(L locator, Range<K> range, long start,
+            long end) {
+        return seek(locator, range, start, end);
+    }
+
+    /**
+     * Return {@code true} if the fence metadata for this Block indicates that
+     * it may contain revisions involving {@code locator}. If this method
+     * returns {@code false}, it is not necessary to {@link #seek(Record, Byteable...)}
+     * for {@code locator} in this Block.
+     * 
+     * @param locator
+     * @return {@code true} if {@code locator} is within the fence
+     */
+    public boolean covers(L locator) {
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
+        try {
+            return mutable || metadata == null || metadata.covers(locator);
+        }
+        finally {
+            Locks.unlockIfCondition(read, locked);
+        }
+    }
+
+    /**
+     * Return {@code true} if the fence metadata for this Block indicates that
+     * it may contain revisions involving {@code key} in {@code locator}. If
+     * this method returns {@code false}, it is not necessary to
+     * {@link #seek(Record, Byteable...)} for {@code key} in {@code locator}
+     * in this Block.
+     * 
+     * @param locator
+     * @param key
+     * @return {@code true} if {@code locator} and {@code key} are within the
+     *         fence
+     */
+    public boolean covers(L locator, K key) {
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
+        try {
+            return mutable || metadata == null
+                    || metadata.covers(locator, key);
+        }
+        finally {
+            Locks.unlockIfCondition(read, locked);
+        }
+    }
+
+    /**
+     * Return {@code true} if the fence metadata for this Block indicates that
+     * it may contain revisions involving a key within {@code range} in
+     * {@code locator}.
+     * 
+     * @param locator
+     * @param range
+     * @return {@code true} if the Block may contain keys in {@code range}
+     */
+    public boolean covers(L locator, Range<K> range) {
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
+        try {
+            return mutable || metadata == null
+                    || metadata.covers(locator, range);
+        }
+        finally {
+            Locks.unlockIfCondition(read, locked);
+        }
+    }
+
+    /**
+     * Return {@code true} if the fence metadata for this Block indicates that
+     * it may contain revisions with a version that is greater than or equal to
+     * {@code start} and less than {@code end}. If this method returns
+     * {@code false}, none of the revisions in the Block are relevant to a read
+     * that is bounded by those versions.
+     * 
+     * @param start
+     * @param end
+     * @return {@code true} if the Block may contain versions in the range
+     */
+    public boolean covers(long start, long end) {
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
+        try {
+            return mutable || metadata == null
+                    || (metadata.getMinVersion() < end && metadata
+                            .getMaxVersion() >= start);
+        }
+        finally {
+            Locks.unlockIfCondition(read, locked);
         }
     }
 
@@ -377,11 +680,22 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The revisions are serialized into a single heap buffer, so this cannot
+     * be used for a Block that is larger than 2GB. A Block is
+     * {@link #sync() synced} without calling this method.
+     * </p>
+     */
     @Override
     public ByteBuffer getBytes() {
         read.lock();
         try {
-            ByteBuffer bytes = ByteBuffer.allocate(sizeImpl());
+            long size = sizeImpl();
+            Preconditions.checkState(size <= Integer.MAX_VALUE,
+                    "Cannot serialize %s bytes into a single buffer", size);
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
             copyTo(bytes);
             bytes.rewind();
             return bytes;
@@ -391,6 +705,29 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
         }
     }
 
+    /**
+     * Return the MD5 checksum of the block file that was computed while the
+     * Block was synced, or {@code null} if the Block was not synced by this
+     * process.
+     * 
+     * @return the checksum
+     */
+    @Nullable
+    @PackagePrivate
+    HashCode getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Return the directory where the block file is stored.
+     * 
+     * @return the directory
+     */
+    @PackagePrivate
+    String getDirectory() {
+        return new File(file).getParent();
+    }
+
     /**
      * Return the block id.
      * 
@@ -400,11 +737,59 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
         return id;
     }
 
+    /**
+     * Return the number of bytes in the Block. Unlike {@link #size()}, this is
+     * accurate for a Block that is larger than 2GB.
+     * 
+     * @return the size
+     */
+    public long getSize() {
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
+        try {
+            return sizeImpl();
+        }
+        finally {
+            Locks.unlockIfCondition(read, locked);
+        }
+    }
+
+    /**
+     * Return the fence metadata for the Block or {@code null} if the Block was
+     * synced before fence metadata existed.
+     * 
+     * @return the metadata
+     */
+    @Nullable
+    @PackagePrivate
+    BlockMetadata<L, K> getMetadata() {
+        return metadata;
+    }
+
     @Override
     public int hashCode() {
         return id.hashCode();
     }
 
+    /**
+     * Load the bloom filter for this Block from disk, if it has not been
+     * loaded already. The filter is repaired if it is corrupt.
+     */
+    @PackagePrivate
+    void loadFilter() {
+        filter();
+    }
+
+    /**
+     * Return {@code true} if this Block is mutable and can accept new
+     * revisions.
+     * 
+     * @return {@code true} if the Block is mutable
+     */
+    public boolean isMutable() {
+        return mutable;
+    }
+
     /**
      * Insert a revision for {@code key} as {@code value} in {@code locator} at
      * {@code version} into this Block.
@@ -418,16 +803,17 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
      */
     public Revision<L, K, V> insert(L locator, K key, V value, long version,
             Action type) throws IllegalStateException {
-        Locks.lockIfCondition(write, mutable);
+        boolean locked = mutable;
+        Locks.lockIfCondition(write, locked);
         try {
-            Preconditions.checkState(mutable,
+            Preconditions.checkState(mutable && !sealed,
                     "Cannot modify a block that is not mutable");
             Revision<L, K, V> revision = makeRevision(locator, key, value,
                     version, type);
             revisions.add(revision);
-            filter.put(revision.getLocator());
-            filter.put(revision.getLocator(), revision.getKey());
-            filter.put(revision.getLocator(), revision.getKey(),
+            filter().put(revision.getLocator());
+            filter().put(revision.getLocator(), revision.getKey());
+            filter().put(revision.getLocator(), revision.getKey(),
                     revision.getValue()); // NOTE: The entire revision is added
                                           // to the filter so that we can
                                           // quickly verify that a revision
@@ -438,7 +824,7 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
             return revision;
         }
         finally {
-            Locks.unlockIfCondition(write, mutable);
+            Locks.unlockIfCondition(write, locked);
         }
     }
 
@@ -452,6 +838,9 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
     @Override
     public Iterator<Revision<L, K, V>> iterator() {
         Preconditions.checkState(!mutable, "Cannot iterate a mutable block");
+        if(isCompressed()) {
+            return new CompressedIterator();
+        }
         return new Iterator<Revision<L, K, V>>() {
 
             private final Iterator<ByteBuffer> it = ByteableCollections
@@ -495,12 +884,13 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
      * @return {@code true} if it is possible that relevant revisions exists
      */
     public boolean mightContain(L locator, K key, V value) {
-        Locks.lockIfCondition(read, mutable);
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
         try {
-            return filter.mightContain(locator, key, value);
+            return filter().mightContain(locator, key, value);
         }
         finally {
-            Locks.unlockIfCondition(read, mutable);
+            Locks.unlockIfCondition(read, locked);
         }
     }
 
@@ -531,51 +921,169 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
         seek(record, locator);
     }
 
-    @Override
-    public int size() {
-        Locks.lockIfCondition(read, mutable);
-        try {
-            return sizeImpl();
-        }
+    /**
+     * Seek revisions that contain a key within {@code range} in
+     * {@code locator} and append them to {@code record} if it is
+     * <em>likely</em> that those revisions exist in this Block. If the
+     * {@link BlockIndex} has a run directory for {@code locator}, only the
+     * slice of the Block that holds the keys in {@code range} is read.
+     * 
+     * @param locator
+     * @param range
+     * @param record
+     */
+    public void seek(L locator, Range<K> range, Record<L, K, V> record) {
+        for (Revision<L, K, V> revision : seek(locator, range,
+                Long.MIN_VALUE, Long.MAX_VALUE)) {
+            record.append(revision);
+        }
+    }
+
+    /**
+     * Release the resources that are held by this immutable Block. In
+     * particular, the shared {@link #mapping} of the block file and the mapping
+     * of its {@link BlockIndex} are deterministically unmapped instead of
+     * waiting for the GC to do so.
+     * <p>
+     * <strong>NOTE:</strong> The caller must guarantee that no seeks are in
+     * progress (i.e. by holding the Database's write lock) because the views
+     * that are handed out by an in-progress seek would be invalidated. If the
+     * Block is read again after being retired, a new mapping is created on
+     * demand.
+     * </p>
+     */
+    @PackagePrivate
+    void retire() {
+        MappedByteBuffer[] mapping;
+        synchronized (this) {
+            mapping = this.mapping;
+            this.mapping = null;
+        }
+        if(mapping != null) {
+            for (MappedByteBuffer segment : mapping) {
+                FileSystem.unmap(segment);
+            }
+        }
+        if(!mutable) {
+            if(isCompressed()) {
+                PAGES.invalidate(file, index.getPageCount());
+            }
+            index.retire();
+            BloomFilter filter = this.filter;
+            if(filter != null) {
+                filter.retire();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the Block is larger than 2GB, {@link Integer#MAX_VALUE} is returned.
+     * Use {@link #getSize()} to get the exact size.
+     * </p>
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(getSize(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Seal the Block so that it no longer accepts writes. A sealed Block
+     * continues to serve seeks from memory until it is {@link #sync() synced}
+     * and, since its revisions can no longer change, it can be flushed to disk
+     * without blocking those seeks.
+     */
+    public void seal() {
+        write.lock();
+        try {
+            sealed = true;
+        }
         finally {
-            Locks.unlockIfCondition(read, mutable);
+            write.unlock();
         }
     }
 
     /**
-     * Flush the content to disk in a block file, sync the filter and index and
-     * finally make the Block immutable.
+     * Seal the Block, flush the content to disk in a block file, sync the
+     * filter and index and finally make the Block immutable.
+     * <p>
+     * The revisions are streamed to the block file in chunks of
+     * {@link #PAGE_SIZE} bytes (which are compressed individually if
+     * {@link GlobalState#BLOCK_COMPRESSION} is enabled), so flushing does not
+     * need a heap buffer that is as large as the Block.
+     * </p>
+     * <p>
+     * The write lock is only held to seal the Block and to make it immutable
+     * once the flush is durable. While the files are being written and forced
+     * to disk, readers continue to seek the revisions in memory.
+     * </p>
      */
     @Override
     public void sync() {
         write.lock();
         try {
-            if(mutable && sizeImpl() > 0) {
+            if(mutable && !flushing && sizeImpl() > 0) {
+                sealed = true;
+                flushing = true;
+            }
+            else {
+                if(!mutable || flushing) {
+                    Logger.warn("Cannot sync a block that is not mutable: {}",
+                            id);
+                }
+                else if(!ignoreEmptySync) {
+                    Logger.warn("Cannot sync a block that is empty: {}. "
+                            + "Was there an unexpected server shutdown "
+                            + "recently?", id);
+                }
+                return;
+            }
+        }
+        finally {
+            write.unlock();
+        }
+        boolean flushed = false;
+        try {
+            FileChannel channel = FileSystem.getFileChannel(file);
+            Hasher hasher = Hashing.md5().newHasher();
+            ChannelSink sink = new ChannelSink(channel, hasher,
+                    GlobalState.BLOCK_COMPRESSION);
+            serialize(sink);
+            long length = sink.finish();
+            channel.force(true);
+            filter().sync();
+            index.sync();
+            metadata.sync();
+            FileSystem.closeFileChannel(channel);
+            write.lock();
+            try {
+                size = length;
+                checksum = hasher.hash();
                 mutable = false;
-                FileChannel channel = FileSystem.getFileChannel(file);
-                channel.write(getBytes());
-                channel.force(true);
-                filter.sync();
-                index.sync();
-                FileSystem.closeFileChannel(channel);
                 revisions = null; // Set to NULL so that the Set is eligible for
                                   // GC while the Block stays in memory.
-                filter.disableThreadSafety();
+                filter = null; // The synced filter is mapped from disk on
+                               // demand, so the heap copy can be GCed
+                flushed = true;
             }
-            else if(!mutable) {
-                Logger.warn("Cannot sync a block that is not mutable: {}", id);
-            }
-            else if(!ignoreEmptySync) {
-                Logger.warn("Cannot sync a block that is empty: {}. "
-                        + "Was there an unexpected server shutdown recently?",
-                        id);
+            finally {
+                write.unlock();
             }
         }
         catch (IOException e) {
             throw Throwables.propagate(e);
         }
         finally {
-            write.unlock();
+            if(!flushed) {
+                write.lock();
+                try {
+                    flushing = false;
+                }
+                finally {
+                    write.unlock();
+                }
+            }
         }
     }
 
@@ -585,47 +1093,120 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
     }
 
     /**
-     * Attempt to repair the Block from the symptoms of the specified exception.
-     * Generally speaking, a repair is only possible if the exception pertains
-     * to the metadata (e.g. filter or index) and not the actual block data.
+     * Return the {@link #filter}, mapping it from disk if this is the first
+     * time that it is needed since the Block was loaded. A filter that was
+     * stored in the legacy format is rebuilt in the current format.
+     * 
+     * @return the filter
+     */
+    private BloomFilter filter() {
+        BloomFilter filter = this.filter;
+        if(filter == null) {
+            synchronized (this) {
+                filter = this.filter;
+                if(filter == null) {
+                    String target = file.replace(BLOCK_NAME_EXTENSION,
+                            FILTER_NAME_EXTENSION);
+                    try {
+                        filter = BloomFilter.open(target);
+                        if(filter.isLegacy()) {
+                            filter = rebuild(target);
+                            Logger.info("Converted the bloom filter for {} {} "
+                                    + "to the current format", getClass()
+                                    .getSimpleName(), id);
+                        }
+                    }
+                    catch (RuntimeException e) {
+                        filter = repair(e);
+                    }
+                    this.filter = filter;
+                }
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Add the remaining content of {@code bytes} to {@code hasher} without
+     * changing the position of {@code bytes}.
+     * 
+     * @param hasher
+     * @param bytes
+     */
+    private static void hash(Hasher hasher, ByteBuffer bytes) {
+        if(bytes.hasArray()) {
+            hasher.putBytes(bytes.array(),
+                    bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        }
+        else {
+            byte[] array = new byte[bytes.remaining()];
+            bytes.duplicate().get(array);
+            hasher.putBytes(array);
+        }
+    }
+
+    /**
+     * Attempt to repair the Block from the symptoms of the specified exception
+     * and return the rebuilt filter. Generally speaking, a repair is only
+     * possible if the exception pertains to the metadata (e.g. filter or
+     * index) and not the actual block data.
      * <p>
      * If a repair is not possible, then the input exception is re-thrown
      * </p>
      * 
      * @param e - the {@link RuntimeException} that was caught indicates what
      *            error needs to be repaired.
+     * @return the repaired filter
      */
-    private void repair(RuntimeException e) {
+    private BloomFilter repair(RuntimeException e) {
         if(e.getCause() != null
                 && (e.getCause() instanceof EOFException || e.getCause() instanceof StreamCorruptedException)) {
             String target = file.replace(BLOCK_NAME_EXTENSION,
                     FILTER_NAME_EXTENSION);
             String backup = target + ".bak";
             FileSystem.copyBytes(target, backup);
-            FileSystem.deleteFile(target);
-            filter = BloomFilter.create(target, EXPECTED_INSERTIONS);
-            MappedByteBuffer bytes = FileSystem.map(file, MapMode.READ_ONLY, 0,
-                    FileSystem.getFileSize(file));
-            Iterator<ByteBuffer> it = ByteableCollections.iterator(bytes);
-            while (it.hasNext()) {
-                Revision<L, K, V> revision = Byteables.read(it.next(),
-                        xRevisionClass());
-                filter.put(revision.getLocator());
-                filter.put(revision.getLocator(), revision.getKey());
-                filter.put(revision.getLocator(), revision.getKey(),
-                        revision.getValue());
-            }
-            filter.sync();
+            BloomFilter filter = rebuild(target);
             FileSystem.deleteFile(backup);
             Logger.warn("Found and repaired a corrupted bloom "
                     + "filter for {} {}", this.getClass().getSimpleName(), id);
-            FileSystem.unmap(bytes);
+            return filter;
         }
         else {
             throw e;
         }
     }
 
+    /**
+     * Rebuild the filter for this immutable Block from its revisions, store it
+     * in {@code target} and return it. The filter is sized for the number of
+     * revisions in the Block, which requires reading the block file twice.
+     * 
+     * @param target
+     * @return the rebuilt filter
+     */
+    private BloomFilter rebuild(String target) {
+        int count = 0;
+        for (Iterator<Revision<L, K, V>> it = iterator(); it.hasNext(); it
+                .next()) {
+            ++count;
+        }
+        String tmp = target + ".tmp";
+        if(FileSystem.hasFile(tmp)) {
+            FileSystem.deleteFile(tmp);
+        }
+        BloomFilter filter = BloomFilter.create(tmp,
+                Math.max(EXPECTED_INSERTIONS, count * 3));
+        for (Revision<L, K, V> revision : this) {
+            filter.put(revision.getLocator());
+            filter.put(revision.getLocator(), revision.getKey());
+            filter.put(revision.getLocator(), revision.getKey(),
+                    revision.getValue());
+        }
+        filter.sync();
+        FileSystem.replaceFile(target, tmp);
+        return BloomFilter.open(target);
+    }
+
     /**
      * Seek revisions that contain components from {@code byteables} and append
      * them to {@code record}. The seek will be perform in memory iff this block
@@ -635,98 +1216,472 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
      * @param byteables
      */
     private void seek(Record<L, K, V> record, Byteable... byteables) {
-        Locks.lockIfCondition(read, mutable);
+        for (Revision<L, K, V> revision : seek(Long.MIN_VALUE, Long.MAX_VALUE,
+                byteables)) {
+            Logger.debug("Attempting to append {} from {} to {}", revision,
+                    this, record);
+            record.append(revision);
+        }
+    }
+
+    /**
+     * Seek and return the revisions that contain components from
+     * {@code byteables} and have a version that is greater than or equal to
+     * {@code start} and less than {@code end}. The seek will be perform in
+     * memory iff this block is mutable, otherwise, the seek happens on disk.
+     * <p>
+     * On disk, the version of each revision is read from its serialized form
+     * so that revisions outside of the bounds are not deserialized. Since the
+     * revisions for a locator/key pair are sorted by version, a seek for a
+     * {@code locator} and {@code key} stops once it reaches a revision at or
+     * after {@code end}.
+     * </p>
+     * 
+     * @param start
+     * @param end
+     * @param byteables
+     * @return the revisions, in sorted order
+     */
+    @SuppressWarnings("unchecked")
+    private List<Revision<L, K, V>> seek(long start, long end,
+            Byteable... byteables) {
+        List<Revision<L, K, V>> seeked = Lists.newArrayList();
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
         try {
-            if(filter.mightContain(byteables)) {
-                SortedMultiset<Revision<L, K, V>> revisions = softRevisions
-                        .get();
+            if(filter().mightContain(byteables)) {
+                RevisionBuffer<L, K, V> revisions = softRevisions.get();
                 if(revisions != null) {
-                    Iterator<Revision<L, K, V>> it = revisions.iterator();
-                    boolean processing = false; // Since the revisions are
-                                                // sorted, I can toggle this
-                                                // flag on once I reach a
-                                                // revision that I care about so
-                                                // that I can break out of the
-                                                // loop once I reach a revision
-                                                // I don't care about again.
-                    boolean checkSecond = byteables.length > 1;
-                    while (it.hasNext()) {
-                        Revision<L, K, V> revision = it.next();
-                        if(revision.getLocator().equals(byteables[0])
-                                && ((checkSecond && revision.getKey().equals(
-                                        byteables[1])) || !checkSecond)) {
-                            processing = true;
-                            record.append(revision);
-                        }
-                        else if(processing) {
-                            break;
+                    seeked = revisions.seek((L) byteables[0],
+                            byteables.length > 1 ? (K) byteables[1] : null);
+                    if(start != Long.MIN_VALUE || end != Long.MAX_VALUE) {
+                        Iterator<Revision<L, K, V>> it = seeked.iterator();
+                        while (it.hasNext()) {
+                            long version = it.next().getVersion();
+                            if(version < start || version >= end) {
+                                it.remove();
+                            }
                         }
                     }
                 }
                 else {
-                    int start = index.getStart(byteables);
-                    int length = index.getEnd(byteables) - (start - 1);
-                    if(start != BlockIndex.NO_ENTRY && length > 0) {
-                        ByteBuffer bytes = FileSystem.map(file,
-                                MapMode.READ_ONLY, start, length);
+                    long position = index.getStart(byteables);
+                    long length = index.getEnd(byteables) - (position - 1);
+                    if(position != BlockIndex.NO_ENTRY && length > 0) {
+                        ByteBuffer bytes = read(position, length);
                         Iterator<ByteBuffer> it = ByteableCollections
                                 .iterator(bytes);
+                        boolean sorted = byteables.length > 1;
                         while (it.hasNext()) {
-                            Revision<L, K, V> revision = Byteables.read(
-                                    it.next(), xRevisionClass());
-                            Logger.debug("Attempting to append {} from {} to "
-                                    + "{}", revision, this, record);
-                            record.append(revision);
+                            ByteBuffer next = it.next();
+                            long version = getVersion(next);
+                            if(version >= end && sorted) {
+                                break;
+                            }
+                            else if(version >= start && version < end) {
+                                seeked.add(Byteables.read(next,
+                                        xRevisionClass()));
+                            }
                         }
                     }
                 }
             }
+            return seeked;
         }
         finally {
-            Locks.unlockIfCondition(read, mutable);
+            Locks.unlockIfCondition(read, locked);
         }
     }
 
     /**
-     * Internal implementation to return size of this Block without grabbing any
-     * locks.
+     * Seek and return the revisions that contain a key within {@code range}
+     * in {@code locator} and have a version that is greater than or equal to
+     * {@code start} and less than {@code end}.
      * 
-     * @return the size
+     * @param locator
+     * @param range
+     * @param start
+     * @param end
+     * @return the revisions, in sorted order
      */
-    private int sizeImpl() {
-        return concurrent ? atomicSize.get() : size;
+    private List<Revision<L, K, V>> seek(L locator, Range<K> range,
+            long start, long end) {
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
+        try {
+            List<Revision<L, K, V>> seeked = Lists.newArrayList();
+            BlockIndex.Runs runs;
+            if(softRevisions.get() != null
+                    || (runs = index.getRuns(locator)) == null) {
+                // Either the revisions are in memory or the index has no run
+                // directory, so seek the entire locator and filter it.
+                for (Revision<L, K, V> revision : seek(start, end, locator)) {
+                    if(range.contains(revision.getKey())) {
+                        seeked.add(revision);
+                    }
+                }
+            }
+            else if(filter().mightContain(locator)) {
+                int count = runs.count();
+                // Since the runs are sorted by key, binary search for the
+                // first run that is not below the range and the first run
+                // after that which is above the range.
+                int low = 0;
+                int high = count;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if(isBelow(readKey(runs, mid), range)) {
+                        low = mid + 1;
+                    }
+                    else {
+                        high = mid;
+                    }
+                }
+                int from = low;
+                high = count;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if(isAbove(readKey(runs, mid), range)) {
+                        high = mid;
+                    }
+                    else {
+                        low = mid + 1;
+                    }
+                }
+                int to = low;
+                if(from < to) {
+                    long first = runs.getStart(from);
+                    long last = to < count ? runs.getStart(to) - 1 : runs
+                            .getEnd();
+                    Iterator<ByteBuffer> it = ByteableCollections
+                            .iterator(read(first, last - (first - 1)));
+                    while (it.hasNext()) {
+                        ByteBuffer next = it.next();
+                        long version = getVersion(next);
+                        if(version >= start && version < end) {
+                            Revision<L, K, V> revision = Byteables.read(next,
+                                    xRevisionClass());
+                            if(range.contains(revision.getKey())) {
+                                seeked.add(revision);
+                            }
+                        }
+                    }
+                }
+            }
+            return seeked;
+        }
+        finally {
+            Locks.unlockIfCondition(read, locked);
+        }
     }
 
     /**
-     * Return the backing store to hold revisions that are placed in this Block.
-     * This is only relevant to use when the Block is {@link #mutable} and not
-     * yet persisted to disk.
-     * <p>
-     * If this Block is to be {@link #concurrent} then override this method and
-     * return a Concurrent Multiset.
-     * </p>
+     * Return the version of the serialized revision in {@code bytes} without
+     * deserializing it. A serialized revision begins with its action (1 byte)
+     * followed by its version (8 bytes).
      * 
-     * @param comparator
-     * @return the backing store
+     * @param bytes
+     * @return the version
      */
-    @SuppressWarnings("rawtypes")
-    protected SortedMultiset<Revision<L, K, V>> createBackingStore(
-            Comparator<Revision> comparator) {
-        return TreeMultiset.create(comparator);
+    private static long getVersion(ByteBuffer bytes) {
+        return bytes.getLong(bytes.position() + 1);
+    }
+
+    /**
+     * Return the key of run {@code i} in {@code runs}.
+     * 
+     * @param runs
+     * @param i
+     * @return the key
+     */
+    private K readKey(BlockIndex.Runs runs, int i) {
+        return Byteables.read(runs.getKey(i), xKeyClass());
+    }
+
+    /**
+     * Return {@code true} if {@code key} sorts before every key in
+     * {@code range}.
+     * 
+     * @param key
+     * @param range
+     * @return {@code true} if the key is below the range
+     */
+    private static <K extends Comparable<K>> boolean isBelow(K key,
+            Range<K> range) {
+        if(range.hasLowerBound()) {
+            int comparison = key.compareTo(range.lowerEndpoint());
+            return comparison < 0
+                    || (comparison == 0 && range.lowerBoundType() == BoundType.OPEN);
+        }
+        else {
+            return false;
+        }
+    }
+
+    /**
+     * Return {@code true} if {@code key} sorts after every key in
+     * {@code range}.
+     * 
+     * @param key
+     * @param range
+     * @return {@code true} if the key is above the range
+     */
+    private static <K extends Comparable<K>> boolean isAbove(K key,
+            Range<K> range) {
+        if(range.hasUpperBound()) {
+            int comparison = key.compareTo(range.upperEndpoint());
+            return comparison > 0
+                    || (comparison == 0 && range.upperBoundType() == BoundType.OPEN);
+        }
+        else {
+            return false;
+        }
+    }
+
+    /**
+     * Return the segments of the shared read only {@link #mapping} of the
+     * block file, creating them if necessary. This should only be called for
+     * an immutable Block.
+     * 
+     * @return the mapping
+     */
+    private MappedByteBuffer[] mapping() {
+        MappedByteBuffer[] mapping = this.mapping;
+        if(mapping == null) {
+            synchronized (this) {
+                mapping = this.mapping;
+                if(mapping == null) {
+                    long length = FileSystem.getFileSize(file);
+                    mapping = new MappedByteBuffer[(int) Math.max(1,
+                            (length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+                    for (int i = 0; i < mapping.length; ++i) {
+                        long position = (long) i * SEGMENT_SIZE;
+                        mapping[i] = FileSystem.map(file, MapMode.READ_ONLY,
+                                position,
+                                Math.min(SEGMENT_SIZE, length - position),
+                                false);
+                    }
+                    this.mapping = mapping;
+                }
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Return a buffer that contains the {@code length} bytes that begin at
+     * {@code position} in the block file. The bytes are a view of the
+     * {@link #mapping} unless they cross the boundary between two segments,
+     * in which case they are copied.
+     * 
+     * @param position
+     * @param length
+     * @return the bytes
+     */
+    private ByteBuffer slice(long position, int length) {
+        MappedByteBuffer[] mapping = mapping();
+        int segment = (int) (position / SEGMENT_SIZE);
+        int offset = (int) (position % SEGMENT_SIZE);
+        if(offset + length <= mapping[segment].capacity()) {
+            ByteBuffer bytes = mapping[segment].duplicate();
+            bytes.position(offset);
+            bytes.limit(offset + length);
+            return bytes.slice();
+        }
+        else {
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            while (bytes.hasRemaining()) {
+                ByteBuffer source = mapping[segment].duplicate();
+                source.position(offset);
+                source.limit(Math.min(source.capacity(),
+                        offset + bytes.remaining()));
+                bytes.put(source);
+                ++segment;
+                offset = 0;
+            }
+            bytes.flip();
+            return bytes;
+        }
+    }
+
+    /**
+     * Return {@code true} if this Block is immutable and stored in compressed
+     * pages.
+     * 
+     * @return {@code true} if the Block is compressed
+     */
+    private boolean isCompressed() {
+        return !mutable && index.getPageCount() > 0;
+    }
+
+    /**
+     * Return the decompressed content of {@code page}, which is shared with
+     * other seeks through the {@link #PAGES cache} and must not be modified.
+     * 
+     * @param page
+     * @return the page
+     */
+    private byte[] page(final int page) {
+        return PAGES.get(file, page, new Callable<byte[]>() {
+
+            @Override
+            public byte[] call() throws Exception {
+                return decompress(page);
+            }
+
+        });
+    }
+
+    /**
+     * Decompress and return the content of {@code page} without going through
+     * the {@link #PAGES cache}.
+     * 
+     * @param page
+     * @return the page
+     */
+    private byte[] decompress(int page) {
+        long position = index.getPagePosition(page);
+        return Compression.decompress(slice(position,
+                (int) (index.getPagePosition(page + 1) - position)));
+    }
+
+    /**
+     * Return a buffer that contains the {@code length} bytes of revisions that
+     * begin at the {@code start} position in the content of this immutable
+     * Block. For a compressed Block, the positions refer to the uncompressed
+     * content.
+     * 
+     * @param start
+     * @param length
+     * @return the bytes
+     */
+    private ByteBuffer read(long start, long length) {
+        Preconditions.checkState(length <= Integer.MAX_VALUE,
+                "Cannot read %s bytes from %s into a single buffer", length,
+                this);
+        if(isCompressed()) {
+            int pageSize = index.getPageSize();
+            int first = (int) (start / pageSize);
+            int last = (int) ((start + length - 1) / pageSize);
+            int offset = (int) (start - ((long) first * pageSize));
+            if(first == last) {
+                return ByteBuffer.wrap(page(first), offset, (int) length)
+                        .slice();
+            }
+            else {
+                ByteBuffer bytes = ByteBuffer.allocate((int) length);
+                for (int i = first; i <= last; ++i) {
+                    byte[] page = page(i);
+                    bytes.put(page, offset,
+                            Math.min(page.length - offset, bytes.remaining()));
+                    offset = 0;
+                }
+                bytes.flip();
+                return bytes;
+            }
+        }
+        else {
+            return slice(start, (int) length);
+        }
+    }
+
+    /**
+     * Serialize the revisions in {@link Block.Sorter sorted} order to
+     * {@code sink}, while recording their positions in the {@link #index} and
+     * their components in the {@link #metadata}.
+     * 
+     * @param sink
+     * @throws IOException
+     */
+    private void serialize(Sink sink) throws IOException {
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
+        try {
+            L locator = null;
+            K key = null;
+            long position = 0;
+            boolean populated = false;
+            for (Revision<L, K, V> revision : revisions.sort()) {
+                populated = true;
+                metadata.record(revision);
+                position = sink.position();
+                sink.put(revision);
+                /*
+                 * States that trigger this condition to be true:
+                 * 1. This is the first locator we've seen
+                 * 2. This locator is different than the last one we've seen
+                 */
+                if(locator == null || !locator.equals(revision.getLocator())) {
+                    index.putStart(position, revision.getLocator());
+                    if(locator != null) {
+                        // There was a locator before us (we are not the first!)
+                        // and we need to record the end index.
+                        index.putEnd(position - 1, locator);
+                    }
+                }
+                /*
+                 * NOTE: IF key == null, then it must be the case that locator
+                 * == null since they are set at the same time. Therefore we do
+                 * not need to explicitly check for that condition below
+                 * 
+                 * States that trigger this condition to be true:
+                 * 1. This is the first key we've seen
+                 * 2. This key is different than the last one we've seen
+                 * (regardless of whether the locator is different or the same!)
+                 * 3. This key is the same as the last one we've seen, but the
+                 * locator is different.
+                 */
+                if(key == null || !key.equals(revision.getKey())
+                        || !locator.equals(revision.getLocator())) {
+                    index.putStart(position, revision.getLocator(),
+                            revision.getKey());
+                    if(indexesKeyRuns()) {
+                        index.putRun(position, revision.getLocator(),
+                                revision.getKey());
+                    }
+                    if(key != null) {
+                        // There was a locator, key before us (we are not the
+                        // first!) and we need to record the end index.
+                        index.putEnd(position - 1, locator, key);
+                    }
+                }
+                locator = revision.getLocator();
+                key = revision.getKey();
+            }
+            if(populated) {
+                position = sink.position() - 1;
+                index.putEnd(position, locator);
+                index.putEnd(position, locator, key);
+            }
+        }
+        finally {
+            Locks.unlockIfCondition(read, locked);
+        }
+    }
+
+    /**
+     * Internal implementation to return size of this Block without grabbing any
+     * locks.
+     * 
+     * @return the size
+     */
+    private long sizeImpl() {
+        return concurrent ? atomicSize.get() : size;
     }
 
     /**
      * Return a dump of the revisions in the block as a String. This method
      * primarily exists for debugging using the {@link DumpToolCli} tool.
      * <p>
-     * NOTE: This method will map an entire immutable block into memory, so
+     * NOTE: This method will read an entire immutable block into memory, so
      * please use with caution.
      * </p>
      * 
      * @return a string dump
      */
     protected String dump() {
-        Locks.lockIfCondition(read, mutable);
+        boolean locked = mutable;
+        Locks.lockIfCondition(read, locked);
         try {
             StringBuilder sb = new StringBuilder();
             sb.append("Dump for " + getClass().getSimpleName() + " " + id);
@@ -740,12 +1695,7 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
                 }
             }
             else {
-                ByteBuffer bytes = FileSystem.map(file, MapMode.READ_ONLY, 0,
-                        FileSystem.getFileSize(file));
-                Iterator<ByteBuffer> it = ByteableCollections.iterator(bytes);
-                while (it.hasNext()) {
-                    Revision<L, K, V> revision = Byteables.read(it.next(),
-                            xRevisionClass());
+                for (Revision<L, K, V> revision : this) {
                     sb.append(revision);
                     sb.append("\n");
                 }
@@ -754,20 +1704,20 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
             return sb.toString();
         }
         finally {
-            Locks.unlockIfCondition(read, mutable);
+            Locks.unlockIfCondition(read, locked);
         }
     }
 
     protected Revision<L, K, V> insertUnsafe(L locator, K key, V value,
             long version, Action type) throws IllegalStateException {
-        Preconditions.checkState(mutable,
+        Preconditions.checkState(mutable && !sealed,
                 "Cannot modify a block that is not mutable");
         Revision<L, K, V> revision = makeRevision(locator, key, value, version,
                 type);
         revisions.add(revision);
-        filter.put(revision.getLocator());
-        filter.put(revision.getLocator(), revision.getKey());
-        filter.put(revision.getLocator(), revision.getKey(),
+        filter().put(revision.getLocator());
+        filter().put(revision.getLocator(), revision.getKey());
+        filter().put(revision.getLocator(), revision.getKey(),
                 revision.getValue()); // NOTE: The entire revision is added
                                       // to the filter so that we can
                                       // quickly verify that a revision
@@ -793,6 +1743,31 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
     protected abstract Revision<L, K, V> makeRevision(L locator, K key,
             V value, long version, Action type);
 
+    /**
+     * Return {@code true} if this Block should record a run directory in its
+     * {@link BlockIndex} so that ranges of keys within a locator can be
+     * seeked without reading the entire locator.
+     * 
+     * @return {@code true} if key runs are indexed
+     */
+    protected boolean indexesKeyRuns() {
+        return false;
+    }
+
+    /**
+     * Return the class of the {@code locator} type.
+     * 
+     * @return the locator class
+     */
+    protected abstract Class<L> xLocatorClass();
+
+    /**
+     * Return the class of the {@code key} type.
+     * 
+     * @return the key class
+     */
+    protected abstract Class<K> xKeyClass();
+
     /**
      * Return the class of the {@code revision} type.
      * 
@@ -800,6 +1775,208 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
      */
     protected abstract Class<? extends Revision<L, K, V>> xRevisionClass();
 
+    /**
+     * An {@link Iterator} that streams the revisions from a compressed Block by
+     * decompressing one page at a time. Revisions that span a page boundary
+     * are stitched together with the remainder of the previous page.
+     * 
+     * @author Jeff Nelson
+     */
+    private final class CompressedIterator implements
+            Iterator<Revision<L, K, V>> {
+
+        /**
+         * The undelivered bytes from the pages that have been decompressed.
+         */
+        private ByteBuffer bytes = ByteBuffer.allocate(0);
+
+        /**
+         * The next page to decompress.
+         */
+        private int page = 0;
+
+        /**
+         * The number of pages in the Block.
+         */
+        private final int pageCount = index.getPageCount();
+
+        @Override
+        public boolean hasNext() {
+            while (!hasRevision() && page < pageCount) {
+                byte[] next = decompress(page++);
+                ByteBuffer combined = ByteBuffer.allocate(bytes.remaining()
+                        + next.length);
+                combined.put(bytes);
+                combined.put(next);
+                combined.flip();
+                bytes = combined;
+            }
+            return hasRevision();
+        }
+
+        @Override
+        public Revision<L, K, V> next() {
+            if(hasNext()) {
+                int size = bytes.getInt();
+                ByteBuffer revision = bytes.slice();
+                revision.limit(size);
+                bytes.position(bytes.position() + size);
+                return Byteables.read(revision, xRevisionClass());
+            }
+            else {
+                return null;
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Return {@code true} if {@link #bytes} contains an entire revision.
+         * 
+         * @return {@code true} if a revision can be read
+         */
+        private boolean hasRevision() {
+            return bytes.remaining() >= 4
+                    && bytes.remaining() - 4 >= bytes.getInt(bytes.position());
+        }
+
+    }
+
+    /**
+     * A destination for the serialized revisions of a Block. Each revision is
+     * written with a 4 byte size prefix.
+     * 
+     * @author Jeff Nelson
+     */
+    private interface Sink {
+
+        /**
+         * Return the number of bytes that have been written to the sink.
+         * 
+         * @return the position
+         */
+        long position();
+
+        /**
+         * Write {@code revision} to the sink.
+         * 
+         * @param revision
+         * @throws IOException
+         */
+        void put(Revision<?, ?, ?> revision) throws IOException;
+
+    }
+
+    /**
+     * A {@link Sink} that streams the revisions to the block file through a
+     * reusable chunk of {@link #PAGE_SIZE} bytes, so the content of the Block
+     * is never held in a single buffer. If the Block is compressed, each chunk
+     * is a page that is compressed on its own and the boundaries of the pages
+     * are recorded in the {@link #index}. A revision that does not fit in the
+     * remainder of a chunk continues in the next one.
+     * 
+     * @author Jeff Nelson
+     */
+    private final class ChannelSink implements Sink {
+
+        private final List<Long> boundaries = Lists.newArrayList();
+        private final FileChannel channel;
+        private final ByteBuffer chunk = ByteBuffer.allocate(PAGE_SIZE);
+        private final boolean compress;
+        private final Hasher hasher;
+        private long position = 0;
+        private long written = 0;
+
+        /**
+         * Construct a new instance.
+         * 
+         * @param channel
+         * @param hasher - receives the bytes that are written to the file
+         * @param compress
+         */
+        ChannelSink(FileChannel channel, Hasher hasher, boolean compress) {
+            this.channel = channel;
+            this.hasher = hasher;
+            this.compress = compress;
+        }
+
+        /**
+         * Write the last chunk and, if the Block is compressed, record the
+         * page boundaries in the {@link #index}.
+         * 
+         * @return the number of bytes that were written to the file
+         * @throws IOException
+         */
+        public long finish() throws IOException {
+            if(chunk.position() > 0) {
+                drain();
+            }
+            if(compress) {
+                boundaries.add(written);
+                index.putPages(PAGE_SIZE, boundaries);
+            }
+            return written;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public void put(Revision<?, ?, ?> revision) throws IOException {
+            int size = revision.size();
+            if(chunk.remaining() >= size + 4) {
+                chunk.putInt(size);
+                revision.copyTo(chunk);
+            }
+            else {
+                ByteBuffer bytes = ByteBuffer.allocate(size + 4);
+                bytes.putInt(size);
+                revision.copyTo(bytes);
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    if(!chunk.hasRemaining()) {
+                        drain();
+                    }
+                    ByteBuffer part = bytes.duplicate();
+                    part.limit(part.position()
+                            + Math.min(chunk.remaining(), bytes.remaining()));
+                    bytes.position(part.limit());
+                    chunk.put(part);
+                }
+            }
+            position += size + 4;
+            if(!chunk.hasRemaining()) {
+                drain();
+            }
+        }
+
+        /**
+         * Write the content of the {@link #chunk} to the file and clear it.
+         * 
+         * @throws IOException
+         */
+        private void drain() throws IOException {
+            chunk.flip();
+            ByteBuffer bytes = chunk;
+            if(compress) {
+                boundaries.add(written);
+                bytes = Compression.compress(chunk);
+            }
+            written += bytes.remaining();
+            hash(hasher, bytes);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            chunk.clear();
+        }
+
+    }
+
     /**
      * A Comparator that sorts Revisions in a block. The sort order is
      * {@code locator} followed by {@code key} followed by {@code version}.
@@ -807,7 +1984,8 @@ abstract class Block<L extends Byteable & Comparable<L>, K extends Byteable & Co
      * @author Jeff Nelson
      */
     @SuppressWarnings("rawtypes")
-    private enum Sorter implements Comparator<Revision> {
+    @PackagePrivate
+    enum Sorter implements Comparator<Revision> {
         INSTANCE;
 
         /**
@@ -18,11 +18,17 @@ package com.cinchapi.concourse.server.storage.db;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
 import com.cinchapi.concourse.server.io.Byteable;
 import com.cinchapi.concourse.server.io.ByteableCollections;
 import com.cinchapi.concourse.server.io.Composite;
@@ -31,7 +37,9 @@ import com.cinchapi.concourse.server.io.Syncable;
 import com.cinchapi.concourse.util.ByteBuffers;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
 
 /**
  * A reference that stores the start and end position for sequences of bytes
@@ -39,6 +47,55 @@ import com.google.common.collect.Maps;
  * objects. A BlockIndex is associated with each {@link Block} to determine
  * where to look on disk for a particular {@code locator} or {@code locator}/
  * {@code key} pair.
+ * <p>
+ * While a BlockIndex is mutable, its entries are held in memory. When the
+ * index is synced, the entries are written in a format that is sorted by key
+ * and searched <em>in place</em> through a memory mapping using binary search,
+ * so lookups against an immutable index do not create any per-entry heap
+ * objects. The format is:
+ * 
+ * <pre>
+ * [magic (4)][version (4)][count (4)][pageSize (4)][boundaryCount (4)]
+ * [directoryPosition (4)]
+ * [boundaryCount * page boundary (8)]
+ * [count * slot: keyPosition (4), keyLength (4), start (8), end (8)]
+ * [key bytes...]
+ * [run directory]
+ * </pre>
+ * 
+ * The page boundaries are only recorded for a Block that is stored in
+ * compressed pages. In that case, the start and end positions of each entry
+ * refer to the uncompressed content of the Block, which is divided into pages
+ * of {@code pageSize} bytes, and the boundaries are the positions in the
+ * Block file where each compressed page begins (followed by the position where
+ * the last page ends).
+ * 
+ * Slots are sorted by the unsigned lexicographical order of their keys. The
+ * positions in the Block are stored as longs so that a Block may be larger
+ * than 2GB. Versions of the format before the fourth stored them (and the page
+ * boundaries) as ints and can still be read.
+ * 
+ * If the Block asks for it (i.e. a {@link SecondaryBlock}), the index also
+ * records a <em>run directory</em> that lists, for each locator, the position
+ * where each run of revisions for the same key begins, in the order that the
+ * runs appear in the Block. Since the Block sorts revisions by key within each
+ * locator, the directory can be binary searched to find the slice of a
+ * locator that holds a range of keys. The directory is laid out as:
+ * 
+ * <pre>
+ * [locatorCount (4)]
+ * [locatorCount * locator: slot (4), runsPosition (4), runCount (4)]
+ * [run: start (8), slot (4)...]
+ * </pre>
+ * 
+ * where each slot is the absolute position of the slot for the locator or the
+ * locator/key pair in the index. A directoryPosition of {@code 0} means that
+ * there is no run directory.
+ * 
+ * Indexes that were written in the legacy (unsorted) format can still be read,
+ * but are deserialized into a map in memory. Use {@link #upgrade(String)} to
+ * convert them.
+ * </p>
  * 
  * @author Jeff Nelson
  */
@@ -71,13 +128,183 @@ public class BlockIndex implements Byteable, Syncable {
         return new BlockIndex(file);
     }
 
+    /**
+     * Rewrite the BlockIndex that is stored in {@code file} using the sorted
+     * format if it was written in the legacy format. Return {@code true} if
+     * the index was converted.
+     * 
+     * @param file
+     * @return {@code true} if the file was converted
+     */
+    public static boolean upgrade(String file) {
+        BlockIndex legacy = open(file);
+        if(legacy.isLegacy()) {
+            Map<Composite, Entry> entries = legacy.legacyEntries();
+            String tmp = file + ".tmp";
+            if(FileSystem.hasFile(tmp)) {
+                FileSystem.deleteFile(tmp);
+            }
+            BlockIndex index = create(tmp, entries.size());
+            for (Entry entry : entries.values()) {
+                index.putEntry(entry.getKey(), entry.getStart(),
+                        entry.getEnd());
+            }
+            index.sync();
+            legacy.retire();
+            FileSystem.replaceFile(file, tmp);
+            return true;
+        }
+        else {
+            legacy.retire();
+            return false;
+        }
+    }
+
     /**
      * Represents an entry that has not been recorded.
      */
     public static final int NO_ENTRY = -1;
 
     /**
-     * The entries contained in the index.
+     * The first four bytes of an index that is stored in the sorted format.
+     * This value is negative so that it can never be confused with the size
+     * prefix of the first entry in a legacy index.
+     */
+    private static final int MAGIC = 0xC1D7B10C;
+
+    /**
+     * The version of the sorted format.
+     */
+    private static final int VERSION = 4;
+
+    /**
+     * The number of bytes in the header of the sorted format.
+     */
+    private static final int HEADER_SIZE = 24; // magic(4), version(4),
+                                               // count(4), pageSize(4),
+                                               // boundaryCount(4),
+                                               // directoryPosition(4)
+
+    /**
+     * The number of bytes in the header of the second version of the sorted
+     * format, which did not record a run directory.
+     */
+    private static final int V2_HEADER_SIZE = 20; // magic(4), version(4),
+                                                  // count(4), pageSize(4),
+                                                  // boundaryCount(4)
+
+    /**
+     * The number of bytes in the header of the first version of the sorted
+     * format, which did not record page boundaries.
+     */
+    private static final int V1_HEADER_SIZE = 12; // magic(4), version(4),
+                                                  // count(4)
+
+    /**
+     * The number of bytes in each slot of the sorted format.
+     */
+    private static final int SLOT_SIZE = 24; // keyPosition(4), keyLength(4),
+                                             // start(8), end(8)
+
+    /**
+     * The number of bytes in each slot of the versions of the sorted format
+     * that stored positions as ints.
+     */
+    private static final int V3_SLOT_SIZE = 16; // keyPosition(4),
+                                                // keyLength(4), start(4),
+                                                // end(4)
+
+    /**
+     * The number of bytes in each locator of the run directory.
+     */
+    private static final int DIRECTORY_LOCATOR_SIZE = 12; // slot(4),
+                                                          // runsPosition(4),
+                                                          // runCount(4)
+
+    /**
+     * The number of bytes in each run of the run directory.
+     */
+    private static final int DIRECTORY_RUN_SIZE = 12; // start(8), slot(4)
+
+    /**
+     * The number of bytes in each run of the run directory in the versions of
+     * the sorted format that stored positions as ints.
+     */
+    private static final int V3_DIRECTORY_RUN_SIZE = 8; // start(4), slot(4)
+
+    /**
+     * Compare the {@code aLength} bytes in {@code a} starting at
+     * {@code aPosition} with the {@code bLength} bytes in {@code b} starting
+     * at {@code bPosition} using unsigned lexicographical order. This method
+     * only uses absolute gets, so it does not change the state of either
+     * buffer.
+     * 
+     * @param a
+     * @param aPosition
+     * @param aLength
+     * @param b
+     * @param bPosition
+     * @param bLength
+     * @return the comparison result
+     */
+    private static int compare(ByteBuffer a, int aPosition, int aLength,
+            ByteBuffer b, int bPosition, int bLength) {
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; ++i) {
+            int comparison = (a.get(aPosition + i) & 0xFF)
+                    - (b.get(bPosition + i) & 0xFF);
+            if(comparison != 0) {
+                return comparison;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Return the number of bytes in the header of the sorted index in
+     * {@code mapping}, which depends on the version of the format.
+     * 
+     * @param mapping
+     * @return the header size
+     */
+    private static int headerSize(ByteBuffer mapping) {
+        switch (mapping.getInt(4)) {
+        case 1:
+            return V1_HEADER_SIZE;
+        case 2:
+            return V2_HEADER_SIZE;
+        default:
+            return HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Return the number of bytes that are used to store each position in the
+     * sorted index in {@code mapping}, which depends on the version of the
+     * format.
+     * 
+     * @param mapping
+     * @return the number of bytes in a position
+     */
+    private static int offsetSize(ByteBuffer mapping) {
+        return mapping.getInt(4) < 4 ? 4 : 8;
+    }
+
+    /**
+     * Return the position in the Block that is stored at {@code position} in
+     * the sorted index in {@code mapping}.
+     * 
+     * @param mapping
+     * @param position
+     * @return the position in the Block
+     */
+    private static long getOffset(ByteBuffer mapping, int position) {
+        return mapping.getInt(4) < 4 ? mapping.getInt(position) : mapping
+                .getLong(position);
+    }
+
+    /**
+     * The entries contained in a mutable index.
      */
     private Map<Composite, Entry> entries;
 
@@ -92,17 +319,44 @@ public class BlockIndex implements Byteable, Syncable {
      */
     private boolean mutable;
 
+    /**
+     * The positions in the Block file where each compressed page begins,
+     * followed by the position where the last page ends. This is empty if the
+     * Block is not stored in compressed pages.
+     */
+    private List<Long> pages = Collections.emptyList();
+
+    /**
+     * The number of uncompressed bytes in each page of the Block.
+     */
+    private int pageSize = 0;
+
+    /**
+     * The runs of keys within each locator, in Block order, that are recorded
+     * in the run directory. This is {@code null} unless the Block records
+     * runs.
+     */
+    @Nullable
+    private Map<Composite, List<Run>> runs = null;
+
     /**
      * The running size of the index in bytes.
      */
-    private transient int size = 0;
+    private transient int size = HEADER_SIZE;
 
     /**
-     * A {@link SoftReference} to the entries contained in the index that is
-     * used to reduce memory overhead.
+     * A {@link SoftReference} to the entries contained in an index that is
+     * stored in the legacy format.
      */
     private SoftReference<Map<Composite, Entry>> softEntries;
 
+    /**
+     * A read only mapping of the index file that is searched in place once
+     * the index is immutable.
+     */
+    @Nullable
+    private volatile MappedByteBuffer mapping = null;
+
     /**
      * Lazily construct an existing instance from the data in {@code file}.
      * 
@@ -143,14 +397,17 @@ public class BlockIndex implements Byteable, Syncable {
      * @param byteables
      * @return the end position
      */
-    public int getEnd(Byteable... byteables) {
+    public long getEnd(Byteable... byteables) {
         Composite composite = Composite.create(byteables);
-        Entry entry = entries().get(composite);
-        if(entry != null) {
-            return entry.getEnd();
+        if(mutable || isLegacy()) {
+            Entry entry = entries().get(composite);
+            return entry != null ? entry.getEnd() : NO_ENTRY;
         }
         else {
-            return NO_ENTRY;
+            ByteBuffer mapping = mapping();
+            int slot = search(mapping, composite);
+            return slot != NO_ENTRY ? getOffset(mapping,
+                    slot + 8 + offsetSize(mapping)) : NO_ENTRY;
         }
     }
 
@@ -161,14 +418,16 @@ public class BlockIndex implements Byteable, Syncable {
      * @param byteables
      * @return the start position
      */
-    public int getStart(Byteable... byteables) {
+    public long getStart(Byteable... byteables) {
         Composite composite = Composite.create(byteables);
-        Entry entry = entries().get(composite);
-        if(entry != null) {
-            return entry.getStart();
+        if(mutable || isLegacy()) {
+            Entry entry = entries().get(composite);
+            return entry != null ? entry.getStart() : NO_ENTRY;
         }
         else {
-            return NO_ENTRY;
+            ByteBuffer mapping = mapping();
+            int slot = search(mapping, composite);
+            return slot != NO_ENTRY ? getOffset(mapping, slot + 8) : NO_ENTRY;
         }
     }
 
@@ -178,7 +437,7 @@ public class BlockIndex implements Byteable, Syncable {
      * @param end
      * @param byteables
      */
-    public void putEnd(int end, Byteable... byteables) {
+    public void putEnd(long end, Byteable... byteables) {
         Preconditions.checkArgument(end >= 0,
                 "Cannot have negative index. Tried to put %s", end);
         Preconditions.checkState(mutable);
@@ -196,18 +455,12 @@ public class BlockIndex implements Byteable, Syncable {
      * @param start
      * @param byteables
      */
-    public void putStart(int start, Byteable... byteables) {
+    public void putStart(long start, Byteable... byteables) {
         Preconditions.checkArgument(start >= 0,
                 "Cannot have negative index. Tried to put %s", start);
         Preconditions.checkState(mutable);
         Composite composite = Composite.create(byteables);
-        Entry entry = entries().get(composite);
-        if(entry == null) {
-            entry = new Entry(composite);
-            entries.put(composite, entry);
-            size += entry.size() + 4;
-        }
-        entry.setStart(start);
+        entry(composite).setStart(start);
     }
 
     @Override
@@ -215,6 +468,33 @@ public class BlockIndex implements Byteable, Syncable {
         return size;
     }
 
+    /**
+     * Record that a run of revisions for {@code key} in {@code locator} begins
+     * at {@code start}. Runs must be recorded in the order that they appear in
+     * the Block, after the start position for {@code locator} and
+     * {@code key} has been {@link #putStart(long, Byteable...) recorded}.
+     * 
+     * @param start
+     * @param locator
+     * @param key
+     */
+    public void putRun(long start, Byteable locator, Byteable key) {
+        Preconditions.checkState(mutable);
+        if(runs == null) {
+            runs = Maps.newHashMap();
+            size += 4;
+        }
+        Composite composite = Composite.create(locator);
+        List<Run> list = runs.get(composite);
+        if(list == null) {
+            list = Lists.newArrayList();
+            runs.put(composite, list);
+            size += DIRECTORY_LOCATOR_SIZE;
+        }
+        list.add(new Run(start, Composite.create(locator, key)));
+        size += DIRECTORY_RUN_SIZE;
+    }
+
     @Override
     public void sync() {
         Preconditions.checkState(mutable);
@@ -222,9 +502,9 @@ public class BlockIndex implements Byteable, Syncable {
         try {
             channel.write(getBytes());
             channel.force(true);
-            softEntries = new SoftReference<Map<Composite, Entry>>(entries);
             mutable = false;
             entries = null;
+            runs = null;
         }
         catch (IOException e) {
             throw Throwables.propagate(e);
@@ -237,56 +517,460 @@ public class BlockIndex implements Byteable, Syncable {
     @Override
     public void copyTo(ByteBuffer buffer) {
         Preconditions.checkState(mutable);
-        for (Entry entry : entries.values()) {
-            buffer.putInt(entry.size());
-            entry.copyTo(buffer);
+        List<Entry> sorted = Lists.newArrayList(entries.values());
+        Collections.sort(sorted);
+        int base = buffer.position();
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(sorted.size());
+        buffer.putInt(pageSize);
+        buffer.putInt(pages.size());
+        int directoryPosition = buffer.position();
+        buffer.putInt(0);
+        for (long boundary : pages) {
+            buffer.putLong(boundary);
+        }
+        int slotPosition = HEADER_SIZE + (pages.size() * 8);
+        int keyPosition = slotPosition + (sorted.size() * SLOT_SIZE);
+        Map<Composite, Integer> slots = runs != null ? Maps
+                .<Composite, Integer> newHashMapWithExpectedSize(sorted.size())
+                : null;
+        for (Entry entry : sorted) {
+            if(slots != null) {
+                slots.put(entry.getKey(), slotPosition);
+                slotPosition += SLOT_SIZE;
+            }
+            buffer.putInt(keyPosition);
+            buffer.putInt(entry.getKey().size());
+            buffer.putLong(entry.getStart());
+            buffer.putLong(entry.getEnd());
+            keyPosition += entry.getKey().size();
+        }
+        for (Entry entry : sorted) {
+            entry.getKey().copyTo(buffer);
+        }
+        if(runs != null) {
+            buffer.putInt(directoryPosition, buffer.position() - base);
+            List<Entry> locators = Lists.newArrayListWithCapacity(runs.size());
+            for (Composite locator : runs.keySet()) {
+                locators.add(new Entry(locator));
+            }
+            Collections.sort(locators);
+            buffer.putInt(locators.size());
+            int runsPosition = buffer.position() - base
+                    + (locators.size() * DIRECTORY_LOCATOR_SIZE);
+            for (Entry locator : locators) {
+                List<Run> list = runs.get(locator.getKey());
+                buffer.putInt(slots.get(locator.getKey()));
+                buffer.putInt(runsPosition);
+                buffer.putInt(list.size());
+                runsPosition += list.size() * DIRECTORY_RUN_SIZE;
+            }
+            for (Entry locator : locators) {
+                for (Run run : runs.get(locator.getKey())) {
+                    buffer.putLong(run.start);
+                    buffer.putInt(slots.get(run.key));
+                }
+            }
+        }
+        Preconditions.checkState(buffer.position() - base == size);
+    }
+
+    /**
+     * Return the number of compressed pages in the Block, which is {@code 0}
+     * if the Block is not stored in compressed pages.
+     * 
+     * @return the number of pages
+     */
+    @PackagePrivate
+    int getPageCount() {
+        int boundaries;
+        if(mutable) {
+            boundaries = pages.size();
+        }
+        else if(isLegacy() || mapping().getInt(4) == 1) {
+            boundaries = 0;
+        }
+        else {
+            boundaries = mapping().getInt(16);
+        }
+        return boundaries > 0 ? boundaries - 1 : 0;
+    }
+
+    /**
+     * Return the position in the Block file where {@code page} begins. If
+     * {@code page} is equal to {@link #getPageCount()}, the position where the
+     * last page ends is returned.
+     * 
+     * @param page
+     * @return the position of the page
+     */
+    @PackagePrivate
+    long getPagePosition(int page) {
+        if(mutable) {
+            return pages.get(page);
+        }
+        else {
+            ByteBuffer mapping = mapping();
+            return getOffset(mapping, headerSize(mapping)
+                    + (page * offsetSize(mapping)));
+        }
+    }
+
+    /**
+     * Return the {@link Runs} of keys within {@code locator}, or {@code null}
+     * if the index does not have a run directory (i.e. it is mutable, it was
+     * written before run directories existed or the Block does not record
+     * runs) or {@code locator} does not have any runs.
+     * 
+     * @param locator
+     * @return the runs for {@code locator} or {@code null}
+     */
+    @Nullable
+    @PackagePrivate
+    Runs getRuns(Byteable locator) {
+        if(mutable || isLegacy()) {
+            return null;
         }
+        ByteBuffer mapping = mapping();
+        if(mapping.getInt(4) < 3 || mapping.getInt(20) == 0) {
+            return null;
+        }
+        int directory = mapping.getInt(20);
+        ByteBuffer key = locator.getBytes();
+        int keyPosition = key.position();
+        int keyLength = key.remaining();
+        int low = 0;
+        int high = mapping.getInt(directory) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = directory + 4 + (mid * DIRECTORY_LOCATOR_SIZE);
+            int slot = mapping.getInt(position);
+            int comparison = compare(mapping, mapping.getInt(slot),
+                    mapping.getInt(slot + 4), key, keyPosition, keyLength);
+            if(comparison < 0) {
+                low = mid + 1;
+            }
+            else if(comparison > 0) {
+                high = mid - 1;
+            }
+            else {
+                return new Runs(mapping, keyLength, getOffset(mapping, slot
+                        + 8 + offsetSize(mapping)),
+                        mapping.getInt(position + 4),
+                        mapping.getInt(position + 8));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the number of uncompressed bytes in each page of the Block.
+     * 
+     * @return the page size
+     */
+    @PackagePrivate
+    int getPageSize() {
+        return mutable ? pageSize : mapping().getInt(12);
+    }
+
+    /**
+     * Record that the Block is stored in compressed pages that each hold
+     * {@code pageSize} uncompressed bytes and begin at the positions in
+     * {@code boundaries}, which must also include the position where the last
+     * page ends.
+     * 
+     * @param pageSize
+     * @param boundaries
+     */
+    @PackagePrivate
+    void putPages(int pageSize, List<Long> boundaries) {
+        Preconditions.checkState(mutable);
+        Preconditions.checkArgument(pageSize > 0);
+        size += (boundaries.size() - pages.size()) * 8;
+        this.pageSize = pageSize;
+        this.pages = Lists.newArrayList(boundaries);
     }
 
     /**
      * Return {@code true} if this index is considered <em>loaded</em> meaning
-     * all of its entries are available in memory.
+     * its entries can be searched without touching the disk.
      * 
      * @return {@code true} if the entries are loaded
      */
     protected boolean isLoaded() { // visible for testing
-        return mutable || (softEntries != null && softEntries.get() != null);
+        return mutable || (softEntries != null && softEntries.get() != null)
+                || mapping != null;
+    }
+
+    /**
+     * Return {@code true} if this index is immutable and stored in the legacy
+     * format.
+     * 
+     * @return {@code true} if the index is stored in the legacy format
+     */
+    @PackagePrivate
+    boolean isLegacy() {
+        if(mutable) {
+            return false;
+        }
+        else {
+            ByteBuffer mapping = mapping();
+            return mapping.capacity() < V1_HEADER_SIZE
+                    || mapping.getInt(0) != MAGIC;
+        }
+    }
+
+    /**
+     * Release the mapping of the index file. The caller must guarantee that
+     * no lookups are in progress. If the index is used again after being
+     * retired, a new mapping is created on demand.
+     */
+    @PackagePrivate
+    void retire() {
+        MappedByteBuffer mapping;
+        synchronized (this) {
+            mapping = this.mapping;
+            this.mapping = null;
+        }
+        if(mapping != null) {
+            FileSystem.unmap(mapping);
+        }
     }
 
     /**
-     * Return the entries in this index. This method will lazily load the
-     * entries on demand if they do not currently exist in memory.
+     * Return the entries in this index. For an immutable index that is stored
+     * in the legacy format, this method will lazily load the entries on
+     * demand if they do not currently exist in memory.
      * 
      * @return the entries
      */
-    private synchronized Map<Composite, Entry> entries() {
-        if(mutable && entries != null) {
-            return entries;
+    private Map<Composite, Entry> entries() {
+        return mutable ? entries : legacyEntries();
+    }
+
+    /**
+     * Return the {@link Entry} for {@code composite} in a mutable index,
+     * creating it if necessary.
+     * 
+     * @param composite
+     * @return the Entry
+     */
+    private Entry entry(Composite composite) {
+        Entry entry = entries.get(composite);
+        if(entry == null) {
+            entry = new Entry(composite);
+            entries.put(composite, entry);
+            size += SLOT_SIZE + composite.size();
         }
-        else if(!mutable && (softEntries == null || softEntries.get() == null)) { // do
-                                                                                  // lazy
-                                                                                  // load
-            ByteBuffer bytes = FileSystem.map(file, MapMode.READ_ONLY, 0,
-                    FileSystem.getFileSize(file));
+        return entry;
+    }
+
+    /**
+     * Return the entries from an index that is stored in the legacy format,
+     * loading them from disk if necessary.
+     * 
+     * @return the entries
+     */
+    private synchronized Map<Composite, Entry> legacyEntries() {
+        Map<Composite, Entry> entries = softEntries != null ? softEntries
+                .get() : null;
+        if(entries == null) { // do lazy load
+            ByteBuffer bytes = mapping().duplicate();
             Iterator<ByteBuffer> it = ByteableCollections.iterator(bytes);
-            Map<Composite, Entry> entries = Maps
-                    .newHashMapWithExpectedSize(bytes.capacity()
-                            / Entry.CONSTANT_SIZE);
+            entries = Maps.newHashMapWithExpectedSize(bytes.capacity()
+                    / Entry.CONSTANT_SIZE);
             while (it.hasNext()) {
                 Entry entry = new Entry(it.next());
                 entries.put(entry.getKey(), entry);
             }
             softEntries = new SoftReference<Map<Composite, Entry>>(entries);
-            return softEntries.get();
         }
-        else if(!mutable && softEntries.get() != null) {
-            return softEntries.get();
+        return entries;
+    }
+
+    /**
+     * Return the read only {@link #mapping} of the index file, creating it if
+     * necessary.
+     * 
+     * @return the mapping
+     */
+    private MappedByteBuffer mapping() {
+        MappedByteBuffer mapping = this.mapping;
+        if(mapping == null) {
+            synchronized (this) {
+                mapping = this.mapping;
+                if(mapping == null) {
+                    mapping = FileSystem.map(file, MapMode.READ_ONLY, 0,
+                            FileSystem.getFileSize(file), false);
+                    this.mapping = mapping;
+                }
+            }
         }
-        else {
-            // "If i'm really an engineer thats worth a damn, we won't ever get
-            // to this point" -jnelson
-            throw new IllegalStateException();
+        return mapping;
+    }
+
+    /**
+     * Record an entry with both a {@code start} and {@code end} position for
+     * {@code composite}.
+     * 
+     * @param composite
+     * @param start
+     * @param end
+     */
+    private void putEntry(Composite composite, long start, long end) {
+        Preconditions.checkState(mutable);
+        Entry entry = entry(composite);
+        entry.setStart(start);
+        entry.setEnd(end);
+    }
+
+    /**
+     * Binary search the sorted index in {@code mapping} for
+     * {@code composite} and return the absolute position of its slot or
+     * {@link #NO_ENTRY} if it does not exist.
+     * 
+     * @param mapping
+     * @param composite
+     * @return the position of the slot
+     */
+    private int search(ByteBuffer mapping, Composite composite) {
+        ByteBuffer key = composite.getBytes();
+        int keyPosition = key.position();
+        int keyLength = key.remaining();
+        int low = 0;
+        int high = mapping.getInt(8) - 1;
+        int slots = mapping.getInt(4) == 1 ? V1_HEADER_SIZE
+                : headerSize(mapping)
+                        + (mapping.getInt(16) * offsetSize(mapping));
+        int slotSize = mapping.getInt(4) < 4 ? V3_SLOT_SIZE : SLOT_SIZE;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int slot = slots + (mid * slotSize);
+            int comparison = compare(mapping, mapping.getInt(slot),
+                    mapping.getInt(slot + 4), key, keyPosition, keyLength);
+            if(comparison < 0) {
+                low = mid + 1;
+            }
+            else if(comparison > 0) {
+                high = mid - 1;
+            }
+            else {
+                return slot;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * A view of the runs of keys within a single locator in the run directory
+     * of an immutable index. The runs are in the order that they appear in
+     * the Block.
+     * 
+     * @author Jeff Nelson
+     */
+    @PackagePrivate
+    static final class Runs {
+
+        private final int count;
+        private final long end;
+        private final int locatorLength;
+        private final ByteBuffer mapping;
+        private final int position;
+        private final int runSize;
+        private final boolean wide;
+
+        /**
+         * Construct a new instance.
+         * 
+         * @param mapping
+         * @param locatorLength
+         * @param end
+         * @param position
+         * @param count
+         */
+        private Runs(ByteBuffer mapping, int locatorLength, long end,
+                int position, int count) {
+            this.mapping = mapping;
+            this.locatorLength = locatorLength;
+            this.end = end;
+            this.position = position;
+            this.count = count;
+            this.wide = mapping.getInt(4) >= 4;
+            this.runSize = wide ? DIRECTORY_RUN_SIZE : V3_DIRECTORY_RUN_SIZE;
+        }
+
+        /**
+         * Return the number of runs.
+         * 
+         * @return the number of runs
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Return the position in the Block where the last run ends.
+         * 
+         * @return the end position
+         */
+        public long getEnd() {
+            return end;
         }
+
+        /**
+         * Return a read only buffer that contains the bytes of the key for
+         * run {@code i}.
+         * 
+         * @param i
+         * @return the key bytes
+         */
+        public ByteBuffer getKey(int i) {
+            int slot = mapping.getInt(position + (i * runSize)
+                    + (wide ? 8 : 4));
+            int keyPosition = mapping.getInt(slot) + locatorLength;
+            int keyLength = mapping.getInt(slot + 4) - locatorLength;
+            ByteBuffer bytes = mapping.duplicate();
+            bytes.position(keyPosition);
+            bytes.limit(keyPosition + keyLength);
+            return bytes.slice().asReadOnlyBuffer();
+        }
+
+        /**
+         * Return the position in the Block where run {@code i} begins.
+         * 
+         * @param i
+         * @return the start position
+         */
+        public long getStart(int i) {
+            int run = position + (i * runSize);
+            return wide ? mapping.getLong(run) : mapping.getInt(run);
+        }
+
+    }
+
+    /**
+     * A run of revisions for the same key that is recorded in a mutable
+     * index.
+     * 
+     * @author Jeff Nelson
+     */
+    private static final class Run {
+
+        private final Composite key;
+        private final long start;
+
+        /**
+         * Construct a new instance.
+         * 
+         * @param start
+         * @param key
+         */
+        Run(long start, Composite key) {
+            this.start = start;
+            this.key = key;
+        }
+
     }
 
     /**
@@ -294,13 +978,13 @@ public class BlockIndex implements Byteable, Syncable {
      * 
      * @author Jeff Nelson
      */
-    private final class Entry implements Byteable {
+    private static final class Entry implements Byteable, Comparable<Entry> {
 
         private static final int CONSTANT_SIZE = 8; // start(4), end(4)
 
-        private int end = NO_ENTRY;
+        private long end = NO_ENTRY;
         private final Composite key;
-        private int start = NO_ENTRY;
+        private long start = NO_ENTRY;
 
         /**
          * Construct an instance that represents an existing Entry from a
@@ -327,6 +1011,14 @@ public class BlockIndex implements Byteable, Syncable {
             this.key = key;
         }
 
+        @Override
+        public int compareTo(Entry other) {
+            ByteBuffer a = key.getBytes();
+            ByteBuffer b = other.key.getBytes();
+            return compare(a, a.position(), a.remaining(), b, b.position(),
+                    b.remaining());
+        }
+
         @Override
         public ByteBuffer getBytes() {
             ByteBuffer bytes = ByteBuffer.allocate(size());
@@ -340,7 +1032,7 @@ public class BlockIndex implements Byteable, Syncable {
          * 
          * @return the end
          */
-        public int getEnd() {
+        public long getEnd() {
             return end;
         }
 
@@ -358,7 +1050,7 @@ public class BlockIndex implements Byteable, Syncable {
          * 
          * @return the start
          */
-        public int getStart() {
+        public long getStart() {
             return start;
         }
 
@@ -367,7 +1059,7 @@ public class BlockIndex implements Byteable, Syncable {
          * 
          * @param end the end to set
          */
-        public void setEnd(int end) {
+        public void setEnd(long end) {
             this.end = end;
         }
 
@@ -376,7 +1068,7 @@ public class BlockIndex implements Byteable, Syncable {
          * 
          * @param start the start to set
          */
-        public void setStart(int start) {
+        public void setStart(long start) {
             this.start = start;
         }
 
@@ -387,8 +1079,9 @@ public class BlockIndex implements Byteable, Syncable {
 
         @Override
         public void copyTo(ByteBuffer buffer) {
-            buffer.putInt(start);
-            buffer.putInt(end);
+            // The legacy format can only store int positions.
+            buffer.putInt(Ints.checkedCast(start));
+            buffer.putInt(Ints.checkedCast(end));
             key.copyTo(buffer);
         }
 
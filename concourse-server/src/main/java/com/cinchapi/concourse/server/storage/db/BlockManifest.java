@@ -0,0 +1,463 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.util.ByteBuffers;
+import com.cinchapi.concourse.util.Logger;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+
+/**
+ * A BlockManifest is a small file in the {@link Database Database's} backing
+ * store that describes each {@link Block} on disk: its id, the
+ * {@link StorageTiers storage tier} where it lives, the size of the block
+ * file, the MD5 checksum of the block file (which is computed once while the
+ * Block is synced) and the range of versions that it contains.
+ * <p>
+ * On startup, the Database uses the manifest to detect Blocks that contain
+ * duplicate data without reading every block file from disk. A block file
+ * whose size does not match its manifest entry (or that does not have one)
+ * is hashed and added to the manifest, so the manifest heals itself if it is
+ * stale or missing. If a Block is found in more than one tier because a
+ * migration was interrupted, the copy in the tier that the manifest records
+ * is kept. A full scan that re-hashes every block file only happens
+ * when it is explicitly requested using {@link Database#verifyBlocks()}.
+ * </p>
+ * <p>
+ * The manifest is rewritten in its entirety to a temporary file that
+ * atomically replaces the previous version whenever it is
+ * {@link #sync() synced}.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@ThreadSafe
+@PackagePrivate
+final class BlockManifest {
+
+    /**
+     * Return the BlockManifest for the Database that is stored in
+     * {@code backingStore}. If the manifest does not exist or cannot be read,
+     * an empty manifest is returned.
+     *
+     * @param backingStore
+     * @return the BlockManifest
+     */
+    public static BlockManifest load(String backingStore) {
+        BlockManifest manifest = new BlockManifest(backingStore);
+        String file = FileSystem.makePath(backingStore, MANIFEST_NAME);
+        if(FileSystem.hasFile(file)) {
+            try {
+                ByteBuffer bytes = FileSystem.readBytes(file);
+                int version = bytes.getInt();
+                if(version < 1 || version > VERSION) {
+                    throw new IllegalStateException(
+                            "Unsupported manifest version " + version);
+                }
+                int count = bytes.getInt();
+                for (int i = 0; i < count; ++i) {
+                    String directory = readString(bytes);
+                    String id = readString(bytes);
+                    String location = version > 1 ? readString(bytes)
+                            : backingStore;
+                    long size = bytes.getLong();
+                    byte[] checksum = new byte[bytes.getInt()];
+                    bytes.get(checksum);
+                    long minVersion = bytes.getLong();
+                    long maxVersion = bytes.getLong();
+                    manifest.entries(directory).put(
+                            id,
+                            new Entry(id, location, size, HashCode
+                                    .fromBytes(checksum), minVersion,
+                                    maxVersion));
+                }
+            }
+            catch (RuntimeException e) {
+                Logger.warn("The block manifest in {} could not be read, "
+                        + "so it will be rebuilt: {}", backingStore,
+                        e.getMessage());
+                manifest.entries.clear();
+                manifest.dirty = true;
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Read a UTF-8 string that is prefixed with its length from
+     * {@code bytes}.
+     *
+     * @param bytes
+     * @return the string
+     */
+    private static String readString(ByteBuffer bytes) {
+        return ByteBuffers.getString(ByteBuffers.get(bytes, bytes.getInt()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The name of the manifest file, relative to the Database's backing store.
+     */
+    @PackagePrivate
+    static final String MANIFEST_NAME = "blocks.manifest";
+
+    /**
+     * The current version of the manifest format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The location where the {@link Database} stores data.
+     */
+    private final String backingStore;
+
+    /**
+     * A flag that indicates whether the manifest has changed since it was
+     * last synced.
+     */
+    private boolean dirty = false;
+
+    /**
+     * The entries in the manifest, mapped from block directory to block id.
+     */
+    private final Map<String, Map<String, Entry>> entries = Maps.newHashMap();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param backingStore
+     */
+    private BlockManifest(String backingStore) {
+        this.backingStore = backingStore;
+    }
+
+    /**
+     * Return the {@link Entry} for the Block with {@code id} in
+     * {@code directory} or {@code null} if it is not in the manifest.
+     *
+     * @param directory
+     * @param id
+     * @return the Entry
+     */
+    @Nullable
+    public synchronized Entry get(String directory, String id) {
+        return entries(directory).get(id);
+    }
+
+    /**
+     * Return the distinct locations of all the Blocks in the manifest.
+     *
+     * @return the locations
+     */
+    public synchronized Set<String> getLocations() {
+        Set<String> locations = Sets.newLinkedHashSet();
+        for (Map<String, Entry> directory : entries.values()) {
+            for (Entry entry : directory.values()) {
+                locations.add(entry.getLocation());
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Add an entry for a Block that was synced by this process. If the Block
+     * does not have a {@link Block#getChecksum() checksum} (i.e. because it
+     * was empty and therefore not synced), nothing happens.
+     *
+     * @param directory
+     * @param block
+     */
+    public void put(String directory, Block<?, ?, ?> block) {
+        HashCode checksum = block.getChecksum();
+        if(checksum != null) {
+            put(directory, block, checksum);
+        }
+    }
+
+    /**
+     * Add an entry for {@code block} in {@code directory} that records
+     * {@code checksum} as the checksum of the block file. The location of the
+     * Block is the parent of the directory where its block file is stored.
+     *
+     * @param directory
+     * @param block
+     * @param checksum
+     */
+    public synchronized void put(String directory, Block<?, ?, ?> block,
+            HashCode checksum) {
+        long size = FileSystem.getFileSize(FileSystem.makePath(
+                block.getDirectory(), block.getId()
+                        + Block.BLOCK_NAME_EXTENSION));
+        String location = new File(block.getDirectory()).getParent();
+        BlockMetadata<?, ?> metadata = block.getMetadata();
+        long minVersion = metadata != null ? metadata.getMinVersion()
+                : Long.MIN_VALUE;
+        long maxVersion = metadata != null ? metadata.getMaxVersion()
+                : Long.MAX_VALUE;
+        entries(directory).put(block.getId(),
+                new Entry(block.getId(), location, size, checksum, minVersion,
+                        maxVersion));
+        dirty = true;
+    }
+
+    /**
+     * Record that the Block with {@code id} in {@code directory} now lives in
+     * {@code location}, if it has an entry.
+     *
+     * @param directory
+     * @param id
+     * @param location
+     */
+    public synchronized void relocate(String directory, String id,
+            String location) {
+        Entry entry = entries(directory).get(id);
+        if(entry != null && !entry.getLocation().equals(location)) {
+            entries(directory).put(
+                    id,
+                    new Entry(id, location, entry.size, entry.checksum,
+                            entry.minVersion, entry.maxVersion));
+            dirty = true;
+        }
+    }
+
+    /**
+     * Remove the entry for the Block with {@code id} in {@code directory}, if
+     * it exists.
+     *
+     * @param directory
+     * @param id
+     */
+    public synchronized void remove(String directory, String id) {
+        if(entries(directory).remove(id) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Remove the entries for all the Blocks in {@code directory} whose ids are
+     * not in {@code ids}.
+     *
+     * @param directory
+     * @param ids
+     */
+    public synchronized void retain(String directory, Collection<String> ids) {
+        Iterator<String> it = entries(directory).keySet().iterator();
+        while (it.hasNext()) {
+            if(!ids.contains(it.next())) {
+                it.remove();
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Durably write the manifest to disk if it has changed since it was last
+     * synced.
+     */
+    public synchronized void sync() {
+        if(dirty) {
+            int size = 8;
+            for (Map.Entry<String, Map<String, Entry>> directory : entries
+                    .entrySet()) {
+                int prefix = 4 + directory.getKey().getBytes(
+                        StandardCharsets.UTF_8).length;
+                for (Entry entry : directory.getValue().values()) {
+                    size += prefix + entry.size();
+                }
+            }
+            ByteBuffer bytes = ByteBuffer.allocate(size);
+            bytes.putInt(VERSION);
+            bytes.putInt(0); // placeholder for the number of entries
+            int count = 0;
+            for (Map.Entry<String, Map<String, Entry>> directory : entries
+                    .entrySet()) {
+                byte[] name = directory.getKey().getBytes(
+                        StandardCharsets.UTF_8);
+                for (Entry entry : directory.getValue().values()) {
+                    bytes.putInt(name.length);
+                    bytes.put(name);
+                    entry.copyTo(bytes);
+                    ++count;
+                }
+            }
+            bytes.putInt(4, count);
+            bytes.flip();
+            String file = FileSystem.makePath(backingStore, MANIFEST_NAME);
+            String tmp = file + ".tmp";
+            if(FileSystem.hasFile(tmp)) {
+                FileSystem.deleteFile(tmp);
+            }
+            FileSystem.writeBytes(bytes, tmp);
+            FileSystem.replaceFile(file, tmp);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Return the entries for {@code directory}, creating the map if necessary.
+     *
+     * @param directory
+     * @return the entries
+     */
+    private Map<String, Entry> entries(String directory) {
+        Map<String, Entry> map = entries.get(directory);
+        if(map == null) {
+            map = Maps.newHashMap();
+            entries.put(directory, map);
+        }
+        return map;
+    }
+
+    /**
+     * The description of a single Block in the manifest.
+     *
+     * @author Jeff Nelson
+     */
+    public static final class Entry {
+
+        private final HashCode checksum;
+        private final String id;
+        private final String location;
+        private final long maxVersion;
+        private final long minVersion;
+        private final long size;
+
+        /**
+         * Construct a new instance.
+         *
+         * @param id
+         * @param location
+         * @param size
+         * @param checksum
+         * @param minVersion
+         * @param maxVersion
+         */
+        private Entry(String id, String location, long size,
+                HashCode checksum, long minVersion, long maxVersion) {
+            this.id = id;
+            this.location = location;
+            this.size = size;
+            this.checksum = checksum;
+            this.minVersion = minVersion;
+            this.maxVersion = maxVersion;
+        }
+
+        /**
+         * Return the MD5 checksum of the block file.
+         *
+         * @return the checksum
+         */
+        public HashCode getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * Return the block id.
+         *
+         * @return the id
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Return the directory of the storage tier where the Block lives,
+         * which contains the block type directories.
+         *
+         * @return the location
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        /**
+         * Return the largest version in the Block or {@link Long#MAX_VALUE}
+         * if it is unknown.
+         *
+         * @return the max version
+         */
+        public long getMaxVersion() {
+            return maxVersion;
+        }
+
+        /**
+         * Return the smallest version in the Block or {@link Long#MIN_VALUE}
+         * if it is unknown.
+         *
+         * @return the min version
+         */
+        public long getMinVersion() {
+            return minVersion;
+        }
+
+        /**
+         * Return the size of the block file in bytes.
+         *
+         * @return the size
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Write the entry, excluding the directory, to {@code buffer}.
+         *
+         * @param buffer
+         */
+        private void copyTo(ByteBuffer buffer) {
+            byte[] name = id.getBytes(StandardCharsets.UTF_8);
+            byte[] hash = checksum.asBytes();
+            byte[] where = location.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(name.length);
+            buffer.put(name);
+            buffer.putInt(where.length);
+            buffer.put(where);
+            buffer.putLong(size);
+            buffer.putInt(hash.length);
+            buffer.put(hash);
+            buffer.putLong(minVersion);
+            buffer.putLong(maxVersion);
+        }
+
+        /**
+         * Return the number of bytes that are needed to write the entry,
+         * excluding the directory.
+         *
+         * @return the size
+         */
+        private int size() {
+            return 4 + id.getBytes(StandardCharsets.UTF_8).length + 4
+                    + location.getBytes(StandardCharsets.UTF_8).length + 8 + 4
+                    + checksum.bits() / 8 + 8 + 8;
+        }
+
+    }
+
+}
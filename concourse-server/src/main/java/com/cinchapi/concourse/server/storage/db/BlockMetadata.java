@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nullable;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.server.io.Byteable;
+import com.cinchapi.concourse.server.io.Byteables;
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.server.io.Syncable;
+import com.cinchapi.concourse.util.ByteBuffers;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Range;
+
+/**
+ * The fence metadata for a {@link Block}. A BlockMetadata records the
+ * smallest and largest {@code locator} and {@code key} and the range of
+ * versions that are contained in a Block, so that the {@link Database} can
+ * skip a Block whose ranges cannot possibly contain the data for a lookup
+ * without probing its {@link com.cinchapi.concourse.server.storage.cache.BloomFilter
+ * BloomFilter} or {@link BlockIndex}.
+ * <p>
+ * Since record ids tend to increase monotonically, most Blocks hold disjoint
+ * ranges of {@link com.cinchapi.concourse.server.model.PrimaryKey
+ * PrimaryKeys}, which means the fences prune the majority of Blocks for
+ * primary lookups.
+ * </p>
+ * <p>
+ * The locators in secondary and search Blocks are keys, which are not
+ * ordered in time, so their fences usually span most keys. Therefore, the
+ * metadata also records a bitmap of the {@link #LOCATOR_BUCKETS hash buckets}
+ * of the locators in the Block, which lets a lookup for a key skip the
+ * filter, index and data of a Block that doesn't hold the key's bucket. This
+ * is only a coarse filter; the Block itself is not partitioned by key and a
+ * lookup still checks the metadata of every Block. Metadata that was written
+ * before buckets were recorded covers every bucket.
+ * </p>
+ * 
+ * @author Jeff Nelson
+ */
+@PackagePrivate
+final class BlockMetadata<L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>> implements
+        Byteable,
+        Syncable {
+
+    /**
+     * Return a new BlockMetadata that will be stored in {@code file}.
+     * 
+     * @param file
+     * @return the BlockMetadata
+     */
+    public static <L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>> BlockMetadata<L, K> create(
+            String file) {
+        return new BlockMetadata<L, K>(file);
+    }
+
+    /**
+     * Return the BlockMetadata that is stored in {@code file}.
+     * 
+     * @param file
+     * @param locatorClass
+     * @param keyClass
+     * @return the BlockMetadata
+     */
+    public static <L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>> BlockMetadata<L, K> open(
+            String file, Class<L> locatorClass, Class<K> keyClass) {
+        ByteBuffer bytes = FileSystem.readBytes(file);
+        BlockMetadata<L, K> metadata = new BlockMetadata<L, K>(file);
+        metadata.minVersion = bytes.getLong();
+        metadata.maxVersion = bytes.getLong();
+        metadata.minLocator = Byteables.readStatic(
+                ByteBuffers.get(bytes, bytes.getInt()), locatorClass);
+        metadata.maxLocator = Byteables.readStatic(
+                ByteBuffers.get(bytes, bytes.getInt()), locatorClass);
+        metadata.minKey = Byteables.readStatic(
+                ByteBuffers.get(bytes, bytes.getInt()), keyClass);
+        metadata.maxKey = Byteables.readStatic(
+                ByteBuffers.get(bytes, bytes.getInt()), keyClass);
+        if(bytes.remaining() > 0) {
+            long[] buckets = new long[bytes.getInt()];
+            for (int i = 0; i < buckets.length; ++i) {
+                buckets[i] = bytes.getLong();
+            }
+            metadata.buckets = buckets;
+        }
+        else {
+            metadata.buckets = null;
+        }
+        metadata.mutable = false;
+        return metadata;
+    }
+
+    /**
+     * The number of hash buckets that locators are mapped to. This must be a
+     * multiple of 64.
+     */
+    @PackagePrivate
+    static final int LOCATOR_BUCKETS = 2048;
+
+    /**
+     * Return the hash bucket for {@code locator}. The {@link Object#hashCode()
+     * hash codes} of the locator types are derived from their content, so the
+     * bucket is stable across restarts.
+     * 
+     * @param locator
+     * @return the bucket
+     */
+    private static int getBucket(Byteable locator) {
+        int hash = locator.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCATOR_BUCKETS - 1);
+    }
+
+    /**
+     * The file where the metadata is stored.
+     */
+    private final String file;
+
+    /**
+     * A flag that indicates if this metadata is mutable. The metadata is no
+     * longer mutable after it has been synced.
+     */
+    private boolean mutable = true;
+
+    /**
+     * The fence for the locators in the Block.
+     */
+    @Nullable
+    private L minLocator;
+    @Nullable
+    private L maxLocator;
+
+    /**
+     * The fence for the keys in the Block.
+     */
+    @Nullable
+    private K minKey;
+    @Nullable
+    private K maxKey;
+
+    /**
+     * The range of versions in the Block.
+     */
+    private long minVersion = Long.MAX_VALUE;
+    private long maxVersion = Long.MIN_VALUE;
+
+    /**
+     * A bitmap of the {@link #getBucket(Byteable) hash buckets} for the
+     * locators in the Block or {@code null} if the metadata was written
+     * before buckets were recorded.
+     */
+    @Nullable
+    private long[] buckets = new long[LOCATOR_BUCKETS / 64];
+
+    /**
+     * Construct a new instance.
+     * 
+     * @param file
+     */
+    private BlockMetadata(String file) {
+        this.file = file;
+    }
+
+    @Override
+    public void copyTo(ByteBuffer buffer) {
+        buffer.putLong(minVersion);
+        buffer.putLong(maxVersion);
+        for (Byteable byteable : new Byteable[] { minLocator, maxLocator,
+                minKey, maxKey }) {
+            buffer.putInt(byteable.size());
+            byteable.copyTo(buffer);
+        }
+        if(buckets != null) {
+            buffer.putInt(buckets.length);
+            for (long word : buckets) {
+                buffer.putLong(word);
+            }
+        }
+    }
+
+    /**
+     * Return {@code true} if {@code locator} falls within the fence of this
+     * metadata.
+     * 
+     * @param locator
+     * @return {@code true} if the Block may contain {@code locator}
+     */
+    public boolean covers(L locator) {
+        if(!isEmpty() && locator.compareTo(minLocator) >= 0
+                && locator.compareTo(maxLocator) <= 0) {
+            if(buckets != null) {
+                int bucket = getBucket(locator);
+                return (buckets[bucket >>> 6] & (1L << bucket)) != 0;
+            }
+            else {
+                return true;
+            }
+        }
+        else {
+            return false;
+        }
+    }
+
+    /**
+     * Return {@code true} if {@code locator} and {@code key} both fall within
+     * the fences of this metadata.
+     * 
+     * @param locator
+     * @param key
+     * @return {@code true} if the Block may contain {@code key} in
+     *         {@code locator}
+     */
+    public boolean covers(L locator, K key) {
+        return covers(locator) && key.compareTo(minKey) >= 0
+                && key.compareTo(maxKey) <= 0;
+    }
+
+    /**
+     * Return {@code true} if {@code locator} falls within the fence of this
+     * metadata and {@code range} overlaps the fence of keys.
+     * 
+     * @param locator
+     * @param range
+     * @return {@code true} if the Block may contain a key in {@code range} in
+     *         {@code locator}
+     */
+    public boolean covers(L locator, Range<K> range) {
+        if(covers(locator)) {
+            Range<K> fence = Range.closed(minKey, maxKey);
+            return range.isConnected(fence)
+                    && !range.intersection(fence).isEmpty();
+        }
+        else {
+            return false;
+        }
+    }
+
+    @Override
+    public ByteBuffer getBytes() {
+        ByteBuffer bytes = ByteBuffer.allocate(size());
+        copyTo(bytes);
+        bytes.rewind();
+        return bytes;
+    }
+
+    /**
+     * Return the largest key in the Block.
+     * 
+     * @return the max key
+     */
+    @Nullable
+    public K getMaxKey() {
+        return maxKey;
+    }
+
+    /**
+     * Return the largest locator in the Block.
+     * 
+     * @return the max locator
+     */
+    @Nullable
+    public L getMaxLocator() {
+        return maxLocator;
+    }
+
+    /**
+     * Return the newest version in the Block.
+     * 
+     * @return the max version
+     */
+    public long getMaxVersion() {
+        return maxVersion;
+    }
+
+    /**
+     * Return the smallest key in the Block.
+     * 
+     * @return the min key
+     */
+    @Nullable
+    public K getMinKey() {
+        return minKey;
+    }
+
+    /**
+     * Return the smallest locator in the Block.
+     * 
+     * @return the min locator
+     */
+    @Nullable
+    public L getMinLocator() {
+        return minLocator;
+    }
+
+    /**
+     * Return the oldest version in the Block.
+     * 
+     * @return the min version
+     */
+    public long getMinVersion() {
+        return minVersion;
+    }
+
+    /**
+     * Return {@code true} if no revisions have been recorded.
+     * 
+     * @return {@code true} if the metadata is empty
+     */
+    public boolean isEmpty() {
+        return minLocator == null;
+    }
+
+    /**
+     * Expand the fences to include the components of {@code revision}.
+     * 
+     * @param revision
+     */
+    public void record(Revision<L, K, ?> revision) {
+        Preconditions.checkState(mutable);
+        L locator = revision.getLocator();
+        K key = revision.getKey();
+        long version = revision.getVersion();
+        if(minLocator == null || locator.compareTo(minLocator) < 0) {
+            minLocator = locator;
+        }
+        if(maxLocator == null || locator.compareTo(maxLocator) > 0) {
+            maxLocator = locator;
+        }
+        if(minKey == null || key.compareTo(minKey) < 0) {
+            minKey = key;
+        }
+        if(maxKey == null || key.compareTo(maxKey) > 0) {
+            maxKey = key;
+        }
+        minVersion = Math.min(minVersion, version);
+        maxVersion = Math.max(maxVersion, version);
+        int bucket = getBucket(locator);
+        buckets[bucket >>> 6] |= 1L << bucket;
+    }
+
+    @Override
+    public int size() {
+        return 32 + minLocator.size() + maxLocator.size() + minKey.size()
+                + maxKey.size()
+                + (buckets != null ? 4 + buckets.length * 8 : 0);
+    }
+
+    @Override
+    public void sync() {
+        Preconditions.checkState(mutable);
+        Preconditions.checkState(!isEmpty(),
+                "Cannot sync metadata for an empty block");
+        FileSystem.writeBytes(getBytes(), file);
+        mutable = false;
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.Arrays;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.server.storage.Action;
+
+/**
+ * The history of a single key within a {@link Record}, stored as parallel
+ * arrays of versions, actions and value references that are sorted by
+ * version.
+ * <p>
+ * Compared to a list of {@link CompactRevision CompactRevisions}, this layout
+ * does not allocate any objects per revision (aside from the value itself) and
+ * allows historical reads to binary search for the revisions that occurred at
+ * or before a timestamp.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@NotThreadSafe
+@PackagePrivate
+@SuppressWarnings("unchecked")
+final class CompactHistory<V extends Comparable<V>> {
+
+    /**
+     * All the possible actions, indexed by ordinal.
+     */
+    private static final Action[] ACTIONS = Action.values();
+
+    /**
+     * The initial capacity of the arrays.
+     */
+    private static final int INITIAL_CAPACITY = 2;
+
+    /**
+     * The number of revisions in the history.
+     */
+    private int size = 0;
+
+    /**
+     * The {@link Action#ordinal() ordinal} of the action for each revision.
+     */
+    private byte[] types = new byte[INITIAL_CAPACITY];
+
+    /**
+     * The value for each revision.
+     */
+    private Object[] values = new Object[INITIAL_CAPACITY];
+
+    /**
+     * The version of each revision, in ascending order.
+     */
+    private long[] versions = new long[INITIAL_CAPACITY];
+
+    /**
+     * Add a revision to the history. If {@code version} is not the largest
+     * version in the history, the revision is inserted after all the
+     * revisions with a version that is less than or equal to it.
+     *
+     * @param value
+     * @param version
+     * @param type
+     */
+    public void add(V value, long version, Action type) {
+        if(size == versions.length) {
+            int capacity = size + (size >> 1) + 1;
+            versions = Arrays.copyOf(versions, capacity);
+            types = Arrays.copyOf(types, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        int index = size == 0 || versions[size - 1] <= version ? size
+                : count(version);
+        if(index < size) {
+            System.arraycopy(versions, index, versions, index + 1, size
+                    - index);
+            System.arraycopy(types, index, types, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        versions[index] = version;
+        types[index] = (byte) type.ordinal();
+        values[index] = value;
+        ++size;
+    }
+
+    /**
+     * Return the number of revisions that have a version that is less than or
+     * equal to {@code timestamp}. Those revisions occupy the indexes from
+     * {@code 0} up to (but not including) the returned count.
+     *
+     * @param timestamp
+     * @return the number of revisions at or before {@code timestamp}
+     */
+    public int count(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if(versions[mid] <= timestamp) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Return a {@link CompactRevision} that describes the revision at
+     * {@code index}.
+     *
+     * @param index
+     * @return the revision
+     */
+    public CompactRevision<V> get(int index) {
+        return new CompactRevision<V>(getValue(index), getVersion(index),
+                getType(index));
+    }
+
+    /**
+     * Return the action of the revision at {@code index}.
+     *
+     * @param index
+     * @return the action
+     */
+    public Action getType(int index) {
+        return ACTIONS[types[index]];
+    }
+
+    /**
+     * Return the value of the revision at {@code index}.
+     *
+     * @param index
+     * @return the value
+     */
+    public V getValue(int index) {
+        return (V) values[index];
+    }
+
+    /**
+     * Return the version of the revision at {@code index}.
+     *
+     * @param index
+     * @return the version
+     */
+    public long getVersion(int index) {
+        return versions[index];
+    }
+
+    /**
+     * Return the number of revisions in the history.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.google.common.base.Preconditions;
+
+/**
+ * An insertion ordered {@link java.util.Set} that stores its elements in a
+ * single array instead of allocating an entry object per element like a
+ * {@link java.util.LinkedHashSet}. This is used to hold the present values
+ * for each key in a {@link Record}.
+ * <p>
+ * Small sets are searched linearly. Once a set grows beyond a handful of
+ * elements, an open addressing table of array indexes is maintained so that
+ * lookups remain constant time. Removed elements leave a hole in the array
+ * that is reclaimed once enough holes accumulate.
+ * </p>
+ * <p>
+ * Iterators work over the state of the set when they were created and do not
+ * throw a {@link java.util.ConcurrentModificationException}, but they may or
+ * may not reflect elements that are removed during iteration.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@NotThreadSafe
+@PackagePrivate
+@SuppressWarnings("unchecked")
+final class CompactSet<E> extends AbstractSet<E> {
+
+    /**
+     * The initial capacity of the {@link #elements} array.
+     */
+    private static final int INITIAL_CAPACITY = 2;
+
+    /**
+     * The maximum number of array slots that are searched linearly before a
+     * hash {@link #table} is used.
+     */
+    private static final int LINEAR_SEARCH_THRESHOLD = 8;
+
+    /**
+     * The elements in insertion order. Removed elements are set to
+     * {@code null}.
+     */
+    private Object[] elements = new Object[INITIAL_CAPACITY];
+
+    /**
+     * The number of slots in {@link #elements} that have been used, including
+     * those that have been vacated by removals.
+     */
+    private int count = 0;
+
+    /**
+     * The number of elements in the set.
+     */
+    private int size = 0;
+
+    /**
+     * An open addressing table that maps the hash of each element to one more
+     * than its index in {@link #elements}, or {@code null} if the set is small
+     * enough to search linearly. A slot of {@code 0} is empty.
+     */
+    private int[] table = null;
+
+    @Override
+    public boolean add(E e) {
+        Preconditions.checkNotNull(e);
+        if(indexOf(e) >= 0) {
+            return false;
+        }
+        else {
+            if(count == elements.length) {
+                int holes = count - size;
+                rebuild(holes > (count >> 1) ? count : count + (count >> 1)
+                        + 1);
+            }
+            elements[count] = e;
+            ++count;
+            ++size;
+            if(table != null) {
+                insert(e, count);
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void clear() {
+        elements = new Object[INITIAL_CAPACITY];
+        count = 0;
+        size = 0;
+        table = null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o != null && indexOf(o) >= 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final Object[] snapshot = elements;
+        final int limit = count;
+        return new Iterator<E>() {
+
+            private int index = advance(0);
+
+            @Override
+            public boolean hasNext() {
+                return index < limit;
+            }
+
+            @Override
+            public E next() {
+                if(index >= limit) {
+                    throw new NoSuchElementException();
+                }
+                E next = (E) snapshot[index];
+                index = advance(index + 1);
+                return next;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            /**
+             * Return the first index at or after {@code from} that holds an
+             * element.
+             *
+             * @param from
+             * @return the index
+             */
+            private int advance(int from) {
+                while (from < limit && snapshot[from] == null) {
+                    ++from;
+                }
+                return from;
+            }
+
+        };
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = o != null ? indexOf(o) : -1;
+        if(index < 0) {
+            return false;
+        }
+        else {
+            elements[index] = null;
+            --size;
+            if(size == 0) {
+                clear();
+            }
+            else if(index == count - 1 && table == null) {
+                --count;
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the index of {@code o} in {@link #elements} or {@code -1} if it
+     * is not in the set.
+     *
+     * @param o
+     * @return the index
+     */
+    private int indexOf(Object o) {
+        if(table == null) {
+            for (int i = 0; i < count; ++i) {
+                if(o.equals(elements[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        else {
+            int mask = table.length - 1;
+            for (int i = spread(o.hashCode()) & mask;; i = (i + 1) & mask) {
+                int slot = table[i];
+                if(slot == 0) {
+                    return -1;
+                }
+                else if(o.equals(elements[slot - 1])) {
+                    return slot - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a mapping from the hash of {@code e} to {@code slot} in the
+     * {@link #table}.
+     *
+     * @param e
+     * @param slot
+     */
+    private void insert(Object e, int slot) {
+        int mask = table.length - 1;
+        int i = spread(e.hashCode()) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot;
+    }
+
+    /**
+     * Copy the elements, without any holes, into a new array with
+     * {@code capacity} slots and rebuild the {@link #table} if necessary.
+     *
+     * @param capacity
+     */
+    private void rebuild(int capacity) {
+        Object[] compacted = new Object[capacity];
+        int j = 0;
+        for (int i = 0; i < count; ++i) {
+            if(elements[i] != null) {
+                compacted[j++] = elements[i];
+            }
+        }
+        elements = compacted;
+        count = j;
+        if(capacity > LINEAR_SEARCH_THRESHOLD) {
+            // Keep the table at most half full so that probes are short
+            table = new int[Integer.highestOneBit(capacity) << 2];
+            for (int i = 0; i < count; ++i) {
+                insert(elements[i], i + 1);
+            }
+        }
+        else {
+            table = null;
+        }
+    }
+
+    /**
+     * Apply a supplemental hash to {@code hash} to defend against poor
+     * quality hash codes.
+     *
+     * @param hash
+     * @return the spread hash
+     */
+    private static int spread(int hash) {
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        return hash ^ (hash >>> 7) ^ (hash >>> 4);
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+
+/**
+ * A {@link CompactionPolicy} decides which adjacent {@link Block Blocks} the
+ * {@link Compactor} should merge into a single larger Block. Blocks are
+ * always considered in chronological order and a policy may only select a
+ * contiguous run so that the relative order of revisions across Blocks is
+ * preserved.
+ * 
+ * @author Jeff Nelson
+ */
+@PackagePrivate
+abstract class CompactionPolicy {
+
+    /**
+     * Return the {@link CompactionPolicy} that is identified by {@code name}
+     * or {@code null} if compaction should be disabled.
+     * <ul>
+     * <li><strong>SIZE_TIERED</strong>: merge runs of similarly sized Blocks
+     * </li>
+     * <li><strong>LEVELED</strong>: merge runs of Blocks that belong to the
+     * same size level into a Block for the next level</li>
+     * <li><strong>NONE</strong>: disable compaction</li>
+     * </ul>
+     * 
+     * @param name
+     * @param maxBlockSize
+     * @return the CompactionPolicy
+     */
+    public static CompactionPolicy forName(String name, long maxBlockSize) {
+        switch (name.toUpperCase()) {
+        case "SIZE_TIERED":
+            return new SizeTieredCompactionPolicy(maxBlockSize);
+        case "LEVELED":
+            return new LeveledCompactionPolicy(maxBlockSize);
+        case "NONE":
+            return null;
+        default:
+            throw new IllegalArgumentException("Unknown compaction policy: "
+                    + name);
+        }
+    }
+
+    /**
+     * The maximum size, in bytes, of a Block that is produced by merging.
+     */
+    protected final long maxBlockSize;
+
+    /**
+     * Construct a new instance.
+     * 
+     * @param maxBlockSize
+     */
+    protected CompactionPolicy(long maxBlockSize) {
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    /**
+     * Return the contiguous sub list of {@code blocks} that should be merged
+     * next or an empty list if there is nothing worth compacting. Every Block
+     * in {@code blocks} is immutable and the list is sorted in chronological
+     * order.
+     * 
+     * @param blocks
+     * @return the Blocks to merge
+     */
+    public abstract <T extends Block<?, ?, ?>> List<T> select(List<T> blocks);
+
+    /**
+     * Return an empty selection.
+     * 
+     * @return an empty list
+     */
+    protected static <T> List<T> none() {
+        return Collections.emptyList();
+    }
+
+}
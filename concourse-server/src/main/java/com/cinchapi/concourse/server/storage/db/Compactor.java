@@ -0,0 +1,1528 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.server.GlobalState;
+import com.cinchapi.concourse.server.io.Byteable;
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.server.model.Position;
+import com.cinchapi.concourse.server.model.PrimaryKey;
+import com.cinchapi.concourse.server.model.Text;
+import com.cinchapi.concourse.server.model.Value;
+import com.cinchapi.concourse.server.storage.Action;
+import com.cinchapi.concourse.time.Time;
+import com.cinchapi.concourse.util.ByteBuffers;
+import com.cinchapi.concourse.util.Logger;
+import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * <p>
+ * The {@link Compactor} merges runs of adjacent immutable {@link Block Blocks}
+ * into larger sorted Blocks in the background so that the number of Blocks
+ * that must be probed to serve a read does not grow linearly with the age of
+ * the {@link Database}. The Blocks to merge are chosen by a pluggable
+ * {@link CompactionPolicy}.
+ * </p>
+ * <p>
+ * A compaction runs in three phases:
+ * <ol>
+ * <li><strong>Merge</strong>: The revisions from each run of Blocks are
+ * merge-sorted into a new Block that is synced to a staging directory. This
+ * phase does not hold any Database locks, so reads continue to be served from
+ * the original Blocks. Disk I/O is throttled by a {@link RateLimiter} so that
+ * foreground reads keep priority.</li>
+ * <li><strong>Commit</strong>: A journal that describes how to install the
+ * merged Blocks is durably written to a temporary file in the staging
+ * directory and atomically renamed into place. The journal ends with a marker,
+ * so a journal that is incomplete is never replayed. If the server crashes
+ * before this point, the staged data is simply discarded on the next
+ * startup.</li>
+ * <li><strong>Install</strong>: While holding the Database's write lock, the
+ * merged Blocks are swapped into the in-memory block lists and the journal is
+ * replayed to move the merged {@code .blk}, {@code .fltr} and {@code .indx}
+ * files into place and then delete the old ones. Replaying the journal is
+ * idempotent, so {@link #recover(String)} finishes an interrupted install on
+ * the next startup.</li>
+ * </ol>
+ * </p>
+ * <p>
+ * A merged Block takes the id of the newest Block in the run, which keeps the
+ * block lists in chronological order.
+ * </p>
+ * <p>
+ * If the Database has a {@link RetentionPolicy}, each merge also drops the
+ * pairs of revisions that add and later remove the same value once the
+ * removal is outside of the retention limit for its key. Since merges only
+ * happen when the {@link CompactionPolicy} selects a run, the Compactor also
+ * periodically {@link #prune() rewrites} individual Blocks that contain such
+ * pairs.
+ * </p>
+ * <p>
+ * The Compactor also periodically writes a {@link #snapshot() snapshot} of the
+ * present state of every record, which is installed using the same journal.
+ * The snapshot is split into {@link #SNAPSHOT_PARTITIONS partitions} of
+ * records so that only the partitions with new revisions are rewritten.
+ * </p>
+ * <p>
+ * Merged Blocks are always installed in the Database's backing store. If the
+ * Database has {@link StorageTiers}, the Compactor also {@link #migrate()
+ * moves} Blocks whose newest revision has aged past the threshold of a slower
+ * tier to that tier. A migrated Block is copied to a staging directory in the
+ * tier, moved into place and then recorded in the {@link BlockManifest}, which
+ * is the commit point. If the server crashes before the manifest is synced,
+ * the copy is discarded on the next startup, otherwise the original is.
+ * </p>
+ * 
+ * @author Jeff Nelson
+ */
+@NotThreadSafe
+@PackagePrivate
+final class Compactor implements Runnable {
+
+    /**
+     * Finish or discard any compaction that was interrupted by a server crash
+     * in the Database that is stored in {@code backingStore}. This method must
+     * be called before any Blocks are loaded.
+     * 
+     * @param backingStore
+     */
+    public static void recover(String backingStore) {
+        String migration = FileSystem.makePath(backingStore,
+                MIGRATION_DIRECTORY);
+        if(FileSystem.hasDir(migration)) {
+            FileSystem.deleteDirectory(migration);
+        }
+        String staging = FileSystem.makePath(backingStore,
+                COMPACTION_DIRECTORY);
+        if(FileSystem.hasDir(staging)) {
+            String journal = FileSystem.makePath(staging, JOURNAL_NAME);
+            if(FileSystem.hasFile(journal)) {
+                if(replay(journal)) {
+                    Logger.warn("Finished a compaction in {} that was "
+                            + "interrupted by an unexpected shutdown",
+                            backingStore);
+                }
+                else {
+                    Logger.warn("Discarded a compaction in {} whose journal "
+                            + "was not completely written before an "
+                            + "unexpected shutdown", backingStore);
+                }
+            }
+            FileSystem.deleteDirectory(staging);
+        }
+    }
+
+    /**
+     * Perform the operations that are described in the {@code journal} and
+     * return {@code true}, or return {@code false} without doing anything if
+     * the journal is incomplete. Each line of the journal is either
+     * {@code MOVE <source> <destination>} or {@code DELETE <file>}, where each
+     * component is separated by a tab, and the last line is {@code COMMIT}. An
+     * operation whose input no longer exists is assumed to have already been
+     * performed.
+     * 
+     * @param journal
+     * @return {@code true} if the journal was replayed
+     */
+    private static boolean replay(String journal) {
+        String content = ByteBuffers.getString(FileSystem.readBytes(journal),
+                StandardCharsets.UTF_8);
+        List<String[]> ops = Lists.newArrayList();
+        boolean committed = false;
+        for (String line : content.split("\n")) {
+            String[] op = line.split("\t");
+            if(committed) {
+                return false;
+            }
+            else if(op.length == 1 && op[0].equals(COMMIT)) {
+                committed = true;
+            }
+            else if((op.length == 2 && op[0].equals(DELETE))
+                    || (op.length == 3 && op[0].equals(MOVE))) {
+                ops.add(op);
+            }
+            else {
+                return false;
+            }
+        }
+        if(!committed) {
+            return false;
+        }
+        for (String[] op : ops) {
+            if(op[0].equals(DELETE) && FileSystem.hasFile(op[1])) {
+                FileSystem.deleteFile(op[1]);
+            }
+            else if(op[0].equals(MOVE) && FileSystem.hasFile(op[1])) {
+                FileSystem.replaceFile(op[2], op[1]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The name of the directory, relative to the Database's backing store,
+     * where merged Blocks are staged.
+     */
+    @PackagePrivate
+    static final String COMPACTION_DIRECTORY = "compaction";
+
+    /**
+     * The name of the directory, relative to a storage tier, where Blocks that
+     * are being migrated to the tier are staged.
+     */
+    @PackagePrivate
+    static final String MIGRATION_DIRECTORY = "migration";
+
+    /**
+     * The name of the journal file in the {@link #COMPACTION_DIRECTORY}.
+     */
+    private static final String JOURNAL_NAME = "journal";
+
+    /**
+     * Journal operations.
+     */
+    private static final String DELETE = "DELETE";
+    private static final String MOVE = "MOVE";
+    private static final String COMMIT = "COMMIT";
+
+    /**
+     * The file extensions for all the components of a Block.
+     */
+    @PackagePrivate
+    static final String[] EXTENSIONS = {
+            Block.BLOCK_NAME_EXTENSION, Block.FILTER_NAME_EXTENSION,
+            Block.INDEX_NAME_EXTENSION, Block.METADATA_NAME_EXTENSION };
+
+    /**
+     * The number of bytes that are requested from the {@link #throttle} at a
+     * time while reading revisions.
+     */
+    private static final int THROTTLE_CHUNK_SIZE = 65536;
+
+    /**
+     * The number of bits of a record id's hash that select its
+     * {@link #getSnapshotPartition(PrimaryKey) snapshot partition}.
+     */
+    private static final int SNAPSHOT_PARTITION_BITS = 4;
+
+    /**
+     * The number of partitions that the records are split into for a
+     * snapshot. Each partition is stored as its own Block in a numbered
+     * subdirectory of the {@link Database#SNAPSHOT_DIRECTORY}.
+     */
+    @PackagePrivate
+    static final int SNAPSHOT_PARTITIONS = 1 << SNAPSHOT_PARTITION_BITS;
+
+    /**
+     * The number of microseconds between each pass that rewrites Blocks to
+     * drop the revisions that are outside of the {@link #retention} limits.
+     */
+    private static final long PRUNE_FREQUENCY_IN_MICROS = TimeUnit.HOURS
+            .toMicros(24);
+
+    /**
+     * The location where the {@link Database} stores data.
+     */
+    private final String backingStore;
+
+    /**
+     * The Database's block lists. These lists may only be modified while
+     * holding the write lock from {@link #lock}.
+     */
+    private final List<PrimaryBlock> cpb;
+    private final List<SecondaryBlock> csb;
+    private final List<SearchBlock> ctb;
+
+    /**
+     * The Database's snapshot partitions, where the Block at each index is
+     * the snapshot of the records in that partition or {@code null} if the
+     * partition has no snapshot. This array may only be modified while
+     * holding the write lock from {@link #lock}.
+     */
+    private final PrimaryBlock[] cps;
+
+    /**
+     * The Database's master lock.
+     */
+    private final ReentrantReadWriteLock lock;
+
+    /**
+     * The Database's {@link BlockManifest}, which is updated to describe the
+     * merged Blocks after they are installed.
+     */
+    private final BlockManifest manifest;
+
+    /**
+     * The policy that decides which Blocks to merge, or {@code null} if Blocks
+     * should only be rewritten to enforce the {@link #retention} policy.
+     */
+    @Nullable
+    private final CompactionPolicy policy;
+
+    /**
+     * The policy that decides which revisions may be dropped.
+     */
+    private final RetentionPolicy retention;
+
+    /**
+     * The horizons before which revisions have been dropped, which are
+     * advanced before any Block with dropped revisions is installed.
+     */
+    private final PrunedHistory history;
+
+    /**
+     * The slower directories where aged Blocks are moved.
+     */
+    private final StorageTiers tiers;
+
+    /**
+     * The time when the last {@link #prune()} pass started.
+     */
+    private long lastPruneTime = 0;
+
+    /**
+     * The number of bytes in the Blocks that were written after the latest
+     * snapshot that trigger a new one, or 0 if snapshots are disabled.
+     */
+    private final long snapshotThreshold;
+
+    /**
+     * Limits the rate, in bytes per second, at which revisions are read and
+     * written during a merge.
+     */
+    private final RateLimiter throttle;
+
+    /**
+     * A flag that indicates whether the Compactor should keep running.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Construct a new instance.
+     * 
+     * @param backingStore
+     * @param cpb
+     * @param csb
+     * @param ctb
+     * @param cps
+     * @param lock
+     * @param manifest
+     * @param policy the policy that selects runs of Blocks to merge or
+     *            {@code null} to only rewrite Blocks for the
+     *            {@code retention} policy
+     * @param retention
+     * @param history
+     * @param tiers
+     * @param snapshotThreshold the number of bytes of new Blocks that
+     *            trigger a new snapshot or 0 to disable snapshots
+     * @param throughput the maximum number of bytes per second to read or
+     *            write while merging
+     */
+    @PackagePrivate
+    Compactor(String backingStore, List<PrimaryBlock> cpb,
+            List<SecondaryBlock> csb, List<SearchBlock> ctb,
+            PrimaryBlock[] cps, ReentrantReadWriteLock lock,
+            BlockManifest manifest, @Nullable CompactionPolicy policy,
+            RetentionPolicy retention, PrunedHistory history,
+            StorageTiers tiers, long snapshotThreshold, long throughput) {
+        this.backingStore = backingStore;
+        this.cpb = cpb;
+        this.csb = csb;
+        this.ctb = ctb;
+        this.cps = cps;
+        this.lock = lock;
+        this.manifest = manifest;
+        this.policy = policy;
+        this.retention = retention;
+        this.history = history;
+        this.tiers = tiers;
+        this.snapshotThreshold = snapshotThreshold;
+        this.throttle = RateLimiter.create(throughput);
+    }
+
+    /**
+     * Select a run of Blocks using the {@link #policy} and merge them. Return
+     * {@code true} if a compaction was performed.
+     * 
+     * @return {@code true} if Blocks were compacted
+     */
+    public synchronized boolean compact() {
+        if(policy == null) {
+            return false;
+        }
+        List<PrimaryBlock> primaries;
+        lock.readLock().lock();
+        try {
+            primaries = Lists.newArrayList(policy.select(getImmutable()));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        if(primaries.size() < 2) {
+            return false;
+        }
+        Pruning pruning = retention.isEnabled() ? findPrunable(primaries,
+                Time.now()) : Pruning.NONE;
+        return pruning != null && rewrite(primaries, pruning);
+    }
+
+    /**
+     * Move each immutable Block whose newest revision has aged past the
+     * threshold of a slower storage tier than the one where it lives to that
+     * tier, along with the secondary and search Blocks that have the same id.
+     * Return the number of Blocks that were migrated.
+     * 
+     * @return the number of migrated Blocks
+     */
+    public synchronized int migrate() {
+        long now = Time.now();
+        List<PrimaryBlock> primaries;
+        lock.readLock().lock();
+        try {
+            primaries = getImmutable();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        int migrated = 0;
+        for (PrimaryBlock block : primaries) {
+            if(!running) {
+                break;
+            }
+            BlockManifest.Entry entry = manifest.get(
+                    Database.PRIMARY_BLOCK_DIRECTORY, block.getId());
+            if(entry == null) {
+                continue;
+            }
+            String target = tiers.locate(entry.getMaxVersion(), now);
+            target = target != null ? target : backingStore;
+            if(rank(getLocation(block)) < rank(target)
+                    && migrate(block, target)) {
+                ++migrated;
+            }
+        }
+        return migrated;
+    }
+
+    /**
+     * Rewrite each immutable Block that contains revisions that may be
+     * dropped according to the {@link #retention} policy. Return the number
+     * of Blocks that were rewritten.
+     * 
+     * @return the number of rewritten Blocks
+     */
+    public synchronized int prune() {
+        int rewritten = 0;
+        if(retention.isEnabled()) {
+            long now = Time.now();
+            lastPruneTime = now;
+            List<PrimaryBlock> primaries;
+            lock.readLock().lock();
+            try {
+                primaries = getImmutable();
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+            for (PrimaryBlock block : primaries) {
+                List<PrimaryBlock> run = Collections.singletonList(block);
+                Pruning pruning = findPrunable(run, now);
+                if(pruning == null) {
+                    break;
+                }
+                else if(!pruning.isEmpty() && rewrite(run, pruning)) {
+                    ++rewritten;
+                }
+            }
+            if(rewritten > 0) {
+                Logger.info("Rewrote {} blocks in {} to drop history that "
+                        + "is not retained", rewritten, backingStore);
+            }
+        }
+        return rewritten;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running && compact()) {
+                continue;
+            }
+            if(running) {
+                snapshot();
+            }
+            if(running && retention.isEnabled()
+                    && Time.now() - lastPruneTime >= PRUNE_FREQUENCY_IN_MICROS) {
+                prune();
+            }
+            if(running) {
+                migrate();
+            }
+        }
+        catch (Exception e) {
+            // Don't propagate the exception, otherwise the compactor will not
+            // be scheduled again.
+            Logger.error("An error occurred while compacting blocks in {}",
+                    backingStore, e);
+        }
+    }
+
+    /**
+     * Write a new snapshot of the present state of every record if the
+     * immutable Blocks that contain revisions newer than the current snapshot
+     * hold at least {@link #snapshotThreshold} bytes. Return {@code true} if a
+     * snapshot was installed.
+     * <p>
+     * A snapshot is split into {@link #SNAPSHOT_PARTITIONS} partitions of
+     * records. Each partition is a {@link PrimaryBlock} that only contains the
+     * {@link Action#ADD} revision for each value that is present in one of its
+     * records as of the largest version in the snapshotted Blocks, which is
+     * used as the id of every partition. The newer Blocks are scanned once to
+     * find the partitions that have new revisions and each of those is rebuilt
+     * by merging its current snapshot with the new revisions, so the full
+     * history is never replayed. The other partitions are only renamed to the
+     * new version.
+     * </p>
+     * 
+     * @return {@code true} if a snapshot was written
+     */
+    public synchronized boolean snapshot() {
+        if(snapshotThreshold <= 0) {
+            return false;
+        }
+        final PrimaryBlock[] previous;
+        List<PrimaryBlock> sources = Lists.newArrayList();
+        long bytes = 0;
+        lock.readLock().lock();
+        try {
+            previous = cps.clone();
+            long start = getSnapshotVersion(previous) + 1;
+            for (PrimaryBlock block : getImmutable()) {
+                if(block.covers(start, Long.MAX_VALUE)) {
+                    sources.add(block);
+                    bytes += block.getSize();
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        if(sources.isEmpty() || bytes < snapshotThreshold) {
+            return false;
+        }
+        final long since = getSnapshotVersion(previous);
+        final boolean[] changed = new boolean[SNAPSHOT_PARTITIONS];
+        long version = findChanges(sources, since, changed);
+        if(version <= since) {
+            return false;
+        }
+        List<Iterator<Revision<PrimaryKey, Text, Value>>> iterators = Lists
+                .newArrayListWithCapacity(SNAPSHOT_PARTITIONS + sources.size());
+        for (int i = 0; i < SNAPSHOT_PARTITIONS; ++i) {
+            if(changed[i] && previous[i] != null) {
+                iterators.add(previous[i].iterator());
+            }
+        }
+        for (PrimaryBlock block : sources) {
+            // Compaction may have merged Blocks that were already
+            // snapshotted with newer ones.
+            iterators.add(Iterators.filter(block.iterator(),
+                    new Predicate<Revision<PrimaryKey, Text, Value>>() {
+
+                        @Override
+                        public boolean apply(
+                                Revision<PrimaryKey, Text, Value> input) {
+                            return input.getVersion() > since
+                                    && changed[getSnapshotPartition(input
+                                            .getLocator())];
+                        }
+
+                    }));
+        }
+        String staging = FileSystem.makePath(backingStore,
+                COMPACTION_DIRECTORY);
+        if(FileSystem.hasDir(staging)) {
+            FileSystem.deleteDirectory(staging);
+        }
+        String staged = Long.toString(Time.now());
+        int expectedInsertions = GlobalState.BUFFER_PAGE_SIZE
+                * (sources.size() + 1) / SNAPSHOT_PARTITIONS + 1;
+        PrimaryBlock[] snapshot = new PrimaryBlock[SNAPSHOT_PARTITIONS];
+        int rewritten = 0;
+        for (int i = 0; i < SNAPSHOT_PARTITIONS; ++i) {
+            if(changed[i]) {
+                snapshot[i] = new PrimaryBlock(staged, FileSystem.makePath(
+                        staging, Database.SNAPSHOT_DIRECTORY,
+                        Integer.toString(i)), expectedInsertions);
+                ++rewritten;
+            }
+        }
+        if(!snapshot(iterators, snapshot)) {
+            FileSystem.deleteDirectory(staging);
+            return false;
+        }
+        for (PrimaryBlock partition : snapshot) {
+            if(partition != null) {
+                if(partition.size() > 0) {
+                    throttle.acquire(partition.size());
+                }
+                partition.sync();
+            }
+        }
+
+        // Commit
+        String id = Long.toString(version);
+        Journal journal = new Journal();
+        for (int i = 0; i < SNAPSHOT_PARTITIONS; ++i) {
+            String destination = FileSystem.makePath(backingStore,
+                    Database.SNAPSHOT_DIRECTORY, Integer.toString(i));
+            if(changed[i]) {
+                String source = FileSystem.makePath(staging,
+                        Database.SNAPSHOT_DIRECTORY, Integer.toString(i));
+                for (String extension : EXTENSIONS) {
+                    journal.move(FileSystem.makePath(source, staged
+                            + extension), FileSystem.makePath(destination, id
+                            + extension));
+                }
+                if(previous[i] != null) {
+                    for (String extension : EXTENSIONS) {
+                        journal.delete(FileSystem.makePath(destination,
+                                previous[i].getId() + extension));
+                    }
+                }
+            }
+            else if(previous[i] != null) {
+                // The partition didn't change, so it is also the snapshot as
+                // of the new version.
+                for (String extension : EXTENSIONS) {
+                    journal.move(FileSystem.makePath(destination,
+                            previous[i].getId() + extension), FileSystem
+                            .makePath(destination, id + extension));
+                }
+            }
+            FileSystem.mkdirs(destination);
+        }
+        String journalFile = journal.write(staging);
+
+        // Install
+        lock.writeLock().lock();
+        try {
+            install(journalFile);
+            for (int i = 0; i < SNAPSHOT_PARTITIONS; ++i) {
+                String destination = FileSystem.makePath(backingStore,
+                        Database.SNAPSHOT_DIRECTORY, Integer.toString(i));
+                cps[i] = FileSystem.hasFile(FileSystem.makePath(destination,
+                        id + Block.BLOCK_NAME_EXTENSION)) ? new PrimaryBlock(
+                        id, destination, true) : null;
+                if(previous[i] != null) {
+                    previous[i].retire();
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        FileSystem.deleteDirectory(staging);
+        Logger.info("Wrote a snapshot of the present state as of {} in {} "
+                + "and rewrote {} of {} partitions", version, backingStore,
+                rewritten, SNAPSHOT_PARTITIONS);
+        return true;
+    }
+
+    /**
+     * Stop the Compactor. Any merge that is in progress will be abandoned.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Find the revisions in {@code primaries} that may be dropped according
+     * to the {@link #retention} policy at {@code now}. Return {@code null} if
+     * the scan was abandoned because the Compactor was stopped.
+     * <p>
+     * The revisions for each field are contiguous and sorted by version
+     * within the merged run, so each field is examined in isolation. An add
+     * and the next removal of the same value may be dropped as a pair if the
+     * removal is older than the age limit for the key or is not among the
+     * most recent revisions of the field that must be kept. Since only the
+     * revisions in the run are counted, a version limit may keep more
+     * revisions than necessary, but never fewer.
+     * </p>
+     * 
+     * @param primaries
+     * @param now
+     * @return the Pruning
+     */
+    @Nullable
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Pruning findPrunable(List<PrimaryBlock> primaries, long now) {
+        List<Iterator<Revision<PrimaryKey, Text, Value>>> iterators = Lists
+                .newArrayListWithCapacity(primaries.size());
+        for (PrimaryBlock block : primaries) {
+            iterators.add(block.iterator());
+        }
+        Iterator<Revision<PrimaryKey, Text, Value>> it = Iterators
+                .mergeSorted(iterators, (Comparator) Block.Sorter.INSTANCE);
+        Pruning pruning = new Pruning();
+        List<Revision<PrimaryKey, Text, Value>> field = Lists.newArrayList();
+        int pending = 0;
+        while (it.hasNext()) {
+            if(!running) {
+                return null;
+            }
+            Revision<PrimaryKey, Text, Value> revision = it.next();
+            if(!field.isEmpty()
+                    && (!field.get(0).getLocator()
+                            .equals(revision.getLocator()) || !field.get(0)
+                            .getKey().equals(revision.getKey()))) {
+                findPrunable(field, now, pruning);
+                field.clear();
+            }
+            field.add(revision);
+            pending += revision.size() + 4;
+            if(pending >= THROTTLE_CHUNK_SIZE) {
+                throttle.acquire(pending);
+                pending = 0;
+            }
+        }
+        findPrunable(field, now, pruning);
+        return pruning;
+    }
+
+    /**
+     * Add the pairs of revisions in {@code field}, which are all the
+     * revisions for a single field in version order, that may be dropped at
+     * {@code now} to {@code pruning}.
+     * 
+     * @param field
+     * @param now
+     * @param pruning
+     */
+    private void findPrunable(List<Revision<PrimaryKey, Text, Value>> field,
+            long now, Pruning pruning) {
+        if(field.isEmpty()) {
+            return;
+        }
+        String key = field.get(0).getKey().toString();
+        long horizon = retention.getHorizon(key, now);
+        int limit = field.size()
+                - Math.min(field.size(), retention.getMaxVersions(key));
+        Map<Value, Integer> added = Maps.newHashMap();
+        for (int i = 0; i < field.size(); ++i) {
+            Revision<PrimaryKey, Text, Value> revision = field.get(i);
+            if(revision.getType() == Action.ADD) {
+                added.put(revision.getValue(), i);
+            }
+            else {
+                Integer index = added.remove(revision.getValue());
+                if(index != null
+                        && (revision.getVersion() < horizon || i < limit)) {
+                    pruning.drop(field.get(index));
+                    pruning.drop(revision);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the version that is covered by the {@code snapshot} or
+     * {@link Long#MIN_VALUE} if there is no snapshot.
+     * 
+     * @param snapshot
+     * @return the snapshot version
+     */
+    @PackagePrivate
+    static long getSnapshotVersion(@Nullable PrimaryBlock snapshot) {
+        return snapshot != null ? Long.parseLong(snapshot.getId())
+                : Long.MIN_VALUE;
+    }
+
+    /**
+     * Return the version that is covered by the snapshot {@code partitions}
+     * or {@link Long#MIN_VALUE} if none of the partitions has a snapshot.
+     * Every partition is installed with the same version, so a partition
+     * without a snapshot was empty as of that version.
+     * 
+     * @param partitions
+     * @return the snapshot version
+     */
+    private static long getSnapshotVersion(PrimaryBlock[] partitions) {
+        long version = Long.MIN_VALUE;
+        for (PrimaryBlock partition : partitions) {
+            version = Math.max(version, getSnapshotVersion(partition));
+        }
+        return version;
+    }
+
+    /**
+     * Return the snapshot partition that holds {@code record}. The record id
+     * is hashed so that sequential ids are spread across the partitions.
+     * 
+     * @param record
+     * @return the partition
+     */
+    @PackagePrivate
+    static int getSnapshotPartition(PrimaryKey record) {
+        long hash = record.longValue() * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> (64 - SNAPSHOT_PARTITION_BITS));
+    }
+
+    /**
+     * Scan the revisions in {@code sources} that are newer than {@code since}
+     * and flag the snapshot partition of each in {@code changed}. Return the
+     * largest version that was read, or {@code since} if there are no newer
+     * revisions or the scan was abandoned because the Compactor was stopped.
+     * 
+     * @param sources
+     * @param since
+     * @param changed
+     * @return the version of the next snapshot
+     */
+    private long findChanges(List<PrimaryBlock> sources, long since,
+            boolean[] changed) {
+        long version = since;
+        int pending = 0;
+        for (PrimaryBlock block : sources) {
+            for (Revision<PrimaryKey, Text, Value> revision : block) {
+                if(!running) {
+                    return since;
+                }
+                if(revision.getVersion() > since) {
+                    changed[getSnapshotPartition(revision.getLocator())] = true;
+                    version = Math.max(version, revision.getVersion());
+                }
+                pending += revision.size() + 4;
+                if(pending >= THROTTLE_CHUNK_SIZE) {
+                    throttle.acquire(pending);
+                    pending = 0;
+                }
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Merge-sort the revisions from the {@code iterators} and append the
+     * revision that added each value that is present at the end to the Block
+     * for its snapshot partition in {@code destinations}. Return {@code false}
+     * if the snapshot was abandoned because the Compactor was stopped.
+     * 
+     * @param iterators
+     * @param destinations
+     * @return {@code true} if the snapshot was completed
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private boolean snapshot(
+            List<Iterator<Revision<PrimaryKey, Text, Value>>> iterators,
+            PrimaryBlock[] destinations) {
+        Iterator<Revision<PrimaryKey, Text, Value>> it = Iterators
+                .mergeSorted(iterators, (Comparator) Block.Sorter.INSTANCE);
+        Map<Value, Revision<PrimaryKey, Text, Value>> present = Maps
+                .newLinkedHashMap();
+        Revision<PrimaryKey, Text, Value> field = null;
+        int pending = 0;
+        while (it.hasNext()) {
+            if(!running) {
+                return false;
+            }
+            Revision<PrimaryKey, Text, Value> revision = it.next();
+            if(field != null
+                    && (!field.getLocator().equals(revision.getLocator()) || !field
+                            .getKey().equals(revision.getKey()))) {
+                append(present, destinations);
+                present.clear();
+            }
+            field = revision;
+            if(revision.getType() == Action.ADD) {
+                present.put(revision.getValue(), revision);
+            }
+            else {
+                present.remove(revision.getValue());
+            }
+            pending += revision.size() + 4;
+            if(pending >= THROTTLE_CHUNK_SIZE) {
+                throttle.acquire(pending);
+                pending = 0;
+            }
+        }
+        append(present, destinations);
+        return true;
+    }
+
+    /**
+     * Append the revisions that added the {@code present} values of a field to
+     * the Block for their snapshot partition in {@code destinations}.
+     * 
+     * @param present
+     * @param destinations
+     */
+    private static void append(
+            Map<Value, Revision<PrimaryKey, Text, Value>> present,
+            PrimaryBlock[] destinations) {
+        for (Revision<PrimaryKey, Text, Value> added : present.values()) {
+            destinations[getSnapshotPartition(added.getLocator())]
+                    .append(added);
+        }
+    }
+
+    /**
+     * Return the immutable Blocks in {@link #cpb}, in chronological order.
+     * 
+     * @return the immutable Blocks
+     */
+    @GuardedBy("lock.readLock()")
+    private List<PrimaryBlock> getImmutable() {
+        List<PrimaryBlock> immutable = Lists.newArrayListWithCapacity(cpb
+                .size());
+        for (PrimaryBlock block : cpb) {
+            if(block.isMutable()) {
+                break;
+            }
+            immutable.add(block);
+        }
+        return immutable;
+    }
+
+    /**
+     * Return the location of the storage tier where {@code block} lives,
+     * which contains the block type directories.
+     * 
+     * @param block
+     * @return the location
+     */
+    private static String getLocation(Block<?, ?, ?> block) {
+        return new File(block.getDirectory()).getParent();
+    }
+
+    /**
+     * Copy the {@code source} file to {@code destination} and force it to
+     * disk. Return {@code false} if the copy was abandoned because the
+     * Compactor was stopped.
+     * 
+     * @param source
+     * @param destination
+     * @return {@code true} if the copy completed
+     */
+    private boolean copy(String source, String destination) {
+        FileSystem.mkdirs(new File(destination).getParent());
+        try (FileChannel in = FileChannel.open(Paths.get(source),
+                StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(Paths.get(destination),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                if(!running) {
+                    return false;
+                }
+                int count = (int) Math.min(size - position,
+                        THROTTLE_CHUNK_SIZE);
+                throttle.acquire(count);
+                position += in.transferTo(position, count, out);
+            }
+            out.force(true);
+            return true;
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Copy {@code primary} and the secondary and search Blocks with the same
+     * id to the storage tier at {@code target} and install the copies in
+     * place of the originals. Return {@code true} if the Blocks were
+     * migrated.
+     * 
+     * @param primary
+     * @param target
+     * @return {@code true} if the Blocks were migrated
+     */
+    private boolean migrate(PrimaryBlock primary, String target) {
+        String id = primary.getId();
+        String source = getLocation(primary);
+        List<PrimaryBlock> primaries = Collections.singletonList(primary);
+        List<SecondaryBlock> secondaries;
+        List<SearchBlock> searches;
+        lock.readLock().lock();
+        try {
+            Set<String> ids = Collections.singleton(id);
+            secondaries = filter(csb, ids);
+            searches = filter(ctb, ids);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        List<Block<?, ?, ?>> group = Lists.newArrayList(Iterables
+                .<Block<?, ?, ?>> concat(primaries, secondaries, searches));
+        String staging = FileSystem.makePath(target, MIGRATION_DIRECTORY);
+        if(FileSystem.hasDir(staging)) {
+            FileSystem.deleteDirectory(staging);
+        }
+
+        // Copy
+        for (Block<?, ?, ?> block : group) {
+            String directory = new File(block.getDirectory()).getName();
+            for (String extension : EXTENSIONS) {
+                String file = FileSystem.makePath(block.getDirectory(), id
+                        + extension);
+                if(FileSystem.hasFile(file)
+                        && !copy(file, FileSystem.makePath(staging,
+                                directory, id + extension))) {
+                    FileSystem.deleteDirectory(staging);
+                    return false;
+                }
+            }
+        }
+        for (Block<?, ?, ?> block : group) {
+            String directory = new File(block.getDirectory()).getName();
+            FileSystem.mkdirs(FileSystem.makePath(target, directory));
+            for (String extension : EXTENSIONS) {
+                String staged = FileSystem.makePath(staging, directory, id
+                        + extension);
+                if(FileSystem.hasFile(staged)) {
+                    FileSystem.replaceFile(FileSystem.makePath(target,
+                            directory, id + extension), staged);
+                }
+            }
+        }
+
+        // Commit
+        for (Block<?, ?, ?> block : group) {
+            manifest.relocate(new File(block.getDirectory()).getName(), id,
+                    target);
+        }
+        manifest.sync();
+
+        // Install
+        lock.writeLock().lock();
+        try {
+            swap(cpb, primaries, new PrimaryBlock(id, FileSystem.makePath(
+                    target, Database.PRIMARY_BLOCK_DIRECTORY), true));
+            if(!secondaries.isEmpty()) {
+                swap(csb, secondaries, new SecondaryBlock(id,
+                        FileSystem.makePath(target,
+                                Database.SECONDARY_BLOCK_DIRECTORY), true));
+            }
+            if(!searches.isEmpty()) {
+                swap(ctb, searches, new SearchBlock(id, FileSystem.makePath(
+                        target, Database.SEARCH_BLOCK_DIRECTORY), true));
+            }
+            for (Block<?, ?, ?> block : group) {
+                block.retire();
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        for (Block<?, ?, ?> block : group) {
+            for (String extension : EXTENSIONS) {
+                String file = FileSystem.makePath(block.getDirectory(), id
+                        + extension);
+                if(FileSystem.hasFile(file)) {
+                    FileSystem.deleteFile(file);
+                }
+            }
+        }
+        FileSystem.deleteDirectory(staging);
+        Logger.info("Moved block {} from {} to {}", id, source, target);
+        return true;
+    }
+
+    /**
+     * Return the rank of the storage tier at {@code location}, where the
+     * backing store is 0 and each slower tier is one more than the previous,
+     * or -1 if {@code location} is not a configured tier.
+     * 
+     * @param location
+     * @return the rank
+     */
+    private int rank(String location) {
+        if(StorageTiers.isSameDirectory(location, backingStore)) {
+            return 0;
+        }
+        else {
+            int index = tiers.indexOf(location);
+            return index >= 0 ? index + 1 : -1;
+        }
+    }
+
+    /**
+     * Merge the run of {@code primaries} and the secondary and search Blocks
+     * with the same ids into new Blocks that don't contain the revisions in
+     * {@code pruning} and install them in place of the originals. Return
+     * {@code true} if the Blocks were rewritten.
+     * 
+     * @param primaries
+     * @param pruning
+     * @return {@code true} if Blocks were rewritten
+     */
+    private boolean rewrite(List<PrimaryBlock> primaries, Pruning pruning) {
+        List<SecondaryBlock> secondaries;
+        List<SearchBlock> searches;
+        lock.readLock().lock();
+        try {
+            Set<String> ids = Sets.newHashSet();
+            for (PrimaryBlock block : primaries) {
+                ids.add(block.getId());
+            }
+            secondaries = filter(csb, ids);
+            searches = filter(ctb, ids);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        String id = primaries.get(primaries.size() - 1).getId();
+        String staging = FileSystem.makePath(backingStore,
+                COMPACTION_DIRECTORY);
+        if(FileSystem.hasDir(staging)) {
+            FileSystem.deleteDirectory(staging);
+        }
+        int expectedInsertions = GlobalState.BUFFER_PAGE_SIZE
+                * primaries.size();
+        PrimaryBlock primary = new PrimaryBlock(id, FileSystem.makePath(
+                staging, Database.PRIMARY_BLOCK_DIRECTORY), expectedInsertions);
+        SecondaryBlock secondary = new SecondaryBlock(id,
+                FileSystem.makePath(staging,
+                        Database.SECONDARY_BLOCK_DIRECTORY),
+                expectedInsertions);
+        SearchBlock search = new SearchBlock(id, FileSystem.makePath(staging,
+                Database.SEARCH_BLOCK_DIRECTORY), expectedInsertions);
+        if(!merge(primaries, primary, pruning)
+                || !merge(secondaries, secondary, pruning)
+                || !merge(searches, search, pruning)) {
+            FileSystem.deleteDirectory(staging);
+            return false;
+        }
+
+        // Commit
+        List<String> members = Lists.newArrayList();
+        for (PrimaryBlock block : primaries) {
+            members.add(block.getId());
+        }
+        Journal journal = new Journal();
+        journal(journal, staging, Database.PRIMARY_BLOCK_DIRECTORY,
+                primaries, id);
+        journal(journal, staging, Database.SECONDARY_BLOCK_DIRECTORY,
+                secondaries, id);
+        journal(journal, staging, Database.SEARCH_BLOCK_DIRECTORY, searches,
+                id);
+        String journalFile = journal.write(staging);
+        history.advance(pruning.horizons);
+
+        // Install
+        PrimaryBlock installedPrimary;
+        SecondaryBlock installedSecondary;
+        SearchBlock installedSearch;
+        lock.writeLock().lock();
+        try {
+            install(journalFile);
+            installedPrimary = primary.size() > 0 ? new PrimaryBlock(id,
+                    FileSystem.makePath(backingStore,
+                            Database.PRIMARY_BLOCK_DIRECTORY), true) : null;
+            installedSecondary = secondary.size() > 0 ? new SecondaryBlock(
+                    id, FileSystem.makePath(backingStore,
+                            Database.SECONDARY_BLOCK_DIRECTORY), true) : null;
+            installedSearch = search.size() > 0 ? new SearchBlock(id,
+                    FileSystem.makePath(backingStore,
+                            Database.SEARCH_BLOCK_DIRECTORY), true) : null;
+            swap(cpb, primaries, installedPrimary);
+            swap(csb, secondaries, installedSecondary);
+            swap(ctb, searches, installedSearch);
+            for (Block<?, ?, ?> block : Iterables.concat(primaries,
+                    secondaries, searches)) {
+                block.retire();
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        for (String member : members) {
+            if(!member.equals(id)) {
+                manifest.remove(Database.PRIMARY_BLOCK_DIRECTORY, member);
+                manifest.remove(Database.SECONDARY_BLOCK_DIRECTORY, member);
+                manifest.remove(Database.SEARCH_BLOCK_DIRECTORY, member);
+            }
+        }
+        updateManifest(Database.PRIMARY_BLOCK_DIRECTORY, primary,
+                installedPrimary);
+        updateManifest(Database.SECONDARY_BLOCK_DIRECTORY, secondary,
+                installedSecondary);
+        updateManifest(Database.SEARCH_BLOCK_DIRECTORY, search,
+                installedSearch);
+        manifest.sync();
+        FileSystem.deleteDirectory(staging);
+        Logger.info("Compacted {} blocks into block {} in {}",
+                primaries.size(), id, backingStore);
+        return true;
+    }
+
+    /**
+     * Append the operations that install the merged Block with {@code id}
+     * from the {@code staging} directory in place of the {@code members} of
+     * the run of Blocks in {@code directory} to the {@code journal}.
+     * <p>
+     * A member that lives in the same place as the merged Block is replaced by
+     * the move, so it is only explicitly deleted if the merged Block is empty.
+     * Members in other storage tiers are always deleted.
+     * </p>
+     * 
+     * @param journal
+     * @param staging
+     * @param directory
+     * @param members
+     * @param id
+     */
+    private void journal(Journal journal, String staging, String directory,
+            List<? extends Block<?, ?, ?>> members, String id) {
+        String source = FileSystem.makePath(staging, directory);
+        String destination = FileSystem.makePath(backingStore, directory);
+        boolean merged = FileSystem.hasFile(FileSystem.makePath(source, id
+                + Block.BLOCK_NAME_EXTENSION));
+        if(merged) {
+            for (String extension : EXTENSIONS) {
+                journal.move(FileSystem.makePath(source, id + extension),
+                        FileSystem.makePath(destination, id + extension));
+            }
+        }
+        for (Block<?, ?, ?> member : members) {
+            if(!merged
+                    || !member.getId().equals(id)
+                    || !StorageTiers.isSameDirectory(member.getDirectory(),
+                            destination)) {
+                for (String extension : EXTENSIONS) {
+                    journal.delete(FileSystem.makePath(member.getDirectory(),
+                            member.getId() + extension));
+                }
+            }
+        }
+    }
+
+    /**
+     * Record the merged {@code block}, which has been installed in
+     * {@code directory} as the {@code installed} Block, in the
+     * {@link #manifest} or remove the manifest entry for its id if the merged
+     * Block was empty and not installed.
+     * 
+     * @param directory
+     * @param block
+     * @param installed
+     */
+    private void updateManifest(String directory, Block<?, ?, ?> block,
+            @Nullable Block<?, ?, ?> installed) {
+        if(installed != null && block.getChecksum() != null) {
+            manifest.put(directory, installed, block.getChecksum());
+        }
+        else {
+            manifest.remove(directory, block.getId());
+        }
+    }
+
+    /**
+     * Return the Blocks from {@code blocks} whose ids are in {@code ids}.
+     * 
+     * @param blocks
+     * @param ids
+     * @return the matching Blocks
+     */
+    private static <T extends Block<?, ?, ?>> List<T> filter(List<T> blocks,
+            Set<String> ids) {
+        List<T> matches = Lists.newArrayListWithCapacity(ids.size());
+        for (T block : blocks) {
+            if(ids.contains(block.getId())) {
+                matches.add(block);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Merge-sort the revisions in {@code sources}, except for those that are
+     * dropped by the {@code pruning}, into {@code destination} and sync it.
+     * Return {@code false} if the merge was abandoned because the Compactor
+     * was stopped.
+     * 
+     * @param sources
+     * @param destination
+     * @param pruning
+     * @return {@code true} if the merge completed
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>, V extends Byteable & Comparable<V>> boolean merge(
+            List<? extends Block<L, K, V>> sources, Block<L, K, V> destination,
+            Pruning pruning) {
+        List<Iterator<Revision<L, K, V>>> iterators = Lists
+                .newArrayListWithCapacity(sources.size());
+        for (Block<L, K, V> source : sources) {
+            iterators.add(source.iterator());
+        }
+        Iterator<Revision<L, K, V>> it = Iterators.mergeSorted(iterators,
+                (Comparator) Block.Sorter.INSTANCE);
+        int pending = 0;
+        while (it.hasNext()) {
+            if(!running) {
+                return false;
+            }
+            Revision<L, K, V> revision = it.next();
+            if(!pruning.isDropped(revision)) {
+                destination.append(revision);
+            }
+            pending += revision.size() + 4;
+            if(pending >= THROTTLE_CHUNK_SIZE) {
+                throttle.acquire(pending);
+                pending = 0;
+            }
+        }
+        if(destination.size() > 0) {
+            throttle.acquire(Math.max(1, destination.size()));
+        }
+        destination.sync();
+        return true;
+    }
+
+    /**
+     * Replace the {@code members} of {@code blocks} with the
+     * {@code replacement}, which is placed where the first member used to be.
+     * 
+     * @param blocks
+     * @param members
+     * @param replacement
+     */
+    private static <T extends Block<?, ?, ?>> void swap(List<T> blocks,
+            List<T> members, @Nullable T replacement) {
+        if(members.isEmpty()) {
+            return;
+        }
+        int index = blocks.indexOf(members.get(0));
+        blocks.removeAll(members);
+        if(replacement != null) {
+            blocks.add(index, replacement);
+        }
+    }
+
+    /**
+     * Replay the {@code journal}, which must be complete because it was just
+     * {@link Journal#write(String) written}.
+     * 
+     * @param journal
+     */
+    private static void install(String journal) {
+        if(!replay(journal)) {
+            throw new IllegalStateException("The compaction journal at "
+                    + journal + " is incomplete");
+        }
+    }
+
+    /**
+     * A builder for the journal that describes how to install the output of a
+     * compaction. The moves always come before the deletes, so a crash in the
+     * middle of a replay never leaves the old files deleted while the new ones
+     * are still in the staging directory.
+     * 
+     * @author Jeff Nelson
+     */
+    private static final class Journal {
+
+        /**
+         * The name of the temporary file where the journal is written before
+         * it is renamed into place.
+         */
+        private static final String TEMP_NAME = JOURNAL_NAME + ".tmp";
+
+        /**
+         * The move operations.
+         */
+        private final StringBuilder moves = new StringBuilder();
+
+        /**
+         * The delete operations.
+         */
+        private final StringBuilder deletes = new StringBuilder();
+
+        /**
+         * Record that {@code file} must be deleted.
+         * 
+         * @param file
+         */
+        void delete(String file) {
+            deletes.append(DELETE).append('\t').append(file).append('\n');
+        }
+
+        /**
+         * Record that {@code source} must be moved to {@code destination}.
+         * 
+         * @param source
+         * @param destination
+         */
+        void move(String source, String destination) {
+            moves.append(MOVE).append('\t').append(source).append('\t')
+                    .append(destination).append('\n');
+        }
+
+        /**
+         * Durably write the journal, followed by the commit marker, to a
+         * temporary file in the {@code staging} directory and atomically
+         * rename it to the journal file, whose path is returned.
+         * 
+         * @param staging
+         * @return the path of the journal file
+         */
+        String write(String staging) {
+            String tmp = FileSystem.makePath(staging, TEMP_NAME);
+            if(FileSystem.hasFile(tmp)) {
+                FileSystem.deleteFile(tmp);
+            }
+            String content = new StringBuilder().append(moves)
+                    .append(deletes).append(COMMIT).append('\n').toString();
+            FileSystem.writeBytes(
+                    ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)),
+                    tmp);
+            String journal = FileSystem.makePath(staging, JOURNAL_NAME);
+            FileSystem.replaceFile(journal, tmp);
+            return journal;
+        }
+
+    }
+
+    /**
+     * The revisions that are dropped when a run of Blocks is rewritten and
+     * the resulting horizon for each key.
+     * <p>
+     * A revision is identified by its key, record and version, which are
+     * shared by the primary, secondary and search revisions that are
+     * produced for the same write, so the decisions that are made from the
+     * primary Blocks are applied consistently to the other Blocks.
+     * </p>
+     * 
+     * @author Jeff Nelson
+     */
+    private static final class Pruning {
+
+        /**
+         * A Pruning that doesn't drop any revisions.
+         */
+        static final Pruning NONE = new Pruning();
+
+        /**
+         * The identities of the dropped revisions.
+         */
+        private final Set<List<Object>> dropped = Sets.newHashSet();
+
+        /**
+         * The latest version of a dropped revision for each key.
+         */
+        final Map<String, Long> horizons = Maps.newHashMap();
+
+        /**
+         * Drop {@code revision}.
+         * 
+         * @param revision
+         */
+        void drop(Revision<PrimaryKey, Text, Value> revision) {
+            String key = revision.getKey().toString();
+            dropped.add(identify(key, revision.getLocator(),
+                    revision.getVersion()));
+            Long horizon = horizons.get(key);
+            if(horizon == null || horizon < revision.getVersion()) {
+                horizons.put(key, revision.getVersion());
+            }
+        }
+
+        /**
+         * Return {@code true} if there are no revisions to drop.
+         * 
+         * @return {@code true} if the Pruning is empty
+         */
+        boolean isEmpty() {
+            return dropped.isEmpty();
+        }
+
+        /**
+         * Return {@code true} if {@code revision}, from any type of Block,
+         * should be dropped.
+         * 
+         * @param revision
+         * @return {@code true} if the revision is dropped
+         */
+        boolean isDropped(Revision<?, ?, ?> revision) {
+            if(dropped.isEmpty()) {
+                return false;
+            }
+            else if(revision instanceof PrimaryRevision) {
+                return dropped.contains(identify(revision.getKey()
+                        .toString(), (PrimaryKey) revision.getLocator(),
+                        revision.getVersion()));
+            }
+            else if(revision instanceof SecondaryRevision) {
+                return dropped.contains(identify(revision.getLocator()
+                        .toString(), (PrimaryKey) revision.getValue(),
+                        revision.getVersion()));
+            }
+            else {
+                return dropped.contains(identify(revision.getLocator()
+                        .toString(), ((Position) revision.getValue())
+                        .getPrimaryKey(), revision.getVersion()));
+            }
+        }
+
+        /**
+         * Return the identity of a revision for {@code key} in
+         * {@code record} at {@code version}.
+         * 
+         * @param key
+         * @param record
+         * @param version
+         * @return the identity
+         */
+        private static List<Object> identify(String key, PrimaryKey record,
+                long version) {
+            return Arrays.<Object> asList(key, record.longValue(), version);
+        }
+
+    }
+
+}
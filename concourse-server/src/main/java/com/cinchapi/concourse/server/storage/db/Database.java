@@ -19,21 +19,29 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import com.cinchapi.concourse.annotate.PackagePrivate;
 import com.cinchapi.concourse.annotate.Restricted;
 import com.cinchapi.concourse.server.GlobalState;
 import com.cinchapi.concourse.server.concurrent.ConcourseExecutors;
+import com.cinchapi.concourse.server.io.Byteable;
 import com.cinchapi.concourse.server.io.Composite;
 import com.cinchapi.concourse.server.io.FileSystem;
 import com.cinchapi.concourse.server.jmx.ManagedOperation;
@@ -41,10 +49,11 @@ import com.cinchapi.concourse.server.model.PrimaryKey;
 import com.cinchapi.concourse.server.model.TObjectSorter;
 import com.cinchapi.concourse.server.model.Text;
 import com.cinchapi.concourse.server.model.Value;
-import com.cinchapi.concourse.server.storage.Action;
 import com.cinchapi.concourse.server.storage.BaseStore;
 import com.cinchapi.concourse.server.storage.Functions;
 import com.cinchapi.concourse.server.storage.PermanentStore;
+import com.cinchapi.concourse.server.storage.Stores;
+import com.cinchapi.concourse.server.storage.cache.TinyLfuCache;
 import com.cinchapi.concourse.server.storage.temp.Buffer;
 import com.cinchapi.concourse.server.storage.temp.Write;
 import com.cinchapi.concourse.thrift.Operator;
@@ -58,11 +67,15 @@ import com.cinchapi.concourse.util.TLists;
 import com.cinchapi.concourse.util.TStrings;
 import com.cinchapi.concourse.util.Transformers;
 import com.google.common.base.Preconditions;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 
@@ -148,13 +161,177 @@ public final class Database extends BaseStore implements PermanentStore {
     }
 
     /**
-     * Return a cache for records of type {@code T}.
+     * Return a cache for records of type {@code T} that holds records whose
+     * estimated heap size is no more than {@code share} of the
+     * {@link GlobalState#RECORD_CACHE_HEAP_PERCENT record cache budget}.
      * 
+     * @param share the fraction of the budget given to the cache
      * @return the cache
      */
-    private static <T> Cache<Composite, T> buildCache() {
-        return CacheBuilder.newBuilder().maximumSize(100000).softValues()
-                .build();
+    private static <T extends Record<?, ?, ?>> TinyLfuCache<Composite, T> buildCache(
+            double share) {
+        long budget = Runtime.getRuntime().maxMemory()
+                * GlobalState.RECORD_CACHE_HEAP_PERCENT / 100;
+        return TinyLfuCache.withMaximumWeight((long) (budget * share),
+                new Weigher<Composite, T>() {
+
+                    @Override
+                    public int weigh(Composite key, T record) {
+                        return (int) Math.min(Integer.MAX_VALUE,
+                                record.getHeapSizeEstimate() + key.size());
+                    }
+
+                });
+    }
+
+    /**
+     * Return a description of the stats for {@code cache}.
+     * 
+     * @param cache
+     * @return the description
+     */
+    private static String describeCache(TinyLfuCache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return String.format("hits=%d, misses=%d, hitRate=%.3f, "
+                + "evictions=%d, size=%d, weight=%d", stats.hitCount(),
+                stats.missCount(), stats.hitRate(), stats.evictionCount(),
+                cache.size(), cache.weight());
+    }
+
+    /**
+     * Return the entries of the {@code audit} that are not older than the
+     * {@code horizon} before which history has been pruned, so that a caller
+     * never sees a revision that it could not read at.
+     * 
+     * @param audit
+     * @param horizon
+     * @return the clamped audit
+     */
+    private static Map<Long, String> clampAudit(Map<Long, String> audit,
+            long horizon) {
+        return horizon == Long.MIN_VALUE ? audit : Stores.sliceAudit(audit,
+                horizon, Long.MAX_VALUE);
+    }
+
+    /**
+     * Return a revision log, in the same form as {@link Record#audit}, for
+     * {@code revisions}.
+     * 
+     * @param revisions
+     * @return the revision log
+     */
+    private static Map<Long, String> toAudit(
+            List<? extends Revision<?, ?, ?>> revisions) {
+        Map<Long, String> audit = Maps.newTreeMap();
+        for (Revision<?, ?, ?> revision : revisions) {
+            audit.put(revision.getVersion(), revision.toString());
+        }
+        return audit;
+    }
+
+    /**
+     * Return the exclusive upper bound on the versions of the revisions that
+     * are needed to read the state of a record at {@code timestamp}.
+     * 
+     * @param timestamp
+     * @return the exclusive upper bound
+     */
+    private static long toUpperBound(long timestamp) {
+        return timestamp == Long.MAX_VALUE ? timestamp : timestamp + 1;
+    }
+
+    /**
+     * Return {@code true} if a read that only needs the revisions with a
+     * version less than {@code end} can skip any of the {@code blocks}.
+     * 
+     * @param blocks
+     * @param end
+     * @return {@code true} if a block can be skipped
+     */
+    private static boolean isSkippable(List<? extends Block<?, ?, ?>> blocks,
+            long end) {
+        // Blocks are ordered from oldest to newest, so once a block is
+        // covered, so are all the blocks before it.
+        for (int i = blocks.size() - 1; i >= 0; --i) {
+            Block<?, ?, ?> block = blocks.get(i);
+            if(!block.covers(Long.MIN_VALUE, end)) {
+                return true;
+            }
+            else if(!block.isMutable()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the revisions in {@code block} for each of the {@code keys} in
+     * {@code locator}, the keys within {@code range} if it is not
+     * {@code null}, or every key in {@code locator} if there are no
+     * {@code keys} and no {@code range}, that have a version that is greater
+     * than or equal to {@code start} and less than {@code end}.
+     * 
+     * @param block
+     * @param locator
+     * @param keys
+     * @param range
+     * @param start
+     * @param end
+     * @return the revisions
+     */
+    private static <L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>, V extends Byteable & Comparable<V>> List<Revision<L, K, V>> collect(
+            Block<L, K, V> block, L locator, List<K> keys,
+            @Nullable Range<K> range, long start, long end) {
+        if(!block.covers(start, end)) {
+            return Collections.emptyList();
+        }
+        else if(range != null) {
+            return block.covers(locator, range) ? block.collect(locator,
+                    range, start, end) : Collections
+                    .<Revision<L, K, V>> emptyList();
+        }
+        else if(keys.isEmpty()) {
+            return block.covers(locator) ? block.collect(locator, start, end)
+                    : Collections.<Revision<L, K, V>> emptyList();
+        }
+        else {
+            List<Revision<L, K, V>> revisions = Lists.newArrayList();
+            for (K key : keys) {
+                if(block.covers(locator, key)) {
+                    revisions.addAll(block.collect(locator, key, start, end));
+                }
+            }
+            return revisions;
+        }
+    }
+
+    /**
+     * Return the contiguous {@link Range} of values that can satisfy
+     * {@code operator} in relation to {@code values}, or {@code null} if the
+     * operator does not describe such a range.
+     * 
+     * @param operator
+     * @param values
+     * @return the range or {@code null}
+     */
+    @Nullable
+    private static Range<Value> toRange(Operator operator, Value... values) {
+        Value value = values[0];
+        switch (operator) {
+        case GREATER_THAN:
+            return Range.greaterThan(value);
+        case GREATER_THAN_OR_EQUALS:
+            return Range.atLeast(value);
+        case LESS_THAN:
+            return Range.lessThan(value);
+        case LESS_THAN_OR_EQUALS:
+            return Range.atMost(value);
+        case BETWEEN:
+            return values.length > 1 && value.compareTo(values[1]) <= 0 ? Range
+                    .closedOpen(value, values[1]) : null;
+        default:
+            return null;
+        }
     }
 
     /**
@@ -191,20 +368,48 @@ public final class Database extends BaseStore implements PermanentStore {
      * Therefore, the only way to distinguish blocks of different types from one
      * another is by the directory in which they are stored.
      */
-    private static final String PRIMARY_BLOCK_DIRECTORY = "cpb";
-    private static final String SEARCH_BLOCK_DIRECTORY = "ctb";
-    private static final String SECONDARY_BLOCK_DIRECTORY = "csb";
+    @PackagePrivate
+    static final String PRIMARY_BLOCK_DIRECTORY = "cpb";
+    @PackagePrivate
+    static final String SEARCH_BLOCK_DIRECTORY = "ctb";
+    @PackagePrivate
+    static final String SECONDARY_BLOCK_DIRECTORY = "csb";
+
+    /**
+     * The directory where the snapshot of the present state of every record
+     * is stored. Each snapshot partition is stored in a subdirectory that is
+     * named after its number.
+     */
+    @PackagePrivate
+    static final String SNAPSHOT_DIRECTORY = "cps";
+
+    /**
+     * The number of seconds to wait between attempts to compact blocks in the
+     * background.
+     */
+    private static final int COMPACTION_FREQUENCY_IN_SECONDS = 60;
+
+    /**
+     * The largest version of a revision that was durable when the Database
+     * started. We use this to handle the case where the server unexpectedly
+     * crashes before removing a Buffer page and tries to transport Writes that
+     * have already been accepted. A Write with a larger version can't have
+     * been accepted before, so only the Writes with a smaller version are
+     * manually verified. This is only set in {@link #start()}, before the
+     * Buffer transports anything.
+     */
+    private transient long durableVersion = Long.MIN_VALUE;
 
     /**
-     * A flag to indicate if the Database has verified the data it is seeing is
-     * acceptable. We use this flag to handle the case where the server
-     * unexpectedly crashes before removing a Buffer page and tries to transport
-     * Writes that have already been accepted. The SLA for this flag is that the
-     * Database will assume no Writes are acceptable (and will therefore
-     * manually verify) until it sees one, at which point it will assume all
-     * subsequent Writes are acceptable.
+     * The records for which a Write that was not yet accepted has been found
+     * while {@link #filterTransported(List) verifying} the Writes that are
+     * transported again after a crash. The Buffer transports the Writes for a
+     * record in order and the Database syncs the revisions for a record in
+     * order, so the rest of the Writes for these records can't have been
+     * accepted before either.
      */
-    private transient boolean acceptable = false;
+    private final transient Set<PrimaryKey> unaccepted = Sets
+            .newConcurrentHashSet();
 
     /**
      * The location where the Database stores data.
@@ -222,6 +427,18 @@ public final class Database extends BaseStore implements PermanentStore {
     private final transient List<SecondaryBlock> csb = Lists.newArrayList();
     private final transient List<SearchBlock> ctb = Lists.newArrayList();
 
+    /*
+     * SNAPSHOT
+     * --------
+     * The latest snapshot of the present state of every record, if one
+     * exists. The snapshot is split into partitions of records, each of which
+     * is a primary block that only contains the revision that added each value
+     * that was present as of the version in its id, so the present state of a
+     * record can be read from the snapshot of its partition and the revisions
+     * that are newer than it. A partition without a snapshot is null.
+     */
+    private final transient PrimaryBlock[] cps = new PrimaryBlock[Compactor.SNAPSHOT_PARTITIONS];
+
     /*
      * CURRENT BLOCK POINTERS
      * ----------------------
@@ -238,11 +455,66 @@ public final class Database extends BaseStore implements PermanentStore {
      * Records are cached in memory to reduce the number of seeks required. When
      * writing new revisions, we check the appropriate caches for relevant
      * records and append the new revision so that the cached data doesn't grow
-     * stale.
+     * stale. The caches share a budget that is a percentage of the heap and
+     * each one is weighed by the estimated heap size of its records. Records
+     * that are loaded from the snapshot only have the history after the
+     * snapshot, so they are kept in their own cache and only used to read the
+     * present state. Since present-state reads fill that cache instead of the
+     * full and partial primary caches, its quarter of the budget is taken
+     * from their shares and the secondary cache keeps its share.
+     */
+    private final TinyLfuCache<Composite, PrimaryRecord> cpc = buildCache(0.25);
+    private final TinyLfuCache<Composite, PrimaryRecord> cppc = buildCache(0.1);
+    private final TinyLfuCache<Composite, PrimaryRecord> cspc = buildCache(0.25);
+    private final TinyLfuCache<Composite, SecondaryRecord> csc = buildCache(0.4);
+
+    /**
+     * The {@link BlockManifest} that records the size, checksum and version
+     * range of each block on disk so that they don't need to be hashed on
+     * startup. This is loaded when the Database starts.
+     */
+    private transient BlockManifest manifest;
+
+    /**
+     * The {@link Compactor} that merges adjacent blocks in the background or
+     * {@code null} if compaction is disabled.
+     */
+    @Nullable
+    private transient Compactor compactor = null;
+
+    /**
+     * The {@link RetentionPolicy} that decides how much history the
+     * {@link #compactor} must keep. By default, all history is kept.
      */
-    private final Cache<Composite, PrimaryRecord> cpc = buildCache();
-    private final Cache<Composite, PrimaryRecord> cppc = buildCache();
-    private final Cache<Composite, SecondaryRecord> csc = buildCache();
+    private transient RetentionPolicy retention = RetentionPolicy
+            .parse(null);
+
+    /**
+     * The {@link PrunedHistory} that records the horizons before which the
+     * {@link #compactor} has dropped history. This is loaded when the
+     * Database starts.
+     */
+    private transient PrunedHistory history;
+
+    /**
+     * The {@link StorageTiers} where the {@link #compactor} moves blocks once
+     * they age. By default, all blocks are kept in the {@link #backingStore}.
+     */
+    private transient StorageTiers tiers = StorageTiers.NONE;
+
+    /**
+     * The executor that periodically runs the {@link #compactor}.
+     */
+    @Nullable
+    private transient ScheduledExecutorService compaction = null;
+
+    /**
+     * The pool that is used to seek blocks in parallel when loading a record
+     * that is spread across many blocks or {@code null} if parallel seeks are
+     * disabled.
+     */
+    @Nullable
+    private transient ForkJoinPool seeker = null;
 
     /**
      * Lock used to ensure the object is ThreadSafe. This lock provides access
@@ -250,6 +522,13 @@ public final class Database extends BaseStore implements PermanentStore {
      */
     private final transient ReentrantReadWriteLock masterLock = new ReentrantReadWriteLock();
 
+    /**
+     * A monitor that ensures only one transport lane at a time rolls the
+     * current Blocks over when they grow beyond the
+     * {@link GlobalState#BLOCK_ROLLOVER_SIZE}.
+     */
+    private final transient Object rollover = new Object();
+
     /**
      * A flag to indicate if the Buffer is running or not.
      */
@@ -277,29 +556,59 @@ public final class Database extends BaseStore implements PermanentStore {
 
     @Override
     public void accept(Write write) {
-        // CON-83: Keeping manually verifying writes until we find one that is
-        // acceptable, after which assume all subsequent writes are acceptable.
-        if(!acceptable
-                && ((write.getType() == Action.ADD && !verify(write.getKey()
-                        .toString(), write.getValue().getTObject(), write
-                        .getRecord().longValue())) || (write.getType() == Action.REMOVE && verify(
-                        write.getKey().toString(), write.getValue()
-                                .getTObject(), write.getRecord().longValue())))) {
-            acceptable = true;
-        }
-        if(acceptable) {
-            // NOTE: Write locking happens in each individual Block, and
-            // furthermore this method is only called from the Buffer, which
-            // transports data serially.
-            ConcourseExecutors.executeAndAwaitTermination(threadNamePrefix,
-                    new BlockWriter(cpb0, write), new BlockWriter(csb0, write),
-                    new BlockWriter(ctb0, write));
+        accept(Collections.singletonList(write));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The entire batch is inserted into each of the current Blocks by a single
+     * task, so the cost of dispatching work to the Blocks in parallel and
+     * waiting for it to finish is paid once per batch instead of once per
+     * write.
+     * </p>
+     * <p>
+     * If the current Blocks grow beyond the
+     * {@link GlobalState#BLOCK_ROLLOVER_SIZE}, they are synced and replaced,
+     * so a large Buffer page is spread across several Blocks. If the server
+     * crashes before the rest of the page is transported, the writes that were
+     * already synced are refused when the page is transported again.
+     * </p>
+     */
+    @Override
+    public void accept(List<Write> writes) {
+        List<Write> accepted = writes;
+        for (Write write : writes) {
+            if(write.getVersion() <= durableVersion) {
+                accepted = filterTransported(writes);
+                break;
+            }
         }
-        else {
-            Logger.warn("The Engine refused to accept {} because "
-                    + "it appears that the data was already transported. "
-                    + "This indicates that the server shutdown prematurely.",
-                    write);
+        if(!accepted.isEmpty()) {
+            // NOTE: Write locking happens in each individual Block. The read
+            // lock is held so that the current Blocks can't be sealed while
+            // another transport lane is writing to them.
+            long size;
+            masterLock.readLock().lock();
+            try {
+                ConcourseExecutors.executeAndAwaitTermination(
+                        threadNamePrefix, new BlockWriter(cpb0, accepted),
+                        new BlockWriter(csb0, accepted), new BlockWriter(ctb0,
+                                accepted));
+                size = getCurrentBlockSize();
+            }
+            finally {
+                masterLock.readLock().unlock();
+            }
+            if(BLOCK_ROLLOVER_SIZE > 0 && size >= BLOCK_ROLLOVER_SIZE) {
+                synchronized (rollover) {
+                    // Another transport lane may have already rolled the
+                    // current Blocks over
+                    if(getCurrentBlockSize() >= BLOCK_ROLLOVER_SIZE) {
+                        triggerSync();
+                    }
+                }
+            }
         }
     }
 
@@ -316,13 +625,60 @@ public final class Database extends BaseStore implements PermanentStore {
 
     @Override
     public Map<Long, String> audit(long record) {
-        return getPrimaryRecord(PrimaryKey.wrap(record)).audit();
+        return clampAudit(getPrimaryRecord(PrimaryKey.wrap(record)).audit(),
+                getPrunedHorizon(null));
     }
 
     @Override
     public Map<Long, String> audit(String key, long record) {
         Text key0 = Text.wrapCached(key);
-        return getPrimaryRecord(PrimaryKey.wrap(record), key0).audit(key0);
+        return clampAudit(getPrimaryRecord(PrimaryKey.wrap(record), key0)
+                .audit(key0), getPrunedHorizon(key));
+    }
+
+    @Override
+    public Map<Long, String> audit(long record, long start, long end) {
+        start = Math.max(start, getPrunedHorizon(null));
+        PrimaryKey pkey = PrimaryKey.wrap(record);
+        masterLock.readLock().lock();
+        try {
+            PrimaryRecord cached = cpc.getIfPresent(Composite.create(pkey));
+            if(cached != null) {
+                return Stores.sliceAudit(cached.audit(), start, end);
+            }
+            else {
+                return toAudit(collect(cpb, pkey, Collections.<Text> emptyList(),
+                        null, start, end));
+            }
+        }
+        finally {
+            masterLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Long, String> audit(String key, long record, long start,
+            long end) {
+        start = Math.max(start, getPrunedHorizon(key));
+        PrimaryKey pkey = PrimaryKey.wrap(record);
+        Text key0 = Text.wrapCached(key);
+        masterLock.readLock().lock();
+        try {
+            PrimaryRecord cached = cpc.getIfPresent(Composite.create(pkey));
+            if(cached == null) {
+                cached = cppc.getIfPresent(Composite.create(pkey, key0));
+            }
+            if(cached != null) {
+                return Stores.sliceAudit(cached.audit(key0), start, end);
+            }
+            else {
+                return toAudit(collect(cpb, pkey, Collections.singletonList(key0),
+                        null, start, end));
+            }
+        }
+        finally {
+            masterLock.readLock().unlock();
+        }
     }
 
     @Override
@@ -335,8 +691,10 @@ public final class Database extends BaseStore implements PermanentStore {
 
     @Override
     public Map<TObject, LinkedHashSet<Long>> browse(String key, long timestamp) {
+        checkRetained(key, timestamp);
         return Transformers.transformTreeMapSet(
-                getSecondaryRecord(Text.wrapCached(key)).browse(timestamp),
+                getSecondaryRecord(Text.wrapCached(key), timestamp).browse(
+                        timestamp),
                 Functions.VALUE_TO_TOBJECT, Functions.PRIMARY_KEY_TO_LONG,
                 TObjectSorter.INSTANCE);
     }
@@ -349,10 +707,13 @@ public final class Database extends BaseStore implements PermanentStore {
     @Override
     public Map<Long, LinkedHashSet<TObject>> doExplore(long timestamp, String key,
             Operator operator, TObject... values) {
-        SecondaryRecord record = getSecondaryRecord(Text.wrapCached(key));
+        checkRetained(key, timestamp);
+        Value[] values0 = Transformers.transformArray(values,
+                Functions.TOBJECT_TO_VALUE, Value.class);
+        SecondaryRecord record = getSecondaryRecord(Text.wrapCached(key),
+                timestamp, operator, values0);
         Map<PrimaryKey, Set<Value>> map = record.explore(timestamp, operator,
-                Transformers.transformArray(values, Functions.TOBJECT_TO_VALUE,
-                        Value.class));
+                values0);
         return Transformers.transformTreeMapSet(map,
                 Functions.PRIMARY_KEY_TO_LONG, Functions.VALUE_TO_TOBJECT,
                 Comparators.LONG_COMPARATOR);
@@ -361,15 +722,68 @@ public final class Database extends BaseStore implements PermanentStore {
     @Override
     public Map<Long, LinkedHashSet<TObject>> doExplore(String key, Operator operator,
             TObject... values) {
-        SecondaryRecord record = getSecondaryRecord(Text.wrapCached(key));
-        Map<PrimaryKey, Set<Value>> map = record.explore(operator,
-                Transformers.transformArray(values, Functions.TOBJECT_TO_VALUE,
-                        Value.class));
+        Value[] values0 = Transformers.transformArray(values,
+                Functions.TOBJECT_TO_VALUE, Value.class);
+        SecondaryRecord record = getSecondaryRecord(Text.wrapCached(key),
+                operator, values0);
+        Map<PrimaryKey, Set<Value>> map = record.explore(operator, values0);
         return Transformers.transformTreeMapSet(map,
                 Functions.PRIMARY_KEY_TO_LONG, Functions.VALUE_TO_TOBJECT,
                 Comparators.LONG_COMPARATOR);
     }
 
+    /**
+     * Merge one run of adjacent blocks, as chosen by the configured
+     * {@link CompactionPolicy}, instead of waiting for the background
+     * compactor. Return {@code true} if any blocks were compacted.
+     * 
+     * @return {@code true} if blocks were compacted
+     */
+    @ManagedOperation
+    public boolean compact() {
+        Compactor compactor = this.compactor;
+        return compactor != null && compactor.compact();
+    }
+
+    /**
+     * Move each block that has aged past the threshold of a slower
+     * {@link StorageTiers storage tier} to that tier, instead of waiting for
+     * the background compactor. Return the number of blocks that were moved.
+     * 
+     * @return the number of migrated blocks
+     */
+    @ManagedOperation
+    public int migrate() {
+        Compactor compactor = this.compactor;
+        return compactor != null ? compactor.migrate() : 0;
+    }
+
+    /**
+     * Rewrite each block that contains history that is no longer retained
+     * according to the {@link RetentionPolicy}, instead of waiting for the
+     * background compactor. Return the number of blocks that were rewritten.
+     * 
+     * @return the number of rewritten blocks
+     */
+    @ManagedOperation
+    public int prune() {
+        Compactor compactor = this.compactor;
+        return compactor != null ? compactor.prune() : 0;
+    }
+
+    /**
+     * Write a new snapshot of the present state of every record, if enough
+     * bytes have been written since the last one, instead of waiting for the
+     * background compactor. Return {@code true} if a snapshot was written.
+     * 
+     * @return {@code true} if a snapshot was written
+     */
+    @ManagedOperation
+    public boolean snapshot() {
+        Compactor compactor = this.compactor;
+        return compactor != null && compactor.snapshot();
+    }
+
     /**
      * Return dumps for all the blocks identified by {@code id}. This method IS
      * NOT necessarily optimized for performance, so it should be used with
@@ -403,6 +817,26 @@ public final class Database extends BaseStore implements PermanentStore {
         return backingStore;
     }
 
+    /**
+     * Return a description of the hit, miss and eviction counts along with
+     * the current size and weight of each record cache.
+     * 
+     * @return the record cache stats
+     */
+    @ManagedOperation
+    public String getRecordCacheStats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("primary: ").append(describeCache(cpc))
+                .append(System.lineSeparator());
+        sb.append("partial primary: ").append(describeCache(cppc))
+                .append(System.lineSeparator());
+        sb.append("present primary: ").append(describeCache(cspc))
+                .append(System.lineSeparator());
+        sb.append("secondary: ").append(describeCache(csc))
+                .append(System.lineSeparator());
+        return sb.toString();
+    }
+
     /**
      * Return a the list of ids for all the blocks that are currently in scope.
      * 
@@ -427,15 +861,17 @@ public final class Database extends BaseStore implements PermanentStore {
     @Override
     public Map<String, LinkedHashSet<TObject>> select(long record) {
         return Transformers.transformTreeMapSet(
-                getPrimaryRecord(PrimaryKey.wrap(record)).browse(),
+                getPresentRecord(PrimaryKey.wrap(record)).browse(),
                 Functions.TEXT_TO_STRING, Functions.VALUE_TO_TOBJECT,
                 Comparators.CASE_INSENSITIVE_STRING_COMPARATOR);
     }
 
     @Override
     public Map<String, LinkedHashSet<TObject>> select(long record, long timestamp) {
+        checkRetained(null, timestamp);
         return Transformers.transformTreeMapSet(
-                getPrimaryRecord(PrimaryKey.wrap(record)).browse(timestamp),
+                getPrimaryRecord(PrimaryKey.wrap(record), timestamp).browse(
+                        timestamp),
                 Functions.TEXT_TO_STRING, Functions.VALUE_TO_TOBJECT,
                 Comparators.CASE_INSENSITIVE_STRING_COMPARATOR);
     }
@@ -444,16 +880,41 @@ public final class Database extends BaseStore implements PermanentStore {
     public LinkedHashSet<TObject> select(String key, long record) {
         Text key0 = Text.wrapCached(key);
         return Transformers.transformSet(
-                getPrimaryRecord(PrimaryKey.wrap(record), key0).fetch(key0),
+                getPresentRecord(PrimaryKey.wrap(record), key0).fetch(key0),
                 Functions.VALUE_TO_TOBJECT);
     }
 
     @Override
     public LinkedHashSet<TObject> select(String key, long record, long timestamp) {
+        checkRetained(key, timestamp);
         Text key0 = Text.wrapCached(key);
         return Transformers.transformSet(
-                getPrimaryRecord(PrimaryKey.wrap(record), key0).fetch(key0,
-                        timestamp), Functions.VALUE_TO_TOBJECT);
+                getPrimaryRecord(PrimaryKey.wrap(record), key0, timestamp)
+                        .fetch(key0, timestamp), Functions.VALUE_TO_TOBJECT);
+    }
+
+    /**
+     * Set the {@link RetentionPolicy} that decides how much history is kept.
+     * This must be called before the Database is {@link #start() started}.
+     * 
+     * @param retention
+     */
+    public void setRetentionPolicy(RetentionPolicy retention) {
+        Preconditions.checkState(!running,
+                "Cannot set the retention policy after the Database starts");
+        this.retention = retention;
+    }
+
+    /**
+     * Set the {@link StorageTiers} where blocks are moved once they age. This
+     * must be called before the Database is {@link #start() started}.
+     * 
+     * @param tiers
+     */
+    public void setStorageTiers(StorageTiers tiers) {
+        Preconditions.checkState(!running,
+                "Cannot set the storage tiers after the Database starts");
+        this.tiers = tiers;
     }
 
     @Override
@@ -461,13 +922,39 @@ public final class Database extends BaseStore implements PermanentStore {
         if(!running) {
             running = true;
             Logger.info("Database configured to store data in {}", backingStore);
+            Compactor.recover(backingStore);
+            for (String tier : tiers.getDirectories()) {
+                Logger.info("Database configured to move aged blocks to {}",
+                        tier);
+                Compactor.recover(tier);
+            }
+            manifest = BlockManifest.load(backingStore);
+            history = PrunedHistory.load(backingStore);
+            loadSnapshot();
+
+            // Blocks may also live in a tier that is no longer configured, in
+            // which case they are loaded from there and migrated to a tier
+            // that is.
+            List<String> locations = Lists.newArrayList(backingStore);
+            for (String location : Iterables.concat(tiers.getDirectories(),
+                    manifest.getLocations())) {
+                boolean known = false;
+                for (String other : locations) {
+                    known = known
+                            || StorageTiers.isSameDirectory(location, other);
+                }
+                if(!known) {
+                    locations.add(location);
+                }
+            }
             ConcourseExecutors.executeAndAwaitTerminationAndShutdown(
                     "Storage Block Loader", new BlockLoader<PrimaryBlock>(
-                            PrimaryBlock.class, PRIMARY_BLOCK_DIRECTORY, cpb),
-                    new BlockLoader<SecondaryBlock>(SecondaryBlock.class,
-                            SECONDARY_BLOCK_DIRECTORY, csb),
-                    new BlockLoader<SearchBlock>(SearchBlock.class,
-                            SEARCH_BLOCK_DIRECTORY, ctb));
+                            PrimaryBlock.class, PRIMARY_BLOCK_DIRECTORY,
+                            locations, cpb), new BlockLoader<SecondaryBlock>(
+                            SecondaryBlock.class, SECONDARY_BLOCK_DIRECTORY,
+                            locations, csb), new BlockLoader<SearchBlock>(
+                            SearchBlock.class, SEARCH_BLOCK_DIRECTORY,
+                            locations, ctb));
 
             // CON-83: Get rid of any blocks that aren't "balanced" (e.g. has
             // primary and secondary) under the assumption that the server
@@ -482,7 +969,28 @@ public final class Database extends BaseStore implements PermanentStore {
             // missing to assume that the server crashed. :-/
             TLists.retainIntersection(cpb, csb);
             ctb.retainAll(cpb);
+            durableVersion = getDurableVersion();
+            manifest.sync();
             triggerSync(false);
+
+            CompactionPolicy policy = CompactionPolicy.forName(
+                    COMPACTION_POLICY, COMPACTION_MAX_BLOCK_SIZE);
+            if(policy != null || retention.isEnabled()
+                    || SNAPSHOT_BYTE_THRESHOLD > 0 || tiers.isEnabled()
+                    || locations.size() > 1) {
+                compactor = new Compactor(backingStore, cpb, csb, ctb, cps,
+                        masterLock, manifest, policy, retention, history,
+                        tiers, SNAPSHOT_BYTE_THRESHOLD, COMPACTION_THROUGHPUT);
+                compaction = ConcourseExecutors
+                        .newSingleThreadScheduledExecutor("database-compaction-thread");
+                compaction.scheduleWithFixedDelay(compactor,
+                        COMPACTION_FREQUENCY_IN_SECONDS,
+                        COMPACTION_FREQUENCY_IN_SECONDS, TimeUnit.SECONDS);
+            }
+            if(PARALLEL_SEEK_THREADS > 1) {
+                seeker = ConcourseExecutors.newForkJoinPool(
+                        PARALLEL_SEEK_THREADS, "database-seek-worker");
+            }
         }
     }
 
@@ -490,6 +998,39 @@ public final class Database extends BaseStore implements PermanentStore {
     public void stop() {
         if(running) {
             running = false;
+            if(compactor != null) {
+                compactor.stop();
+                compaction.shutdown();
+                try {
+                    compaction.awaitTermination(Long.MAX_VALUE,
+                            TimeUnit.NANOSECONDS);
+                }
+                catch (InterruptedException e) {
+                    throw Throwables.propagate(e);
+                }
+                compactor = null;
+                compaction = null;
+            }
+            masterLock.writeLock().lock();
+            try {
+                for (Block<?, ?, ?> block : Iterables.concat(cpb, csb, ctb)) {
+                    block.retire();
+                }
+                for (PrimaryBlock snapshot : cps) {
+                    if(snapshot != null) {
+                        snapshot.retire();
+                    }
+                }
+                if(seeker != null) {
+                    // Readers hold the read lock for the duration of a
+                    // parallel seek, so no seeks are in flight at this point.
+                    seeker.shutdown();
+                    seeker = null;
+                }
+            }
+            finally {
+                masterLock.writeLock().unlock();
+            }
         }
     }
 
@@ -509,15 +1050,205 @@ public final class Database extends BaseStore implements PermanentStore {
     @Override
     public boolean verify(String key, TObject value, long record) {
         Text key0 = Text.wrapCached(key);
-        return getPrimaryRecord(PrimaryKey.wrap(record), key0).verify(key0,
+        return getPresentRecord(PrimaryKey.wrap(record), key0).verify(key0,
                 Value.wrap(value));
     }
 
     @Override
     public boolean verify(String key, TObject value, long record, long timestamp) {
+        checkRetained(key, timestamp);
         Text key0 = Text.wrapCached(key);
-        return getPrimaryRecord(PrimaryKey.wrap(record), key0).verify(key0,
-                Value.wrap(value), timestamp);
+        return getPrimaryRecord(PrimaryKey.wrap(record), key0, timestamp)
+                .verify(key0, Value.wrap(value), timestamp);
+    }
+
+    /**
+     * Perform a full scan of every immutable block on disk: re-hash each block
+     * file and compare it to the checksum in the {@link BlockManifest} and
+     * load each bloom filter (which repairs it if it is corrupt). This reads
+     * the entire database from disk, so it is only done on request instead
+     * of on startup.
+     * 
+     * @return a report that describes each block that failed verification
+     */
+    @ManagedOperation
+    public String verifyBlocks() {
+        // NOTE: Blocks of different types with the same id are equal, so
+        // they can't be used as map keys
+        List<Map.Entry<Block<?, ?, ?>, String>> blocks = Lists.newArrayList();
+        masterLock.readLock().lock();
+        try {
+            for (Block<?, ?, ?> block : cpb) {
+                blocks.add(Maps.<Block<?, ?, ?>, String> immutableEntry(block,
+                        PRIMARY_BLOCK_DIRECTORY));
+            }
+            for (Block<?, ?, ?> block : csb) {
+                blocks.add(Maps.<Block<?, ?, ?>, String> immutableEntry(block,
+                        SECONDARY_BLOCK_DIRECTORY));
+            }
+            for (Block<?, ?, ?> block : ctb) {
+                blocks.add(Maps.<Block<?, ?, ?>, String> immutableEntry(block,
+                        SEARCH_BLOCK_DIRECTORY));
+            }
+        }
+        finally {
+            masterLock.readLock().unlock();
+        }
+        StringBuilder sb = new StringBuilder();
+        int verified = 0;
+        int failed = 0;
+        for (Map.Entry<Block<?, ?, ?>, String> entry : blocks) {
+            Block<?, ?, ?> block = entry.getKey();
+            String directory = entry.getValue();
+            String file = FileSystem.makePath(block.getDirectory(),
+                    block.getId() + Block.BLOCK_NAME_EXTENSION);
+            if(block.isMutable() || !FileSystem.hasFile(file)) {
+                // The block is still in memory or it was removed by a
+                // compaction after the snapshot was taken
+                continue;
+            }
+            String problem = null;
+            try {
+                HashCode checksum = Files.hash(new File(file), Hashing.md5());
+                BlockManifest.Entry expected = manifest.get(directory,
+                        block.getId());
+                if(expected == null) {
+                    manifest.put(directory, block, checksum);
+                }
+                else if(!expected.getChecksum().equals(checksum)) {
+                    problem = "checksum is " + checksum + " but expected "
+                            + expected.getChecksum();
+                }
+                block.loadFilter();
+            }
+            catch (IOException | RuntimeException e) {
+                problem = e.toString();
+            }
+            ++verified;
+            if(problem != null) {
+                ++failed;
+                sb.append(directory).append(File.separator)
+                        .append(block.getId()).append(": ").append(problem)
+                        .append(System.lineSeparator());
+                Logger.error("Block {} in {} failed verification: {}",
+                        block.getId(), directory, problem);
+            }
+        }
+        manifest.sync();
+        sb.append("Verified ").append(verified).append(" blocks, ")
+                .append(failed).append(" failed");
+        return sb.toString();
+    }
+
+    /**
+     * Throw an {@link IllegalArgumentException} if the {@link #compactor} has
+     * dropped history of {@code key} (or any key, if {@code key} is
+     * {@code null}) after {@code timestamp}, since a historical read before
+     * the {@link PrunedHistory pruned horizon} would silently return the wrong
+     * answer. History that the {@link #retention} policy allows to be dropped,
+     * but that hasn't been pruned yet, can still be read.
+     * 
+     * @param key
+     * @param timestamp
+     */
+    private void checkRetained(@Nullable String key, long timestamp) {
+        long horizon = getPrunedHorizon(key);
+        if(timestamp < horizon) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot read %s at %d because the history before %d has "
+                            + "been pruned", key != null ? "'" + key + "'"
+                            : "the record", timestamp, horizon));
+        }
+    }
+
+    /**
+     * CON-83: Return the {@code writes} that have not already been accepted,
+     * in order. This is used when the server crashed before the Buffer
+     * removed a page, so the Writes on the page are transported again.
+     * <p>
+     * Each Write is checked individually, since the Writes in a batch that
+     * are transported by different lanes may have been synced before the
+     * crash while others weren't. A Write was already accepted if the history
+     * of its key in its record contains a revision with its version. Once a
+     * Write for a record is found to be new, the rest of the Writes for the
+     * record are accepted without checking.
+     * </p>
+     * 
+     * @param writes
+     * @return the Writes to accept
+     */
+    private List<Write> filterTransported(List<Write> writes) {
+        List<Write> accepted = Lists.newArrayListWithCapacity(writes.size());
+        for (Write write : writes) {
+            PrimaryKey record = write.getRecord();
+            if(write.getVersion() > durableVersion
+                    || unaccepted.contains(record)) {
+                accepted.add(write);
+            }
+            else if(getPrimaryRecord(record, write.getKey()).hasRevision(
+                    write.getKey(), write.getVersion())) {
+                Logger.warn("The Engine refused to accept {} because "
+                        + "it appears that the data was already "
+                        + "transported. This indicates that the server "
+                        + "shutdown prematurely.", write);
+            }
+            else {
+                unaccepted.add(record);
+                accepted.add(write);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Return the timestamp before which the {@link #compactor} has dropped
+     * history of {@code key} (or any key, if {@code key} is {@code null}), or
+     * {@link Long#MIN_VALUE} if no history has been dropped.
+     * 
+     * @param key
+     * @return the pruned horizon
+     */
+    private long getPrunedHorizon(@Nullable String key) {
+        PrunedHistory history0 = history;
+        if(history0 == null) {
+            return Long.MIN_VALUE;
+        }
+        else {
+            return key != null ? history0.getHorizon(key) : history0
+                    .getHorizon();
+        }
+    }
+
+    /**
+     * Return the size of the largest of the current Blocks.
+     * 
+     * @return the size in bytes
+     */
+    private long getCurrentBlockSize() {
+        return Math.max(cpb0.getSize(), Math.max(csb0.getSize(),
+                ctb0.getSize()));
+    }
+
+    /**
+     * Return the largest version of a revision in the immutable primary
+     * Blocks. If a Block was synced before fence metadata existed, its
+     * versions aren't known, so the current time, which is larger than any of
+     * them, is returned instead.
+     * 
+     * @return the durable version
+     */
+    private long getDurableVersion() {
+        long version = Long.MIN_VALUE;
+        for (PrimaryBlock block : cpb) {
+            if(!block.isMutable()) {
+                BlockMetadata<PrimaryKey, Text> metadata = block.getMetadata();
+                if(metadata == null) {
+                    return Time.now();
+                }
+                version = Math.max(version, metadata.getMaxVersion());
+            }
+        }
+        return version;
     }
 
     /**
@@ -533,9 +1264,7 @@ public final class Database extends BaseStore implements PermanentStore {
             PrimaryRecord record = cpc.getIfPresent(composite);
             if(record == null) {
                 record = Record.createPrimaryRecord(pkey);
-                for (PrimaryBlock block : cpb) {
-                    block.seek(pkey, record);
-                }
+                seek(cpb, pkey, Collections.<Text> emptyList(), record);
                 cpc.put(composite, record);
             }
             return record;
@@ -560,9 +1289,7 @@ public final class Database extends BaseStore implements PermanentStore {
             PrimaryRecord record = cppc.getIfPresent(composite);
             if(record == null) {
                 record = Record.createPrimaryRecordPartial(pkey, key);
-                for (PrimaryBlock block : cpb) {
-                    block.seek(pkey, key, record);
-                }
+                seek(cpb, pkey, Collections.singletonList(key), record);
                 cppc.put(composite, record);
             }
             return record;
@@ -572,6 +1299,147 @@ public final class Database extends BaseStore implements PermanentStore {
         }
     }
 
+    /**
+     * Return a PrimaryRecord for {@code pkey} that contains at least the
+     * revisions that are needed to read its state at {@code timestamp}.
+     * <p>
+     * If the full PrimaryRecord is cached or every block has a revision at or
+     * before {@code timestamp}, the full record is returned. Otherwise, the
+     * blocks that only contain later revisions are skipped, the seek in each
+     * of the other blocks stops after {@code timestamp} and the resulting
+     * record is not cached.
+     * </p>
+     * 
+     * @param pkey
+     * @param timestamp
+     * @return the PrimaryRecord
+     */
+    private PrimaryRecord getPrimaryRecord(PrimaryKey pkey, long timestamp) {
+        masterLock.readLock().lock();
+        try {
+            long end = toUpperBound(timestamp);
+            PrimaryRecord record = cpc.getIfPresent(Composite.create(pkey));
+            if(record == null && isSkippable(cpb, end)) {
+                record = Record.createPrimaryRecord(pkey);
+                seek(cpb, pkey, Collections.<Text> emptyList(), null,
+                        Long.MIN_VALUE, end, record);
+            }
+            else if(record == null) {
+                record = getPrimaryRecord(pkey);
+            }
+            return record;
+        }
+        finally {
+            masterLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return a partial PrimaryRecord for {@code key} in {@code pkey} that
+     * contains at least the revisions that are needed to read its state at
+     * {@code timestamp}. Like {@link #getPrimaryRecord(PrimaryKey, long)}, a
+     * bounded record is only seeked (and not cached) if a cached record isn't
+     * available and some blocks can be skipped.
+     * 
+     * @param pkey
+     * @param key
+     * @param timestamp
+     * @return the PrimaryRecord
+     */
+    private PrimaryRecord getPrimaryRecord(PrimaryKey pkey, Text key,
+            long timestamp) {
+        masterLock.readLock().lock();
+        try {
+            long end = toUpperBound(timestamp);
+            PrimaryRecord record = cppc.getIfPresent(Composite.create(pkey,
+                    key));
+            if(record == null && isSkippable(cpb, end)) {
+                record = Record.createPrimaryRecordPartial(pkey, key);
+                seek(cpb, pkey, Collections.singletonList(key), null,
+                        Long.MIN_VALUE, end, record);
+            }
+            else if(record == null) {
+                record = getPrimaryRecord(pkey, key);
+            }
+            return record;
+        }
+        finally {
+            masterLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return a PrimaryRecord for {@code pkey} that may only be used to read
+     * its present state.
+     * <p>
+     * If the full PrimaryRecord is cached or there is no snapshot, the full
+     * record is returned. Otherwise, the record is loaded from the snapshot
+     * and the revisions that are newer than it, so the history before the
+     * snapshot is never replayed.
+     * </p>
+     * 
+     * @param pkey
+     * @return the PrimaryRecord
+     */
+    private PrimaryRecord getPresentRecord(PrimaryKey pkey) {
+        masterLock.readLock().lock();
+        try {
+            Composite composite = Composite.create(pkey);
+            PrimaryRecord record = cpc.getIfPresent(composite);
+            if(record == null && getSnapshot(pkey) != null) {
+                record = cspc.getIfPresent(composite);
+                if(record == null) {
+                    record = Record.createPrimaryRecord(pkey);
+                    seekPresent(pkey, Collections.<Text> emptyList(), record);
+                    cspc.put(composite, record);
+                }
+            }
+            else if(record == null) {
+                record = getPrimaryRecord(pkey);
+            }
+            return record;
+        }
+        finally {
+            masterLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return a partial PrimaryRecord for {@code key} in {@code pkey} that may
+     * only be used to read its present state. Like
+     * {@link #getPresentRecord(PrimaryKey)}, the record is only loaded from
+     * the snapshot if a record with the full history isn't cached.
+     * 
+     * @param pkey
+     * @param key
+     * @return the PrimaryRecord
+     */
+    private PrimaryRecord getPresentRecord(PrimaryKey pkey, Text key) {
+        masterLock.readLock().lock();
+        try {
+            Composite composite = Composite.create(pkey, key);
+            PrimaryRecord record = cppc.getIfPresent(composite);
+            if(record == null && getSnapshot(pkey) != null) {
+                record = cspc.peek(Composite.create(pkey));
+                if(record == null) {
+                    record = cspc.getIfPresent(composite);
+                }
+                if(record == null) {
+                    record = Record.createPrimaryRecordPartial(pkey, key);
+                    seekPresent(pkey, Collections.singletonList(key), record);
+                    cspc.put(composite, record);
+                }
+            }
+            else if(record == null) {
+                record = getPrimaryRecord(pkey, key);
+            }
+            return record;
+        }
+        finally {
+            masterLock.readLock().unlock();
+        }
+    }
+
     /**
      * Return the SearchRecord identified by {@code key}.
      * 
@@ -586,17 +1454,15 @@ public final class Database extends BaseStore implements PermanentStore {
         masterLock.readLock().lock();
         try {
             SearchRecord record = Record.createSearchRecordPartial(key, query);
-            for (SearchBlock block : ctb) {
-                // Seek each word in the query to make sure that multi word
-                // search works.
-                String[] toks = query
-                        .toString()
-                        .toLowerCase()
-                        .split(TStrings.REGEX_GROUP_OF_ONE_OR_MORE_WHITESPACE_CHARS);
-                for (String tok : toks) {
-                    block.seek(key, Text.wrap(tok), record);
-                }
+            // Seek each word in the query to make sure that multi word search
+            // works.
+            String[] toks = query.toString().toLowerCase()
+                    .split(TStrings.REGEX_GROUP_OF_ONE_OR_MORE_WHITESPACE_CHARS);
+            List<Text> words = Lists.newArrayListWithCapacity(toks.length);
+            for (String tok : toks) {
+                words.add(Text.wrap(tok));
             }
+            seek(ctb, key, words, record);
             return record;
         }
         finally {
@@ -617,9 +1483,7 @@ public final class Database extends BaseStore implements PermanentStore {
             SecondaryRecord record = csc.getIfPresent(composite);
             if(record == null) {
                 record = Record.createSecondaryRecord(key);
-                for (SecondaryBlock block : csb) {
-                    block.seek(key, record);
-                }
+                seek(csb, key, Collections.<Value> emptyList(), record);
                 csc.put(composite, record);
             }
             return record;
@@ -629,9 +1493,303 @@ public final class Database extends BaseStore implements PermanentStore {
         }
     }
 
+    /**
+     * Return a SecondaryRecord for {@code key} that contains at least the
+     * values that can satisfy {@code operator} in relation to {@code values}.
+     * <p>
+     * If the full SecondaryRecord is cached or the {@code operator} does not
+     * describe a contiguous range of values, the full record is returned.
+     * Otherwise, only the slice of each block that holds the values in the
+     * range is seeked and the resulting record is not cached.
+     * </p>
+     * 
+     * @param key
+     * @param operator
+     * @param values
+     * @return the SecondaryRecord
+     */
+    private SecondaryRecord getSecondaryRecord(Text key, Operator operator,
+            Value... values) {
+        Range<Value> range = toRange(operator, values);
+        if(range != null) {
+            masterLock.readLock().lock();
+            try {
+                SecondaryRecord record = csc.getIfPresent(Composite
+                        .create(key));
+                if(record == null) {
+                    record = Record.createSecondaryRecord(key);
+                    seek(csb, key, range, record);
+                }
+                return record;
+            }
+            finally {
+                masterLock.readLock().unlock();
+            }
+        }
+        else {
+            return getSecondaryRecord(key);
+        }
+    }
+
+    /**
+     * Return a SecondaryRecord for {@code key} that contains at least the
+     * revisions that are needed to read its state at {@code timestamp}. Like
+     * {@link #getPrimaryRecord(PrimaryKey, long)}, a bounded record is only
+     * seeked (and not cached) if the full record isn't cached and some blocks
+     * can be skipped.
+     * 
+     * @param key
+     * @param timestamp
+     * @return the SecondaryRecord
+     */
+    private SecondaryRecord getSecondaryRecord(Text key, long timestamp) {
+        return getSecondaryRecord(key, null, timestamp);
+    }
+
+    /**
+     * Return a SecondaryRecord for {@code key} that contains at least the
+     * revisions for the values that can satisfy {@code operator} in relation
+     * to {@code values} that are needed to read its state at
+     * {@code timestamp}.
+     * 
+     * @param key
+     * @param timestamp
+     * @param operator
+     * @param values
+     * @return the SecondaryRecord
+     */
+    private SecondaryRecord getSecondaryRecord(Text key, long timestamp,
+            Operator operator, Value... values) {
+        return getSecondaryRecord(key, toRange(operator, values), timestamp);
+    }
+
+    /**
+     * Return a SecondaryRecord for {@code key} that contains at least the
+     * revisions for the values within {@code range} (or all the values if
+     * {@code range} is {@code null}) that are needed to read its state at
+     * {@code timestamp}.
+     * 
+     * @param key
+     * @param range
+     * @param timestamp
+     * @return the SecondaryRecord
+     */
+    private SecondaryRecord getSecondaryRecord(Text key,
+            @Nullable Range<Value> range, long timestamp) {
+        masterLock.readLock().lock();
+        try {
+            long end = toUpperBound(timestamp);
+            SecondaryRecord record = csc.getIfPresent(Composite.create(key));
+            if(record == null && (range != null || isSkippable(csb, end))) {
+                record = Record.createSecondaryRecord(key);
+                seek(csb, key, Collections.<Value> emptyList(), range,
+                        Long.MIN_VALUE, end, record);
+            }
+            else if(record == null) {
+                record = getSecondaryRecord(key);
+            }
+            return record;
+        }
+        finally {
+            masterLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Seek the revisions for each of the {@code keys} in {@code locator} (or
+     * for every key in {@code locator} if {@code keys} is empty) from each of
+     * the {@code blocks} and append them to {@code record} in block order.
+     * <p>
+     * If the {@link #seeker} pool is available and there are enough blocks,
+     * contiguous runs of blocks are seeked in parallel and the collected
+     * revisions are appended in block order afterwards, so the record sees the
+     * same sequence of revisions as it would from a serial seek.
+     * </p>
+     * 
+     * @param blocks
+     * @param locator
+     * @param keys
+     * @param record
+     */
+    @GuardedBy("masterLock.readLock()")
+    private <L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>, V extends Byteable & Comparable<V>> void seek(
+            List<? extends Block<L, K, V>> blocks, L locator, List<K> keys,
+            Record<L, K, V> record) {
+        seek(blocks, locator, keys, null, Long.MIN_VALUE, Long.MAX_VALUE,
+                record);
+    }
+
+    /**
+     * Seek the revisions for the keys within {@code range} in {@code locator}
+     * from each of the {@code blocks} and append them to {@code record} in
+     * block order.
+     * 
+     * @param blocks
+     * @param locator
+     * @param range
+     * @param record
+     */
+    @GuardedBy("masterLock.readLock()")
+    private <L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>, V extends Byteable & Comparable<V>> void seek(
+            List<? extends Block<L, K, V>> blocks, L locator, Range<K> range,
+            Record<L, K, V> record) {
+        seek(blocks, locator, Collections.<K> emptyList(), range,
+                Long.MIN_VALUE, Long.MAX_VALUE, record);
+    }
+
+    /**
+     * Seek the revisions for each of the {@code keys} in {@code locator}, the
+     * keys within {@code range} if it is not {@code null}, or every key in
+     * {@code locator} if there are no {@code keys} and no {@code range}, that
+     * have a version that is greater than or equal to {@code start} and less
+     * than {@code end} from each of the {@code blocks} and append them to
+     * {@code record}.
+     * <p>
+     * A {@code record} that is seeked with bounds should only be used to read
+     * state at or before {@code end} and should not be cached.
+     * </p>
+     * 
+     * @param blocks
+     * @param locator
+     * @param keys
+     * @param range
+     * @param start
+     * @param end
+     * @param record
+     */
+    @GuardedBy("masterLock.readLock()")
+    private <L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>, V extends Byteable & Comparable<V>> void seek(
+            List<? extends Block<L, K, V>> blocks, L locator, List<K> keys,
+            @Nullable Range<K> range, long start, long end,
+            Record<L, K, V> record) {
+        for (Revision<L, K, V> revision : collect(blocks, locator, keys,
+                range, start, end)) {
+            record.append(revision);
+        }
+    }
+
+    /**
+     * Return the revisions for each of the {@code keys} in {@code locator},
+     * the keys within {@code range} if it is not {@code null}, or every key
+     * in {@code locator} if there are no {@code keys} and no {@code range},
+     * that have a version that is greater than or equal to {@code start} and
+     * less than {@code end} from each of the {@code blocks}, in block order.
+     * <p>
+     * If the {@link #seeker} pool is available and there are enough blocks,
+     * contiguous runs of blocks are seeked in parallel and the collected
+     * revisions are concatenated in block order afterwards, so the result is
+     * the same as it would be from a serial seek.
+     * </p>
+     * 
+     * @param blocks
+     * @param locator
+     * @param keys
+     * @param range
+     * @param start
+     * @param end
+     * @return the revisions
+     */
+    @GuardedBy("masterLock.readLock()")
+    private <L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>, V extends Byteable & Comparable<V>> List<Revision<L, K, V>> collect(
+            List<? extends Block<L, K, V>> blocks, L locator, List<K> keys,
+            @Nullable Range<K> range, long start, long end) {
+        ForkJoinPool seeker = this.seeker;
+        if(seeker != null && blocks.size() >= 2 * PARALLEL_SEEK_MIN_BLOCKS) {
+            // Adapt the fan out to the number of blocks so that each worker
+            // seeks at least PARALLEL_SEEK_MIN_BLOCKS blocks, but no more
+            // tasks are created than there are workers to run them.
+            int grain = Math.max(PARALLEL_SEEK_MIN_BLOCKS, (blocks.size()
+                    + seeker.getParallelism() - 1)
+                    / seeker.getParallelism());
+            return seeker.invoke(new SeekTask<L, K, V>(blocks, 0,
+                    blocks.size(), grain, locator, keys, range, start, end));
+        }
+        else {
+            List<Revision<L, K, V>> revisions = Lists.newArrayList();
+            for (Block<L, K, V> block : blocks) {
+                revisions.addAll(collect(block, locator, keys, range, start,
+                        end));
+            }
+            return revisions;
+        }
+    }
+
+    /**
+     * Append the revisions from the snapshot for each of the {@code keys} in
+     * {@code pkey}, or every key if there are no {@code keys}, followed by the
+     * revisions for those keys that are newer than the snapshot to
+     * {@code record}.
+     * 
+     * @param pkey
+     * @param keys
+     * @param record
+     */
+    @GuardedBy("masterLock.readLock()")
+    private void seekPresent(PrimaryKey pkey, List<Text> keys,
+            PrimaryRecord record) {
+        PrimaryBlock snapshot = getSnapshot(pkey);
+        for (Revision<PrimaryKey, Text, Value> revision : collect(snapshot,
+                pkey, keys, null, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            record.append(revision);
+        }
+        seek(cpb, pkey, keys, null,
+                Compactor.getSnapshotVersion(snapshot) + 1, Long.MAX_VALUE,
+                record);
+    }
+
+    /**
+     * Return the snapshot of the partition that holds {@code pkey} or
+     * {@code null} if the partition has no snapshot.
+     * 
+     * @param pkey
+     * @return the snapshot Block
+     */
+    @Nullable
+    @GuardedBy("masterLock.readLock()")
+    private PrimaryBlock getSnapshot(PrimaryKey pkey) {
+        return cps[Compactor.getSnapshotPartition(pkey)];
+    }
+
+    /**
+     * Load the latest snapshot of each partition from the
+     * {@link #SNAPSHOT_DIRECTORY}, if one exists.
+     */
+    private void loadSnapshot() {
+        int loaded = 0;
+        for (int i = 0; i < cps.length; ++i) {
+            String path = FileSystem.makePath(backingStore,
+                    SNAPSHOT_DIRECTORY, Integer.toString(i));
+            FileSystem.mkdirs(path);
+            long latest = Long.MIN_VALUE;
+            Iterator<String> it = FileSystem.fileOnlyIterator(path);
+            while (it.hasNext()) {
+                String file = new File(it.next()).getName();
+                if(file.endsWith(Block.BLOCK_NAME_EXTENSION)) {
+                    latest = Math.max(latest,
+                            Long.parseLong(Block.getId(file)));
+                }
+            }
+            if(latest != Long.MIN_VALUE) {
+                cps[i] = new PrimaryBlock(Long.toString(latest), path, true);
+                ++loaded;
+            }
+        }
+        if(loaded > 0) {
+            Logger.info("Loaded the snapshot of the present state of {} "
+                    + "partitions", loaded);
+        }
+    }
+
     /**
      * Create new mutable blocks and sync the current blocks to disk if
      * {@code doSync} is {@code true}.
+     * <p>
+     * The {@link #masterLock} is only held long enough to seal the current
+     * blocks and swap in new ones. The sealed blocks are flushed afterwards,
+     * while they continue to serve reads from memory, and become disk based
+     * once the flush is durable. This method does not return until then, so
+     * the caller can rely on the data being on disk.
+     * </p>
      * 
      * @param doSync - a flag that controls whether we actually perform a sync
      *            or not. Sometimes this method is called when there is no data
@@ -639,14 +1797,18 @@ public final class Database extends BaseStore implements PermanentStore {
      *            startup).
      */
     private void triggerSync(boolean doSync) {
+        PrimaryBlock sealedPrimary = null;
+        SecondaryBlock sealedSecondary = null;
+        SearchBlock sealedSearch = null;
         masterLock.writeLock().lock();
         try {
             if(doSync) {
-                // TODO we need a transactional file system to ensure that these
-                // blocks are written atomically (all or nothing)
-                ConcourseExecutors.executeAndAwaitTermination(threadNamePrefix,
-                        new BlockSyncer(cpb0), new BlockSyncer(csb0),
-                        new BlockSyncer(ctb0));
+                sealedPrimary = cpb0;
+                sealedSecondary = csb0;
+                sealedSearch = ctb0;
+                sealedPrimary.seal();
+                sealedSecondary.seal();
+                sealedSearch.seal();
             }
             String id = Long.toString(Time.now());
             cpb.add((cpb0 = Block.createPrimaryBlock(id, backingStore
@@ -659,11 +1821,34 @@ public final class Database extends BaseStore implements PermanentStore {
         finally {
             masterLock.writeLock().unlock();
         }
+        if(doSync) {
+            // TODO we need a transactional file system to ensure that these
+            // blocks are written atomically (all or nothing)
+            ConcourseExecutors.executeAndAwaitTermination(threadNamePrefix,
+                    new BlockSyncer(sealedPrimary), new BlockSyncer(
+                            sealedSecondary), new BlockSyncer(sealedSearch));
+            manifest.put(PRIMARY_BLOCK_DIRECTORY, sealedPrimary);
+            manifest.put(SECONDARY_BLOCK_DIRECTORY, sealedSecondary);
+            manifest.put(SEARCH_BLOCK_DIRECTORY, sealedSearch);
+            manifest.sync();
+        }
     }
 
     /**
      * A runnable that traverses the appropriate directory for a block type
-     * under {@link #backingStore} and loads the block metadata into memory.
+     * in each storage location and loads the block metadata into memory.
+     * <p>
+     * Blocks that contain duplicate data are detected using the checksums in
+     * the {@link #manifest}. A block file is only hashed if it doesn't have a
+     * manifest entry of the same size, in which case the entry is added. The
+     * bloom filter and index for each block are not loaded until they are
+     * needed.
+     * </p>
+     * <p>
+     * If a block exists in more than one location because a migration
+     * between {@link StorageTiers} was interrupted, the copy in the location
+     * that is recorded in the manifest is loaded and the other is deleted.
+     * </p>
      * 
      * @author Jeff Nelson
      * @param <T> - the Block type
@@ -674,17 +1859,22 @@ public final class Database extends BaseStore implements PermanentStore {
         private final List<T> blocks;
         private final Class<T> clazz;
         private final String directory;
+        private final List<String> locations;
 
         /**
          * Construct a new instance.
          * 
          * @param clazz
          * @param directory
+         * @param locations the storage locations, from the fastest to the
+         *            slowest
          * @param blocks
          */
-        public BlockLoader(Class<T> clazz, String directory, List<T> blocks) {
+        public BlockLoader(Class<T> clazz, String directory,
+                List<String> locations, List<T> blocks) {
             this.clazz = clazz;
             this.directory = directory;
+            this.locations = locations;
             this.blocks = blocks;
         }
 
@@ -692,34 +1882,94 @@ public final class Database extends BaseStore implements PermanentStore {
         public void run() {
             File _file = null;
             try {
-                final String path = backingStore + File.separator + directory;
-                FileSystem.mkdirs(path);
+                Map<String, File> located = Maps.newHashMap();
+                for (String location : locations) {
+                    final String path = location + File.separator + directory;
+                    FileSystem.mkdirs(path);
+                    File[] files = new File(path)
+                            .listFiles(new FilenameFilter() {
+
+                                @Override
+                                public boolean accept(File dir, String name) {
+                                    return dir.getAbsolutePath().equals(
+                                            new File(path).getAbsolutePath())
+                                            && name.endsWith(Block.BLOCK_NAME_EXTENSION);
+                                }
+
+                            });
+                    for (File file : files) {
+                        String id = Block.getId(file.getName());
+                        File other = located.get(id);
+                        if(other == null) {
+                            located.put(id, file);
+                        }
+                        else {
+                            BlockManifest.Entry entry = manifest.get(
+                                    directory, id);
+                            File stale = file;
+                            if(entry != null
+                                    && StorageTiers.isSameDirectory(
+                                            entry.getLocation(), location)) {
+                                located.put(id, file);
+                                stale = other;
+                            }
+                            for (String extension : Compactor.EXTENSIONS) {
+                                String copy = FileSystem.makePath(
+                                        stale.getParent(), id + extension);
+                                if(FileSystem.hasFile(copy)) {
+                                    FileSystem.deleteFile(copy);
+                                }
+                            }
+                            Logger.warn("Deleted the copy of {} {} in {} "
+                                    + "that was left by an interrupted "
+                                    + "migration", clazz.getSimpleName(), id,
+                                    stale.getParent());
+                        }
+                    }
+                }
                 SortedMap<File, T> blockSorter = Maps
                         .newTreeMap(NaturalSorter.INSTANCE);
-                Set<String> checksums = Sets.newHashSet();
-                for (File file : new File(path).listFiles(new FilenameFilter() {
-
-                    @Override
-                    public boolean accept(File dir, String name) {
-                        return dir.getAbsolutePath().equals(
-                                new File(path).getAbsolutePath())
-                                && name.endsWith(Block.BLOCK_NAME_EXTENSION);
-                    }
-
-                })) {
+                Set<HashCode> checksums = Sets.newHashSet();
+                Set<String> ids = Sets.newHashSet();
+                int hashed = 0;
+                File[] files = located.values().toArray(
+                        new File[located.size()]);
+                // Visit the files in order so that, among blocks with
+                // duplicate data, the oldest one is loaded for every block
+                // type.
+                Arrays.sort(files, NaturalSorter.INSTANCE);
+                for (File file : files) {
                     _file = file;
                     String id = Block.getId(file.getName());
                     Constructor<T> constructor = clazz.getDeclaredConstructor(
                             String.class, String.class, Boolean.TYPE);
                     constructor.setAccessible(true);
-                    String checksum = Files.hash(file, Hashing.md5())
-                            .toString();
+                    BlockManifest.Entry entry = manifest.get(directory, id);
+                    HashCode checksum;
+                    boolean known = entry != null
+                            && entry.getSize() == file.length();
+                    if(known) {
+                        checksum = entry.getChecksum();
+                    }
+                    else {
+                        checksum = Files.hash(file, Hashing.md5());
+                        ++hashed;
+                    }
                     if(!checksums.contains(checksum)) {
-                        blockSorter.put(file, constructor.newInstance(id,
-                                path.toString(), true));
-                        Logger.info("Loaded {} metadata for {}",
+                        T block = constructor.newInstance(id,
+                                file.getParent(), true);
+                        blockSorter.put(file, block);
+                        if(!known) {
+                            manifest.put(directory, block, checksum);
+                        }
+                        else {
+                            manifest.relocate(directory, id, file
+                                    .getParentFile().getParent());
+                        }
+                        Logger.debug("Loaded {} metadata for {}",
                                 clazz.getSimpleName(), file.getName());
                         checksums.add(checksum);
+                        ids.add(id);
                     }
                     else {
                         Logger.warn("{} {} contains duplicate data, so "
@@ -729,7 +1979,11 @@ public final class Database extends BaseStore implements PermanentStore {
                     }
 
                 }
+                manifest.retain(directory, ids);
                 blocks.addAll(blockSorter.values());
+                Logger.info("Loaded metadata for {} {}s ({} had to be "
+                        + "hashed because they were not in the manifest)",
+                        ids.size(), clazz.getSimpleName(), hashed);
             }
             catch (ReflectiveOperationException | IOException e) {
                 Logger.error(
@@ -769,60 +2023,159 @@ public final class Database extends BaseStore implements PermanentStore {
     }
 
     /**
-     * A runnable that will insert a Writer into a block.
+     * A {@link RecursiveTask} that seeks the revisions for a locator (and
+     * possibly some keys) from a contiguous range of blocks and returns them in
+     * block order. Ranges that are larger than the {@code grain} are split in
+     * half and seeked in parallel.
+     * 
+     * @author Jeff Nelson
+     */
+    private static final class SeekTask<L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>, V extends Byteable & Comparable<V>>
+            extends RecursiveTask<List<Revision<L, K, V>>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends Block<L, K, V>> blocks;
+        private final int from;
+        private final int grain;
+        private final long end;
+        private final List<K> keys;
+        private final L locator;
+        @Nullable
+        private final Range<K> range;
+        private final long start;
+        private final int to;
+
+        /**
+         * Construct a new instance.
+         * 
+         * @param blocks
+         * @param from - the index of the first block to seek (inclusive)
+         * @param to - the index of the last block to seek (exclusive)
+         * @param grain - the largest number of blocks to seek without
+         *            splitting the task
+         * @param locator
+         * @param keys
+         * @param range - the range of keys to seek, or {@code null} to seek
+         *            the {@code keys}
+         * @param start - the smallest version to seek (inclusive)
+         * @param end - the largest version to seek (exclusive)
+         */
+        SeekTask(List<? extends Block<L, K, V>> blocks, int from, int to,
+                int grain, L locator, List<K> keys, @Nullable Range<K> range,
+                long start, long end) {
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.locator = locator;
+            this.keys = keys;
+            this.range = range;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<Revision<L, K, V>> compute() {
+            if(to - from <= grain) {
+                List<Revision<L, K, V>> revisions = Lists.newArrayList();
+                for (int i = from; i < to; ++i) {
+                    revisions.addAll(collect(blocks.get(i), locator, keys,
+                            range, start, end));
+                }
+                return revisions;
+            }
+            else {
+                int mid = (from + to) >>> 1;
+                SeekTask<L, K, V> left = new SeekTask<L, K, V>(blocks, from,
+                        mid, grain, locator, keys, range, start, end);
+                SeekTask<L, K, V> right = new SeekTask<L, K, V>(blocks, mid,
+                        to, grain, locator, keys, range, start, end);
+                left.fork();
+                List<Revision<L, K, V>> revisions = right.compute();
+                List<Revision<L, K, V>> merged = left.join();
+                merged.addAll(revisions);
+                return merged;
+            }
+        }
+
+    }
+
+    /**
+     * A runnable that will insert a batch of Writes into a block.
      * 
      * @author Jeff Nelson
      */
     private final class BlockWriter implements Runnable {
 
         private final Block<?, ?, ?> block;
-        private final Write write;
+        private final List<Write> writes;
 
         /**
          * Construct a new instance.
          * 
          * @param block
-         * @param write
+         * @param writes
          */
-        public BlockWriter(Block<?, ?, ?> block, Write write) {
+        public BlockWriter(Block<?, ?, ?> block, List<Write> writes) {
             this.block = block;
-            this.write = write;
+            this.writes = writes;
         }
 
         @Override
         public void run() {
-            Logger.debug("Writing {} to {}", write, block);
             if(block instanceof PrimaryBlock) {
-                PrimaryRevision revision = (PrimaryRevision) ((PrimaryBlock) block)
-                        .insert(write.getRecord(), write.getKey(),
-                                write.getValue(), write.getVersion(),
-                                write.getType());
-                Record<PrimaryKey, Text, Value> record = cpc
-                        .getIfPresent(Composite.create(write.getRecord()));
-                Record<PrimaryKey, Text, Value> partialRecord = cppc
-                        .getIfPresent(Composite.create(write.getRecord(),
-                                write.getKey()));
-                if(record != null) {
-                    record.append(revision);
-                }
-                if(partialRecord != null) {
-                    partialRecord.append(revision);
+                for (Write write : writes) {
+                    Logger.debug("Writing {} to {}", write, block);
+                    PrimaryRevision revision = (PrimaryRevision) ((PrimaryBlock) block)
+                            .insert(write.getRecord(), write.getKey(),
+                                    write.getValue(), write.getVersion(),
+                                    write.getType());
+                    Record<PrimaryKey, Text, Value> record = cpc.peek(Composite
+                            .create(write.getRecord()));
+                    Record<PrimaryKey, Text, Value> partialRecord = cppc
+                            .peek(Composite.create(write.getRecord(),
+                                    write.getKey()));
+                    if(record != null) {
+                        record.append(revision);
+                    }
+                    if(partialRecord != null) {
+                        partialRecord.append(revision);
+                    }
+                    Record<PrimaryKey, Text, Value> presentRecord = cspc
+                            .peek(Composite.create(write.getRecord()));
+                    Record<PrimaryKey, Text, Value> partialPresentRecord = cspc
+                            .peek(Composite.create(write.getRecord(),
+                                    write.getKey()));
+                    if(presentRecord != null) {
+                        presentRecord.append(revision);
+                    }
+                    if(partialPresentRecord != null) {
+                        partialPresentRecord.append(revision);
+                    }
                 }
             }
             else if(block instanceof SecondaryBlock) {
-                SecondaryRevision revision = (SecondaryRevision) ((SecondaryBlock) block)
-                        .insert(write.getKey(), write.getValue(),
-                                write.getRecord(), write.getVersion(),
-                                write.getType());
-                SecondaryRecord record = csc.getIfPresent(Composite
-                        .create(write.getKey()));
-                if(record != null) {
-                    record.append(revision);
+                for (Write write : writes) {
+                    Logger.debug("Writing {} to {}", write, block);
+                    SecondaryRevision revision = (SecondaryRevision) ((SecondaryBlock) block)
+                            .insert(write.getKey(), write.getValue(),
+                                    write.getRecord(), write.getVersion(),
+                                    write.getType());
+                    SecondaryRecord record = csc.peek(Composite.create(write
+                            .getKey()));
+                    if(record != null) {
+                        record.append(revision);
+                    }
                 }
             }
             else if(block instanceof SearchBlock) {
-                ((SearchBlock) block).insert(write.getKey(), write.getValue(),
-                        write.getRecord(), write.getVersion(), write.getType());
+                for (Write write : writes) {
+                    Logger.debug("Writing {} to {}", write, block);
+                    ((SearchBlock) block).insert(write.getKey(),
+                            write.getValue(), write.getRecord(),
+                            write.getVersion(), write.getType());
+                }
                 // NOTE: We do not cache SearchRecords because they have the
                 // potential to be VERY large. Holding references to them in a
                 // cache would prevent them from being garbage collected
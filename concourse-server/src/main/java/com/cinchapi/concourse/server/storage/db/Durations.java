@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+
+/**
+ * Utilities for parsing the amounts of time, such as {@code 30d}, {@code 12h},
+ * {@code 15m}, {@code 60s} or {@code 500ms}, that are used in the
+ * {@link RetentionPolicy} and {@link StorageTiers} preferences.
+ *
+ * @author Jeff Nelson
+ */
+@PackagePrivate
+final class Durations {
+
+    /**
+     * The pattern for an amount followed by a unit.
+     */
+    static final Pattern PATTERN = Pattern.compile("^(\\d+)\\s*([a-zA-Z]+)$");
+
+    /**
+     * Return the number of microseconds in the {@code duration} or -1 if it
+     * is not an amount followed by a unit of time.
+     *
+     * @param duration
+     * @return the number of microseconds
+     */
+    static long toMicros(String duration) {
+        Matcher matcher = PATTERN.matcher(duration.trim());
+        if(matcher.matches()) {
+            TimeUnit unit = toTimeUnit(matcher.group(2));
+            if(unit != null) {
+                return unit.toMicros(Long.parseLong(matcher.group(1)));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the {@link TimeUnit} that is abbreviated by {@code unit} or
+     * {@code null} if it is not a unit of time.
+     *
+     * @param unit
+     * @return the TimeUnit
+     */
+    @Nullable
+    static TimeUnit toTimeUnit(String unit) {
+        switch (unit.toLowerCase()) {
+        case "ms":
+            return TimeUnit.MILLISECONDS;
+        case "s":
+            return TimeUnit.SECONDS;
+        case "m":
+            return TimeUnit.MINUTES;
+        case "h":
+            return TimeUnit.HOURS;
+        case "d":
+            return TimeUnit.DAYS;
+        default:
+            return null;
+        }
+    }
+
+    private Durations() {/* noop */}
+
+}
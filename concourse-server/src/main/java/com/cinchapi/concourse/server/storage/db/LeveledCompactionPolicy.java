@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.List;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.server.GlobalState;
+
+/**
+ * A {@link CompactionPolicy} that assigns each Block to a level based on its
+ * size and merges {@link #FANOUT} adjacent Blocks from the same level into a
+ * single Block that belongs to the next level. Compared to the
+ * {@link SizeTieredCompactionPolicy}, this policy rewrites data more often but
+ * keeps the number of Blocks per level tightly bounded.
+ * 
+ * @author Jeff Nelson
+ */
+@PackagePrivate
+class LeveledCompactionPolicy extends CompactionPolicy {
+
+    /**
+     * The number of Blocks in a level that are merged into a single Block in
+     * the next level.
+     */
+    @PackagePrivate
+    static final int FANOUT = 10;
+
+    /**
+     * The size of a Block in the first level. Blocks that are synced from the
+     * Buffer are generally close to the size of a Buffer page.
+     */
+    private static final long BASE_SIZE = GlobalState.BUFFER_PAGE_SIZE;
+
+    /**
+     * Return the level for a Block that is {@code size} bytes.
+     * 
+     * @param size
+     * @return the level
+     */
+    @PackagePrivate
+    static int level(long size) {
+        int level = 0;
+        long ceiling = BASE_SIZE;
+        while (size > ceiling) {
+            ceiling *= FANOUT;
+            ++level;
+        }
+        return level;
+    }
+
+    /**
+     * Construct a new instance.
+     * 
+     * @param maxBlockSize
+     */
+    @PackagePrivate
+    LeveledCompactionPolicy(long maxBlockSize) {
+        super(maxBlockSize);
+    }
+
+    @Override
+    public <T extends Block<?, ?, ?>> List<T> select(List<T> blocks) {
+        int start = 0;
+        int level = -1;
+        long total = 0;
+        for (int i = 0; i < blocks.size(); ++i) {
+            long size = blocks.get(i).getSize();
+            int current = level(size);
+            if(current != level || total + size > maxBlockSize) {
+                start = i;
+                level = current;
+                total = 0;
+            }
+            total += size;
+            if(i - start + 1 == FANOUT) {
+                return blocks.subList(start, i + 1);
+            }
+        }
+        return none();
+    }
+
+}
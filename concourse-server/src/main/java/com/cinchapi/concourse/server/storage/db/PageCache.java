@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * A bounded cache of decompressed pages from {@link Block Blocks} that are
+ * stored in compressed pages. The cache is weighed by the number of
+ * decompressed bytes so that its memory footprint is predictable regardless of
+ * the page size.
+ *
+ * @author Jeff Nelson
+ */
+@ThreadSafe
+@PackagePrivate
+final class PageCache {
+
+    /**
+     * The cache.
+     */
+    private final Cache<Key, byte[]> cache;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param maxBytes the maximum number of decompressed bytes to cache
+     */
+    PageCache(long maxBytes) {
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+                .weigher(new Weigher<Key, byte[]>() {
+
+                    @Override
+                    public int weigh(Key key, byte[] value) {
+                        return value.length;
+                    }
+
+                }).recordStats().build();
+    }
+
+    /**
+     * Return the decompressed content of {@code page} in {@code file}, using
+     * the {@code loader} to decompress it if it is not cached.
+     *
+     * @param file
+     * @param page
+     * @param loader
+     * @return the decompressed page
+     */
+    public byte[] get(String file, int page, Callable<byte[]> loader) {
+        try {
+            return cache.get(new Key(file, page), loader);
+        }
+        catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Remove the first {@code pageCount} pages for {@code file} from the
+     * cache.
+     *
+     * @param file
+     * @param pageCount
+     */
+    public void invalidate(String file, int pageCount) {
+        for (int i = 0; i < pageCount; ++i) {
+            cache.invalidate(new Key(file, i));
+        }
+    }
+
+    /**
+     * Return the statistics for the cache.
+     *
+     * @return the stats
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * The cache key for a page.
+     *
+     * @author Jeff Nelson
+     */
+    private static final class Key {
+
+        private final String file;
+        private final int page;
+
+        /**
+         * Construct a new instance.
+         *
+         * @param file
+         * @param page
+         */
+        Key(String file, int page) {
+            this.file = file;
+            this.page = page;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(obj instanceof Key) {
+                Key other = (Key) obj;
+                return page == other.page && file.equals(other.file);
+            }
+            else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(file, page);
+        }
+
+    }
+
+}
@@ -45,6 +45,19 @@ final class PrimaryBlock extends Block<PrimaryKey, Text, Value> {
     PrimaryBlock(String id, String directory, boolean diskLoad) {
         super(id, directory, diskLoad);
     }
+
+    /**
+     * DO NOT CALL!!
+     * 
+     * @param id
+     * @param directory
+     * @param expectedInsertions
+     */
+    @PackagePrivate
+    @DoNotInvoke
+    PrimaryBlock(String id, String directory, int expectedInsertions) {
+        super(id, directory, expectedInsertions);
+    }
     
     @Override
     public final PrimaryRevision insert(PrimaryKey locator, Text key,
@@ -60,6 +73,16 @@ final class PrimaryBlock extends Block<PrimaryKey, Text, Value> {
                 type);
     }
 
+    @Override
+    protected Class<PrimaryKey> xLocatorClass() {
+        return PrimaryKey.class;
+    }
+
+    @Override
+    protected Class<Text> xKeyClass() {
+        return Text.class;
+    }
+
     @Override
     protected Class<PrimaryRevision> xRevisionClass() {
         return PrimaryRevision.class;
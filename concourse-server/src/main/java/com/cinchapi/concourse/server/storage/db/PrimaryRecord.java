@@ -15,8 +15,6 @@
  */
 package com.cinchapi.concourse.server.storage.db;
 
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -67,7 +65,9 @@ final class PrimaryRecord extends BrowsableRecord<PrimaryKey, Text, Value> {
         read.lock();
         try {
             Map<Long, String> audit = Maps.newTreeMap();
-            for (Text key : present.keySet()) { /* Authorized */
+            // Walk every key with history, including those whose values
+            // have all been removed
+            for (Text key : history.keySet()) { /* Authorized */
                 audit.putAll(audit(key));
             }
             return audit;
@@ -87,11 +87,10 @@ final class PrimaryRecord extends BrowsableRecord<PrimaryKey, Text, Value> {
         read.lock();
         try {
             Map<Long, String> audit = Maps.newLinkedHashMap();
-            List<CompactRevision<Value>> revisions = history.get(key); /* Authorized */
+            CompactHistory<Value> revisions = history.get(key); /* Authorized */
             if(revisions != null) {
-                Iterator<CompactRevision<Value>> it = revisions.iterator();
-                while (it.hasNext()) {
-                    CompactRevision<Value> revision = it.next();
+                for (int i = 0; i < revisions.size(); ++i) {
+                    CompactRevision<Value> revision = revisions.get(i);
                     audit.put(revision.getVersion(),
                             revision.toString(locator, key));
                 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.util.ByteBuffers;
+import com.google.common.collect.Maps;
+
+/**
+ * A {@link PrunedHistory} is a small file in the {@link Database Database's}
+ * backing store that records, for each key, the timestamp before which
+ * revisions have been dropped by the {@link Compactor} in accordance with the
+ * {@link RetentionPolicy}. Historical reads of a key before its horizon can
+ * no longer be answered accurately, so the Database rejects them.
+ * <p>
+ * The file is durably rewritten before any Block that has dropped revisions
+ * is installed, so a horizon is never behind the data on disk.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@ThreadSafe
+@PackagePrivate
+final class PrunedHistory {
+
+    /**
+     * Return the {@link PrunedHistory} for the Database that is stored in
+     * {@code backingStore}.
+     *
+     * @param backingStore
+     * @return the PrunedHistory
+     */
+    public static PrunedHistory load(String backingStore) {
+        PrunedHistory history = new PrunedHistory(backingStore);
+        String file = FileSystem.makePath(backingStore, HISTORY_NAME);
+        if(FileSystem.hasFile(file)) {
+            ByteBuffer bytes = FileSystem.readBytes(file);
+            int count = bytes.getInt();
+            for (int i = 0; i < count; ++i) {
+                String key = ByteBuffers.getString(
+                        ByteBuffers.get(bytes, bytes.getInt()),
+                        StandardCharsets.UTF_8);
+                history.advance(key, bytes.getLong());
+            }
+        }
+        return history;
+    }
+
+    /**
+     * The name of the file, relative to the Database's backing store.
+     */
+    @PackagePrivate
+    static final String HISTORY_NAME = "pruned.history";
+
+    /**
+     * The location where the {@link Database} stores data.
+     */
+    private final String backingStore;
+
+    /**
+     * The horizon for each key that has dropped revisions.
+     */
+    private final ConcurrentMap<String, Long> horizons = Maps
+            .newConcurrentMap();
+
+    /**
+     * The largest horizon for any key.
+     */
+    private volatile long max = Long.MIN_VALUE;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param backingStore
+     */
+    private PrunedHistory(String backingStore) {
+        this.backingStore = backingStore;
+    }
+
+    /**
+     * Raise the horizon for each key in {@code horizons} and durably write
+     * the file.
+     *
+     * @param horizons
+     */
+    public synchronized void advance(Map<String, Long> horizons) {
+        if(!horizons.isEmpty()) {
+            for (Map.Entry<String, Long> entry : horizons.entrySet()) {
+                advance(entry.getKey(), entry.getValue());
+            }
+            sync();
+        }
+    }
+
+    /**
+     * Return the largest timestamp before which revisions have been dropped
+     * for any key, or {@link Long#MIN_VALUE} if no revisions have been
+     * dropped.
+     *
+     * @return the horizon
+     */
+    public long getHorizon() {
+        return max;
+    }
+
+    /**
+     * Return the timestamp before which revisions have been dropped for
+     * {@code key}, or {@link Long#MIN_VALUE} if no revisions have been
+     * dropped.
+     *
+     * @param key
+     * @return the horizon
+     */
+    public long getHorizon(String key) {
+        Long horizon = horizons.get(key);
+        return horizon != null ? horizon : Long.MIN_VALUE;
+    }
+
+    /**
+     * Raise the horizon for {@code key} to {@code horizon} if it is not
+     * already later.
+     *
+     * @param key
+     * @param horizon
+     */
+    private synchronized void advance(String key, long horizon) {
+        if(horizon > getHorizon(key)) {
+            horizons.put(key, horizon);
+            max = Math.max(max, horizon);
+        }
+    }
+
+    /**
+     * Durably write the horizons to disk.
+     */
+    private void sync() {
+        int size = 4;
+        for (String key : horizons.keySet()) {
+            size += 4 + key.getBytes(StandardCharsets.UTF_8).length + 8;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        bytes.putInt(horizons.size());
+        for (Map.Entry<String, Long> entry : horizons.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            bytes.putInt(key.length);
+            bytes.put(key);
+            bytes.putLong(entry.getValue());
+        }
+        bytes.flip();
+        String file = FileSystem.makePath(backingStore, HISTORY_NAME);
+        String tmp = file + ".tmp";
+        if(FileSystem.hasFile(tmp)) {
+            FileSystem.deleteFile(tmp);
+        }
+        FileSystem.writeBytes(bytes, tmp);
+        FileSystem.replaceFile(file, tmp);
+    }
+
+}
@@ -19,7 +19,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -37,7 +36,6 @@ import com.cinchapi.concourse.server.model.Text;
 import com.cinchapi.concourse.server.model.Value;
 import com.cinchapi.concourse.server.storage.Action;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -121,6 +119,23 @@ abstract class Record<L extends Byteable & Comparable<L>, K extends Byteable & C
         return new SecondaryRecord(key, value);
     }
 
+    /**
+     * The approximate number of heap bytes used by an empty Record.
+     */
+    private static final int RECORD_OVERHEAD = 256;
+
+    /**
+     * The approximate number of heap bytes used to index a key, not including
+     * the key itself.
+     */
+    private static final int KEY_OVERHEAD = 192;
+
+    /**
+     * The approximate number of heap bytes used to index a revision, not
+     * including its value.
+     */
+    private static final int REVISION_OVERHEAD = 32;
+
     /**
      * The master lock for {@link #write} and {@link #read}. DO NOT use this
      * lock directly.
@@ -144,7 +159,8 @@ abstract class Record<L extends Byteable & Comparable<L>, K extends Byteable & C
     /**
      * The index is used to efficiently determine the set of values currently
      * mapped from a key. The subclass should specify the appropriate type of
-     * key sorting via the returned type for {@link #mapType()}.
+     * key sorting via the returned type for {@link #mapType()}. Each set of
+     * values is a {@link CompactSet} to avoid allocating an entry per value.
      */
     protected final transient Map<K, Set<V>> present = mapType();
 
@@ -152,9 +168,10 @@ abstract class Record<L extends Byteable & Comparable<L>, K extends Byteable & C
      * This index is used to efficiently handle historical reads. Given a
      * revision (e.g key/value pair), and historical timestamp, we can count the
      * number of times that the value appears <em>beforehand</em> at determine
-     * if the mapping existed or not.
+     * if the mapping existed or not. Each key's revisions are stored in a
+     * {@link CompactHistory} so that no objects are allocated per revision.
      */
-    protected final transient HashMap<K, List<CompactRevision<V>>> history = Maps
+    protected final transient HashMap<K, CompactHistory<V>> history = Maps
             .newHashMap();
 
     /**
@@ -162,6 +179,13 @@ abstract class Record<L extends Byteable & Comparable<L>, K extends Byteable & C
      */
     private transient long version = 0;
 
+    /**
+     * A running estimate of the number of heap bytes used by this Record,
+     * which is maintained as revisions are appended so that it can be read in
+     * constant time.
+     */
+    private transient volatile long heapSize = RECORD_OVERHEAD;
+
     /**
      * The locator used to identify this Record.
      */
@@ -250,7 +274,7 @@ abstract class Record<L extends Byteable & Comparable<L>, K extends Byteable & C
             // Update present index
             Set<V> values = present.get(revision.getKey());
             if(values == null) {
-                values = Sets.<V> newLinkedHashSet();
+                values = new CompactSet<V>();
                 present.put(revision.getKey(), values);
             }
             if(revision.getType() == Action.ADD) {
@@ -264,12 +288,15 @@ abstract class Record<L extends Byteable & Comparable<L>, K extends Byteable & C
             }
 
             // Update history index
-            List<CompactRevision<V>> revisions = history.get(revision.getKey());
+            CompactHistory<V> revisions = history.get(revision.getKey());
             if(revisions == null) {
-                revisions = Lists.newArrayList();
+                revisions = new CompactHistory<V>();
                 history.put(revision.getKey(), revisions);
+                heapSize += KEY_OVERHEAD + revision.getKey().size();
             }
-            revisions.add(revision.compact());
+            revisions.add(revision.getValue(), revision.getVersion(),
+                    revision.getType());
+            heapSize += REVISION_OVERHEAD + revision.getValue().size();
 
             // Update metadata
             version = Math.max(version, revision.getVersion());
@@ -293,6 +320,17 @@ abstract class Record<L extends Byteable & Comparable<L>, K extends Byteable & C
         return false;
     }
 
+    /**
+     * Return an estimate of the number of bytes that this Record occupies on
+     * the heap. The estimate is maintained as revisions are appended, so it is
+     * cheap to compute and never shrinks.
+     * 
+     * @return the estimated heap size
+     */
+    public long getHeapSizeEstimate() {
+        return heapSize;
+    }
+
     /**
      * Return the Record's version, which is equal to the largest version of an
      * appended Revision.
@@ -303,6 +341,31 @@ abstract class Record<L extends Byteable & Comparable<L>, K extends Byteable & C
         return version;
     }
 
+    /**
+     * Return {@code true} if the history of {@code key} contains a revision
+     * with {@code version}.
+     * 
+     * @param key
+     * @param version
+     * @return {@code true} if the revision exists
+     */
+    public boolean hasRevision(K key, long version) {
+        read.lock();
+        try {
+            CompactHistory<V> stored = history.get(key);
+            if(stored != null) {
+                int count = stored.count(version);
+                return count > 0 && stored.getVersion(count - 1) == version;
+            }
+            else {
+                return false;
+            }
+        }
+        finally {
+            read.unlock();
+        }
+    }
+
     @Override
     public int hashCode() {
         return partial ? Objects.hash(locator, key) : locator.hashCode();
@@ -410,22 +473,16 @@ abstract class Record<L extends Byteable & Comparable<L>, K extends Byteable & C
         read.lock();
         try {
             Set<V> values = emptyValues;
-            List<CompactRevision<V>> stored = history.get(key);
+            CompactHistory<V> stored = history.get(key);
             if(stored != null) {
                 values = Sets.newLinkedHashSet();
-                Iterator<CompactRevision<V>> it = stored.iterator();
-                while (it.hasNext()) {
-                    CompactRevision<V> revision = it.next();
-                    if(revision.getVersion() <= timestamp) {
-                        if(revision.getType() == Action.ADD) {
-                            values.add(revision.getValue());
-                        }
-                        else {
-                            values.remove(revision.getValue());
-                        }
+                int count = stored.count(timestamp);
+                for (int i = 0; i < count; ++i) {
+                    if(stored.getType(i) == Action.ADD) {
+                        values.add(stored.getValue(i));
                     }
                     else {
-                        break;
+                        values.remove(stored.getValue(i));
                     }
                 }
             }
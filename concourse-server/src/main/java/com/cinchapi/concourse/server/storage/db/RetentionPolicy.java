@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.cinchapi.concourse.server.GlobalState;
+import com.google.common.collect.Maps;
+
+/**
+ * A {@link RetentionPolicy} describes how much of the history of each key the
+ * {@link Database} for an environment must keep.
+ * <p>
+ * Each rule has the form {@code <scope>:<limit>}. The scope is either
+ * {@code *} (every environment), the name of an environment, or either of
+ * those followed by {@code .<key>} to limit the rule to a single key. The
+ * limit is either a number of versions (i.e. {@code 10v}), an age (i.e.
+ * {@code 30d}, {@code 12h}, {@code 15m}, {@code 60s} or {@code 500ms}) or
+ * {@code forever}. A rule for a key takes precedence over a rule for an
+ * environment and a rule that names the environment takes precedence over a
+ * wildcard rule with the same granularity.
+ * </p>
+ * <p>
+ * The policy only allows a pair of revisions that add and later remove the
+ * same value to be dropped once the removal is outside of the retention
+ * limit, so the present state of every record is always preserved.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@Immutable
+public final class RetentionPolicy {
+
+    /**
+     * Return the {@link RetentionPolicy} for {@code environment} that is
+     * described by the {@link GlobalState#HISTORY_RETENTION} preference.
+     *
+     * @param environment
+     * @return the RetentionPolicy
+     */
+    public static RetentionPolicy forEnvironment(String environment) {
+        return parse(environment, GlobalState.HISTORY_RETENTION);
+    }
+
+    /**
+     * Return the {@link RetentionPolicy} for {@code environment} that is
+     * described by the {@code rules}. Rules that apply to other environments
+     * are ignored.
+     *
+     * @param environment
+     * @param rules
+     * @return the RetentionPolicy
+     * @throws IllegalArgumentException if a rule is malformed
+     */
+    public static RetentionPolicy parse(String environment, String... rules) {
+        Limit wildcard = null;
+        Limit specific = null;
+        Map<String, Limit> wildcardKeys = Maps.newHashMap();
+        Map<String, Limit> specificKeys = Maps.newHashMap();
+        for (String rule : rules) {
+            rule = rule.trim();
+            if(rule.isEmpty()) {
+                continue;
+            }
+            int colon = rule.lastIndexOf(':');
+            if(colon <= 0) {
+                throw new IllegalArgumentException(
+                        "Invalid history retention rule: " + rule);
+            }
+            String scope = rule.substring(0, colon).trim();
+            Limit limit = Limit.parse(rule.substring(colon + 1).trim(), rule);
+            int dot = scope.indexOf('.');
+            String target = dot > 0 ? scope.substring(0, dot) : scope;
+            String key = dot > 0 ? scope.substring(dot + 1) : null;
+            if(target.equals(WILDCARD)) {
+                if(key != null) {
+                    wildcardKeys.put(key, limit);
+                }
+                else {
+                    wildcard = limit;
+                }
+            }
+            else if(target.equals(environment)) {
+                if(key != null) {
+                    specificKeys.put(key, limit);
+                }
+                else {
+                    specific = limit;
+                }
+            }
+        }
+        Map<String, Limit> keys = Maps.newHashMap(wildcardKeys);
+        keys.putAll(specificKeys);
+        return new RetentionPolicy(specific != null ? specific
+                : (wildcard != null ? wildcard : Limit.FOREVER), keys);
+    }
+
+    /**
+     * The scope that matches every environment.
+     */
+    private static final String WILDCARD = "*";
+
+    /**
+     * The limit for keys that don't have their own rule.
+     */
+    private final Limit fallback;
+
+    /**
+     * The limits for keys that have their own rule.
+     */
+    private final Map<String, Limit> keys;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param fallback
+     * @param keys
+     */
+    private RetentionPolicy(Limit fallback, Map<String, Limit> keys) {
+        this.fallback = fallback;
+        this.keys = Collections.unmodifiableMap(keys);
+    }
+
+    /**
+     * Return the timestamp before which the state of any key may no longer be
+     * read at {@code now}, based on the age limits of the policy. If the policy
+     * does not limit the age of any key, {@link Long#MIN_VALUE} is returned.
+     *
+     * @param now
+     * @return the horizon
+     */
+    public long getHorizon(long now) {
+        long horizon = fallback.getHorizon(now);
+        for (Limit limit : keys.values()) {
+            horizon = Math.max(horizon, limit.getHorizon(now));
+        }
+        return horizon;
+    }
+
+    /**
+     * Return the timestamp before which the state of {@code key} may no
+     * longer be read at {@code now}, based on the age limit for {@code key}.
+     * If the age of {@code key} is not limited, {@link Long#MIN_VALUE} is
+     * returned.
+     *
+     * @param key
+     * @param now
+     * @return the horizon
+     */
+    public long getHorizon(String key, long now) {
+        return getLimit(key).getHorizon(now);
+    }
+
+    /**
+     * Return the number of the most recent revisions of each field with
+     * {@code key} that must be kept, or {@link Integer#MAX_VALUE} if the
+     * number of versions is not limited.
+     *
+     * @param key
+     * @return the number of versions to keep
+     */
+    public int getMaxVersions(String key) {
+        return getLimit(key).versions;
+    }
+
+    /**
+     * Return {@code true} if the policy allows any history to be dropped.
+     *
+     * @return {@code true} if the policy is enabled
+     */
+    public boolean isEnabled() {
+        if(fallback != Limit.FOREVER) {
+            return true;
+        }
+        for (Limit limit : keys.values()) {
+            if(limit != Limit.FOREVER) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the {@link Limit} that applies to {@code key}.
+     *
+     * @param key
+     * @return the Limit
+     */
+    private Limit getLimit(String key) {
+        Limit limit = keys.get(key);
+        return limit != null ? limit : fallback;
+    }
+
+    /**
+     * The amount of history that a rule retains.
+     *
+     * @author Jeff Nelson
+     */
+    @Immutable
+    private static final class Limit {
+
+        /**
+         * A limit that retains all history.
+         */
+        static final Limit FOREVER = new Limit(-1, Integer.MAX_VALUE);
+
+        /**
+         * Parse the {@code limit} from {@code rule}.
+         *
+         * @param limit
+         * @param rule
+         * @return the Limit
+         */
+        static Limit parse(String limit, String rule) {
+            if(limit.equalsIgnoreCase("forever")) {
+                return FOREVER;
+            }
+            Matcher matcher = Durations.PATTERN.matcher(limit);
+            if(matcher.matches()) {
+                long amount = Long.parseLong(matcher.group(1));
+                TimeUnit unit = Durations.toTimeUnit(matcher.group(2));
+                if(unit != null) {
+                    return new Limit(unit.toMicros(amount), Integer.MAX_VALUE);
+                }
+                else if(matcher.group(2).equalsIgnoreCase("v")
+                        || matcher.group(2).equalsIgnoreCase("versions")) {
+                    return new Limit(-1, (int) Math.min(Integer.MAX_VALUE,
+                            amount));
+                }
+            }
+            throw new IllegalArgumentException(
+                    "Invalid history retention rule: " + rule);
+        }
+
+        /**
+         * The maximum age, in microseconds, of a revision that must be kept
+         * or -1 if the age is not limited.
+         */
+        private final long age;
+
+        /**
+         * The number of the most recent revisions of a field that must be
+         * kept.
+         */
+        private final int versions;
+
+        /**
+         * Construct a new instance.
+         *
+         * @param age
+         * @param versions
+         */
+        private Limit(long age, int versions) {
+            this.age = age;
+            this.versions = versions;
+        }
+
+        /**
+         * Return the timestamp before which history is not retained at
+         * {@code now}.
+         *
+         * @param now
+         * @return the horizon
+         */
+        long getHorizon(long now) {
+            return age >= 0 ? now - age : Long.MIN_VALUE;
+        }
+
+    }
+
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.server.io.Byteable;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The collection that holds the {@link Revision Revisions} in a mutable
+ * {@link Block}.
+ * <p>
+ * Revisions are appended, in the order that they are inserted, to a chunked
+ * array so that an insert never has to compare revisions or allocate a node
+ * for a sorted structure. Each insert also adds the revision to a per-locator
+ * hash index, which is used to serve seeks while the Block is being written.
+ * The revisions for a locator are sorted lazily, the first time they are
+ * seeked after an insert that arrived out of order, so repeated seeks of the
+ * same locator don't sort again. All of the revisions are only sorted once,
+ * when the Block is {@link #sort() flushed} to disk. After that, seeks binary
+ * search the sorted array.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@ThreadSafe
+@PackagePrivate
+@SuppressWarnings("unchecked")
+final class RevisionBuffer<L extends Byteable & Comparable<L>, K extends Byteable & Comparable<K>, V extends Byteable & Comparable<V>> implements
+        Iterable<Revision<L, K, V>> {
+
+    /**
+     * The number of revisions in each chunk. This must be a power of two.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * The number of bits to shift a position to get the index of its chunk.
+     */
+    private static final int CHUNK_SHIFT = Integer
+            .numberOfTrailingZeros(CHUNK_SIZE);
+
+    /**
+     * The chunks that hold the revisions in insertion order, or {@code null}
+     * once the revisions are {@link #sorted}.
+     */
+    @GuardedBy("this")
+    @Nullable
+    private Object[][] chunks = new Object[4][];
+
+    /**
+     * The number of revisions in the buffer.
+     */
+    @GuardedBy("this")
+    private int count = 0;
+
+    /**
+     * A mapping from each locator to the revisions that contain it, or
+     * {@code null} once the revisions are {@link #sorted}.
+     */
+    @GuardedBy("this")
+    @Nullable
+    private Map<L, Entries> index = Maps.newHashMap();
+
+    /**
+     * The revisions in {@link Block.Sorter sorted} order, which is only
+     * populated by {@link #sort()}.
+     */
+    @GuardedBy("this")
+    @Nullable
+    private Revision<L, K, V>[] sorted = null;
+
+    /**
+     * Append {@code revision} to the buffer.
+     *
+     * @param revision
+     */
+    public synchronized void add(Revision<L, K, V> revision) {
+        if(chunks == null) {
+            throw new IllegalStateException(
+                    "Cannot add a revision after the buffer is sorted");
+        }
+        int chunk = count >>> CHUNK_SHIFT;
+        if(chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length << 1);
+        }
+        if(chunks[chunk] == null) {
+            chunks[chunk] = new Object[CHUNK_SIZE];
+        }
+        chunks[chunk][count & (CHUNK_SIZE - 1)] = revision;
+        Entries entries = index.get(revision.getLocator());
+        if(entries == null) {
+            entries = new Entries();
+            index.put(revision.getLocator(), entries);
+        }
+        entries.add(revision);
+        ++count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The revisions are returned in {@link Block.Sorter sorted} order. If the
+     * buffer has not been {@link #sort() sorted}, the iterator works over a
+     * sorted copy of the revisions, which is expensive, so this should only
+     * be used for debugging.
+     * </p>
+     */
+    @Override
+    public synchronized Iterator<Revision<L, K, V>> iterator() {
+        if(sorted != null) {
+            return Iterators.forArray(sorted);
+        }
+        else {
+            Revision<L, K, V>[] array = toArray();
+            Arrays.sort(array, Block.Sorter.INSTANCE);
+            return Iterators.forArray(array);
+        }
+    }
+
+    /**
+     * Return the revisions that contain {@code locator}, in
+     * {@link Block.Sorter sorted} order.
+     *
+     * @param locator
+     * @return the revisions
+     */
+    public List<Revision<L, K, V>> seek(L locator) {
+        return seek(locator, null);
+    }
+
+    /**
+     * Return the revisions that contain {@code key} in {@code locator}, in
+     * {@link Block.Sorter sorted} order. If {@code key} is {@code null}, the
+     * revisions for every key in {@code locator} are returned.
+     *
+     * @param locator
+     * @param key
+     * @return the revisions
+     */
+    public synchronized List<Revision<L, K, V>> seek(L locator,
+            @Nullable K key) {
+        List<Revision<L, K, V>> seeked = Lists.newArrayList();
+        if(sorted == null) {
+            Entries entries = index.get(locator);
+            if(entries != null) {
+                entries.sort();
+                for (int i = 0; i < entries.size; ++i) {
+                    Revision<L, K, V> revision = entries.values[i];
+                    if(key == null || key.equals(revision.getKey())) {
+                        seeked.add(revision);
+                    }
+                }
+            }
+        }
+        else {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if(compare(sorted[mid], locator, key) < 0) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            while (low < count && compare(sorted[low], locator, key) == 0) {
+                seeked.add(sorted[low]);
+                ++low;
+            }
+        }
+        return seeked;
+    }
+
+    /**
+     * Return the number of revisions in the buffer.
+     *
+     * @return the size
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Sort the revisions, if they are not already sorted, and return them.
+     * Afterwards, the buffer no longer accepts new revisions and the
+     * insertion ordered chunks and per-locator index are released. This
+     * should only be called once the Block is sealed.
+     *
+     * @return the sorted revisions
+     */
+    public Revision<L, K, V>[] sort() {
+        Revision<L, K, V>[] array;
+        synchronized (this) {
+            if(sorted != null) {
+                return sorted;
+            }
+            array = toArray();
+        }
+        // Sort outside of the lock so that seeks aren't blocked. This is safe
+        // because a sealed Block does not add any more revisions.
+        Arrays.sort(array, Block.Sorter.INSTANCE);
+        synchronized (this) {
+            if(sorted == null) {
+                sorted = array;
+                chunks = null;
+                index = null;
+            }
+            return sorted;
+        }
+    }
+
+    /**
+     * Return a new array that contains the revisions in insertion order.
+     *
+     * @return the revisions
+     */
+    @GuardedBy("this")
+    private Revision<L, K, V>[] toArray() {
+        Revision<L, K, V>[] array = new Revision[count];
+        for (int i = 0, chunk = 0; i < count; i += CHUNK_SIZE, ++chunk) {
+            System.arraycopy(chunks[chunk], 0, array, i,
+                    Math.min(CHUNK_SIZE, count - i));
+        }
+        return array;
+    }
+
+    /**
+     * Compare the locator and, if {@code key} is not {@code null}, the key of
+     * {@code revision} to {@code locator} and {@code key}.
+     *
+     * @param revision
+     * @param locator
+     * @param key
+     * @return a negative integer, zero, or a positive integer as the revision
+     *         sorts before, with or after the components
+     */
+    private int compare(Revision<L, K, V> revision, L locator,
+            @Nullable K key) {
+        int comparison = revision.getLocator().compareTo(locator);
+        if(comparison == 0 && key != null) {
+            comparison = revision.getKey().compareTo(key);
+        }
+        return comparison;
+    }
+
+    /**
+     * A growable list of the revisions for a locator that remembers whether
+     * they are in {@link Block.Sorter sorted} order.
+     *
+     * @author Jeff Nelson
+     */
+    @SuppressWarnings("rawtypes")
+    private static final class Entries {
+
+        private int size = 0;
+        private Revision[] values = new Revision[2];
+
+        /**
+         * A flag that indicates whether the {@link #values} are sorted. An
+         * insert only clears it if the revision sorts before the previous
+         * one, which is rare because revisions are mostly inserted in
+         * version order.
+         */
+        private boolean sorted = true;
+
+        /**
+         * Add {@code revision} to the list.
+         *
+         * @param revision
+         */
+        void add(Revision revision) {
+            if(size == values.length) {
+                values = Arrays.copyOf(values, size + (size >> 1) + 1);
+            }
+            if(sorted && size > 0
+                    && Block.Sorter.INSTANCE.compare(values[size - 1],
+                            revision) > 0) {
+                sorted = false;
+            }
+            values[size] = revision;
+            ++size;
+        }
+
+        /**
+         * Sort the revisions in place if an insert arrived out of order since
+         * they were last sorted. The previously sorted revisions form a run
+         * that the merge sort uses, so sorting again after a few inserts is
+         * cheap.
+         */
+        @SuppressWarnings("unchecked")
+        void sort() {
+            if(!sorted) {
+                Arrays.sort(values, 0, size, Block.Sorter.INSTANCE);
+                sorted = true;
+            }
+        }
+
+    }
+
+}
@@ -18,7 +18,6 @@ package com.cinchapi.concourse.server.storage.db;
 import static com.cinchapi.concourse.server.GlobalState.STOPWORDS;
 
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
@@ -36,14 +35,12 @@ import com.cinchapi.concourse.server.model.Text;
 import com.cinchapi.concourse.server.model.Value;
 import com.cinchapi.concourse.server.storage.Action;
 import com.cinchapi.concourse.thrift.Type;
-import com.cinchapi.concourse.util.ConcurrentSkipListMultiset;
 import com.cinchapi.concourse.util.TStrings;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import com.google.common.collect.SortedMultiset;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
@@ -76,13 +73,6 @@ final class SearchBlock extends Block<Text, Text, Position> {
                     new ThreadFactoryBuilder().setDaemon(true)
                             .setNameFormat("Search Indexer" + " %d").build());
 
-    @SuppressWarnings("rawtypes")
-    @Override
-    protected SortedMultiset<Revision<Text, Text, Position>> createBackingStore(
-            Comparator<Revision> comparator) {
-        return ConcurrentSkipListMultiset.create(comparator);
-    }
-
     /**
      * DO NOT CALL!!
      * 
@@ -97,6 +87,20 @@ final class SearchBlock extends Block<Text, Text, Position> {
         this.concurrent = true;
     }
 
+    /**
+     * DO NOT CALL!!
+     * 
+     * @param id
+     * @param directory
+     * @param expectedInsertions
+     */
+    @PackagePrivate
+    @DoNotInvoke
+    SearchBlock(String id, String directory, int expectedInsertions) {
+        super(id, directory, expectedInsertions);
+        this.concurrent = true;
+    }
+
     /**
      * DO NOT CALL. Use {@link #insert(Text, Value, PrimaryKey)} instead.
      */
@@ -149,6 +153,16 @@ final class SearchBlock extends Block<Text, Text, Position> {
                 .createSearchRevision(locator, key, value, version, type);
     }
 
+    @Override
+    protected Class<Text> xLocatorClass() {
+        return Text.class;
+    }
+
+    @Override
+    protected Class<Text> xKeyClass() {
+        return Text.class;
+    }
+
     @Override
     protected Class<SearchRevision> xRevisionClass() {
         return SearchRevision.class;
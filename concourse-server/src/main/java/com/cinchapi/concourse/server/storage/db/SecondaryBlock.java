@@ -45,6 +45,19 @@ final class SecondaryBlock extends Block<Text, Value, PrimaryKey> {
     SecondaryBlock(String id, String directory, boolean diskLoad) {
         super(id, directory, diskLoad);
     }
+
+    /**
+     * DO NOT CALL!!
+     * 
+     * @param id
+     * @param directory
+     * @param expectedInsertions
+     */
+    @PackagePrivate
+    @DoNotInvoke
+    SecondaryBlock(String id, String directory, int expectedInsertions) {
+        super(id, directory, expectedInsertions);
+    }
     
     @Override
     public final SecondaryRevision insert(Text locator, Value key,
@@ -60,6 +73,21 @@ final class SecondaryBlock extends Block<Text, Value, PrimaryKey> {
                 type);
     }
 
+    @Override
+    protected boolean indexesKeyRuns() {
+        return true;
+    }
+
+    @Override
+    protected Class<Text> xLocatorClass() {
+        return Text.class;
+    }
+
+    @Override
+    protected Class<Value> xKeyClass() {
+        return Value.class;
+    }
+
     @Override
     protected Class<SecondaryRevision> xRevisionClass() {
         return SecondaryRevision.class;
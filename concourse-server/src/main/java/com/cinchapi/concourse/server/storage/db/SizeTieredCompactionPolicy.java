@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.List;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+
+/**
+ * A {@link CompactionPolicy} that groups adjacent Blocks of a similar size
+ * into tiers and merges a tier once it contains enough Blocks. Since each
+ * merge produces a Block that is roughly {@link #MIN_THRESHOLD} times larger
+ * than its inputs, the number of Blocks grows logarithmically with the amount
+ * of data that is stored.
+ * 
+ * @author Jeff Nelson
+ */
+@PackagePrivate
+class SizeTieredCompactionPolicy extends CompactionPolicy {
+
+    /**
+     * The minimum number of similarly sized Blocks that must be adjacent
+     * before they are merged.
+     */
+    @PackagePrivate
+    static final int MIN_THRESHOLD = 4;
+
+    /**
+     * The maximum number of Blocks that are merged at once.
+     */
+    @PackagePrivate
+    static final int MAX_THRESHOLD = 32;
+
+    /**
+     * A Block belongs to the current tier if its size is no smaller than this
+     * fraction of the tier's average size.
+     */
+    private static final double BUCKET_LOW = 0.5;
+
+    /**
+     * A Block belongs to the current tier if its size is no larger than this
+     * multiple of the tier's average size.
+     */
+    private static final double BUCKET_HIGH = 1.5;
+
+    /**
+     * Construct a new instance.
+     * 
+     * @param maxBlockSize
+     */
+    @PackagePrivate
+    SizeTieredCompactionPolicy(long maxBlockSize) {
+        super(maxBlockSize);
+    }
+
+    @Override
+    public <T extends Block<?, ?, ?>> List<T> select(List<T> blocks) {
+        int start = 0;
+        long total = 0;
+        for (int i = 0; i < blocks.size(); ++i) {
+            long size = blocks.get(i).getSize();
+            int count = i - start;
+            double average = count > 0 ? (double) total / count : size;
+            if(count < MAX_THRESHOLD && size >= average * BUCKET_LOW
+                    && size <= average * BUCKET_HIGH
+                    && total + size <= maxBlockSize) {
+                total += size;
+            }
+            else if(count >= MIN_THRESHOLD) {
+                return blocks.subList(start, i);
+            }
+            else {
+                start = i;
+                total = size;
+            }
+        }
+        return blocks.size() - start >= MIN_THRESHOLD ? blocks.subList(start,
+                blocks.size()) : CompactionPolicy.<T> none();
+    }
+
+}
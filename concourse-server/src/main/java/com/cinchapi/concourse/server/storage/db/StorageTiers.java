@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.server.GlobalState;
+import com.google.common.collect.Lists;
+
+/**
+ * {@link StorageTiers} describe the slower directories, beyond the
+ * {@link Database Database's} backing store, where immutable {@link Block
+ * Blocks} are kept once the revisions they contain have aged.
+ * <p>
+ * Each tier has the form {@code <directory>:<age>} where the age is a number
+ * followed by a unit of time (i.e. {@code 30d}, {@code 12h}, {@code 15m},
+ * {@code 60s} or {@code 500ms}). New and recently compacted Blocks are always
+ * written to the backing store, which should be on the fastest device. Once
+ * the newest revision in a Block is older than the age of a tier, the
+ * {@link Compactor} migrates the Block to that tier in the background. If
+ * several tiers apply, the one with the largest age is chosen.
+ * </p>
+ * <p>
+ * Each environment is stored in a subdirectory of every tier that is named
+ * after the environment.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@Immutable
+public final class StorageTiers {
+
+    /**
+     * Return the {@link StorageTiers} for {@code environment} that are
+     * described by the {@link GlobalState#DATABASE_TIERS} preference.
+     *
+     * @param environment
+     * @return the StorageTiers
+     */
+    public static StorageTiers forEnvironment(String environment) {
+        return parse(environment, GlobalState.DATABASE_TIERS);
+    }
+
+    /**
+     * Return the {@link StorageTiers} for {@code environment} that are
+     * described by the {@code rules}.
+     *
+     * @param environment
+     * @param rules
+     * @return the StorageTiers
+     * @throws IllegalArgumentException if a rule is malformed
+     */
+    public static StorageTiers parse(String environment, String... rules) {
+        List<Tier> tiers = Lists.newArrayList();
+        for (String rule : rules) {
+            rule = rule.trim();
+            if(rule.isEmpty()) {
+                continue;
+            }
+            int colon = rule.lastIndexOf(':');
+            if(colon <= 0) {
+                throw new IllegalArgumentException("Invalid database tier: "
+                        + rule);
+            }
+            String directory = rule.substring(0, colon).trim();
+            long age = Durations.toMicros(rule.substring(colon + 1));
+            if(age < 0) {
+                throw new IllegalArgumentException("Invalid database tier: "
+                        + rule);
+            }
+            tiers.add(new Tier(directory + File.separator + environment, age));
+        }
+        Collections.sort(tiers, new Comparator<Tier>() {
+
+            @Override
+            public int compare(Tier o1, Tier o2) {
+                return Long.compare(o1.age, o2.age);
+            }
+
+        });
+        return new StorageTiers(tiers);
+    }
+
+    /**
+     * Return {@code true} if {@code a} and {@code b} refer to the same
+     * directory.
+     *
+     * @param a
+     * @param b
+     * @return {@code true} if the directories are the same
+     */
+    @PackagePrivate
+    static boolean isSameDirectory(String a, String b) {
+        return new File(a).getAbsoluteFile().equals(
+                new File(b).getAbsoluteFile());
+    }
+
+    /**
+     * StorageTiers that keep every Block in the backing store.
+     */
+    public static final StorageTiers NONE = new StorageTiers(
+            Collections.<Tier> emptyList());
+
+    /**
+     * The tiers, sorted from the smallest age to the largest.
+     */
+    private final List<Tier> tiers;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param tiers
+     */
+    private StorageTiers(List<Tier> tiers) {
+        this.tiers = Collections.unmodifiableList(tiers);
+    }
+
+    /**
+     * Return the directory of each tier, from the fastest to the slowest.
+     *
+     * @return the directories
+     */
+    public List<String> getDirectories() {
+        List<String> directories = Lists.newArrayListWithCapacity(tiers
+                .size());
+        for (Tier tier : tiers) {
+            directories.add(tier.directory);
+        }
+        return directories;
+    }
+
+    /**
+     * Return the position of {@code directory} in the
+     * {@link #getDirectories() list of tiers} or -1 if it is not a tier.
+     *
+     * @param directory
+     * @return the index of the tier
+     */
+    public int indexOf(String directory) {
+        for (int i = 0; i < tiers.size(); ++i) {
+            if(isSameDirectory(tiers.get(i).directory, directory)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return {@code true} if there is at least one tier.
+     *
+     * @return {@code true} if tiering is enabled
+     */
+    public boolean isEnabled() {
+        return !tiers.isEmpty();
+    }
+
+    /**
+     * Return the directory of the tier where a Block whose newest revision
+     * has {@code version} belongs at {@code now} or {@code null} if it
+     * belongs in the backing store.
+     *
+     * @param version
+     * @param now
+     * @return the directory of the tier
+     */
+    @Nullable
+    public String locate(long version, long now) {
+        String directory = null;
+        for (Tier tier : tiers) {
+            if(version < now - tier.age) {
+                directory = tier.directory;
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * A directory and the age after which Blocks move there.
+     *
+     * @author Jeff Nelson
+     */
+    @Immutable
+    private static final class Tier {
+
+        /**
+         * The age, in microseconds, of the newest revision in a Block that
+         * belongs in this tier.
+         */
+        private final long age;
+
+        /**
+         * The directory where the Blocks in this tier are stored.
+         */
+        private final String directory;
+
+        /**
+         * Construct a new instance.
+         *
+         * @param directory
+         * @param age
+         */
+        private Tier(String directory, long age) {
+            this.directory = directory;
+            this.age = age;
+        }
+
+    }
+
+}
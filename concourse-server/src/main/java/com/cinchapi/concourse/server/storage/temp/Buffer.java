@@ -20,11 +20,15 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -51,6 +55,7 @@ import com.cinchapi.concourse.server.model.PrimaryKey;
 import com.cinchapi.concourse.server.model.Text;
 import com.cinchapi.concourse.server.model.Value;
 import com.cinchapi.concourse.server.storage.Action;
+import com.cinchapi.concourse.server.storage.BackpressureException;
 import com.cinchapi.concourse.server.storage.Inventory;
 import com.cinchapi.concourse.server.storage.InventoryTracker;
 import com.cinchapi.concourse.server.storage.PermanentStore;
@@ -61,7 +66,6 @@ import com.cinchapi.concourse.thrift.TObject;
 import com.cinchapi.concourse.thrift.Type;
 import com.cinchapi.concourse.time.Time;
 import com.cinchapi.concourse.util.Convert;
-import com.cinchapi.concourse.util.Integers;
 import com.cinchapi.concourse.util.Logger;
 import com.cinchapi.concourse.util.MultimapViews;
 import com.cinchapi.concourse.util.NaturalSorter;
@@ -285,6 +289,39 @@ public final class Buffer extends Limbo implements InventoryTracker {
 
     };
 
+    /**
+     * The {@link GroupCommit} that makes synced inserts durable in batches, if
+     * {@link GlobalState#BUFFER_GROUP_COMMIT} is enabled. This is set while
+     * the Buffer is running.
+     */
+    @Nullable
+    private volatile GroupCommit groupCommit = null;
+
+    /**
+     * The {@link TransportLanes} that give each batch of transported Writes
+     * to the destination, partitioned by record. The number of lanes is
+     * determined by {@link GlobalState#BUFFER_TRANSPORT_LANES}.
+     */
+    private final TransportLanes lanes = new TransportLanes(
+            BUFFER_TRANSPORT_LANES);
+
+    /**
+     * The {@link TransportScheduler} that limits the transport rate and sets
+     * the sleep time between transport cycles based on the number of pages
+     * that are waiting to be transported and how long the destination has
+     * recently taken to accept each Write.
+     */
+    private final TransportScheduler scheduler = new TransportScheduler(
+            MAX_TRANSPORT_RATE, MIN_TRANSPORT_THREAD_SLEEP_TIME_IN_MS,
+            MAX_TRANSPORT_THREAD_SLEEP_TIME_IN_MS);
+
+    /**
+     * A monitor that is notified whenever a page is removed from the Buffer,
+     * so that writers that are held back by
+     * {@link #applyBackpressure() backpressure} can proceed.
+     */
+    private final Object drained = new Object();
+
     /**
      * The prefix for the threads that are responsible for flushing data to
      * disk. This is normally set by the Engine using the
@@ -381,6 +418,37 @@ public final class Buffer extends Limbo implements InventoryTracker {
         return audit;
     }
 
+    @Override
+    public Map<Long, String> audit(long record, long start, long end) {
+        Map<Long, String> audit = Maps.newTreeMap();
+        if(start < end) {
+            for (Iterator<Write> it = iterator(record, end == Time.NONE ? end
+                    : end - 1); it.hasNext();) {
+                Write write = it.next();
+                if(write.getVersion() >= start) {
+                    audit.put(write.getVersion(), write.toString());
+                }
+            }
+        }
+        return audit;
+    }
+
+    @Override
+    public Map<Long, String> audit(String key, long record, long start,
+            long end) {
+        Map<Long, String> audit = Maps.newTreeMap();
+        if(start < end) {
+            for (Iterator<Write> it = iterator(key, record,
+                    end == Time.NONE ? end : end - 1); it.hasNext();) {
+                Write write = it.next();
+                if(write.getVersion() >= start) {
+                    audit.put(write.getVersion(), write.toString());
+                }
+            }
+        }
+        return audit;
+    }
+
     @Override
     public Map<String, Set<TObject>> select(long record, long timestamp,
             Map<String, Set<TObject>> context) {
@@ -484,18 +552,17 @@ public final class Buffer extends Limbo implements InventoryTracker {
     @Override
     public Map<Long, Set<TObject>> explore(Map<Long, Set<TObject>> context,
             long timestamp, String key, Operator operator, TObject... values) {
-        for (Iterator<Write> it = iterator(key, timestamp); it.hasNext();) {
+        for (Iterator<Write> it = new ValueSeekingIterator(key, operator,
+                values, timestamp); it.hasNext();) {
             Write write = it.next();
             long record = write.getRecord().longValue();
-            if(matches(write.getValue(), operator, values)) {
-                if(write.getType() == Action.ADD) {
-                    MultimapViews.put(context, record, write.getValue()
-                            .getTObject());
-                }
-                else {
-                    MultimapViews.remove(context, record, write.getValue()
-                            .getTObject());
-                }
+            if(write.getType() == Action.ADD) {
+                MultimapViews.put(context, record, write.getValue()
+                        .getTObject());
+            }
+            else {
+                MultimapViews.remove(context, record, write.getValue()
+                        .getTObject());
             }
         }
         return TMaps.asSortedMap(context);
@@ -512,6 +579,53 @@ public final class Buffer extends Limbo implements InventoryTracker {
         return directory;
     }
 
+    /**
+     * <p>
+     * Called by the parent {@link Engine} before it writes to the Buffer on
+     * behalf of a client and before an atomic operation or transaction that
+     * writes to the Engine grabs its locks to commit.
+     * </p>
+     * <p>
+     * If the Buffer has more than {@link GlobalState#BUFFER_BACKPRESSURE_PAGES}
+     * pages, either wait for up to
+     * {@link GlobalState#BUFFER_BACKPRESSURE_MAX_DELAY} milliseconds for
+     * transport to drain it, or, if the
+     * {@link GlobalState#BUFFER_BACKPRESSURE_POLICY} is REJECT, throw a
+     * {@link BackpressureException} so that the write can be retried later.
+     * Otherwise, return immediately.
+     * </p>
+     * 
+     * @throws BackpressureException
+     */
+    @Restricted
+    public void applyBackpressure() throws BackpressureException {
+        int mark = BUFFER_BACKPRESSURE_PAGES;
+        if(mark > 0 && running && pages.size() > mark) {
+            if(BUFFER_BACKPRESSURE_POLICY.equals("REJECT")) {
+                throw new BackpressureException("The Buffer has "
+                        + pages.size() + " pages, which is more than the "
+                        + mark + " that are allowed");
+            }
+            else {
+                long deadline = System.currentTimeMillis()
+                        + BUFFER_BACKPRESSURE_MAX_DELAY;
+                synchronized (drained) {
+                    long delay;
+                    while (running && pages.size() > mark
+                            && (delay = deadline - System.currentTimeMillis()) > 0) {
+                        try {
+                            drained.wait(delay);
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public int getDesiredTransportSleepTimeInMs() {
         return transportThreadSleepTimeInMs;
@@ -537,26 +651,56 @@ public final class Buffer extends Limbo implements InventoryTracker {
         return timeOfLastTransport.get();
     }
 
+    /**
+     * Return a description of the batches that have been flushed by the
+     * {@link GroupCommit}, or an empty string if group commit is not enabled.
+     * 
+     * @return the group commit stats
+     */
+    public String getGroupCommitStats() {
+        GroupCommit committer = groupCommit;
+        return committer != null ? committer.describe() : "";
+    }
+
+    /**
+     * Return a description of the throughput and backlog of each of the
+     * {@link TransportLanes}.
+     * 
+     * @return the transport lane stats
+     */
+    public String getTransportLaneStats() {
+        return lanes.describe();
+    }
+
+    /**
+     * Return a description of the latency and schedule that the
+     * {@link TransportScheduler} is using to transport data from the Buffer.
+     * 
+     * @return the transport stats
+     */
+    public String getTransportStats() {
+        return new StringBuilder().append(scheduler.describe())
+                .append(", rate: ").append(transportRate)
+                .append(" writes/lane").toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If group commit is enabled, a synced insert does not force the current
+     * Page itself. Instead, it waits, without holding the structure lock, for
+     * the {@link GroupCommit} to flush a batch that includes the
+     * {@code write}.
+     * </p>
+     */
     @Override
     public boolean insert(Write write, boolean sync) {
-        structure.lock();
-        try {
-            boolean notify = pages.size() == 2 && currentPage.size == 0;
-            currentPage.append(write, sync);
-            if(notify) {
-                synchronized (transportable) {
-                    transportable.notify();
-                }
-            }
-            return true;
-        }
-        catch (CapacityException e) {
-            addPage();
-            return insert(write, sync);
-        }
-        finally {
-            structure.unlock();
+        GroupCommit committer = sync ? groupCommit : null;
+        long ticket = append(write, sync && committer == null, committer);
+        if(committer != null) {
+            committer.await(ticket);
         }
+        return true;
     }
 
     /**
@@ -676,6 +820,21 @@ public final class Buffer extends Limbo implements InventoryTracker {
             else {
                 currentPage = pages.get(pages.size() - 1);
             }
+            if(BUFFER_GROUP_COMMIT) {
+                GroupCommit committer = new GroupCommit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        sync();
+                    }
+
+                }, BUFFER_GROUP_COMMIT_MAX_WRITES,
+                        BUFFER_GROUP_COMMIT_MAX_BYTES,
+                        BUFFER_GROUP_COMMIT_WINDOW);
+                committer.start(threadNamePrefix + "-group-commit");
+                groupCommit = committer;
+            }
+            lanes.start(threadNamePrefix + "-transport-lane");
         }
     }
 
@@ -683,10 +842,19 @@ public final class Buffer extends Limbo implements InventoryTracker {
     public void stop() {
         if(running) {
             running = false;
+            GroupCommit committer = groupCommit;
+            if(committer != null) {
+                groupCommit = null;
+                committer.stop();
+            }
+            lanes.stop();
             synchronized (transportable) {
                 transportable.notifyAll(); // notify to allow any waiting
                                            // threads to terminate
             }
+            synchronized (drained) {
+                drained.notifyAll();
+            }
         }
     }
 
@@ -702,6 +870,20 @@ public final class Buffer extends Limbo implements InventoryTracker {
      * This method will transport at least one write from the buffer, in
      * chronological order.
      * </p>
+     * <p>
+     * If there is more than one {@link GlobalState#BUFFER_TRANSPORT_LANES
+     * transport lane}, the writes are given to the {@code destination} by
+     * several threads at once, so the {@code destination} must be able to
+     * accept writes for different records concurrently. Writes for the same
+     * record are always accepted by the same lane in chronological order.
+     * </p>
+     * <p>
+     * The number of writes in each cycle grows geometrically, but never
+     * beyond what the {@link TransportScheduler} estimates the
+     * {@code destination} can accept within the time that is allowed for the
+     * current number of full pages. The sleep time between cycles shrinks as
+     * more full pages wait to be transported.
+     * </p>
      */
     @Override
     public void transport(PermanentStore destination, boolean sync) {
@@ -712,24 +894,29 @@ public final class Buffer extends Limbo implements InventoryTracker {
             if(!page.transportLock.writeLock().isHeldByCurrentThread()
                     && page.transportLock.writeLock().tryLock()) {
                 try {
-                    for (int i = 0; i < transportRate; ++i) {
-                        if(page.hasNext()) {
-                            destination.accept(page.next());
-                            page.remove();
-                        }
-                        else {
-                            ((Database) destination).triggerSync();
-                            removePage();
-                            break;
-                        }
+                    // Each lane gets a full batch, on average, so that the
+                    // lanes are kept busy
+                    int depth = pages.size() - 1;
+                    int count = transportRate * lanes.size();
+                    List<Write> batch = page.next(count);
+                    if(!batch.isEmpty()) {
+                        long start = System.nanoTime();
+                        lanes.transport(batch, destination);
+                        scheduler.record(batch.size(), System.nanoTime()
+                                - start, depth);
+                        page.remove(batch.size());
                     }
-                    timeOfLastTransport.set(Time.now());
-                    transportRate = transportRate >= MAX_TRANSPORT_RATE ? MAX_TRANSPORT_RATE
-                            : (transportRate * transportRateMultiplier);
-                    --transportThreadSleepTimeInMs;
-                    if(transportThreadSleepTimeInMs < MIN_TRANSPORT_THREAD_SLEEP_TIME_IN_MS) {
-                        transportThreadSleepTimeInMs = MIN_TRANSPORT_THREAD_SLEEP_TIME_IN_MS;
+                    if(batch.size() < count) {
+                        ((Database) destination).triggerSync();
+                        removePage();
+                        --depth;
                     }
+                    timeOfLastTransport.set(Time.now());
+                    transportRate = Math.min(transportRate
+                            * transportRateMultiplier,
+                            getTargetTransportRate(depth));
+                    transportThreadSleepTimeInMs = scheduler
+                            .getSleepTimeInMs(depth);
                 }
                 finally {
                     page.transportLock.writeLock().unlock();
@@ -740,9 +927,17 @@ public final class Buffer extends Limbo implements InventoryTracker {
 
     @Override
     public boolean verify(Write write, long timestamp, boolean exists) {
-        for (Iterator<Write> it = iterator(write, timestamp); it.hasNext();) {
-            it.next();
-            exists ^= true; // toggle boolean
+        if(timestamp >= getOldestWriteTimestamp()) {
+            scaleBackTransportRate();
+            for (Page page : pages) {
+                if(page.getOldestWriteTimestamp() > timestamp) {
+                    break;
+                }
+                else if(page.mightContain(write)
+                        && page.count(write, timestamp) % 2 != 0) {
+                    exists ^= true; // toggle boolean
+                }
+            }
         }
         return exists;
     }
@@ -791,13 +986,23 @@ public final class Buffer extends Limbo implements InventoryTracker {
     @Nullable
     @Override
     protected Action getLastWriteAction(Write write, long timestamp) {
-        // TODO: use ReverseSeekingIterator to optimize this
-        Iterator<Write> it = iterator(write, timestamp);
-        Action action = null;
-        while (it.hasNext()) {
-            action = it.next().getType();
+        if(timestamp >= getOldestWriteTimestamp()) {
+            scaleBackTransportRate();
+            // Look at the pages from newest to oldest so that the search can
+            // stop as soon as any instance of the write is found
+            List<Page> snapshot = Lists.newArrayList(pages);
+            for (int i = snapshot.size() - 1; i >= 0; --i) {
+                Page page = snapshot.get(i);
+                if(page.getOldestWriteTimestamp() <= timestamp
+                        && page.mightContain(write)) {
+                    Write last = page.last(write, timestamp);
+                    if(last != null) {
+                        return last.getType();
+                    }
+                }
+            }
         }
-        return action;
+        return null;
     }
 
     @Override
@@ -810,6 +1015,39 @@ public final class Buffer extends Limbo implements InventoryTracker {
         return value.getType() == Type.STRING;
     }
 
+    /**
+     * Append {@code write} to the current Page, adding a new Page if
+     * necessary, and optionally {@code sync} it. If a {@code committer} is
+     * provided, the append is registered with it and the ticket is returned.
+     * 
+     * @param write
+     * @param sync
+     * @param committer
+     * @return the ticket from the {@code committer} or 0
+     */
+    private long append(Write write, boolean sync,
+            @Nullable GroupCommit committer) {
+        structure.lock();
+        try {
+            boolean notify = pages.size() == 2 && currentPage.size == 0;
+            currentPage.append(write, sync);
+            if(notify) {
+                synchronized (transportable) {
+                    transportable.notify();
+                }
+            }
+            return committer != null ? committer.register(write.size() + 4)
+                    : 0;
+        }
+        catch (CapacityException e) {
+            addPage();
+            return append(write, sync, committer);
+        }
+        finally {
+            structure.unlock();
+        }
+    }
+
     /**
      * Add a new Page to the Buffer.
      */
@@ -851,14 +1089,36 @@ public final class Buffer extends Limbo implements InventoryTracker {
         finally {
             structure.unlock();
         }
+        synchronized (drained) {
+            drained.notifyAll();
+        }
     }
 
     /**
-     * Scale back the number of items that are transported in a single cycle.
+     * Scale back the number of items that are transported in a single cycle
+     * so that reads are not blocked for long. If the Buffer is past the
+     * {@link GlobalState#BUFFER_BACKPRESSURE_PAGES high-water mark}, writers
+     * are already being held back, so transport keeps the rate that the
+     * {@link TransportScheduler} targets instead of starting over.
      */
     private void scaleBackTransportRate() {
-        transportRate = 1;
-        transportThreadSleepTimeInMs = MAX_TRANSPORT_THREAD_SLEEP_TIME_IN_MS;
+        int depth = pages.size() - 1;
+        int mark = BUFFER_BACKPRESSURE_PAGES;
+        transportRate = mark > 0 && depth >= mark ? getTargetTransportRate(depth)
+                : 1;
+        transportThreadSleepTimeInMs = scheduler.getSleepTimeInMs(depth);
+    }
+
+    /**
+     * Return the number of writes that each transport lane should transport
+     * in a single cycle when {@code depth} full pages are waiting, according
+     * to the {@link TransportScheduler}.
+     * 
+     * @param depth
+     * @return the target transport rate
+     */
+    private int getTargetTransportRate(int depth) {
+        return Math.max(1, scheduler.getTargetBatchSize(depth) / lanes.size());
     }
 
     /**
@@ -932,12 +1192,6 @@ public final class Buffer extends Limbo implements InventoryTracker {
          */
         private final transient int sizeUpperBound;
 
-        /**
-         * A bloom filter like cache that is used to help determine if it is
-         * possible that a key/record exists on the page.
-         */
-        private final boolean[] keyRecordCache;
-
         /**
          * A bloom filter like cache that is used to help determine if it
          * possible that a Write exists on the page.
@@ -945,16 +1199,42 @@ public final class Buffer extends Limbo implements InventoryTracker {
         private final BloomFilter writeCache;
 
         /**
-         * A bloom filter like cache that is used to help determine if it
-         * possible that a record exists on the page.
+         * An index from each key on the Page to the {@link Positions} of the
+         * Writes for that key.
          */
-        private final boolean[] recordCache;
+        private final Map<Text, Positions> keyIndex = Maps.newHashMap();
 
         /**
-         * A bloom filter like cache that is used to help determine if it
-         * possible that a key exists on the page.
+         * An index from each record on the Page to the {@link Positions} of
+         * the Writes in that record.
+         */
+        private final Map<PrimaryKey, Positions> recordIndex = Maps
+                .newHashMap();
+
+        /**
+         * An index from each key and record on the Page to the
+         * {@link Positions} of the Writes for that key in that record.
+         */
+        private final Map<Text, Map<PrimaryKey, Positions>> keyRecordIndex = Maps
+                .newHashMap();
+
+        /**
+         * An index from each key on the Page to its values, in sorted order,
+         * and from each value to the {@link Positions} of the Writes with that
+         * key and value. This makes it possible to find the Writes that
+         * satisfy a range operator without looking at any other Writes.
          */
-        private final boolean[] keyCache;
+        private final Map<Text, NavigableMap<Value, Positions>> valueIndex = Maps
+                .newHashMap();
+
+        /**
+         * An index from each distinct Write on the Page, irrespective of its
+         * version and action, to the {@link Positions} of the Writes that are
+         * equal to it. Each of those Writes toggles whether the Write exists,
+         * so the number of positions is enough to verify it without looking
+         * at the Writes themselves.
+         */
+        private final Map<Write, Positions> writeIndex = Maps.newHashMap();
 
         /**
          * Construct an empty Page with {@code capacity} bytes.
@@ -994,12 +1274,8 @@ public final class Buffer extends Limbo implements InventoryTracker {
             this.sizeUpperBound = Math.max(1,
                     (int) ((capacity / AVG_WRITE_SIZE) * 1.2));
             this.writes = new Write[sizeUpperBound];
-            this.recordCache = new boolean[sizeUpperBound];
-            this.keyCache = new boolean[sizeUpperBound];
-            this.keyRecordCache = new boolean[sizeUpperBound];
             this.writeCache = BloomFilter
                     .create(PER_PAGE_BLOOM_FILTER_CAPACITY);
-            writeCache.disableThreadSafety();
             Iterator<ByteBuffer> it = ByteableCollections.iterator(content);
             while (it.hasNext()) {
                 Write write = Write.fromByteBuffer(it.next());
@@ -1052,6 +1328,33 @@ public final class Buffer extends Limbo implements InventoryTracker {
             }
         }
 
+        /**
+         * Return the number of Writes on the Page that are equal to
+         * {@code write}, have not been removed and have a version that is less
+         * than or equal to {@code timestamp}. Each of those Writes toggles
+         * whether {@code write} exists, so the parity of the count is all that
+         * is needed to {@link Buffer#verify(Write, long, boolean) verify} it.
+         * 
+         * @param write
+         * @param timestamp
+         * @return the number of matching Writes
+         */
+        public int count(Write write, long timestamp) {
+            boolean current = this == currentPage;
+            long stamp = Locks.stampLockReadIfCondition(accessLock, current);
+            transportLock.readLock().lock();
+            try {
+                Positions positions = writeIndex.get(write);
+                return positions != null ? Math.max(0,
+                        bound(positions, timestamp) - positions.ceiling(head))
+                        : 0;
+            }
+            finally {
+                transportLock.readLock().unlock();
+                Locks.stampUnlockReadIfCondition(accessLock, stamp, current);
+            }
+        }
+
         /**
          * Delete the page from disk. The Page object will reside in memory
          * until garbage collection.
@@ -1166,6 +1469,177 @@ public final class Buffer extends Limbo implements InventoryTracker {
             };
         }
 
+        /**
+         * Return an iterator over the Writes on the Page for {@code key}.
+         * 
+         * @param key
+         * @return the iterator
+         */
+        public Iterator<Write> iterator(Text key) {
+            return iterator(keyIndex.get(key));
+        }
+
+        /**
+         * Return an iterator over the Writes on the Page in {@code record}.
+         * 
+         * @param record
+         * @return the iterator
+         */
+        public Iterator<Write> iterator(PrimaryKey record) {
+            return iterator(recordIndex.get(record));
+        }
+
+        /**
+         * Return an iterator over the Writes on the Page for {@code key} in
+         * {@code record}.
+         * 
+         * @param key
+         * @param record
+         * @return the iterator
+         */
+        public Iterator<Write> iterator(Text key, PrimaryKey record) {
+            Map<PrimaryKey, Positions> records = keyRecordIndex.get(key);
+            return iterator(records != null ? records.get(record) : null);
+        }
+
+        /**
+         * Return an iterator over the Writes on the Page for {@code key} whose
+         * values <em>might</em> satisfy {@code operator} in relation to
+         * {@code values}. For range operators, only the Writes with values in
+         * the range are returned. Otherwise, all the Writes for {@code key}
+         * are returned, so the caller must still check each Write with
+         * {@link Limbo#matches(Value, Operator, TObject...)}.
+         * 
+         * @param key
+         * @param operator
+         * @param values
+         * @return the iterator
+         */
+        public Iterator<Write> iterator(Text key, Operator operator,
+                TObject... values) {
+            NavigableMap<Value, Positions> range = valueIndex.get(key);
+            if(range == null) {
+                return Collections.emptyIterator();
+            }
+            Value v1 = Value.wrap(values[0]);
+            Collection<Positions> candidates;
+            switch (operator) {
+            case EQUALS:
+                Positions positions = range.get(v1);
+                candidates = positions != null ? Collections
+                        .singleton(positions) : Collections
+                        .<Positions> emptySet();
+                break;
+            case GREATER_THAN:
+                candidates = range.tailMap(v1, false).values();
+                break;
+            case GREATER_THAN_OR_EQUALS:
+                candidates = range.tailMap(v1, true).values();
+                break;
+            case LESS_THAN:
+                candidates = range.headMap(v1, false).values();
+                break;
+            case LESS_THAN_OR_EQUALS:
+                candidates = range.headMap(v1, true).values();
+                break;
+            case BETWEEN:
+                Preconditions.checkArgument(values.length > 1);
+                Value v2 = Value.wrap(values[1]);
+                candidates = v1.compareTo(v2) < 0 ? range.subMap(v1, true,
+                        v2, false).values() : Collections
+                        .<Positions> emptySet();
+                break;
+            default:
+                return iterator(key);
+            }
+            return iterator(Positions.merge(candidates));
+        }
+
+        /**
+         * Return an iterator over the Writes at the {@code positions} that
+         * have not been removed from the Page. Like {@link #iterator()}, the
+         * returned iterator does not support removes and throws a
+         * {@link ConcurrentModificationException} if a Write is removed from
+         * the Page during iteration.
+         * 
+         * @param positions the positions, in ascending order, or {@code null}
+         *            if there are none
+         * @return the iterator
+         */
+        private Iterator<Write> iterator(@Nullable final Positions positions) {
+            if(positions == null) {
+                return Collections.emptyIterator();
+            }
+            return new Iterator<Write>() {
+
+                /**
+                 * The value of {@link #head} when the iterator was created.
+                 */
+                private final int expectedHead = head;
+
+                /**
+                 * The index of the "next" position in {@code positions}.
+                 */
+                private int index = positions.ceiling(head);
+
+                @Override
+                public boolean hasNext() {
+                    if(head != expectedHead) {
+                        throw new ConcurrentModificationException(
+                                "A write has been removed from the Page");
+                    }
+                    return index < positions.size();
+                }
+
+                @Override
+                public Write next() {
+                    if(head != expectedHead) {
+                        throw new ConcurrentModificationException(
+                                "A write has been removed from the Page");
+                    }
+                    Write next = writes[positions.get(index)];
+                    ++index;
+                    return next;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+            };
+        }
+
+        /**
+         * Return the newest Write on the Page that is equal to {@code write},
+         * has not been removed and has a version that is less than or equal to
+         * {@code timestamp}.
+         * 
+         * @param write
+         * @param timestamp
+         * @return the newest matching Write or {@code null} if there is none
+         */
+        @Nullable
+        public Write last(Write write, long timestamp) {
+            boolean current = this == currentPage;
+            long stamp = Locks.stampLockReadIfCondition(accessLock, current);
+            transportLock.readLock().lock();
+            try {
+                Positions positions = writeIndex.get(write);
+                if(positions != null) {
+                    int index = bound(positions, timestamp) - 1;
+                    if(index >= positions.ceiling(head)) {
+                        return writes[positions.get(index)];
+                    }
+                }
+                return null;
+            }
+            finally {
+                transportLock.readLock().unlock();
+                Locks.stampUnlockReadIfCondition(accessLock, stamp, current);
+            }
+        }
+
         /**
          * Return {@code true} if the Page <em>might</em> have a Write equal to
          * {@code write}. If this function returns true, the caller should check
@@ -1198,44 +1672,43 @@ public final class Buffer extends Limbo implements InventoryTracker {
         }
 
         /**
-         * Return {@code true} if the Page <em>might</em> have a Write with the
-         * specified {@code record} component. If this function returns true,
-         * the caller should perform a linear scan using the local
-         * {@link #iterator()} .
+         * Return {@code true} if the Page has a Write with the specified
+         * {@code record} component. If this function returns true, the caller
+         * should use {@link #iterator(PrimaryKey)} to get the relevant Writes.
          * 
          * @param record
-         * @return {@code true} if a write within {@code record} possibly exists
+         * @return {@code true} if a write within {@code record} exists
          */
         public boolean mightContain(PrimaryKey record) {
-            return recordCache[slotify(record.hashCode())];
+            return recordIndex.containsKey(record);
         }
 
         /**
-         * Return {@code true} if the Page <em>might</em> have a Write with the
-         * specified {@code key} component. If this function returns true,
-         * the caller should perform a linear scan using the local
-         * {@link #iterator()} .
+         * Return {@code true} if the Page has a Write with the specified
+         * {@code key} component. If this function returns true, the caller
+         * should use {@link #iterator(Text)} to get the relevant Writes.
          * 
          * @param key
-         * @return {@code true} if a write for {@code key} possibly exists
+         * @return {@code true} if a write for {@code key} exists
          */
         public boolean mightContain(Text key) {
-            return keyCache[slotify(key.hashCode())];
+            return keyIndex.containsKey(key);
         }
 
         /**
-         * Return {@code true} if the Page <em>might</em> have a Write with the
-         * specified {@code key} and {@code record} components. If this function
-         * returns true, the caller should perform a linear scan using the local
-         * {@link #iterator()} .
+         * Return {@code true} if the Page has a Write with the specified
+         * {@code key} and {@code record} components. If this function returns
+         * true, the caller should use {@link #iterator(Text, PrimaryKey)} to
+         * get the relevant Writes.
          * 
          * @param key
          * @param record
          * @return {@code true} if a write for {@code key} in {@code record}
-         *         possibly exists
+         *         exists
          */
         public boolean mightContain(Text key, PrimaryKey record) {
-            return keyRecordCache[slotify(key.hashCode(), record.hashCode())];
+            Map<PrimaryKey, Positions> records = keyRecordIndex.get(key);
+            return records != null && records.containsKey(record);
         }
 
         /**
@@ -1259,6 +1732,28 @@ public final class Buffer extends Limbo implements InventoryTracker {
             }
         }
 
+        /**
+         * Return up to {@code count} Writes, starting at index {@link #head}
+         * in {@link #writes}. Like {@link #next()}, this method does not
+         * remove the returned Writes, so the same batch will be returned on
+         * multiple invocations until {@link #remove(int)} is called.
+         * 
+         * @param count
+         * @return the next batch of Writes
+         */
+        public List<Write> next(int count) {
+            long stamp = Locks.stampLockReadIfCondition(accessLock,
+                    this == currentPage);
+            try {
+                return Arrays.asList(writes).subList(head,
+                        Math.min(head + count, size));
+            }
+            finally {
+                Locks.stampUnlockReadIfCondition(accessLock, stamp,
+                        this == currentPage);
+            }
+        }
+
         /**
          * Simulates the removal of the head Write from the Page. This method
          * only updates the {@link #head} and {@link #pos} metadata and does not
@@ -1277,6 +1772,25 @@ public final class Buffer extends Limbo implements InventoryTracker {
             }
         }
 
+        /**
+         * Simulate the removal of the {@code count} Writes at the head of the
+         * Page, which is the same as calling {@link #remove()} {@code count}
+         * times.
+         * 
+         * @param count
+         */
+        public void remove(int count) {
+            long stamp = Locks.stampLockWriteIfCondition(accessLock,
+                    this == currentPage);
+            try {
+                head += count;
+            }
+            finally {
+                Locks.stampUnlockWriteIfCondition(accessLock, stamp,
+                        this == currentPage);
+            }
+        }
+
         @Override
         public String toString() {
             return filename;
@@ -1315,6 +1829,35 @@ public final class Buffer extends Limbo implements InventoryTracker {
             }
         }
 
+        /**
+         * Return the index of the first of the {@code positions} whose Write
+         * has a version that is greater than {@code timestamp}. Since Writes
+         * are appended in version order, every earlier position has a Write
+         * with a version that is less than or equal to {@code timestamp}.
+         * 
+         * @param positions
+         * @param timestamp
+         * @return the index, which is equal to {@link Positions#size()} if no
+         *         Write is newer than {@code timestamp}
+         */
+        private int bound(Positions positions, long timestamp) {
+            int low = 0;
+            int high = positions.size();
+            if(timestamp == Time.NONE) {
+                return high;
+            }
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if(writes[positions.get(mid)].getVersion() <= timestamp) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
         /**
          * Do the work to actually index and append {@code write} (while
          * optionally performing a {@code sync} WITHOUT grabbing any locks
@@ -1341,8 +1884,9 @@ public final class Buffer extends Limbo implements InventoryTracker {
         }
 
         /**
-         * Insert {@code write} into the list of {@link #writes} and increment
-         * the {@link #size} counter.
+         * Insert {@code write} into the list of {@link #writes}, add its
+         * position to each of the Page's indexes and increment the
+         * {@link #size} counter.
          * 
          * @param write
          * @throws CapacityException
@@ -1351,46 +1895,34 @@ public final class Buffer extends Limbo implements InventoryTracker {
         private void index(Write write) throws CapacityException {
             if(size < writes.length) {
                 writes[size] = write;
-                int hashCodeRecord = write.getRecord().hashCode();
-                int hashCodeKey = write.getKey().hashCode();
+                Text key = write.getKey();
+                PrimaryKey record = write.getRecord();
                 // The individual Write components are added instead of the
                 // entire Write so that version information is not factored into
                 // the bloom filter hashing
-                writeCache.putCached(write.getRecord(), write.getKey(),
-                        write.getValue());
-                keyRecordCache[slotify(hashCodeRecord, hashCodeKey)] = true;
-                recordCache[slotify(hashCodeRecord)] = true;
-                keyCache[slotify(hashCodeKey)] = true;
+                writeCache.putCached(record, key, write.getValue());
+                Positions.of(keyIndex, key).add(size);
+                Positions.of(recordIndex, record).add(size);
+                Map<PrimaryKey, Positions> records = keyRecordIndex.get(key);
+                if(records == null) {
+                    records = Maps.newHashMap();
+                    keyRecordIndex.put(key, records);
+                }
+                Positions.of(records, record).add(size);
+                NavigableMap<Value, Positions> range = valueIndex.get(key);
+                if(range == null) {
+                    range = Maps.newTreeMap(Value.Sorter.INSTANCE);
+                    valueIndex.put(key, range);
+                }
+                Positions.of(range, write.getValue()).add(size);
+                Positions.of(writeIndex, write).add(size);
+                lanes.enqueue(record);
                 ++size;
             }
             else {
                 throw CapacityException.INSTANCE;
             }
         }
-
-        /**
-         * Convenience function to return the appropriate slot in one of the
-         * Page's filter's between 0 and {@code #sizeUpperBound} for an object
-         * with {@code hashCode}.
-         * 
-         * @param hashCode
-         * @return the slot
-         */
-        private int slotify(int hashCode) {
-            return Math.abs(hashCode % sizeUpperBound);
-        }
-
-        /**
-         * Convenience function to return the appropriate slot in one of the
-         * Page's filter's between 0 and {@code #sizeUpperBound} for a group of
-         * objects with the {@code hashCodes}.
-         * 
-         * @param hashCode
-         * @return the slot
-         */
-        private int slotify(int... hashCodes) {
-            return Math.abs(Integers.avg(hashCodes) % sizeUpperBound);
-        }
     }
 
     /**
@@ -1545,7 +2077,7 @@ public final class Buffer extends Limbo implements InventoryTracker {
                         break;
                     }
                     if(pageMightContainRelevantWrites(next)) {
-                        writeIterator = next.iterator();
+                        writeIterator = iterator(next);
                         break;
                     }
                     else {
@@ -1586,6 +2118,20 @@ public final class Buffer extends Limbo implements InventoryTracker {
             }
         }
 
+        /**
+         * Return an iterator over the writes on {@code page} that might be
+         * relevant to what this iterator is seeking, in the order they were
+         * appended. By default, every write on the page is traversed.
+         * Subclasses that seek by key or record should use the page's indexes
+         * so that only the relevant writes are traversed.
+         * 
+         * @param page
+         * @return the iterator
+         */
+        protected Iterator<Write> iterator(Page page) {
+            return page.iterator();
+        }
+
         /**
          * Call the appropriate function to determine if the {@code page} might
          * contain the kinds of writes that this iterator is seeking.
@@ -1630,6 +2176,11 @@ public final class Buffer extends Limbo implements InventoryTracker {
             init();
         }
 
+        @Override
+        protected Iterator<Write> iterator(Page page) {
+            return page.iterator(write.getKey(), write.getRecord());
+        }
+
         @Override
         protected boolean pageMightContainRelevantWrites(Page page) {
             return page.mightContain(write);
@@ -1672,6 +2223,11 @@ public final class Buffer extends Limbo implements InventoryTracker {
             init();
         }
 
+        @Override
+        protected Iterator<Write> iterator(Page page) {
+            return page.iterator(key, record);
+        }
+
         @Override
         protected boolean pageMightContainRelevantWrites(Page page) {
             return page.mightContain(key, record);
@@ -1709,6 +2265,11 @@ public final class Buffer extends Limbo implements InventoryTracker {
             init();
         }
 
+        @Override
+        protected Iterator<Write> iterator(Page page) {
+            return page.iterator(key);
+        }
+
         @Override
         protected boolean pageMightContainRelevantWrites(Page page) {
             return page.mightContain(key);
@@ -1721,6 +2282,65 @@ public final class Buffer extends Limbo implements InventoryTracker {
 
     }
 
+    /**
+     * A {@link SeekingIterator} that looks for writes with a particular key
+     * component whose values satisfy an {@link Operator} in relation to one or
+     * more values.
+     * 
+     * @author Jeff Nelson
+     */
+    private class ValueSeekingIterator extends SeekingIterator {
+
+        /**
+         * The relevant key.
+         */
+        private final Text key;
+
+        /**
+         * The operator that relevant values must satisfy.
+         */
+        private final Operator operator;
+
+        /**
+         * The values that are the operands for the {@link #operator}.
+         */
+        private final TObject[] values;
+
+        /**
+         * Construct a new instance.
+         * 
+         * @param key
+         * @param operator
+         * @param values
+         * @param timestamp
+         */
+        protected ValueSeekingIterator(String key, Operator operator,
+                TObject[] values, long timestamp) {
+            super(timestamp);
+            this.key = Text.wrapCached(key);
+            this.operator = operator;
+            this.values = values;
+            init();
+        }
+
+        @Override
+        protected Iterator<Write> iterator(Page page) {
+            return page.iterator(key, operator, values);
+        }
+
+        @Override
+        protected boolean pageMightContainRelevantWrites(Page page) {
+            return page.mightContain(key);
+        }
+
+        @Override
+        protected boolean isRelevantWrite(Write write) {
+            return write.getKey().equals(key)
+                    && matches(write.getValue(), operator, values);
+        }
+
+    }
+
     /**
      * A {@link SeekingIterator} that looks for writes with a particular record
      * component.
@@ -1751,6 +2371,11 @@ public final class Buffer extends Limbo implements InventoryTracker {
             init();
         }
 
+        @Override
+        protected Iterator<Write> iterator(Page page) {
+            return page.iterator(record);
+        }
+
         @Override
         protected boolean pageMightContainRelevantWrites(Page page) {
             return page.mightContain(record);
@@ -1792,6 +2417,111 @@ public final class Buffer extends Limbo implements InventoryTracker {
 
     }
 
+    /**
+     * A growable list of the ascending positions in a {@link Page Page's}
+     * {@link Page#writes} that share some component. Each {@link Page} keeps
+     * its indexes as {@link Positions} so that reads only need to look at the
+     * Writes that are relevant.
+     * 
+     * @author Jeff Nelson
+     */
+    private static final class Positions {
+
+        /**
+         * Return the {@link Positions} that are mapped from {@code key} in
+         * {@code index}, after adding an empty instance if necessary.
+         * 
+         * @param index
+         * @param key
+         * @return the Positions
+         */
+        static <K> Positions of(Map<K, Positions> index, K key) {
+            Positions positions = index.get(key);
+            if(positions == null) {
+                positions = new Positions();
+                index.put(key, positions);
+            }
+            return positions;
+        }
+
+        /**
+         * Return {@link Positions} that contain all the positions in each of
+         * the {@code groups}, in ascending order.
+         * 
+         * @param groups
+         * @return the merged Positions
+         */
+        static Positions merge(Collection<Positions> groups) {
+            if(groups.size() == 1) {
+                return groups.iterator().next();
+            }
+            Positions merged = new Positions();
+            for (Positions group : groups) {
+                for (int i = 0; i < group.size; ++i) {
+                    merged.add(group.elements[i]);
+                }
+            }
+            Arrays.sort(merged.elements, 0, merged.size);
+            return merged;
+        }
+
+        /**
+         * The positions, in ascending order.
+         */
+        private int[] elements = new int[4];
+
+        /**
+         * The number of positions in {@link #elements}.
+         */
+        private int size = 0;
+
+        /**
+         * Append {@code position}, which must be larger than all the others.
+         * 
+         * @param position
+         */
+        void add(int position) {
+            if(size == elements.length) {
+                elements = Arrays.copyOf(elements, size * 2);
+            }
+            elements[size] = position;
+            ++size;
+        }
+
+        /**
+         * Return the index of the smallest position that is greater than or
+         * equal to {@code position}.
+         * 
+         * @param position
+         * @return the index, which is equal to {@link #size()} if every
+         *         position is smaller
+         */
+        int ceiling(int position) {
+            int index = Arrays.binarySearch(elements, 0, size, position);
+            return index >= 0 ? index : -(index + 1);
+        }
+
+        /**
+         * Return the position at {@code index}.
+         * 
+         * @param index
+         * @return the position
+         */
+        int get(int index) {
+            return elements[index];
+        }
+
+        /**
+         * Return the number of positions.
+         * 
+         * @return the size
+         */
+        int size() {
+            return size;
+        }
+
+    }
+
     /**
      * An {@link Iterator} that can traverse Writes directly from disk for a
      * Buffer that uses {@code location} as a store. Call
@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.temp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.util.Logger;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+/**
+ * A {@link GroupCommit} amortizes the cost of making appends to the
+ * {@link Buffer} durable across concurrent writers.
+ * <p>
+ * Instead of forcing the current Page to disk after each append, a writer
+ * {@link #register(int) registers} its append to get a ticket and then
+ * {@link #await(long) parks} until the ticket is durable. A single flusher
+ * thread runs the {@code flush} routine once for every batch of registered
+ * appends and then releases all the writers in the batch at once. A batch is
+ * flushed as soon as it contains {@code maxWrites} appends or
+ * {@code maxBytes} bytes, or once its oldest append has waited for the
+ * {@code window}. Appends that are registered while a flush is in progress
+ * join the next batch, so batches grow naturally with the number of
+ * concurrent writers even if the window is 0.
+ * </p>
+ * <p>
+ * A writer is never released before the flush that covers its append has
+ * completed, so each acknowledged write is as durable as it would be if the
+ * writer had forced the Page itself.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@ThreadSafe
+@PackagePrivate
+final class GroupCommit implements Runnable {
+
+    /**
+     * The routine that makes all the registered appends durable.
+     */
+    private final Runnable flush;
+
+    /**
+     * The number of appends that cause a batch to be flushed without waiting
+     * for the {@link #window}.
+     */
+    private final int maxWrites;
+
+    /**
+     * The number of bytes that cause a batch to be flushed without waiting for
+     * the {@link #window}.
+     */
+    private final long maxBytes;
+
+    /**
+     * The maximum number of nanoseconds that the oldest append in a batch
+     * waits for other appends to join the batch before it is flushed.
+     */
+    private final long window;
+
+    /**
+     * The lock that protects the ticket counters and the metrics.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signaled when an append is registered or the GroupCommit is stopped.
+     */
+    private final Condition pending = lock.newCondition();
+
+    /**
+     * Signaled when a flush completes.
+     */
+    private final Condition flushed = lock.newCondition();
+
+    /**
+     * The ticket of the most recently registered append.
+     */
+    @GuardedBy("lock")
+    private long appended = 0;
+
+    /**
+     * The ticket of the most recent append that was included in a flush,
+     * which may still be in progress.
+     */
+    @GuardedBy("lock")
+    private long captured = 0;
+
+    /**
+     * The ticket of the most recent append that is durable.
+     */
+    @GuardedBy("lock")
+    private long durable = 0;
+
+    /**
+     * The ticket of the most recent append that was included in a flush that
+     * failed.
+     */
+    @GuardedBy("lock")
+    private long failed = 0;
+
+    /**
+     * The reason that the most recent failed flush failed.
+     */
+    @Nullable
+    @GuardedBy("lock")
+    private RuntimeException failure = null;
+
+    /**
+     * The number of bytes in the appends that have been registered since the
+     * last flush was captured.
+     */
+    @GuardedBy("lock")
+    private long bytes = 0;
+
+    /**
+     * The {@link System#nanoTime()} when the oldest append that has been
+     * registered since the last flush was captured.
+     */
+    @GuardedBy("lock")
+    private long oldest = 0;
+
+    /**
+     * Metrics about the flushes that have been performed.
+     */
+    @GuardedBy("lock")
+    private long flushes = 0;
+    @GuardedBy("lock")
+    private long flushedWrites = 0;
+    @GuardedBy("lock")
+    private long maxBatch = 0;
+    @GuardedBy("lock")
+    private long flushNanos = 0;
+    @GuardedBy("lock")
+    private long maxFlushNanos = 0;
+
+    /**
+     * A flag that indicates whether the flusher should keep running.
+     */
+    private volatile boolean running = false;
+
+    /**
+     * The flusher thread, which is set while the GroupCommit is running.
+     */
+    @Nullable
+    private Thread flusher = null;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param flush the routine that makes every registered append durable
+     * @param maxWrites the number of appends that trigger a flush
+     * @param maxBytes the number of bytes that trigger a flush
+     * @param window the maximum number of milliseconds that an append waits
+     *            for others to join its batch
+     */
+    GroupCommit(Runnable flush, int maxWrites, long maxBytes, int window) {
+        this.flush = flush;
+        this.maxWrites = Math.max(1, maxWrites);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.window = TimeUnit.MILLISECONDS.toNanos(Math.max(0, window));
+    }
+
+    /**
+     * Block until the append with {@code ticket} is durable. If the flush that
+     * covers the append fails, the failure is propagated.
+     *
+     * @param ticket the ticket that was returned from {@link #register(int)}
+     */
+    public void await(long ticket) {
+        lock.lock();
+        try {
+            while (durable < ticket) {
+                if(failed >= ticket) {
+                    throw Throwables.propagate(failure);
+                }
+                flushed.awaitUninterruptibly();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return a description of the number of flushes along with the average
+     * and maximum batch size and flush latency.
+     *
+     * @return the stats
+     */
+    public String describe() {
+        lock.lock();
+        try {
+            return new StringBuilder().append("flushes: ").append(flushes)
+                    .append(", average batch: ")
+                    .append(flushes > 0 ? flushedWrites / flushes : 0)
+                    .append(" writes, max batch: ").append(maxBatch)
+                    .append(" writes, average flush latency: ")
+                    .append(toMicros(flushes > 0 ? flushNanos / flushes : 0))
+                    .append(" us, max flush latency: ")
+                    .append(toMicros(maxFlushNanos)).append(" us")
+                    .toString();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Register an append of {@code size} bytes that has been written, but not
+     * forced, to the current Page and return the ticket that must be passed
+     * to {@link #await(long)}. Appends must be registered in the same order
+     * that they are written. If the GroupCommit is not running, the append is
+     * flushed before this method returns.
+     *
+     * @param size
+     * @return the ticket
+     */
+    public long register(int size) {
+        lock.lock();
+        try {
+            if(running) {
+                if(appended == captured) {
+                    oldest = System.nanoTime();
+                }
+                bytes += size;
+                ++appended;
+                pending.signal();
+                return appended;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        flush.run();
+        return 0;
+    }
+
+    @Override
+    public void run() {
+        for (;;) {
+            long target;
+            lock.lock();
+            try {
+                long delay;
+                while ((delay = getDelay()) != 0) {
+                    if(delay < 0) {
+                        pending.awaitUninterruptibly();
+                    }
+                    else {
+                        try {
+                            pending.awaitNanos(delay);
+                        }
+                        catch (InterruptedException e) {
+                            // Nothing interrupts the flusher on purpose, so
+                            // stop waiting for the batch to fill and flush it
+                            // now. The interrupt status has been cleared, so
+                            // later waits block normally instead of spinning.
+                            break;
+                        }
+                    }
+                }
+                if(appended == captured) {
+                    // The GroupCommit is stopped and every append is durable
+                    return;
+                }
+                target = appended;
+                captured = target;
+                bytes = 0;
+            }
+            finally {
+                lock.unlock();
+            }
+            long start = System.nanoTime();
+            RuntimeException error = null;
+            try {
+                flush.run();
+            }
+            catch (RuntimeException e) {
+                Logger.error("An error occurred while flushing the Buffer", e);
+                error = e;
+            }
+            long elapsed = System.nanoTime() - start;
+            lock.lock();
+            try {
+                long batch = target - Math.max(durable, failed);
+                if(error == null) {
+                    durable = target;
+                    ++flushes;
+                    flushedWrites += batch;
+                    maxBatch = Math.max(maxBatch, batch);
+                    flushNanos += elapsed;
+                    maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+                }
+                else {
+                    failed = target;
+                    failure = error;
+                }
+                flushed.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Start the flusher thread.
+     *
+     * @param name the name of the flusher thread
+     */
+    public void start(String name) {
+        Preconditions.checkState(!running, "The group commit is running");
+        running = true;
+        flusher = new Thread(this, name);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Flush any appends that are pending and stop the flusher thread.
+     */
+    public void stop() {
+        if(running) {
+            lock.lock();
+            try {
+                running = false;
+                pending.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+            try {
+                flusher.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+        }
+    }
+
+    /**
+     * Return the number of nanoseconds that the flusher must wait before the
+     * next batch is ready, 0 if it is ready now or a negative number if there
+     * aren't any appends to flush.
+     *
+     * @return the delay
+     */
+    @GuardedBy("lock")
+    private long getDelay() {
+        if(appended == captured) {
+            return running ? -1 : 0;
+        }
+        else if(!running || appended - captured >= maxWrites
+                || bytes >= maxBytes) {
+            return 0;
+        }
+        else {
+            return Math.max(0, window - (System.nanoTime() - oldest));
+        }
+    }
+
+    /**
+     * Convert {@code nanos} to microseconds.
+     *
+     * @param nanos
+     * @return the microseconds
+     */
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+}
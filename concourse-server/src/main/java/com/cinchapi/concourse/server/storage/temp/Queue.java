@@ -62,9 +62,7 @@ public class Queue extends Limbo {
                 public BloomFilter call() throws Exception {
                     // TODO: at some point this size should be determined based
                     // on some intelligent heuristic
-                    BloomFilter filter = BloomFilter.create(500000);
-                    filter.disableThreadSafety();
-                    return filter;
+                    return BloomFilter.create(500000);
                 }
 
             });
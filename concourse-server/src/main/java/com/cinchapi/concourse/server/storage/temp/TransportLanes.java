@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.temp;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+import com.cinchapi.concourse.server.concurrent.ConcourseExecutors;
+import com.cinchapi.concourse.server.model.PrimaryKey;
+import com.cinchapi.concourse.server.storage.PermanentStore;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+/**
+ * {@link TransportLanes} split each batch of {@link Write Writes} that the
+ * {@link Buffer} transports into lanes that are partitioned by record and
+ * feed each lane to the {@link PermanentStore} concurrently.
+ * <p>
+ * All the Writes for a record are always assigned to the same lane and each
+ * lane accepts its Writes in the order they were transported, so the version
+ * order within each record is preserved. A call to
+ * {@link #transport(List, PermanentStore)} does not return until every lane
+ * has accepted its part of the batch, so the Buffer can safely remove the
+ * entire batch, and delete a Page once it is drained, afterwards.
+ * </p>
+ * <p>
+ * With a single lane, each batch is accepted by the calling thread, which is
+ * the same as transporting without lanes.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@ThreadSafe
+@PackagePrivate
+final class TransportLanes {
+
+    /**
+     * The number of lanes.
+     */
+    private final int count;
+
+    /**
+     * The number of Writes that have been assigned to each lane, but not
+     * transported.
+     */
+    private final AtomicLongArray backlog;
+
+    /**
+     * The number of Writes that each lane has transported.
+     */
+    private final AtomicLongArray transported;
+
+    /**
+     * The number of nanoseconds that each lane has spent waiting for the
+     * destination to accept its Writes.
+     */
+    private final AtomicLongArray nanos;
+
+    /**
+     * The threads that run the lanes, which is only set while the lanes are
+     * started and there is more than one lane.
+     */
+    @Nullable
+    @GuardedBy("lock")
+    private ExecutorService executor = null;
+
+    /**
+     * The lock that is held while a batch is transported, so that the lanes
+     * are not {@link #stop() stopped} in the middle of a batch.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param count the number of lanes
+     */
+    TransportLanes(int count) {
+        this.count = Math.max(1, count);
+        this.backlog = new AtomicLongArray(this.count);
+        this.transported = new AtomicLongArray(this.count);
+        this.nanos = new AtomicLongArray(this.count);
+    }
+
+    /**
+     * Return a description of the throughput and backlog of each lane.
+     *
+     * @return the stats
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (int lane = 0; lane < count; ++lane) {
+            long elapsed = nanos.get(lane);
+            long writes = transported.get(lane);
+            if(lane > 0) {
+                sb.append("\n");
+            }
+            sb.append("lane ")
+                    .append(lane)
+                    .append(": ")
+                    .append(writes)
+                    .append(" writes transported, ")
+                    .append(elapsed > 0 ? writes
+                            * TimeUnit.SECONDS.toNanos(1) / elapsed : 0)
+                    .append(" writes/sec, ").append(backlog.get(lane))
+                    .append(" writes in backlog");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Record that a Write in {@code record} has been added to the Buffer
+     * and is waiting to be transported.
+     *
+     * @param record
+     */
+    public void enqueue(PrimaryKey record) {
+        backlog.incrementAndGet(laneOf(record));
+    }
+
+    /**
+     * Return the number of lanes.
+     *
+     * @return the number of lanes
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Start the threads that run the lanes.
+     *
+     * @param threadNamePrefix
+     */
+    public void start(String threadNamePrefix) {
+        lock.lock();
+        try {
+            if(count > 1 && executor == null) {
+                executor = ConcourseExecutors.newThreadPool(count,
+                        threadNamePrefix);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the threads that run the lanes. If a batch is being transported,
+     * this method waits for every lane to finish it first, so that no lane
+     * is still giving Writes to the destination when this method returns.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            ExecutorService executor0 = executor;
+            if(executor0 != null) {
+                executor = null;
+                executor0.shutdown();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Split the {@code batch} into lanes and have each lane give its Writes
+     * to the {@code destination}, concurrently if the lanes are started.
+     * This method returns once every lane is done, even if the calling thread
+     * is interrupted. If any lane fails, the failure is propagated after the
+     * other lanes are done.
+     *
+     * @param batch the Writes to transport, in version order
+     * @param destination
+     */
+    public void transport(List<Write> batch, final PermanentStore destination) {
+        final List<List<Write>> lanes = partition(batch);
+        int busy = 0;
+        for (List<Write> lane : lanes) {
+            busy += lane.isEmpty() ? 0 : 1;
+        }
+        lock.lock();
+        try {
+            ExecutorService executor0 = executor;
+            if(executor0 == null || busy < 2) {
+                for (int lane = 0; lane < lanes.size(); ++lane) {
+                    accept(lane, lanes.get(lane), destination);
+                }
+            }
+            else {
+                List<Future<?>> futures = Lists
+                        .newArrayListWithCapacity(busy);
+                Throwable failure = null;
+                for (int i = 0; i < lanes.size(); ++i) {
+                    final int lane = i;
+                    if(!lanes.get(lane).isEmpty()) {
+                        try {
+                            futures.add(executor0.submit(new Runnable() {
+
+                                @Override
+                                public void run() {
+                                    accept(lane, lanes.get(lane), destination);
+                                }
+
+                            }));
+                        }
+                        catch (RejectedExecutionException e) {
+                            // The executor can't take the lane, so accept it
+                            // inline
+                            try {
+                                accept(lane, lanes.get(lane), destination);
+                            }
+                            catch (Throwable t) {
+                                failure = failure == null ? t : failure;
+                            }
+                        }
+                    }
+                }
+                // Always wait for every submitted lane, even if another lane
+                // failed, so that none of them is still running afterwards
+                boolean interrupted = false;
+                for (Future<?> future : futures) {
+                    for (;;) {
+                        try {
+                            future.get();
+                            break;
+                        }
+                        catch (ExecutionException e) {
+                            failure = failure == null ? e.getCause() : failure;
+                            break;
+                        }
+                        catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                }
+                if(interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if(failure != null) {
+                    throw Throwables.propagate(failure);
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give the {@code writes} that are assigned to {@code lane} to the
+     * {@code destination} and update the lane's stats.
+     *
+     * @param lane
+     * @param writes
+     * @param destination
+     */
+    private void accept(int lane, List<Write> writes,
+            PermanentStore destination) {
+        if(!writes.isEmpty()) {
+            long start = System.nanoTime();
+            destination.accept(writes);
+            nanos.addAndGet(lane, System.nanoTime() - start);
+            transported.addAndGet(lane, writes.size());
+            backlog.addAndGet(lane, -writes.size());
+        }
+    }
+
+    /**
+     * Return the lane for the Writes in {@code record}.
+     *
+     * @param record
+     * @return the lane
+     */
+    private int laneOf(PrimaryKey record) {
+        return Math.abs(record.hashCode() % count);
+    }
+
+    /**
+     * Split the {@code batch} into a list of Writes for each lane. The Writes
+     * in each list are in the same order as they are in the {@code batch}.
+     *
+     * @param batch
+     * @return the Writes for each lane
+     */
+    private List<List<Write>> partition(List<Write> batch) {
+        if(count == 1) {
+            return Collections.singletonList(batch);
+        }
+        List<List<Write>> lanes = Lists.newArrayListWithCapacity(count);
+        for (int lane = 0; lane < count; ++lane) {
+            lanes.add(Lists.<Write> newArrayList());
+        }
+        for (Write write : batch) {
+            lanes.get(laneOf(write.getRecord())).add(write);
+        }
+        return lanes;
+    }
+
+}
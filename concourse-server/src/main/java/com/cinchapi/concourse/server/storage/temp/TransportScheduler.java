@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.temp;
+
+import java.util.concurrent.TimeUnit;
+
+import com.cinchapi.concourse.annotate.PackagePrivate;
+
+/**
+ * A {@link TransportScheduler} decides how many {@link Write Writes} the
+ * {@link Buffer} should transport per cycle and how long to pause between
+ * cycles, based on how deep the Buffer is and how long the destination has
+ * recently taken to accept each Write.
+ * <p>
+ * Reads cannot happen while a transport occurs, so the time that each cycle is
+ * allowed to take is kept small while the Buffer is shallow. As more full
+ * pages wait to be transported, the scheduler allows proportionally longer
+ * cycles and shorter pauses so that transport catches up before the Buffer
+ * grows without bound. The number of Writes that fit in a cycle is derived
+ * from an exponentially weighted moving average of the observed latency per
+ * Write, so batches shrink automatically when the destination slows down (i.e.
+ * during a sync or compaction).
+ * </p>
+ * <p>
+ * This class is only updated by the thread that transports data, but may be
+ * read by any thread.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+@PackagePrivate
+final class TransportScheduler {
+
+    /**
+     * The amount of time that a transport cycle is allowed to take for each
+     * full page that is waiting to be transported.
+     */
+    private static final long TARGET_CYCLE_NANOS_PER_PAGE = TimeUnit.MILLISECONDS
+            .toNanos(5);
+
+    /**
+     * The weight of the most recent observation in the moving average of the
+     * latency per Write.
+     */
+    private static final double ALPHA = 0.2;
+
+    /**
+     * The most Writes that may be transported in a single cycle.
+     */
+    private final int maxBatch;
+
+    /**
+     * The fewest number of milliseconds to pause between cycles.
+     */
+    private final int minSleep;
+
+    /**
+     * The most number of milliseconds to pause between cycles.
+     */
+    private final int maxSleep;
+
+    /**
+     * The moving average of the number of nanoseconds that the destination
+     * takes to accept each Write, or 0 if nothing has been transported.
+     */
+    private volatile double nanosPerWrite = 0;
+
+    /**
+     * The number of full pages that were waiting to be transported when the
+     * scheduler last {@link #record(int, long, int) observed} a cycle.
+     */
+    private volatile int depth = 0;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param maxBatch the most Writes to transport in a cycle
+     * @param minSleep the fewest milliseconds to pause between cycles
+     * @param maxSleep the most milliseconds to pause between cycles
+     */
+    TransportScheduler(int maxBatch, int minSleep, int maxSleep) {
+        this.maxBatch = maxBatch;
+        this.minSleep = minSleep;
+        this.maxSleep = maxSleep;
+    }
+
+    /**
+     * Return a description of the observed latency and the current schedule.
+     *
+     * @return the stats
+     */
+    public String describe() {
+        int depth0 = depth;
+        return new StringBuilder().append("depth: ").append(depth0)
+                .append(" pages, latency: ")
+                .append(TimeUnit.NANOSECONDS.toMicros((long) nanosPerWrite))
+                .append(" us/write, target batch: ")
+                .append(getTargetBatchSize(depth0))
+                .append(" writes, sleep: ").append(getSleepTimeInMs(depth0))
+                .append(" ms").toString();
+    }
+
+    /**
+     * Return the number of milliseconds to pause between cycles when
+     * {@code depth} full pages are waiting to be transported. The pause is
+     * halved for each additional waiting page.
+     *
+     * @param depth
+     * @return the sleep time
+     */
+    public int getSleepTimeInMs(int depth) {
+        int shift = Math.min(30, Math.max(0, depth - 1));
+        return Math.max(minSleep, maxSleep >> shift);
+    }
+
+    /**
+     * Return the number of Writes that can be transported in a single cycle
+     * when {@code depth} full pages are waiting to be transported, without
+     * exceeding the cycle time that is allowed for that depth.
+     *
+     * @param depth
+     * @return the target batch size
+     */
+    public int getTargetBatchSize(int depth) {
+        double latency = nanosPerWrite;
+        if(latency <= 0) {
+            return maxBatch;
+        }
+        double budget = TARGET_CYCLE_NANOS_PER_PAGE * (double) Math.max(1, depth);
+        return (int) Math.max(1, Math.min(maxBatch, budget / latency));
+    }
+
+    /**
+     * Record that the destination took {@code nanos} to accept a batch of
+     * {@code writes} while {@code depth} full pages were waiting to be
+     * transported.
+     *
+     * @param writes
+     * @param nanos
+     * @param depth
+     */
+    public void record(int writes, long nanos, int depth) {
+        if(writes > 0) {
+            double latency = (double) nanos / writes;
+            double average = nanosPerWrite;
+            nanosPerWrite = average <= 0 ? latency : (ALPHA * latency)
+                    + ((1 - ALPHA) * average);
+        }
+        this.depth = depth;
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.upgrade.task;
+
+import java.util.Iterator;
+
+import com.cinchapi.concourse.server.GlobalState;
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.server.storage.db.BlockIndex;
+import com.cinchapi.concourse.server.upgrade.SmartUpgradeTask;
+import com.cinchapi.concourse.util.Environments;
+
+/**
+ * Rewrite every {@link BlockIndex} that is stored in the legacy (unsorted)
+ * format so that it can be binary searched in place.
+ * 
+ * @author Jeff Nelson
+ */
+public class Upgrade0_5_0_3 extends SmartUpgradeTask {
+
+    @Override
+    public String getDescription() {
+        return "Convert block indexes to the sorted format";
+    }
+
+    @Override
+    protected void doTask() {
+        Iterator<String> envIt = Environments.iterator(
+                GlobalState.BUFFER_DIRECTORY, GlobalState.DATABASE_DIRECTORY);
+        while (envIt.hasNext()) {
+            String env = envIt.next();
+            for (String dir : new String[] { "cpb", "csb", "ctb" }) {
+                Iterator<String> fileIt = FileSystem
+                        .fileOnlyIterator(FileSystem.makePath(
+                                GlobalState.DATABASE_DIRECTORY, env, dir));
+                while (fileIt.hasNext()) {
+                    String file = fileIt.next();
+                    if(file.endsWith(".indx") && BlockIndex.upgrade(file)) {
+                        logInfoMessage("Converted {} to the sorted format",
+                                file);
+                    }
+                }
+            }
+        }
+    }
+
+}
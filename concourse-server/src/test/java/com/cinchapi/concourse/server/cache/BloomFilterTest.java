@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.cache;
+
+import java.nio.channels.FileChannel;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cinchapi.concourse.server.io.Composite;
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.server.io.Serializables;
+import com.cinchapi.concourse.server.model.PrimaryKey;
+import com.cinchapi.concourse.server.model.Text;
+import com.cinchapi.concourse.server.storage.cache.BloomFilter;
+import com.cinchapi.concourse.server.storage.cache.ByteableFunnel;
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+import com.cinchapi.concourse.util.TestData;
+
+/**
+ * Unit tests for {@link BloomFilter}.
+ * 
+ * @author Jeff Nelson
+ */
+public class BloomFilterTest extends ConcourseBaseTest {
+
+    private String file;
+
+    @Override
+    protected void beforeEachTest() {
+        super.beforeEachTest();
+        file = TestData.getTemporaryTestFile();
+    }
+
+    @Override
+    protected void afterEachTest() {
+        super.afterEachTest();
+        if(FileSystem.hasFile(file)) {
+            FileSystem.deleteFile(file);
+        }
+    }
+
+    @Test
+    public void testNoFalseNegatives() {
+        int count = TestData.getScaleCount() * 10;
+        BloomFilter filter = BloomFilter.create(count);
+        for (int i = 0; i < count; ++i) {
+            filter.put(PrimaryKey.wrap(i), Text.wrap(Integer.toString(i)));
+        }
+        for (int i = 0; i < count; ++i) {
+            Assert.assertTrue(filter.mightContain(PrimaryKey.wrap(i),
+                    Text.wrap(Integer.toString(i))));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        int count = 10000;
+        BloomFilter filter = BloomFilter.create(count);
+        for (int i = 0; i < count; ++i) {
+            filter.put(PrimaryKey.wrap(i));
+        }
+        int positives = 0;
+        for (int i = count; i < count * 2; ++i) {
+            if(filter.mightContain(PrimaryKey.wrap(i))) {
+                ++positives;
+            }
+        }
+        Assert.assertTrue(positives < count * 0.05);
+    }
+
+    @Test
+    public void testOpenSyncedFilter() {
+        int count = TestData.getScaleCount();
+        BloomFilter filter = BloomFilter.create(file, count);
+        for (int i = 0; i < count; ++i) {
+            filter.put(PrimaryKey.wrap(i), Text.wrap("foo"));
+        }
+        filter.sync();
+        BloomFilter opened = BloomFilter.open(file);
+        Assert.assertFalse(opened.isLegacy());
+        for (int i = 0; i < count * 2; ++i) {
+            Assert.assertEquals(
+                    filter.mightContain(PrimaryKey.wrap(i), Text.wrap("foo")),
+                    opened.mightContain(PrimaryKey.wrap(i), Text.wrap("foo")));
+        }
+        opened.retire();
+        Assert.assertTrue(opened.mightContain(PrimaryKey.wrap(0),
+                Text.wrap("foo")));
+        opened.retire();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCannotPutIntoOpenedFilter() {
+        BloomFilter filter = BloomFilter.create(file, 1);
+        filter.sync();
+        BloomFilter.open(file).put(PrimaryKey.wrap(1));
+    }
+
+    @Test
+    public void testOpenLegacyFilter() {
+        com.google.common.hash.BloomFilter<Composite> legacy = com.google.common.hash.BloomFilter
+                .create(ByteableFunnel.INSTANCE, 100);
+        legacy.put(Composite.create(PrimaryKey.wrap(1), Text.wrap("foo")));
+        FileChannel channel = FileSystem.getFileChannel(file);
+        Serializables.write(legacy, channel);
+        FileSystem.closeFileChannel(channel);
+        BloomFilter filter = BloomFilter.open(file);
+        Assert.assertTrue(filter.isLegacy());
+        Assert.assertTrue(filter.mightContain(PrimaryKey.wrap(1),
+                Text.wrap("foo")));
+    }
+
+}
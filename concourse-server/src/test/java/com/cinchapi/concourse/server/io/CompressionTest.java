@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.io;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cinchapi.concourse.server.model.Value;
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for the {@link Compression} util class.
+ * 
+ * @author Jeff Nelson
+ */
+public class CompressionTest extends ConcourseBaseTest {
+
+    @Test
+    public void testCompressEmpty() {
+        ByteBuffer bytes = ByteBuffer.allocate(0);
+        Assert.assertEquals(0,
+                Compression.decompress(Compression.compress(bytes)).length);
+    }
+
+    @Test
+    public void testCompressRandomBytes() {
+        byte[] bytes = new byte[TestData.getScaleCount() * 100];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) TestData.getInt();
+        }
+        Assert.assertArrayEquals(bytes, Compression.decompress(Compression
+                .compress(ByteBuffer.wrap(bytes))));
+    }
+
+    @Test
+    public void testCompressRepetitiveBytes() {
+        List<Value> values = Lists.newArrayList();
+        Value value = TestData.getValue();
+        int count = TestData.getScaleCount() * 10;
+        for (int i = 0; i < count; ++i) {
+            values.add(i % 3 == 0 ? TestData.getValue() : value);
+        }
+        ByteBuffer bytes = ByteableCollections.toByteBuffer(values);
+        ByteBuffer compressed = Compression.compress(bytes);
+        Assert.assertTrue(compressed.remaining() < bytes.remaining());
+        Assert.assertEquals(bytes,
+                ByteBuffer.wrap(Compression.decompress(compressed)));
+    }
+
+    @Test
+    public void testCompressDoesNotChangePosition() {
+        ByteBuffer bytes = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 1, 2, 3,
+                4, 1, 2, 3, 4, 1, 2, 3, 4, 5 });
+        bytes.position(2);
+        ByteBuffer compressed = Compression.compress(bytes);
+        Assert.assertEquals(2, bytes.position());
+        byte[] decompressed = Compression.decompress(compressed);
+        Assert.assertEquals(bytes.remaining(), decompressed.length);
+        Assert.assertEquals(bytes, ByteBuffer.wrap(decompressed));
+    }
+
+}
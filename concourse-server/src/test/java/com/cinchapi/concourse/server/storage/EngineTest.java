@@ -16,6 +16,7 @@
 package com.cinchapi.concourse.server.storage;
 
 import java.io.File;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -29,6 +30,7 @@ import org.junit.Test;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
+import com.cinchapi.concourse.server.GlobalState;
 import com.cinchapi.concourse.server.concurrent.Threads;
 import com.cinchapi.concourse.server.io.FileSystem;
 import com.cinchapi.concourse.server.storage.Engine;
@@ -45,6 +47,7 @@ import com.cinchapi.concourse.util.Random;
 import com.cinchapi.concourse.util.TestData;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -402,6 +405,208 @@ public class EngineTest extends BufferedStoreTest {
         Assert.assertTrue(succeeded.get());
     }
 
+    @Test
+    public void testTransportLanesDeliverEveryWriteInOrder() {
+        int oldBufferPageSize = GlobalState.BUFFER_PAGE_SIZE;
+        int oldTransportLanes = GlobalState.BUFFER_TRANSPORT_LANES;
+        long oldBlockRolloverSize = GlobalState.BLOCK_ROLLOVER_SIZE;
+        String loc = TestData.DATA_DIR + File.separator + Time.now();
+        try {
+            GlobalState.BUFFER_PAGE_SIZE = 1024;
+            GlobalState.BUFFER_TRANSPORT_LANES = 4;
+            GlobalState.BLOCK_ROLLOVER_SIZE = 4096; // roll over mid page
+            Engine engine = new Engine(loc + File.separator + "buffer", loc
+                    + File.separator + "db");
+            engine.bufferTransportThreadSleepInMs = 60000; // transport manually
+            engine.start();
+            Buffer buffer = (Buffer) engine.buffer;
+            Database db = (Database) engine.destination;
+            int records = 16;
+            int count = TestData.getScaleCount() * 10;
+            Map<Long, List<Long>> versions = Maps.newHashMap();
+            Map<Long, Set<TObject>> values = Maps.newHashMap();
+            for (long record = 0; record < records; ++record) {
+                versions.put(record, Lists.<Long> newArrayList());
+                values.put(record, Sets.<TObject> newHashSet());
+            }
+            for (int i = 0; i < count; ++i) {
+                long record = i % records;
+                TObject value = Convert.javaToThrift(i);
+                Write write = Write.add("foo", value, record);
+                buffer.insert(write); // keep the version of the write
+                versions.get(record).add(write.getVersion());
+                values.get(record).add(value);
+            }
+            // Fill more than a page so that every expected write is on a
+            // page that can be transported
+            for (int i = 0; i < GlobalState.BUFFER_PAGE_SIZE; ++i) {
+                buffer.insert(Write.add("bar", Convert.javaToThrift(i),
+                        records));
+            }
+            for (int i = 0; i < count * 2; ++i) {
+                buffer.transport(db);
+            }
+            db.triggerSync();
+            engine.stop();
+            db = new Database(db.getBackingStore()); // read from the blocks
+            db.start();
+            try {
+                for (long record = 0; record < records; ++record) {
+                    Assert.assertEquals(values.get(record),
+                            db.select("foo", record));
+                    Assert.assertEquals(versions.get(record),
+                            Lists.newArrayList(db.audit("foo", record)
+                                    .keySet()));
+                }
+            }
+            finally {
+                db.stop();
+            }
+        }
+        finally {
+            GlobalState.BUFFER_PAGE_SIZE = oldBufferPageSize;
+            GlobalState.BUFFER_TRANSPORT_LANES = oldTransportLanes;
+            GlobalState.BLOCK_ROLLOVER_SIZE = oldBlockRolloverSize;
+            FileSystem.deleteDirectory(loc);
+        }
+    }
+
+    @Test
+    public void testTransportLanesDoNotReapplyWritesAfterCrash()
+            throws Exception {
+        int oldBufferPageSize = GlobalState.BUFFER_PAGE_SIZE;
+        int oldTransportLanes = GlobalState.BUFFER_TRANSPORT_LANES;
+        long oldBlockRolloverSize = GlobalState.BLOCK_ROLLOVER_SIZE;
+        String loc = TestData.DATA_DIR + File.separator + Time.now();
+        String bufferStore = loc + File.separator + "buffer";
+        String dbStore = loc + File.separator + "db";
+        try {
+            GlobalState.BUFFER_PAGE_SIZE = 65536;
+            GlobalState.BUFFER_TRANSPORT_LANES = 4;
+            GlobalState.BLOCK_ROLLOVER_SIZE = 4096; // roll over mid page
+            Engine engine = new Engine(bufferStore, dbStore);
+            engine.bufferTransportThreadSleepInMs = 60000; // transport manually
+            engine.start();
+            Buffer buffer = (Buffer) engine.buffer;
+            Database db = (Database) engine.destination;
+            int records = 8;
+            int rounds = 81;
+            Map<Long, List<Long>> versions = Maps.newHashMap();
+            for (long record = 0; record < records; ++record) {
+                versions.put(record, Lists.<Long> newArrayList());
+            }
+            // Add and then remove a series of values in each record so that
+            // re-applying a write that was already synced is detected when
+            // the record is read
+            for (int round = 0; round < rounds; ++round) {
+                TObject value = Convert.javaToThrift(round / 2);
+                for (long record = 0; record < records; ++record) {
+                    Write write = round % 2 == 0 ? Write.add("foo", value,
+                            record) : Write.remove("foo", value, record);
+                    buffer.insert(write); // keep the version of the write
+                    versions.get(record).add(write.getVersion());
+                }
+            }
+            // Fill more than a page so that every expected write is on a
+            // page that can be transported
+            for (int i = 0; i < GlobalState.BUFFER_PAGE_SIZE / 16; ++i) {
+                buffer.insert(Write.add("bar", Convert.javaToThrift(i),
+                        records));
+            }
+            // Transport until the current Blocks roll over in the middle of
+            // the page and then crash before the page is finished
+            Field cpb = Database.class.getDeclaredField("cpb");
+            cpb.setAccessible(true);
+            int blocks = ((List<?>) cpb.get(db)).size();
+            for (int i = 0; i < 100
+                    && ((List<?>) cpb.get(db)).size() == blocks; ++i) {
+                buffer.transport(db);
+            }
+            Assert.assertTrue(((List<?>) cpb.get(db)).size() > blocks);
+            buffer.transport(db);
+            engine.stop(); // the current Blocks are not synced
+
+            engine = new Engine(bufferStore, dbStore);
+            engine.bufferTransportThreadSleepInMs = 60000;
+            engine.start();
+            buffer = (Buffer) engine.buffer;
+            db = (Database) engine.destination;
+            for (int i = 0; i < 200; ++i) {
+                buffer.transport(db);
+            }
+            db.triggerSync();
+            engine.stop();
+            db = new Database(dbStore); // read from the blocks
+            db.start();
+            try {
+                Set<TObject> expected = Sets.newHashSet(Convert
+                        .javaToThrift((rounds - 1) / 2));
+                for (long record = 0; record < records; ++record) {
+                    Assert.assertEquals(expected, db.select("foo", record));
+                    Assert.assertEquals(versions.get(record),
+                            Lists.newArrayList(db.audit("foo", record)
+                                    .keySet()));
+                }
+            }
+            finally {
+                db.stop();
+            }
+        }
+        finally {
+            GlobalState.BUFFER_PAGE_SIZE = oldBufferPageSize;
+            GlobalState.BUFFER_TRANSPORT_LANES = oldTransportLanes;
+            GlobalState.BLOCK_ROLLOVER_SIZE = oldBlockRolloverSize;
+            FileSystem.deleteDirectory(loc);
+        }
+    }
+
+    @Test
+    public void testBackpressureDelaysWritesAndAtomicCommits() {
+        int oldBufferPageSize = GlobalState.BUFFER_PAGE_SIZE;
+        int oldBackpressurePages = GlobalState.BUFFER_BACKPRESSURE_PAGES;
+        String oldBackpressurePolicy = GlobalState.BUFFER_BACKPRESSURE_POLICY;
+        int oldBackpressureMaxDelay = GlobalState.BUFFER_BACKPRESSURE_MAX_DELAY;
+        String loc = TestData.DATA_DIR + File.separator + Time.now();
+        try {
+            GlobalState.BUFFER_PAGE_SIZE = 4; // each write gets its own page
+            GlobalState.BUFFER_BACKPRESSURE_PAGES = 2;
+            GlobalState.BUFFER_BACKPRESSURE_POLICY = "DELAY";
+            GlobalState.BUFFER_BACKPRESSURE_MAX_DELAY = 200;
+            Engine engine = new Engine(loc + File.separator + "buffer", loc
+                    + File.separator + "db");
+            engine.bufferTransportThreadSleepInMs = 60000; // don't drain
+            engine.start();
+            try {
+                for (int i = 0; i < 3; ++i) {
+                    engine.add("foo", Convert.javaToThrift(i), 1);
+                }
+                long start = System.currentTimeMillis();
+                engine.add("foo", Convert.javaToThrift(3), 1);
+                Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+                AtomicOperation atomic = engine.startAtomicOperation();
+                atomic.add("foo", Convert.javaToThrift(4), 2);
+                atomic.add("foo", Convert.javaToThrift(5), 3);
+                start = System.currentTimeMillis();
+                Assert.assertTrue(atomic.commit());
+                Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+                Assert.assertTrue(engine.verify("foo",
+                        Convert.javaToThrift(3), 1));
+                Assert.assertTrue(engine.verify("foo",
+                        Convert.javaToThrift(5), 3));
+            }
+            finally {
+                engine.stop();
+            }
+        }
+        finally {
+            GlobalState.BUFFER_PAGE_SIZE = oldBufferPageSize;
+            GlobalState.BUFFER_BACKPRESSURE_PAGES = oldBackpressurePages;
+            GlobalState.BUFFER_BACKPRESSURE_POLICY = oldBackpressurePolicy;
+            GlobalState.BUFFER_BACKPRESSURE_MAX_DELAY = oldBackpressureMaxDelay;
+            FileSystem.deleteDirectory(loc);
+        }
+    }
+
     // @Test
     // public void testAddThroughputDifferentKeysInRecord() throws
     // InterruptedException {
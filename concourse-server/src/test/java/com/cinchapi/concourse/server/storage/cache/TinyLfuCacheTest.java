@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+import com.google.common.cache.Weigher;
+
+/**
+ * Unit tests for {@link TinyLfuCache}.
+ * 
+ * @author Jeff Nelson
+ */
+public class TinyLfuCacheTest extends ConcourseBaseTest {
+
+    /**
+     * A {@link Weigher} that uses the length of the value.
+     */
+    private static final Weigher<Integer, byte[]> WEIGHER = new Weigher<Integer, byte[]>() {
+
+        @Override
+        public int weigh(Integer key, byte[] value) {
+            return value.length;
+        }
+
+    };
+
+    @Test
+    public void testWeightIsBounded() {
+        TinyLfuCache<Integer, byte[]> cache = TinyLfuCache.withMaximumWeight(
+                10000, WEIGHER);
+        for (int i = 0; i < 1000; ++i) {
+            cache.put(i, new byte[100]);
+            Assert.assertTrue(cache.weight() <= 10000);
+        }
+        Assert.assertTrue(cache.stats().evictionCount() > 0);
+    }
+
+    @Test
+    public void testEntryHeavierThanCacheIsNotStored() {
+        TinyLfuCache<Integer, byte[]> cache = TinyLfuCache.withMaximumWeight(
+                1000, WEIGHER);
+        cache.put(1, new byte[1001]);
+        Assert.assertNull(cache.getIfPresent(1));
+        Assert.assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        TinyLfuCache<Integer, byte[]> cache = TinyLfuCache.withMaximumWeight(
+                10000, WEIGHER);
+        int hot = 50;
+        int lookups = 0;
+        int misses = 0;
+        for (int i = 1000; i < 10000; ++i) {
+            // A one-off scan that is many times larger than the cache...
+            if(cache.getIfPresent(i) == null) {
+                cache.put(i, new byte[100]);
+            }
+            // ...interleaved with a small set of records that are read often
+            if(i % 100 == 0) {
+                for (int j = 0; j < hot; ++j) {
+                    ++lookups;
+                    if(cache.getIfPresent(j) == null) {
+                        ++misses;
+                        cache.put(j, new byte[100]);
+                    }
+                }
+            }
+        }
+        Assert.assertTrue(misses < lookups / 10);
+        for (int j = 0; j < hot; ++j) {
+            Assert.assertNotNull(cache.peek(j));
+        }
+    }
+
+    @Test
+    public void testStatsCountHitsAndMisses() {
+        TinyLfuCache<Integer, byte[]> cache = TinyLfuCache.withMaximumWeight(
+                10000, WEIGHER);
+        cache.put(1, new byte[10]);
+        cache.getIfPresent(1);
+        cache.getIfPresent(1);
+        cache.getIfPresent(2);
+        cache.peek(1);
+        cache.peek(2);
+        Assert.assertEquals(2, cache.stats().hitCount());
+        Assert.assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void testInvalidate() {
+        TinyLfuCache<Integer, byte[]> cache = TinyLfuCache.withMaximumWeight(
+                10000, WEIGHER);
+        cache.put(1, new byte[10]);
+        cache.put(2, new byte[10]);
+        cache.invalidate(1);
+        Assert.assertNull(cache.peek(1));
+        Assert.assertNotNull(cache.peek(2));
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.weight());
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.io.File;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.cinchapi.concourse.server.GlobalState;
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.server.model.PrimaryKey;
+import com.cinchapi.concourse.server.model.Text;
+import com.cinchapi.concourse.server.model.Value;
+import com.cinchapi.concourse.server.storage.Action;
+import com.cinchapi.concourse.time.Time;
+import com.cinchapi.concourse.util.Convert;
+import com.cinchapi.concourse.util.TestData;
+
+/**
+ * Benchmarks that compare writing and seeking {@link SecondaryBlock
+ * SecondaryBlocks} that are stored in compressed pages with those that are
+ * stored uncompressed. The benchmark data repeats a small number of keys and
+ * values, which is typical for secondary indexes. The disk footprint of each
+ * format is printed when the benchmark is set up.
+ * 
+ * @author Jeff Nelson
+ */
+public class BlockCompressionBenchmark extends AbstractBenchmark {
+
+    /**
+     * The number of revisions that are stored in each benchmark block.
+     */
+    private static final int REVISIONS = 100000;
+
+    /**
+     * The number of distinct keys.
+     */
+    private static final int KEYS = 20;
+
+    /**
+     * The number of distinct values.
+     */
+    private static final int VALUES = 500;
+
+    private static String directory;
+    private static SecondaryBlock compressed;
+    private static SecondaryBlock uncompressed;
+
+    @BeforeClass
+    public static void setUp() {
+        directory = TestData.DATA_DIR + File.separator + Time.now();
+        uncompressed = createBlock(false);
+        compressed = createBlock(true);
+        System.out.println("Uncompressed block size: "
+                + FileSystem.getFileSize(getFile(uncompressed)));
+        System.out.println("Compressed block size: "
+                + FileSystem.getFileSize(getFile(compressed)));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        compressed.retire();
+        uncompressed.retire();
+        FileSystem.deleteDirectory(directory);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 10000, warmupRounds = 1000)
+    public void benchmarkSeekCompressed() {
+        seek(compressed);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 10000, warmupRounds = 1000)
+    public void benchmarkSeekUncompressed() {
+        seek(uncompressed);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 5, warmupRounds = 1)
+    public void benchmarkWriteCompressed() {
+        createBlock(true);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 5, warmupRounds = 1)
+    public void benchmarkWriteUncompressed() {
+        createBlock(false);
+    }
+
+    /**
+     * Create, populate and sync a new SecondaryBlock and return a copy that is
+     * loaded from disk.
+     * 
+     * @param compress
+     * @return the SecondaryBlock
+     */
+    private static SecondaryBlock createBlock(boolean compress) {
+        boolean compression = GlobalState.BLOCK_COMPRESSION;
+        GlobalState.BLOCK_COMPRESSION = compress;
+        try {
+            SecondaryBlock block = Block.createSecondaryBlock(
+                    Long.toString(Time.now()), directory);
+            for (int i = 0; i < REVISIONS; ++i) {
+                block.insert(Text.wrap("key" + (i % KEYS)),
+                        Value.wrap(Convert.javaToThrift("value" + (i % VALUES))),
+                        PrimaryKey.wrap(i), Time.now(), Action.ADD);
+            }
+            block.sync();
+            return new SecondaryBlock(block.getId(), directory, true);
+        }
+        finally {
+            GlobalState.BLOCK_COMPRESSION = compression;
+        }
+    }
+
+    /**
+     * Return the path to the block file for {@code block}.
+     * 
+     * @param block
+     * @return the block file
+     */
+    private static String getFile(Block<?, ?, ?> block) {
+        return directory + File.separator + block.getId()
+                + Block.BLOCK_NAME_EXTENSION;
+    }
+
+    /**
+     * Seek a random key and value in {@code block}.
+     * 
+     * @param block
+     */
+    private static void seek(SecondaryBlock block) {
+        Text key = Text.wrap("key" + (Math.abs(TestData.getInt()) % KEYS));
+        Value value = Value.wrap(Convert.javaToThrift("value"
+                + (Math.abs(TestData.getInt()) % VALUES)));
+        SecondaryRecord record = Record.createSecondaryRecordPartial(key,
+                value);
+        block.seek(key, value, record);
+    }
+
+}
@@ -16,6 +16,8 @@
 package com.cinchapi.concourse.server.storage.db;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -23,12 +25,16 @@ import org.junit.Test;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
+import com.cinchapi.concourse.server.io.Byteable;
+import com.cinchapi.concourse.server.io.Composite;
 import com.cinchapi.concourse.server.io.FileSystem;
 import com.cinchapi.concourse.server.model.PrimaryKey;
+import com.cinchapi.concourse.server.model.Text;
 import com.cinchapi.concourse.server.storage.db.BlockIndex;
 import com.cinchapi.concourse.test.ConcourseBaseTest;
 import com.cinchapi.concourse.time.Time;
 import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.Lists;
 
 /**
  * Unit tests for {@link BlockIndex}.
@@ -102,4 +108,190 @@ public class BlockIndexTest extends ConcourseBaseTest {
         Assert.assertEquals(count * 2, index.getEnd(key));
     }
 
+    @Test
+    public void testSortedIndexFindsEveryEntry() {
+        int count = TestData.getScaleCount() * 2;
+        BlockIndex index = BlockIndex.create(file, count * 2);
+        for (int i = 0; i < count; i++) {
+            PrimaryKey record = PrimaryKey.wrap(i);
+            Text key = Text.wrap("key" + i);
+            index.putStart(i, record);
+            index.putEnd(i * 2, record);
+            index.putStart(i * 3, record, key);
+            index.putEnd(i * 4, record, key);
+        }
+        index.sync();
+        index = BlockIndex.open(file);
+        Assert.assertFalse(index.isLegacy());
+        for (int i = 0; i < count; i++) {
+            PrimaryKey record = PrimaryKey.wrap(i);
+            Text key = Text.wrap("key" + i);
+            Assert.assertEquals(i, index.getStart(record));
+            Assert.assertEquals(i * 2, index.getEnd(record));
+            Assert.assertEquals(i * 3, index.getStart(record, key));
+            Assert.assertEquals(i * 4, index.getEnd(record, key));
+        }
+        Assert.assertEquals(BlockIndex.NO_ENTRY,
+                index.getStart(PrimaryKey.wrap(count)));
+        Assert.assertEquals(BlockIndex.NO_ENTRY, index.getEnd(
+                PrimaryKey.wrap(0), Text.wrap("key" + count)));
+    }
+
+    @Test
+    public void testReadLegacyIndex() {
+        int count = TestData.getScaleCount() * 2;
+        writeLegacyIndex(count);
+        BlockIndex index = BlockIndex.open(file);
+        Assert.assertTrue(index.isLegacy());
+        for (int i = 0; i < count; i++) {
+            PrimaryKey record = PrimaryKey.wrap(i);
+            Assert.assertEquals(i, index.getStart(record));
+            Assert.assertEquals(i * 2, index.getEnd(record));
+        }
+    }
+
+    @Test
+    public void testUpgradeLegacyIndex() {
+        int count = TestData.getScaleCount() * 2;
+        writeLegacyIndex(count);
+        Assert.assertTrue(BlockIndex.upgrade(file));
+        Assert.assertFalse(BlockIndex.upgrade(file));
+        BlockIndex index = BlockIndex.open(file);
+        Assert.assertFalse(index.isLegacy());
+        for (int i = 0; i < count; i++) {
+            PrimaryKey record = PrimaryKey.wrap(i);
+            Assert.assertEquals(i, index.getStart(record));
+            Assert.assertEquals(i * 2, index.getEnd(record));
+        }
+    }
+
+    @Test
+    public void testPageBoundariesArePersisted() {
+        BlockIndex index = BlockIndex.create(file, 1);
+        PrimaryKey key = PrimaryKey.wrap(1);
+        index.putStart(0, key);
+        index.putEnd(100, key);
+        List<Long> boundaries = Lists.newArrayList(0L, 40L, 75L);
+        index.putPages(64, boundaries);
+        index.sync();
+        index = BlockIndex.open(file);
+        Assert.assertEquals(2, index.getPageCount());
+        Assert.assertEquals(64, index.getPageSize());
+        for (int i = 0; i < boundaries.size(); ++i) {
+            Assert.assertEquals((long) boundaries.get(i),
+                    index.getPagePosition(i));
+        }
+        Assert.assertEquals(0, index.getStart(key));
+        Assert.assertEquals(100, index.getEnd(key));
+    }
+
+    @Test
+    public void testIndexWithoutPages() {
+        BlockIndex index = BlockIndex.create(file, 1);
+        index.putStart(0, PrimaryKey.wrap(1));
+        index.sync();
+        Assert.assertEquals(0, BlockIndex.open(file).getPageCount());
+    }
+
+    @Test
+    public void testRunDirectoryIsPersisted() {
+        BlockIndex index = BlockIndex.create(file, 5);
+        Text locator = Text.wrap("name");
+        Text other = Text.wrap("age");
+        index.putStart(0, locator);
+        index.putEnd(99, locator);
+        int[] starts = { 0, 40, 75 };
+        String[] keys = { "a", "b", "c" };
+        for (int i = 0; i < starts.length; ++i) {
+            index.putStart(starts[i], locator, Text.wrap(keys[i]));
+            index.putRun(starts[i], locator, Text.wrap(keys[i]));
+        }
+        index.putStart(100, other);
+        index.putEnd(120, other);
+        index.sync();
+        index = BlockIndex.open(file);
+        BlockIndex.Runs runs = index.getRuns(locator);
+        Assert.assertEquals(3, runs.count());
+        Assert.assertEquals(99, runs.getEnd());
+        for (int i = 0; i < keys.length; ++i) {
+            Assert.assertEquals(starts[i], runs.getStart(i));
+            Assert.assertEquals(Text.wrap(keys[i]),
+                    Text.fromByteBuffer(runs.getKey(i)));
+        }
+        Assert.assertNull(index.getRuns(other));
+        Assert.assertNull(index.getRuns(Text.wrap("foo")));
+    }
+
+    @Test
+    public void testPositionsLargerThanIntegerMaxValueArePersisted() {
+        BlockIndex index = BlockIndex.create(file, 2);
+        Text locator = Text.wrap("name");
+        Text key = Text.wrap("a");
+        long start = Integer.MAX_VALUE + 100L;
+        long end = 3L * Integer.MAX_VALUE;
+        index.putStart(start, locator);
+        index.putEnd(end, locator);
+        index.putStart(start, locator, key);
+        index.putEnd(end, locator, key);
+        index.putRun(start, locator, key);
+        index.putPages(64, Lists.newArrayList(0L, start, end));
+        index.sync();
+        index = BlockIndex.open(file);
+        Assert.assertEquals(start, index.getStart(locator));
+        Assert.assertEquals(end, index.getEnd(locator));
+        Assert.assertEquals(start, index.getStart(locator, key));
+        Assert.assertEquals(end, index.getEnd(locator, key));
+        Assert.assertEquals(end, index.getPagePosition(2));
+        BlockIndex.Runs runs = index.getRuns(locator);
+        Assert.assertEquals(start, runs.getStart(0));
+        Assert.assertEquals(end, runs.getEnd());
+        Assert.assertEquals(key, Text.fromByteBuffer(runs.getKey(0)));
+    }
+
+    @Test
+    public void testReadIndexWithIntPositions() {
+        PrimaryKey key = PrimaryKey.wrap(1);
+        Composite composite = Composite.create(new Byteable[] { key });
+        ByteBuffer bytes = ByteBuffer.allocate(40 + composite.size());
+        bytes.putInt(0xC1D7B10C); // magic
+        bytes.putInt(3); // version
+        bytes.putInt(1); // count
+        bytes.putInt(0); // pageSize
+        bytes.putInt(0); // boundaryCount
+        bytes.putInt(0); // directoryPosition
+        bytes.putInt(40); // keyPosition
+        bytes.putInt(composite.size());
+        bytes.putInt(17); // start
+        bytes.putInt(99); // end
+        composite.copyTo(bytes);
+        bytes.flip();
+        FileSystem.writeBytes(bytes, file);
+        BlockIndex index = BlockIndex.open(file);
+        Assert.assertFalse(index.isLegacy());
+        Assert.assertEquals(17, index.getStart(key));
+        Assert.assertEquals(99, index.getEnd(key));
+        Assert.assertEquals(BlockIndex.NO_ENTRY,
+                index.getStart(PrimaryKey.wrap(2)));
+    }
+
+    /**
+     * Write an index with {@code count} entries to {@link #file} using the
+     * legacy (unsorted) format.
+     * 
+     * @param count
+     */
+    private void writeLegacyIndex(int count) {
+        ByteBuffer bytes = ByteBuffer.allocate(count * 64);
+        for (int i = count - 1; i >= 0; --i) {
+            Composite composite = Composite
+                    .create(new Byteable[] { PrimaryKey.wrap(i) });
+            bytes.putInt(8 + composite.size());
+            bytes.putInt(i);
+            bytes.putInt(i * 2);
+            composite.copyTo(bytes);
+        }
+        bytes.flip();
+        FileSystem.writeBytes(bytes, file);
+    }
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Iterator;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.cinchapi.concourse.server.io.ByteableCollections;
+import com.cinchapi.concourse.server.io.Byteables;
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.server.model.PrimaryKey;
+import com.cinchapi.concourse.server.model.Text;
+import com.cinchapi.concourse.server.model.Value;
+import com.cinchapi.concourse.server.storage.Action;
+import com.cinchapi.concourse.time.Time;
+import com.cinchapi.concourse.util.TestData;
+
+/**
+ * Benchmarks for disk based {@link Block} seeks. The
+ * {@link #benchmarkSeekWithMapPerSeek()} benchmark reproduces the strategy of
+ * creating (and loading) a new mapping for every seek so that it can be
+ * compared with the shared mapping that is used by
+ * {@link Block#seek(com.cinchapi.concourse.server.io.Byteable, Record)}.
+ * 
+ * @author Jeff Nelson
+ */
+public class BlockSeekBenchmark extends AbstractBenchmark {
+
+    /**
+     * The number of distinct records that are stored in the benchmark block.
+     */
+    private static final int RECORDS = 10000;
+
+    /**
+     * The number of revisions that are stored for each record.
+     */
+    private static final int REVISIONS_PER_RECORD = 10;
+
+    private static String directory;
+    private static PrimaryBlock block;
+    private static BlockIndex index;
+    private static String file;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        directory = TestData.DATA_DIR + File.separator + Time.now();
+        PrimaryBlock mutable = Block.createPrimaryBlock(
+                Long.toString(Time.now()), directory);
+        for (int i = 0; i < RECORDS; ++i) {
+            for (int j = 0; j < REVISIONS_PER_RECORD; ++j) {
+                mutable.insert(PrimaryKey.wrap(i), TestData.getText(),
+                        TestData.getValue(), Time.now(), Action.ADD);
+            }
+        }
+        mutable.sync();
+        block = new PrimaryBlock(mutable.getId(), directory, true);
+        file = directory + File.separator + block.getId()
+                + Block.BLOCK_NAME_EXTENSION;
+        Field field = Block.class.getDeclaredField("index");
+        field.setAccessible(true);
+        index = (BlockIndex) field.get(block);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        block.retire();
+        FileSystem.deleteDirectory(directory);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 10000, warmupRounds = 1000)
+    public void benchmarkSeekWithSharedMapping() {
+        PrimaryKey locator = getLocator();
+        PrimaryRecord record = Record.createPrimaryRecord(locator);
+        block.seek(locator, record);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 10000, warmupRounds = 1000)
+    public void benchmarkSeekWithMapPerSeek() {
+        PrimaryKey locator = getLocator();
+        PrimaryRecord record = Record.createPrimaryRecord(locator);
+        long start = index.getStart(locator);
+        long length = index.getEnd(locator) - (start - 1);
+        ByteBuffer bytes = FileSystem.map(file, MapMode.READ_ONLY, start,
+                length);
+        Iterator<ByteBuffer> it = ByteableCollections.iterator(bytes);
+        while (it.hasNext()) {
+            Revision<PrimaryKey, Text, Value> revision = Byteables.read(
+                    it.next(), PrimaryRevision.class);
+            record.append(revision);
+        }
+    }
+
+    /**
+     * Return a random locator that is stored in the benchmark block.
+     * 
+     * @return the locator
+     */
+    private static PrimaryKey getLocator() {
+        return PrimaryKey.wrap(Math.abs(TestData.getInt()) % RECORDS);
+    }
+
+}
@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
+import com.cinchapi.concourse.server.GlobalState;
 import com.cinchapi.concourse.server.io.Byteable;
 import com.cinchapi.concourse.server.io.FileSystem;
 import com.cinchapi.concourse.server.storage.Action;
@@ -144,6 +145,49 @@ public abstract class BlockTest<L extends Byteable & Comparable<L>, K extends By
         Assert.assertEquals(revisions, stored);
     }
 
+    @Test
+    public void testIteratorForCompressedBlock() {
+        boolean compression = GlobalState.BLOCK_COMPRESSION;
+        GlobalState.BLOCK_COMPRESSION = true;
+        try {
+            int count = TestData.getScaleCount() * 10;
+            Set<Revision<L, K, V>> revisions = Sets
+                    .newHashSetWithExpectedSize(count);
+            for (int i = 0; i < count; ++i) {
+                revisions.add(block.insert(getLocator(), getKey(),
+                        getValue(), Time.now(), Action.ADD));
+            }
+            block.sync();
+            Set<Revision<L, K, V>> stored = Sets
+                    .newHashSetWithExpectedSize(count);
+            for (Revision<L, K, V> revision : block) {
+                stored.add(revision);
+            }
+            Assert.assertEquals(revisions, stored);
+        }
+        finally {
+            GlobalState.BLOCK_COMPRESSION = compression;
+        }
+    }
+
+    @Test
+    public void testSyncBlockThatSpansSeveralChunks() {
+        Set<Revision<L, K, V>> revisions = Sets.newHashSet();
+        while (block.getSize() < 3 * Block.PAGE_SIZE) {
+            revisions.add(block.insert(getLocator(), getKey(), getValue(),
+                    Time.now(), Action.ADD));
+        }
+        long size = block.getSize();
+        block.sync();
+        Assert.assertEquals(size, block.getSize());
+        Set<Revision<L, K, V>> stored = Sets
+                .newHashSetWithExpectedSize(revisions.size());
+        for (Revision<L, K, V> revision : block) {
+            stored.add(revision);
+        }
+        Assert.assertEquals(revisions, stored);
+    }
+
     @Test
     public final void testEquals() {
         String id = Long.toString(TestData.getLong());
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Unit tests for {@link CompactSet}.
+ * 
+ * @author Jeff Nelson
+ */
+public class CompactSetTest extends ConcourseBaseTest {
+
+    @Test
+    public void testBehavesLikeLinkedHashSet() {
+        Set<Integer> compact = new CompactSet<Integer>();
+        Set<Integer> expected = Sets.newLinkedHashSet();
+        int range = TestData.getScaleCount() * 10;
+        for (int i = 0; i < range * 20; ++i) {
+            int value = Math.abs(TestData.getInt()) % range;
+            if(i % 3 == 0) {
+                Assert.assertEquals(expected.remove(value),
+                        compact.remove(value));
+            }
+            else {
+                Assert.assertEquals(expected.add(value), compact.add(value));
+            }
+            Assert.assertEquals(expected.size(), compact.size());
+        }
+        Assert.assertEquals(Lists.newArrayList(expected),
+                Lists.newArrayList(compact));
+        for (int i = 0; i < range; ++i) {
+            Assert.assertEquals(expected.contains(i), compact.contains(i));
+        }
+    }
+
+    @Test
+    public void testIteratorIgnoresLaterAdds() {
+        Set<Integer> compact = new CompactSet<Integer>();
+        compact.add(1);
+        compact.add(2);
+        Iterator<Integer> it = compact.iterator();
+        compact.add(3);
+        Assert.assertEquals(Lists.newArrayList(1, 2), Lists.newArrayList(it));
+    }
+
+    @Test
+    public void testRemoveAllThenAdd() {
+        Set<Integer> compact = new CompactSet<Integer>();
+        for (int i = 0; i < 100; ++i) {
+            compact.add(i);
+        }
+        for (int i = 0; i < 100; ++i) {
+            compact.remove(i);
+        }
+        Assert.assertTrue(compact.isEmpty());
+        compact.add(7);
+        Assert.assertTrue(compact.contains(7));
+        Assert.assertEquals(1, compact.size());
+    }
+
+}
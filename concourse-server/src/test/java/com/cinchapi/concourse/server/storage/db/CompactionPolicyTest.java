@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.server.model.PrimaryKey;
+import com.cinchapi.concourse.server.model.Text;
+import com.cinchapi.concourse.server.model.Value;
+import com.cinchapi.concourse.server.storage.Action;
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+import com.cinchapi.concourse.time.Time;
+import com.cinchapi.concourse.util.Convert;
+import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for the {@link CompactionPolicy} implementations.
+ * 
+ * @author Jeff Nelson
+ */
+public class CompactionPolicyTest extends ConcourseBaseTest {
+
+    private String directory;
+
+    @Override
+    protected void beforeEachTest() {
+        directory = TestData.DATA_DIR + File.separator + Time.now();
+    }
+
+    @Override
+    protected void afterEachTest() {
+        if(FileSystem.hasDir(directory)) {
+            FileSystem.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testSizeTieredSelectsRunOfSimilarBlocks() {
+        List<PrimaryBlock> blocks = Lists.newArrayList(getBlock(100),
+                getBlock(10), getBlock(10), getBlock(10), getBlock(10),
+                getBlock(100));
+        List<PrimaryBlock> selected = new SizeTieredCompactionPolicy(
+                Long.MAX_VALUE).select(blocks);
+        Assert.assertEquals(blocks.subList(1, 5), selected);
+    }
+
+    @Test
+    public void testSizeTieredDoesNotSelectTooFewBlocks() {
+        List<PrimaryBlock> blocks = Lists.newArrayList(getBlock(10),
+                getBlock(10), getBlock(10), getBlock(100));
+        Assert.assertTrue(new SizeTieredCompactionPolicy(Long.MAX_VALUE)
+                .select(blocks).isEmpty());
+    }
+
+    @Test
+    public void testSizeTieredRespectsMaxBlockSize() {
+        List<PrimaryBlock> blocks = Lists.newArrayList(getBlock(10),
+                getBlock(10), getBlock(10), getBlock(10));
+        long max = blocks.get(0).size() * 3;
+        Assert.assertTrue(new SizeTieredCompactionPolicy(max).select(blocks)
+                .isEmpty());
+    }
+
+    @Test
+    public void testLeveledSelectsFanoutBlocksFromSameLevel() {
+        List<PrimaryBlock> blocks = Lists.newArrayList();
+        blocks.add(getBlock(1000));
+        for (int i = 0; i < LeveledCompactionPolicy.FANOUT; ++i) {
+            blocks.add(getBlock(10));
+        }
+        List<PrimaryBlock> selected = new LeveledCompactionPolicy(
+                Long.MAX_VALUE).select(blocks);
+        Assert.assertEquals(blocks.subList(1, blocks.size()), selected);
+    }
+
+    @Test
+    public void testLeveledLevels() {
+        Assert.assertEquals(0, LeveledCompactionPolicy.level(1));
+        Assert.assertTrue(LeveledCompactionPolicy
+                .level(LeveledCompactionPolicy.FANOUT * 100L * 1024 * 1024) > LeveledCompactionPolicy
+                .level(1024 * 1024));
+    }
+
+    @Test
+    public void testNonePolicyDisablesCompaction() {
+        Assert.assertNull(CompactionPolicy.forName("none", Long.MAX_VALUE));
+    }
+
+    /**
+     * Return a mutable {@link PrimaryBlock} that contains {@code revisions}
+     * revisions.
+     * 
+     * @param revisions
+     * @return the PrimaryBlock
+     */
+    private PrimaryBlock getBlock(int revisions) {
+        PrimaryBlock block = Block.createPrimaryBlock(Long.toString(Time.now()),
+                directory);
+        for (int i = 0; i < revisions; ++i) {
+            block.insert(PrimaryKey.wrap(i), Text.wrap("foo"),
+                    Value.wrap(Convert.javaToThrift(i)), Time.now(), Action.ADD);
+        }
+        return block;
+    }
+
+}
@@ -16,21 +16,31 @@
 package com.cinchapi.concourse.server.storage.db;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.cinchapi.concourse.server.GlobalState;
 import com.cinchapi.concourse.server.io.FileSystem;
 import com.cinchapi.concourse.server.model.PrimaryKey;
 import com.cinchapi.concourse.server.model.Text;
 import com.cinchapi.concourse.server.model.Value;
 import com.cinchapi.concourse.server.storage.Store;
 import com.cinchapi.concourse.server.storage.StoreTest;
+import com.cinchapi.concourse.server.storage.Stores;
 import com.cinchapi.concourse.server.storage.db.Database;
 import com.cinchapi.concourse.server.storage.db.Revision;
 import com.cinchapi.concourse.server.storage.temp.Write;
@@ -40,6 +50,7 @@ import com.cinchapi.concourse.thrift.TObject;
 import com.cinchapi.concourse.time.Time;
 import com.cinchapi.concourse.util.Convert;
 import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
@@ -73,6 +84,430 @@ public class DatabaseTest extends StoreTest {
         Assert.assertEquals(1, ((List<?>) cpb.get(db)).size());
     }
 
+    @Test
+    public void testCompactionMergesBlocksWithoutLosingData() throws Exception {
+        Database db = (Database) store;
+        String key = TestData.getSimpleString();
+        int blocks = SizeTieredCompactionPolicy.MIN_THRESHOLD + 1;
+        int count = 10;
+        for (int i = 0; i < blocks; ++i) {
+            for (int j = 0; j < count; ++j) {
+                db.accept(Write.add(key, Convert.javaToThrift(j), i * count
+                        + j));
+            }
+            db.triggerSync();
+        }
+        Field cpb = db.getClass().getDeclaredField("cpb");
+        cpb.setAccessible(true);
+        int before = ((List<?>) cpb.get(db)).size();
+        Assert.assertTrue(db.compact());
+        Assert.assertTrue(((List<?>) cpb.get(db)).size() < before);
+        for (int k = 0; k < 2; ++k) {
+            for (int i = 0; i < blocks; ++i) {
+                for (int j = 0; j < count; ++j) {
+                    Assert.assertEquals(
+                            Sets.newHashSet(Convert.javaToThrift(j)),
+                            db.select(key, i * count + j));
+                }
+            }
+            Assert.assertEquals(blocks,
+                    db.find(key, Operator.EQUALS, Convert.javaToThrift(0))
+                            .size());
+            db.stop();
+            db = new Database(db.getBackingStore()); // simulate server restart
+            db.start();
+        }
+        store = db;
+    }
+
+    @Test
+    public void testRecoveryIgnoresIncompleteCompactionJournal() {
+        Database db = (Database) store;
+        String key = TestData.getSimpleString();
+        long record = TestData.getLong();
+        TObject value = Convert.javaToThrift("foo");
+        db.accept(Write.add(key, value, record));
+        db.triggerSync();
+        db.stop();
+        String directory = FileSystem.makePath(current,
+                Database.PRIMARY_BLOCK_DIRECTORY);
+        String block = null;
+        for (String file : new File(directory).list()) {
+            if(file.endsWith(Block.BLOCK_NAME_EXTENSION)) {
+                block = FileSystem.makePath(directory, file);
+            }
+        }
+        Assert.assertNotNull(block);
+
+        // Simulate a crash while the journal was being written, so only some
+        // of its lines reached the disk and the last one is torn.
+        String staging = FileSystem.makePath(current,
+                Compactor.COMPACTION_DIRECTORY);
+        FileSystem.mkdirs(staging);
+        FileSystem.writeBytes(ByteBuffer.wrap(("MOVE\t" + block + ".staged\t"
+                + block + "\nDELETE\t" + block + "\nMOVE\t" + block)
+                .getBytes(StandardCharsets.UTF_8)), FileSystem.makePath(
+                staging, "journal"));
+        db = new Database(db.getBackingStore()); // simulate server restart
+        db.start();
+        Assert.assertTrue(FileSystem.hasFile(block));
+        Assert.assertFalse(FileSystem.hasDir(staging));
+        Assert.assertEquals(Sets.newHashSet(value), db.select(key, record));
+        store = db;
+    }
+
+    @Test
+    public void testParallelSeekMatchesSerialSeek() {
+        Database db = (Database) store;
+        String key = TestData.getSimpleString();
+        long record = TestData.getLong();
+        int blocks = 20;
+        for (int i = 0; i < blocks; ++i) {
+            db.accept(Write.add(key, Convert.javaToThrift("foo" + i), record));
+            if(i % 2 == 1) {
+                db.accept(Write.remove(key,
+                        Convert.javaToThrift("foo" + (i - 1)), record));
+            }
+            db.triggerSync();
+        }
+        int threads = GlobalState.PARALLEL_SEEK_THREADS;
+        int minBlocks = GlobalState.PARALLEL_SEEK_MIN_BLOCKS;
+        try {
+            GlobalState.PARALLEL_SEEK_THREADS = 1;
+            db.stop();
+            Database serial = new Database(db.getBackingStore());
+            serial.start();
+            GlobalState.PARALLEL_SEEK_THREADS = 4;
+            GlobalState.PARALLEL_SEEK_MIN_BLOCKS = 1;
+            Database parallel = new Database(db.getBackingStore());
+            parallel.start();
+            Assert.assertEquals(serial.audit(record), parallel.audit(record));
+            Assert.assertEquals(serial.audit(key, record),
+                    parallel.audit(key, record));
+            Assert.assertEquals(serial.select(key, record),
+                    parallel.select(key, record));
+            Assert.assertEquals(serial.browse(key), parallel.browse(key));
+            Assert.assertEquals(serial.search(key, "foo1"),
+                    parallel.search(key, "foo1"));
+            serial.stop();
+            store = parallel;
+        }
+        finally {
+            GlobalState.PARALLEL_SEEK_THREADS = threads;
+            GlobalState.PARALLEL_SEEK_MIN_BLOCKS = minBlocks;
+        }
+    }
+
+    @Test
+    public void testAcceptBatchOfWrites() {
+        Database db = (Database) store;
+        String key = TestData.getSimpleString();
+        long record = TestData.getLong();
+        TObject foo = Convert.javaToThrift("foo");
+        db.accept(Write.add(key, foo, record));
+        // Populate the record caches so that the batch must be appended to
+        // them
+        db.select(record);
+        db.select(key, record);
+        db.browse(key);
+        List<Write> writes = Lists.newArrayList();
+        Set<TObject> expected = Sets.newHashSet(foo);
+        for (int i = 0; i < 10; ++i) {
+            TObject value = Convert.javaToThrift("bar" + i);
+            writes.add(Write.add(key, value, record));
+            expected.add(value);
+        }
+        writes.add(Write.remove(key, foo, record));
+        expected.remove(foo);
+        db.accept(writes);
+        Assert.assertEquals(expected, db.select(key, record));
+        Assert.assertEquals(expected, db.select(record).get(key));
+        Assert.assertEquals(expected, db.browse(key).keySet());
+        Assert.assertEquals(Sets.newHashSet(record), db.search(key, "bar"));
+    }
+
+    @Test
+    public void testBoundedHistoricalReadsAndAuditsAcrossBlocks() {
+        Database db = (Database) store;
+        String key = TestData.getSimpleString();
+        long record = TestData.getLong();
+        List<Long> versions = Lists.newArrayList();
+        List<TObject> values = Lists.newArrayList();
+        for (int i = 0; i < 5; ++i) {
+            TObject value = Convert.javaToThrift("foo" + i);
+            Write write = Write.add(key, value, record);
+            db.accept(write);
+            db.triggerSync();
+            versions.add(write.getVersion());
+            values.add(value);
+        }
+        db.stop();
+        db = new Database(db.getBackingStore()); // start with cold caches
+        db.start();
+        long start = versions.get(1);
+        long end = versions.get(3);
+        Map<Long, String> window = db.audit(record, start, end);
+        Map<Long, String> keyWindow = db.audit(key, record, start, end);
+        Assert.assertEquals(Sets.newHashSet(values.subList(0, 3)),
+                db.select(key, record, versions.get(2)));
+        Assert.assertEquals(Sets.newHashSet(values.subList(0, 2)), db
+                .select(record, versions.get(1)).get(key));
+        Assert.assertEquals(Sets.newHashSet(values.get(0)),
+                db.browse(key, versions.get(0)).keySet());
+        Assert.assertFalse(db.verify(key, values.get(4), record,
+                versions.get(3)));
+        Assert.assertEquals(2, window.size());
+        Assert.assertEquals(Stores.sliceAudit(db.audit(record), start, end),
+                window);
+        Assert.assertEquals(Stores.sliceAudit(db.audit(key, record), start,
+                end), keyWindow);
+        Assert.assertEquals(window, db.audit(record, start, end));
+        store = db;
+    }
+
+    @Test
+    public void testAuditIncludesRemovedKeysWhetherOrNotRecordIsCached() {
+        Database db = (Database) store;
+        String key = TestData.getSimpleString();
+        String other = key + "_other";
+        long record = TestData.getLong();
+        TObject a = Convert.javaToThrift("a");
+        Write added = Write.add(key, a, record);
+        db.accept(added);
+        db.accept(Write.remove(key, a, record));
+        db.accept(Write.add(other, a, record));
+        db.triggerSync();
+        db.stop();
+        db = new Database(db.getBackingStore()); // start with cold caches
+        db.start();
+        long start = added.getVersion();
+        Map<Long, String> uncached = db.audit(record, start, Time.NONE);
+        Assert.assertEquals(3, uncached.size());
+        Assert.assertEquals(uncached, db.audit(record)); // caches the record
+        Assert.assertEquals(uncached, db.audit(record, start, Time.NONE));
+        store = db;
+    }
+
+    @Test
+    public void testPruneDropsHistoryThatIsNotRetained() {
+        Database db = (Database) store;
+        String key = TestData.getSimpleString();
+        long record = TestData.getLong();
+        TObject a = Convert.javaToThrift("a");
+        TObject b = Convert.javaToThrift("b");
+        long version = Time.now() - TimeUnit.HOURS.toMicros(1);
+        Write added = versioned(Write.add(key, a, record), version);
+        db.accept(added);
+        db.accept(versioned(Write.remove(key, a, record), version + 1));
+        db.triggerSync();
+        db.accept(versioned(Write.add(key, b, record), version + 2));
+        db.triggerSync();
+        db.stop();
+        db = new Database(db.getBackingStore());
+        db.setRetentionPolicy(RetentionPolicy.parse(null, "*." + key + ":1m"));
+        db.start();
+        Assert.assertEquals(1, db.prune());
+        db.stop();
+        db = new Database(db.getBackingStore()); // simulate server restart
+        db.start();
+        Assert.assertEquals(Sets.newHashSet(b), db.select(key, record));
+        Assert.assertEquals(1, db.audit(key, record).size());
+        try {
+            db.select(key, record, added.getVersion());
+            Assert.fail();
+        }
+        catch (IllegalArgumentException e) {
+            Assert.assertTrue(true);
+        }
+        store = db;
+    }
+
+    @Test
+    public void testHistoryOutsideRetentionIsReadableUntilPruned() {
+        Database db = (Database) store;
+        String key = TestData.getSimpleString();
+        long record = TestData.getLong();
+        TObject a = Convert.javaToThrift("a");
+        TObject b = Convert.javaToThrift("b");
+        long version = Time.now() - TimeUnit.DAYS.toMicros(100);
+        db.accept(versioned(Write.add(key, a, record), version));
+        db.accept(versioned(Write.remove(key, a, record), version + 1));
+        db.accept(versioned(Write.add(key, b, record), version + 2));
+        db.triggerSync();
+        db.stop();
+        db = new Database(db.getBackingStore());
+        db.setRetentionPolicy(RetentionPolicy.parse(null, "*:90d"));
+        db.start();
+        Assert.assertEquals(Sets.newHashSet(a), db.select(key, record, version));
+        Assert.assertEquals(Sets.newHashSet(b),
+                db.select(record, version + 2).get(key));
+        Assert.assertTrue(db.verify(key, a, record, version));
+        Assert.assertEquals(3, db.audit(key, record).size());
+        Assert.assertEquals(3, db.audit(key, record, version, Time.NONE)
+                .size());
+        store = db;
+    }
+
+    @Test
+    public void testPresentStateReadsFromSnapshotMatchFullHistory() {
+        Database db = (Database) store;
+        long threshold = GlobalState.SNAPSHOT_BYTE_THRESHOLD;
+        try {
+            GlobalState.SNAPSHOT_BYTE_THRESHOLD = 1;
+            db.stop();
+            db = new Database(db.getBackingStore());
+            db.start();
+            String key = TestData.getSimpleString();
+            long record = TestData.getLong();
+            List<Long> versions = Lists.newArrayList();
+            int blocks = 4;
+            for (int i = 0; i < blocks; ++i) {
+                if(i > 0) {
+                    db.accept(Write.remove(key,
+                            Convert.javaToThrift("foo" + (i - 1)), record));
+                }
+                Write write = Write.add(key, Convert.javaToThrift("foo" + i),
+                        record);
+                db.accept(write);
+                versions.add(write.getVersion());
+                db.triggerSync();
+            }
+            Assert.assertTrue(db.snapshot());
+            Assert.assertFalse(db.snapshot());
+            db.accept(Write.add(key, Convert.javaToThrift("bar"), record));
+            db.triggerSync();
+            db.stop();
+            db = new Database(db.getBackingStore()); // start with cold caches
+            db.start();
+            Set<TObject> expected = Sets.newHashSet(
+                    Convert.javaToThrift("foo" + (blocks - 1)),
+                    Convert.javaToThrift("bar"));
+            Assert.assertEquals(expected, db.select(key, record));
+            Assert.assertEquals(expected, db.select(record).get(key));
+            Assert.assertFalse(db.verify(key, Convert.javaToThrift("foo0"),
+                    record));
+            Assert.assertEquals(
+                    Sets.newHashSet(Convert.javaToThrift("foo0")),
+                    db.select(key, record, versions.get(0)));
+            Assert.assertEquals(2 * blocks, db.audit(key, record).size());
+            Assert.assertTrue(db.snapshot());
+            Assert.assertEquals(expected, db.select(key, record));
+        }
+        finally {
+            GlobalState.SNAPSHOT_BYTE_THRESHOLD = threshold;
+            store = db;
+        }
+    }
+
+    @Test
+    public void testSnapshotOnlyRewritesPartitionsWithNewRevisions()
+            throws Exception {
+        Database db = (Database) store;
+        long threshold = GlobalState.SNAPSHOT_BYTE_THRESHOLD;
+        try {
+            GlobalState.SNAPSHOT_BYTE_THRESHOLD = 1;
+            db.stop();
+            db = new Database(db.getBackingStore());
+            db.start();
+            String key = TestData.getSimpleString();
+            long a = 1;
+            long b = 2;
+            int partition = Compactor.getSnapshotPartition(PrimaryKey.wrap(a));
+            while (Compactor.getSnapshotPartition(PrimaryKey.wrap(b)) == partition) {
+                ++b;
+            }
+            db.accept(Write.add(key, Convert.javaToThrift("foo"), a));
+            db.accept(Write.add(key, Convert.javaToThrift("foo"), b));
+            db.triggerSync();
+            Assert.assertTrue(db.snapshot());
+            Object before = getSnapshotFileKey(b);
+            db.accept(Write.add(key, Convert.javaToThrift("bar"), a));
+            db.triggerSync();
+            Assert.assertTrue(db.snapshot());
+            Assert.assertEquals(before, getSnapshotFileKey(b));
+            db.stop();
+            db = new Database(db.getBackingStore()); // start with cold caches
+            db.start();
+            Assert.assertEquals(Sets.newHashSet(Convert.javaToThrift("foo"),
+                    Convert.javaToThrift("bar")), db.select(key, a));
+            Assert.assertEquals(Sets.newHashSet(Convert.javaToThrift("foo")),
+                    db.select(key, b));
+        }
+        finally {
+            GlobalState.SNAPSHOT_BYTE_THRESHOLD = threshold;
+            store = db;
+        }
+    }
+
+    @Test
+    public void testManifestRecordsSyncedBlocks() {
+        Database db = (Database) store;
+        db.accept(Write.add(TestData.getString(), TestData.getTObject(),
+                TestData.getLong()));
+        db.triggerSync();
+        String id = db.getDumpList().get(0);
+        BlockManifest.Entry entry = BlockManifest.load(current).get(
+                Database.PRIMARY_BLOCK_DIRECTORY, id);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(FileSystem.getFileSize(FileSystem.makePath(
+                current, Database.PRIMARY_BLOCK_DIRECTORY, id
+                        + Block.BLOCK_NAME_EXTENSION)), entry.getSize());
+    }
+
+    @Test
+    public void testDuplicateBlocksAreNotLoadedOnStartup() {
+        Database db = (Database) store;
+        db.accept(Write.add(TestData.getString(), TestData.getTObject(),
+                TestData.getLong()));
+        db.triggerSync();
+        String id = db.getDumpList().get(0);
+        db.stop();
+        String copy = Long.toString(Time.now());
+        for (String directory : new String[] {
+                Database.PRIMARY_BLOCK_DIRECTORY,
+                Database.SECONDARY_BLOCK_DIRECTORY,
+                Database.SEARCH_BLOCK_DIRECTORY }) {
+            for (String extension : new String[] { Block.BLOCK_NAME_EXTENSION,
+                    Block.FILTER_NAME_EXTENSION, Block.INDEX_NAME_EXTENSION,
+                    Block.METADATA_NAME_EXTENSION }) {
+                String source = FileSystem.makePath(current, directory, id
+                        + extension);
+                if(FileSystem.hasFile(source)) {
+                    FileSystem.copyBytes(source, FileSystem.makePath(current,
+                            directory, copy + extension));
+                }
+            }
+        }
+        db = new Database(db.getBackingStore()); // simulate server restart
+        db.start();
+        Assert.assertEquals(2, db.getDumpList().size()); // includes the new
+                                                          // mutable block
+        Assert.assertTrue(db.getDumpList().contains(id));
+        store = db;
+    }
+
+    @Test
+    public void testVerifyBlocksDetectsCorruption() {
+        Database db = (Database) store;
+        String key = TestData.getSimpleString();
+        db.accept(Write.add(key, Convert.javaToThrift("foo"), 1));
+        db.triggerSync();
+        Assert.assertTrue(db.verifyBlocks().endsWith("0 failed"));
+        String id = db.getDumpList().get(0);
+        db.stop();
+        String file = FileSystem.makePath(current,
+                Database.PRIMARY_BLOCK_DIRECTORY, id
+                        + Block.BLOCK_NAME_EXTENSION);
+        ByteBuffer bytes = ByteBuffer.allocate(4);
+        bytes.putInt(Integer.MAX_VALUE);
+        bytes.flip();
+        FileSystem.writeBytes(bytes, file, 4);
+        db = new Database(db.getBackingStore()); // simulate server restart
+        db.start();
+        Assert.assertTrue(db.verifyBlocks().endsWith("1 failed"));
+        store = db;
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void testGetAllRecords() {
         Database db = (Database) store;
@@ -111,6 +546,69 @@ public class DatabaseTest extends StoreTest {
                 (long) count * increase));
     }
 
+    @Test
+    public void testBlocksRollOverOnceTheyReachTheRolloverSize() {
+        Database db = (Database) store;
+        long rollover = GlobalState.BLOCK_ROLLOVER_SIZE;
+        GlobalState.BLOCK_ROLLOVER_SIZE = 1;
+        try {
+            int before = db.getDumpList().size();
+            String key = TestData.getSimpleString();
+            for (int i = 0; i < 3; ++i) {
+                db.accept(Write.add(key, Convert.javaToThrift(i), 1));
+            }
+            Assert.assertEquals(before + 3, db.getDumpList().size());
+            Assert.assertEquals(Sets.newHashSet(Convert.javaToThrift(0),
+                    Convert.javaToThrift(1), Convert.javaToThrift(2)),
+                    db.select(key, 1));
+        }
+        finally {
+            GlobalState.BLOCK_ROLLOVER_SIZE = rollover;
+        }
+    }
+
+    @Test
+    public void testAgedBlocksMigrateToSlowerTier() throws Exception {
+        Database db = (Database) store;
+        String tier = current + "-archive";
+        try {
+            String key = TestData.getSimpleString();
+            long record = TestData.getLong();
+            TObject value = TestData.getTObject();
+            db.accept(Write.add(key, value, record));
+            db.triggerSync();
+            String id = db.getDumpList().get(0);
+            db.stop();
+            db = new Database(db.getBackingStore());
+            db.setStorageTiers(StorageTiers.parse("test", tier + ":1ms"));
+            db.start();
+            Thread.sleep(5);
+            Assert.assertEquals(1, db.migrate());
+            String location = tier + File.separator + "test";
+            Assert.assertTrue(FileSystem.hasFile(FileSystem.makePath(location,
+                    Database.PRIMARY_BLOCK_DIRECTORY, id
+                            + Block.BLOCK_NAME_EXTENSION)));
+            Assert.assertFalse(FileSystem.hasFile(FileSystem.makePath(current,
+                    Database.PRIMARY_BLOCK_DIRECTORY, id
+                            + Block.BLOCK_NAME_EXTENSION)));
+            Assert.assertTrue(db.verify(key, value, record));
+            Assert.assertEquals(0, db.migrate());
+            db.stop();
+            // The manifest records where the block lives, so it is still
+            // loaded if the tier is no longer configured
+            db = new Database(db.getBackingStore());
+            db.start();
+            Assert.assertTrue(db.getDumpList().contains(id));
+            Assert.assertTrue(db.verify(key, value, record));
+            Assert.assertEquals(location, BlockManifest.load(current)
+                    .get(Database.PRIMARY_BLOCK_DIRECTORY, id).getLocation());
+            store = db;
+        }
+        finally {
+            FileSystem.deleteDirectory(tier);
+        }
+    }
+
     @Test
     @Ignore
     public void testOnDiskStreamingIterator() {
@@ -145,6 +643,44 @@ public class DatabaseTest extends StoreTest {
         }
     }
 
+    /**
+     * Return the identity of the block file for the snapshot partition that
+     * holds {@code record}, which survives a rename but not a rewrite.
+     * 
+     * @param record
+     * @return the file key
+     * @throws IOException
+     */
+    private Object getSnapshotFileKey(long record) throws IOException {
+        String directory = FileSystem.makePath(current,
+                Database.SNAPSHOT_DIRECTORY, Integer.toString(Compactor
+                        .getSnapshotPartition(PrimaryKey.wrap(record))));
+        for (String file : new File(directory).list()) {
+            if(file.endsWith(Block.BLOCK_NAME_EXTENSION)) {
+                return Files.readAttributes(
+                        Paths.get(directory, file),
+                        BasicFileAttributes.class).fileKey();
+            }
+        }
+        throw new IllegalStateException("There is no snapshot in "
+                + directory);
+    }
+
+    /**
+     * Return a copy of {@code write} with {@code version}.
+     * 
+     * @param write
+     * @param version
+     * @return the versioned write
+     */
+    private static Write versioned(Write write, long version) {
+        ByteBuffer bytes = ByteBuffer.allocate(write.size());
+        write.copyTo(bytes);
+        bytes.putLong(5, version); // after the key size and type
+        bytes.rewind();
+        return Write.fromByteBuffer(bytes);
+    }
+
     @Override
     protected void add(String key, TObject value, long record) {
         if(!store.verify(key, value, record)) {
@@ -15,9 +15,13 @@
  */
 package com.cinchapi.concourse.server.storage.db;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.cinchapi.concourse.server.GlobalState;
 import com.cinchapi.concourse.server.model.PrimaryKey;
 import com.cinchapi.concourse.server.model.Text;
 import com.cinchapi.concourse.server.model.Value;
@@ -28,6 +32,8 @@ import com.cinchapi.concourse.server.storage.db.Record;
 import com.cinchapi.concourse.time.Time;
 import com.cinchapi.concourse.util.Convert;
 import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 
 /**
  * 
@@ -48,6 +54,153 @@ public class PrimaryBlockTest extends BlockTest<PrimaryKey, Text, Value> {
         Assert.assertTrue(record.get(key).contains(value));
     }
 
+    @Test
+    public void testFenceMetadataIsPersisted() {
+        for (int i = 10; i <= 20; ++i) {
+            block.insert(PrimaryKey.wrap(i), TestData.getText(),
+                    TestData.getValue(), Time.now(), Action.ADD);
+        }
+        block.sync();
+        PrimaryBlock loaded = new PrimaryBlock(block.getId(), directory, true);
+        Assert.assertTrue(loaded.covers(PrimaryKey.wrap(10)));
+        Assert.assertTrue(loaded.covers(PrimaryKey.wrap(15)));
+        Assert.assertTrue(loaded.covers(PrimaryKey.wrap(20)));
+        Assert.assertFalse(loaded.covers(PrimaryKey.wrap(9)));
+        Assert.assertFalse(loaded.covers(PrimaryKey.wrap(21)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCannotInsertInSealedBlock() {
+        block.insert(getLocator(), getKey(), getValue(), Time.now(), Action.ADD);
+        block.seal();
+        block.insert(getLocator(), getKey(), getValue(), Time.now(), Action.ADD);
+    }
+
+    @Test
+    public void testSealedBlockIsReadableBeforeAndAfterSync() {
+        PrimaryKey locator = PrimaryKey.wrap(1);
+        Text key = TestData.getText();
+        Value value = TestData.getValue();
+        block.insert(locator, key, value, Time.now(), Action.ADD);
+        block.seal();
+        Assert.assertTrue(block.isMutable());
+        PrimaryRecord record = Record.createPrimaryRecord(locator);
+        block.seek(locator, record);
+        Assert.assertTrue(record.get(key).contains(value));
+        block.sync();
+        Assert.assertFalse(block.isMutable());
+        record = Record.createPrimaryRecord(locator);
+        block.seek(locator, record);
+        Assert.assertTrue(record.get(key).contains(value));
+    }
+
+    @Test
+    public void testSeekAfterRetire() {
+        PrimaryKey locator = PrimaryKey.wrap(1);
+        Text key = TestData.getText();
+        Value value = TestData.getValue();
+        block.insert(locator, key, value, Time.now(), Action.ADD);
+        block.sync();
+        PrimaryBlock loaded = new PrimaryBlock(block.getId(), directory, true);
+        PrimaryRecord record = Record.createPrimaryRecord(locator);
+        loaded.seek(locator, record);
+        Assert.assertTrue(record.get(key).contains(value));
+        loaded.retire();
+        record = Record.createPrimaryRecord(locator);
+        loaded.seek(locator, record);
+        Assert.assertTrue(record.get(key).contains(value));
+    }
+
+    @Test
+    public void testSeekInCompressedBlock() {
+        boolean compression = GlobalState.BLOCK_COMPRESSION;
+        GlobalState.BLOCK_COMPRESSION = true;
+        try {
+            int count = Block.PAGE_SIZE / 10;
+            Text key = TestData.getText();
+            for (int i = 0; i < count; ++i) {
+                block.insert(PrimaryKey.wrap(i), key,
+                        Value.wrap(Convert.javaToThrift(i)), Time.now(),
+                        Action.ADD);
+            }
+            block.sync();
+            PrimaryBlock loaded = new PrimaryBlock(block.getId(), directory,
+                    true);
+            for (int i = 0; i < count; ++i) {
+                PrimaryKey locator = PrimaryKey.wrap(i);
+                PrimaryRecord record = Record.createPrimaryRecord(locator);
+                loaded.seek(locator, record);
+                Assert.assertEquals(Value.wrap(Convert.javaToThrift(i)),
+                        Iterables.getOnlyElement(record.get(key)));
+            }
+            loaded.retire();
+        }
+        finally {
+            GlobalState.BLOCK_COMPRESSION = compression;
+        }
+    }
+
+    @Test
+    public void testSeekInMutableBlockMatchesSeekAfterSync() {
+        List<PrimaryKey> locators = Lists.newArrayList();
+        List<Text> keys = Lists.newArrayList();
+        for (int i = 0; i < 5; ++i) {
+            locators.add(PrimaryKey.wrap(i));
+            keys.add(Text.wrap("key" + i));
+        }
+        for (int i = 0; i < TestData.getScaleCount() * 10; ++i) {
+            block.insert(locators.get(Math.abs(TestData.getInt()) % 5),
+                    keys.get(Math.abs(TestData.getInt()) % 5),
+                    TestData.getValue(), Time.now(), Action.ADD);
+        }
+        List<List<Revision<PrimaryKey, Text, Value>>> expected = Lists
+                .newArrayList();
+        for (PrimaryKey locator : locators) {
+            expected.add(block.collect(locator));
+            for (Text key : keys) {
+                expected.add(block.collect(locator, key));
+            }
+        }
+        block.sync();
+        List<List<Revision<PrimaryKey, Text, Value>>> actual = Lists
+                .newArrayList();
+        for (PrimaryKey locator : locators) {
+            actual.add(block.collect(locator));
+            for (Text key : keys) {
+                actual.add(block.collect(locator, key));
+            }
+        }
+        Assert.assertEquals(expected, actual);
+        PrimaryBlock loaded = new PrimaryBlock(block.getId(), directory, true);
+        for (int i = 0; i < locators.size(); ++i) {
+            Assert.assertEquals(expected.get(i * (keys.size() + 1)),
+                    loaded.collect(locators.get(i)));
+        }
+    }
+
+    @Test
+    public void testSeekInMutableBlockStaysSortedAcrossInserts() {
+        PrimaryKey locator = PrimaryKey.wrap(1);
+        List<Revision<PrimaryKey, Text, Value>> inserted = Lists
+                .newArrayList();
+        for (int i = 0; i < TestData.getScaleCount(); ++i) {
+            // Random keys make most inserts arrive out of sorted order
+            inserted.add(block.insert(locator, TestData.getText(),
+                    TestData.getValue(), Time.now(), Action.ADD));
+            List<Revision<PrimaryKey, Text, Value>> expected = Lists
+                    .newArrayList(inserted);
+            Collections.sort(expected, Block.Sorter.INSTANCE);
+            Assert.assertEquals(expected, block.collect(locator));
+        }
+    }
+
+    @Test
+    public void testMutableBlockAlwaysCovers() {
+        block.insert(PrimaryKey.wrap(1), TestData.getText(),
+                TestData.getValue(), Time.now(), Action.ADD);
+        Assert.assertTrue(block.covers(PrimaryKey.wrap(100)));
+    }
+
     @Override
     protected PrimaryKey getLocator() {
         return TestData.getPrimaryKey();
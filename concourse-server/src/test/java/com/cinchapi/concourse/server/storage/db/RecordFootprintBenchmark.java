@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.cinchapi.concourse.server.io.Byteable;
+import com.cinchapi.concourse.server.model.PrimaryKey;
+import com.cinchapi.concourse.server.model.Text;
+import com.cinchapi.concourse.server.model.Value;
+import com.cinchapi.concourse.server.storage.Action;
+import com.cinchapi.concourse.thrift.Operator;
+import com.cinchapi.concourse.time.Time;
+import com.cinchapi.concourse.util.Convert;
+import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Benchmarks for the heap footprint and read performance of {@link Record
+ * Records} that are populated with realistic data: a SecondaryRecord for a
+ * low cardinality key that is set in many records (i.e. a status field) and
+ * many small PrimaryRecords.
+ * <p>
+ * When the benchmark is set up, it prints the number of heap bytes used per
+ * revision by the compact record layout and by a reconstruction of the
+ * previous layout (a {@link java.util.LinkedHashSet} of present values and a
+ * list of {@link CompactRevision CompactRevisions} per key). The revisions
+ * are created beforehand so that only the overhead of each layout is
+ * measured.
+ * </p>
+ *
+ * @author Jeff Nelson
+ */
+public class RecordFootprintBenchmark extends AbstractBenchmark {
+
+    /**
+     * The number of records that contain the secondary key.
+     */
+    private static final int RECORDS = 100000;
+
+    /**
+     * The number of distinct values for the secondary key.
+     */
+    private static final int VALUES = 10;
+
+    /**
+     * The number of PrimaryRecords.
+     */
+    private static final int PRIMARY_RECORDS = 10000;
+
+    /**
+     * The number of keys in each PrimaryRecord.
+     */
+    private static final int PRIMARY_KEYS = 8;
+
+    private static SecondaryRecord secondary;
+    private static List<PrimaryRecord> primaries;
+    private static long checkpoint;
+
+    @BeforeClass
+    public static void setUp() {
+        Text key = Text.wrap("status");
+        List<SecondaryRevision> secondaryRevisions = Lists.newArrayList();
+        for (int i = 0; i < RECORDS; ++i) {
+            Value value = getValue(i % VALUES);
+            PrimaryKey record = PrimaryKey.wrap(i);
+            secondaryRevisions.add(Revision.createSecondaryRevision(key,
+                    value, record, Time.now(), Action.ADD));
+            if(i % 4 == 0) {
+                // Simulate a status change in a quarter of the records
+                secondaryRevisions.add(Revision.createSecondaryRevision(key,
+                        value, record, Time.now(), Action.REMOVE));
+                secondaryRevisions.add(Revision.createSecondaryRevision(key,
+                        getValue((i + 1) % VALUES), record, Time.now(),
+                        Action.ADD));
+            }
+        }
+        List<PrimaryRevision> primaryRevisions = Lists.newArrayList();
+        for (int i = 0; i < PRIMARY_RECORDS; ++i) {
+            PrimaryKey record = PrimaryKey.wrap(i);
+            for (int j = 0; j < PRIMARY_KEYS; ++j) {
+                Text field = Text.wrap("key" + j);
+                Value value = TestData.getValue();
+                primaryRevisions.add(Revision.createPrimaryRevision(record,
+                        field, value, Time.now(), Action.ADD));
+                if(j % 2 == 0) {
+                    primaryRevisions.add(Revision.createPrimaryRevision(
+                            record, field, value, Time.now(), Action.REMOVE));
+                    primaryRevisions.add(Revision.createPrimaryRevision(
+                            record, field, TestData.getValue(), Time.now(),
+                            Action.ADD));
+                }
+            }
+        }
+        int revisions = secondaryRevisions.size() + primaryRevisions.size();
+
+        long before = usedMemory();
+        Map<Value, Set<PrimaryKey>> legacyPresent = Maps.newTreeMap();
+        Map<Value, List<CompactRevision<PrimaryKey>>> legacyHistory = Maps
+                .newHashMap();
+        for (SecondaryRevision revision : secondaryRevisions) {
+            legacyAppend(legacyPresent, legacyHistory, revision);
+        }
+        List<Object> legacyPrimaries = Lists.newArrayList();
+        Map<Text, Set<Value>> present = null;
+        Map<Text, List<CompactRevision<Value>>> history = null;
+        PrimaryKey locator = null;
+        for (PrimaryRevision revision : primaryRevisions) {
+            if(!revision.getLocator().equals(locator)) {
+                locator = revision.getLocator();
+                present = Maps.newHashMap();
+                history = Maps.newHashMap();
+                legacyPrimaries.add(present);
+                legacyPrimaries.add(history);
+            }
+            legacyAppend(present, history, revision);
+        }
+        long legacy = usedMemory() - before;
+        legacyPresent = null;
+        legacyHistory = null;
+        legacyPrimaries = null;
+        present = null;
+        history = null;
+
+        before = usedMemory();
+        secondary = Record.createSecondaryRecord(key);
+        for (SecondaryRevision revision : secondaryRevisions) {
+            secondary.append(revision);
+        }
+        primaries = Lists.newArrayList();
+        PrimaryRecord primary = null;
+        for (PrimaryRevision revision : primaryRevisions) {
+            if(primary == null
+                    || !primary.locator.equals(revision.getLocator())) {
+                primary = Record.createPrimaryRecord(revision.getLocator());
+                primaries.add(primary);
+            }
+            primary.append(revision);
+        }
+        long compact = usedMemory() - before;
+        checkpoint = Time.now();
+        System.out.println("Previous record layout: " + (legacy / revisions)
+                + " bytes per revision");
+        System.out.println("Compact record layout: " + (compact / revisions)
+                + " bytes per revision");
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 1000, warmupRounds = 100)
+    public void benchmarkFetchPresent() {
+        PrimaryRecord record = primaries.get(Math.abs(TestData.getInt())
+                % primaries.size());
+        for (int i = 0; i < PRIMARY_KEYS; ++i) {
+            record.fetch(Text.wrap("key" + i));
+        }
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 1000, warmupRounds = 100)
+    public void benchmarkFetchHistorical() {
+        PrimaryRecord record = primaries.get(Math.abs(TestData.getInt())
+                % primaries.size());
+        for (int i = 0; i < PRIMARY_KEYS; ++i) {
+            record.fetch(Text.wrap("key" + i), checkpoint);
+        }
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 100, warmupRounds = 10)
+    public void benchmarkFindPresent() {
+        secondary.find(Operator.EQUALS,
+                getValue(Math.abs(TestData.getInt()) % VALUES));
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 100, warmupRounds = 10)
+    public void benchmarkFindHistorical() {
+        secondary.find(checkpoint, Operator.EQUALS,
+                getValue(Math.abs(TestData.getInt()) % VALUES));
+    }
+
+    /**
+     * Return the value with {@code index}.
+     *
+     * @param index
+     * @return the value
+     */
+    private static Value getValue(int index) {
+        return Value.wrap(Convert.javaToThrift("status" + index));
+    }
+
+    /**
+     * Append {@code revision} to maps that are laid out in the way that
+     * Records previously stored data.
+     *
+     * @param present
+     * @param history
+     * @param revision
+     */
+    private static <K extends Byteable & Comparable<K>, V extends Byteable & Comparable<V>> void legacyAppend(
+            Map<K, Set<V>> present, Map<K, List<CompactRevision<V>>> history,
+            Revision<?, K, V> revision) {
+        Set<V> values = present.get(revision.getKey());
+        if(values == null) {
+            values = Sets.newLinkedHashSet();
+            present.put(revision.getKey(), values);
+        }
+        if(revision.getType() == Action.ADD) {
+            values.add(revision.getValue());
+        }
+        else {
+            values.remove(revision.getValue());
+        }
+        List<CompactRevision<V>> revisions = history.get(revision.getKey());
+        if(revisions == null) {
+            revisions = Lists.newArrayList();
+            history.put(revision.getKey(), revisions);
+        }
+        revisions.add(revision.compact());
+    }
+
+    /**
+     * Return the number of bytes that are used on the heap after requesting
+     * garbage collection.
+     *
+     * @return the used memory
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+
+/**
+ * Unit tests for {@link RetentionPolicy}.
+ * 
+ * @author Jeff Nelson
+ */
+public class RetentionPolicyTest extends ConcourseBaseTest {
+
+    @Test
+    public void testNoRulesRetainsEverything() {
+        RetentionPolicy policy = RetentionPolicy.parse("default");
+        Assert.assertFalse(policy.isEnabled());
+        Assert.assertEquals(Long.MIN_VALUE, policy.getHorizon(1000));
+        Assert.assertEquals(Integer.MAX_VALUE, policy.getMaxVersions("foo"));
+    }
+
+    @Test
+    public void testKeyRuleTakesPrecedenceOverEnvironmentRule() {
+        RetentionPolicy policy = RetentionPolicy.parse("production",
+                "*:1d", "production.status:10v");
+        Assert.assertTrue(policy.isEnabled());
+        Assert.assertEquals(10, policy.getMaxVersions("status"));
+        Assert.assertEquals(Long.MIN_VALUE, policy.getHorizon("status", 0));
+        Assert.assertEquals(-TimeUnit.DAYS.toMicros(1),
+                policy.getHorizon("name", 0));
+    }
+
+    @Test
+    public void testSpecificEnvironmentTakesPrecedenceOverWildcard() {
+        RetentionPolicy policy = RetentionPolicy.parse("production",
+                "production:forever", "*:30d", "staging:1h");
+        Assert.assertFalse(policy.isEnabled());
+        Assert.assertTrue(RetentionPolicy.parse("staging", "production:forever",
+                "*:30d", "staging:1h").isEnabled());
+    }
+
+    @Test
+    public void testRulesForOtherEnvironmentsAreIgnored() {
+        Assert.assertFalse(RetentionPolicy.parse("default", "staging:1h",
+                "staging.name:2v").isEnabled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedRuleIsRejected() {
+        RetentionPolicy.parse("default", "*:90 days ago");
+    }
+
+}
@@ -15,13 +15,23 @@
  */
 package com.cinchapi.concourse.server.storage.db;
 
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
 import com.cinchapi.concourse.server.model.PrimaryKey;
 import com.cinchapi.concourse.server.model.Text;
 import com.cinchapi.concourse.server.model.Value;
+import com.cinchapi.concourse.server.storage.Action;
 import com.cinchapi.concourse.server.storage.db.Block;
 import com.cinchapi.concourse.server.storage.db.SecondaryBlock;
 import com.cinchapi.concourse.time.Time;
+import com.cinchapi.concourse.thrift.Operator;
+import com.cinchapi.concourse.util.Convert;
 import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.Range;
 
 /**
  * 
@@ -30,6 +40,57 @@ import com.cinchapi.concourse.util.TestData;
  */
 public class SecondaryBlockTest extends BlockTest<Text, Value, PrimaryKey> {
 
+    @Test
+    public void testRangeSeekMatchesFullSeek() {
+        Text locator = TestData.getText();
+        for (int i = 0; i < 100; ++i) {
+            Value value = Value.wrap(Convert.javaToThrift(i % 20));
+            block.insert(locator, value, PrimaryKey.wrap(i), Time.now(),
+                    Action.ADD);
+        }
+        block.sync();
+        SecondaryBlock loaded = new SecondaryBlock(block.getId(), directory,
+                true);
+        Value lower = Value.wrap(Convert.javaToThrift(5));
+        Value upper = Value.wrap(Convert.javaToThrift(12));
+        SecondaryRecord full = Record.createSecondaryRecord(locator);
+        loaded.seek(locator, full);
+        SecondaryRecord partial = Record.createSecondaryRecord(locator);
+        loaded.seek(locator, Range.closedOpen(lower, upper), partial);
+        Map<PrimaryKey, Set<Value>> expected = full.explore(Operator.BETWEEN,
+                lower, upper);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected,
+                partial.explore(Operator.BETWEEN, lower, upper));
+        Assert.assertTrue(partial.find(Operator.EQUALS,
+                Value.wrap(Convert.javaToThrift(15))).isEmpty());
+        loaded.retire();
+    }
+
+    @Test
+    public void testBlockIsSkippedForKeysInOtherBuckets() {
+        Text a = Text.wrap("a");
+        Text z = Text.wrap("z");
+        for (Text locator : new Text[] { a, z }) {
+            block.insert(locator, TestData.getValue(),
+                    TestData.getPrimaryKey(), Time.now(), Action.ADD);
+        }
+        block.sync();
+        SecondaryBlock loaded = new SecondaryBlock(block.getId(), directory,
+                true);
+        Assert.assertTrue(loaded.covers(a));
+        Assert.assertTrue(loaded.covers(z));
+        int covered = 0;
+        for (int i = 0; i < 100; ++i) {
+            if(loaded.covers(Text.wrap("m" + i))) {
+                ++covered;
+            }
+        }
+        // The fence alone covers every one of these keys
+        Assert.assertTrue(covered < 10);
+        loaded.retire();
+    }
+
     @Override
     protected Text getLocator() {
         return TestData.getText();
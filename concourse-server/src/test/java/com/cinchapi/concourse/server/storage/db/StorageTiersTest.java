@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.db;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for {@link StorageTiers}.
+ * 
+ * @author Jeff Nelson
+ */
+public class StorageTiersTest extends ConcourseBaseTest {
+
+    @Test
+    public void testNoTiersKeepsEverythingInTheBackingStore() {
+        StorageTiers tiers = StorageTiers.parse("default");
+        Assert.assertFalse(tiers.isEnabled());
+        Assert.assertNull(tiers.locate(0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testTiersAreOrderedByAge() {
+        StorageTiers tiers = StorageTiers.parse("default", "/cold:30d",
+                "/warm:1d");
+        Assert.assertEquals(Lists.newArrayList("/warm" + File.separator
+                + "default", "/cold" + File.separator + "default"),
+                tiers.getDirectories());
+        Assert.assertEquals(1,
+                tiers.indexOf("/cold" + File.separator + "default"));
+        Assert.assertEquals(-1, tiers.indexOf("/cold"));
+    }
+
+    @Test
+    public void testLocateChoosesTheOldestApplicableTier() {
+        StorageTiers tiers = StorageTiers.parse("default", "/cold:30d",
+                "/warm:1d");
+        long now = TimeUnit.DAYS.toMicros(100);
+        Assert.assertNull(tiers.locate(now - TimeUnit.HOURS.toMicros(1), now));
+        Assert.assertEquals("/warm" + File.separator + "default",
+                tiers.locate(now - TimeUnit.DAYS.toMicros(2), now));
+        Assert.assertEquals("/cold" + File.separator + "default",
+                tiers.locate(now - TimeUnit.DAYS.toMicros(31), now));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedTierIsRejected() {
+        StorageTiers.parse("default", "/cold:30 days");
+    }
+
+}
@@ -19,6 +19,8 @@ import java.io.File;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -30,16 +32,22 @@ import org.mockito.Mockito;
 import com.cinchapi.common.base.TernaryTruth;
 import com.cinchapi.concourse.server.GlobalState;
 import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.server.storage.Action;
+import com.cinchapi.concourse.server.storage.BackpressureException;
 import com.cinchapi.concourse.server.storage.PermanentStore;
 import com.cinchapi.concourse.server.storage.Store;
 import com.cinchapi.concourse.server.storage.temp.Buffer;
 import com.cinchapi.concourse.server.storage.temp.Limbo;
 import com.cinchapi.concourse.server.storage.temp.Write;
 import com.cinchapi.concourse.test.Variables;
+import com.cinchapi.concourse.thrift.Operator;
+import com.cinchapi.concourse.thrift.TObject;
 import com.cinchapi.concourse.time.Time;
 import com.cinchapi.concourse.util.Convert;
+import com.cinchapi.concourse.util.MultimapViews;
 import com.cinchapi.concourse.util.TestData;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Unit tests for {@link Buffer}.
@@ -242,6 +250,79 @@ public class BufferTest extends LimboTest {
         Assert.assertEquals(TernaryTruth.UNSURE, buffer.verifyFast(write));
     }
 
+    @Test
+    public void testExploreUsesPageIndexes() {
+        Buffer buffer = (Buffer) store;
+        buffer.transportRateMultiplier = 1;
+        String key = "foo";
+        int count = TestData.getScaleCount() * 10;
+        for (int i = 0; i < count; ++i) {
+            Write write = Write.add(i % 3 == 0 ? key : TestData.getString(),
+                    Convert.javaToThrift(i % 50), i % 20);
+            if(!buffer.verify(write, Time.NONE)) {
+                buffer.insert(write);
+            }
+            else {
+                buffer.insert(write.inverse());
+            }
+        }
+        for (int i = 0; i < 3 && buffer.canTransport(); ++i) {
+            buffer.transport(MOCK_DESTINATION);
+        }
+        Operator[] operators = { Operator.EQUALS, Operator.NOT_EQUALS,
+                Operator.GREATER_THAN, Operator.GREATER_THAN_OR_EQUALS,
+                Operator.LESS_THAN, Operator.LESS_THAN_OR_EQUALS,
+                Operator.BETWEEN };
+        for (Operator operator : operators) {
+            TObject[] values = {
+                    Convert.javaToThrift(TestData.getScaleCount() % 40),
+                    Convert.javaToThrift(40) };
+            Map<Long, Set<TObject>> expected = Maps.newHashMap();
+            for (Iterator<Write> it = buffer.iterator(); it.hasNext();) {
+                Write write = it.next();
+                if(write.getKey().toString().equals(key)
+                        && Limbo.matches(write.getValue(), operator, values)) {
+                    long record = write.getRecord().longValue();
+                    if(write.getType() == Action.ADD) {
+                        MultimapViews.put(expected, record, write.getValue()
+                                .getTObject());
+                    }
+                    else {
+                        MultimapViews.remove(expected, record, write
+                                .getValue().getTObject());
+                    }
+                }
+            }
+            Assert.assertEquals(operator.toString(), expected, buffer.explore(
+                    Maps.<Long, Set<TObject>> newHashMap(), Time.NONE, key,
+                    operator, values));
+        }
+    }
+
+    @Test
+    public void testVerifyAndLastWriteActionAcrossPages() {
+        Buffer buffer = (Buffer) store;
+        Write write = Write.add("foo", Convert.javaToThrift("bar"), 1);
+        List<Long> timestamps = Lists.newArrayList();
+        int count = TestData.getScaleCount();
+        for (int i = 0; i < count; ++i) {
+            buffer.insert(i % 2 == 0 ? Write.add("foo",
+                    Convert.javaToThrift("bar"), 1) : Write.remove("foo",
+                    Convert.javaToThrift("bar"), 1));
+            timestamps.add(Time.now());
+            for (int j = 0; j < i % 7; ++j) {
+                buffer.insert(TestData.getWriteAdd());
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            long timestamp = timestamps.get(i);
+            Assert.assertEquals(i % 2 == 0, buffer.verify(write, timestamp));
+            Assert.assertEquals(i % 2 == 0 ? Action.ADD : Action.REMOVE,
+                    buffer.getLastWriteAction(write, timestamp));
+        }
+        Assert.assertEquals(count % 2 != 0, buffer.verify(write, Time.NONE));
+    }
+
     @Test
     public void testOnDiskIteratorEmptyDirectory() {
         Buffer buffer = (Buffer) store;
@@ -267,4 +348,28 @@ public class BufferTest extends LimboTest {
         }
     }
 
+    @Test(expected = BackpressureException.class)
+    public void testBackpressureRejectsWritesPastHighWaterMark() {
+        int oldBufferPageSize = GlobalState.BUFFER_PAGE_SIZE;
+        int oldBackpressurePages = GlobalState.BUFFER_BACKPRESSURE_PAGES;
+        String oldBackpressurePolicy = GlobalState.BUFFER_BACKPRESSURE_POLICY;
+        try {
+            GlobalState.BUFFER_PAGE_SIZE = 4; // each write gets its own page
+            GlobalState.BUFFER_BACKPRESSURE_PAGES = 2;
+            GlobalState.BUFFER_BACKPRESSURE_POLICY = "REJECT";
+            Buffer buffer = getStore();
+            buffer.start();
+            for (int i = 0; i < 3; ++i) {
+                buffer.applyBackpressure();
+                buffer.insert(Write.add("foo", Convert.javaToThrift(i), 1));
+            }
+            buffer.applyBackpressure();
+        }
+        finally {
+            GlobalState.BUFFER_PAGE_SIZE = oldBufferPageSize;
+            GlobalState.BUFFER_BACKPRESSURE_PAGES = oldBackpressurePages;
+            GlobalState.BUFFER_BACKPRESSURE_POLICY = oldBackpressurePolicy;
+        }
+    }
+
 }
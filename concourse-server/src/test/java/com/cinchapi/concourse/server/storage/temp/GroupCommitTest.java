@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.temp;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for {@link GroupCommit}.
+ * 
+ * @author Jeff Nelson
+ */
+public class GroupCommitTest extends ConcourseBaseTest {
+
+    @Test
+    public void testConcurrentWritersShareFlushes() throws InterruptedException {
+        final int writers = 8;
+        final CountDownLatch registered = new CountDownLatch(writers);
+        final AtomicInteger started = new AtomicInteger(0);
+        final AtomicInteger completed = new AtomicInteger(0);
+        final GroupCommit committer = new GroupCommit(new Runnable() {
+
+            @Override
+            public void run() {
+                int flush = started.incrementAndGet();
+                if(flush == 1) {
+                    // Hold the first flush until every writer has an append
+                    // queued behind it
+                    try {
+                        registered.await();
+                    }
+                    catch (InterruptedException e) {
+                        throw Throwables.propagate(e);
+                    }
+                }
+                completed.set(flush);
+            }
+
+        }, 1000, 1024 * 1024, 0);
+        committer.start("group-commit-test");
+        final int writes = 50;
+        final AtomicBoolean durable = new AtomicBoolean(true);
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < writers; ++i) {
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < writes; ++j) {
+                        int before = started.get();
+                        long ticket = committer.register(100);
+                        if(j == 0) {
+                            registered.countDown();
+                        }
+                        committer.await(ticket);
+                        if(completed.get() <= before) {
+                            durable.set(false);
+                        }
+                    }
+                }
+
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        committer.stop();
+        Assert.assertTrue(durable.get());
+        Assert.assertTrue(started.get() < threads.size() * writes);
+    }
+
+    @Test
+    public void testInterruptedFlusherFlushesAndKeepsWaiting()
+            throws InterruptedException {
+        final AtomicInteger flushes = new AtomicInteger(0);
+        GroupCommit committer = new GroupCommit(new Runnable() {
+
+            @Override
+            public void run() {
+                flushes.incrementAndGet();
+            }
+
+        }, 1000, 1024 * 1024, (int) TimeUnit.MINUTES.toMillis(1));
+        String name = "group-commit-interrupt-test";
+        committer.start(name);
+        try {
+            Thread flusher = null;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if(thread.getName().equals(name)) {
+                    flusher = thread;
+                }
+            }
+            Assert.assertNotNull(flusher);
+            long ticket = committer.register(100);
+            flusher.interrupt();
+            long start = System.nanoTime();
+            committer.await(ticket);
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS
+                    .toNanos(30));
+            Assert.assertEquals(1, flushes.get());
+
+            // The next batch waits for the window instead of spinning
+            committer.register(100);
+            Thread.State state = null;
+            for (int i = 0; i < 100 && state != Thread.State.TIMED_WAITING; ++i) {
+                Thread.sleep(10);
+                state = flusher.getState();
+            }
+            Assert.assertEquals(Thread.State.TIMED_WAITING, state);
+            Assert.assertEquals(1, flushes.get());
+        }
+        finally {
+            committer.stop();
+        }
+        Assert.assertEquals(2, flushes.get());
+    }
+
+    @Test
+    public void testRegisterFlushesWhenNotRunning() {
+        final AtomicInteger flushes = new AtomicInteger(0);
+        GroupCommit committer = new GroupCommit(new Runnable() {
+
+            @Override
+            public void run() {
+                flushes.incrementAndGet();
+            }
+
+        }, 1000, 1024 * 1024, 0);
+        committer.await(committer.register(100));
+        Assert.assertEquals(1, flushes.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFlushFailureIsPropagatedToWaiters() {
+        GroupCommit committer = new GroupCommit(new Runnable() {
+
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+
+        }, 1000, 1024 * 1024, 0);
+        committer.start("group-commit-test");
+        try {
+            committer.await(committer.register(100));
+        }
+        finally {
+            committer.stop();
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.temp;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.cinchapi.concourse.server.io.FileSystem;
+import com.cinchapi.concourse.server.storage.db.Database;
+import com.cinchapi.concourse.time.Time;
+import com.cinchapi.concourse.util.Convert;
+import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.Lists;
+
+/**
+ * Benchmarks that compare giving batches of {@link Write Writes} to a
+ * {@link Database} with a single {@link TransportLanes transport lane} and
+ * with several. Every lane inserts into the same current Blocks and each
+ * Block accepts one insert at a time, so this measures how much of the work
+ * in {@link Database#accept(List)} the lanes can actually overlap.
+ * 
+ * @author Jeff Nelson
+ */
+public class TransportLanesBenchmark extends AbstractBenchmark {
+
+    /**
+     * The number of Writes in each batch.
+     */
+    private static final int BATCH_SIZE = 4096;
+
+    /**
+     * The number of distinct records that the Writes in a batch touch.
+     */
+    private static final int RECORDS = 1024;
+
+    /**
+     * The number of lanes in the {@link #multiple} configuration.
+     */
+    private static final int LANES = 4;
+
+    private static String directory;
+    private static Database db;
+    private static TransportLanes single;
+    private static TransportLanes multiple;
+
+    @BeforeClass
+    public static void setUp() {
+        directory = TestData.DATA_DIR + File.separator + Time.now();
+        db = new Database(directory);
+        db.start();
+        single = new TransportLanes(1);
+        single.start("transport-lanes-benchmark");
+        multiple = new TransportLanes(LANES);
+        multiple.start("transport-lanes-benchmark");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        single.stop();
+        multiple.stop();
+        db.stop();
+        FileSystem.deleteDirectory(directory);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 20, warmupRounds = 5)
+    public void benchmarkTransportWithOneLane() {
+        single.transport(getBatch(), db);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 20, warmupRounds = 5)
+    public void benchmarkTransportWithSeveralLanes() {
+        multiple.transport(getBatch(), db);
+    }
+
+    /**
+     * Return a new batch of Writes that are spread across the
+     * {@link #RECORDS}, in version order.
+     * 
+     * @return the batch
+     */
+    private static List<Write> getBatch() {
+        List<Write> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; ++i) {
+            batch.add(Write.add("key" + (i % 8),
+                    Convert.javaToThrift(TestData.getString()), i % RECORDS));
+        }
+        return batch;
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.temp;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.cinchapi.concourse.server.storage.PermanentStore;
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+import com.cinchapi.concourse.util.Convert;
+import com.cinchapi.concourse.util.TestData;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
+
+/**
+ * Unit tests for {@link TransportLanes}.
+ *
+ * @author Jeff Nelson
+ */
+public class TransportLanesTest extends ConcourseBaseTest {
+
+    @Test
+    public void testEachRecordIsTransportedInOrderByOneLane() {
+        final ListMultimap<Long, Write> accepted = Multimaps
+                .synchronizedListMultimap(ArrayListMultimap
+                        .<Long, Write> create());
+        final ConcurrentMap<Long, String> threads = Maps.newConcurrentMap();
+        PermanentStore destination = Mockito.mock(PermanentStore.class);
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                for (Write write : (List<Write>) invocation.getArguments()[0]) {
+                    long record = write.getRecord().longValue();
+                    threads.putIfAbsent(record, Thread.currentThread()
+                            .getName());
+                    Assert.assertEquals(threads.get(record), Thread
+                            .currentThread().getName());
+                    accepted.put(record, write);
+                }
+                return null;
+            }
+
+        }).when(destination).accept(Mockito.anyListOf(Write.class));
+        TransportLanes lanes = new TransportLanes(4);
+        lanes.start("transport-lanes-test");
+        try {
+            List<Write> expected = Lists.newArrayList();
+            for (int i = 0; i < TestData.getScaleCount() * 10; ++i) {
+                Write write = Write.add(TestData.getSimpleString(),
+                        Convert.javaToThrift(i), i % 13);
+                lanes.enqueue(write.getRecord());
+                expected.add(write);
+            }
+            for (List<Write> batch : Lists.partition(expected, 32)) {
+                lanes.transport(batch, destination);
+            }
+            for (long record = 0; record < 13; ++record) {
+                List<Write> writes = Lists.newArrayList();
+                for (Write write : expected) {
+                    if(write.getRecord().longValue() == record) {
+                        writes.add(write);
+                    }
+                }
+                Assert.assertEquals(writes, accepted.get(record));
+            }
+            Assert.assertFalse(lanes.describe().matches(
+                    "(?s).*[1-9]\\d* writes in backlog.*"));
+        }
+        finally {
+            lanes.stop();
+        }
+    }
+
+    @Test
+    public void testStopWaitsForBatchInProgress() throws InterruptedException {
+        final CountDownLatch accepting = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger accepted = new AtomicInteger(0);
+        final PermanentStore destination = Mockito.mock(PermanentStore.class);
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                accepting.countDown();
+                release.await();
+                accepted.addAndGet(((List<Write>) invocation.getArguments()[0])
+                        .size());
+                return null;
+            }
+
+        }).when(destination).accept(Mockito.anyListOf(Write.class));
+        final TransportLanes lanes = new TransportLanes(2);
+        lanes.start("transport-lanes-test");
+        Thread transporter = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                lanes.transport(Lists.newArrayList(
+                        Write.add("foo", Convert.javaToThrift(1), 0),
+                        Write.add("foo", Convert.javaToThrift(2), 1)),
+                        destination);
+            }
+
+        });
+        transporter.start();
+        accepting.await();
+        Thread stopper = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                lanes.stop();
+            }
+
+        });
+        stopper.start();
+        stopper.join(100);
+        Assert.assertTrue(stopper.isAlive());
+        release.countDown();
+        stopper.join();
+        transporter.join();
+        Assert.assertEquals(2, accepted.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLaneFailureIsPropagated() {
+        PermanentStore destination = Mockito.mock(PermanentStore.class);
+        Mockito.doThrow(new IllegalStateException()).when(destination)
+                .accept(Mockito.anyListOf(Write.class));
+        TransportLanes lanes = new TransportLanes(2);
+        lanes.start("transport-lanes-test");
+        try {
+            lanes.transport(Lists.newArrayList(
+                    Write.add("foo", Convert.javaToThrift(1), 1),
+                    Write.add("foo", Convert.javaToThrift(2), 2)), destination);
+        }
+        finally {
+            lanes.stop();
+        }
+    }
+
+}
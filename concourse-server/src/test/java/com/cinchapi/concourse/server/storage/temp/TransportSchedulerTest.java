@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2013-2016 Cinchapi Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cinchapi.concourse.server.storage.temp;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cinchapi.concourse.test.ConcourseBaseTest;
+
+/**
+ * Unit tests for {@link TransportScheduler}.
+ *
+ * @author Jeff Nelson
+ */
+public class TransportSchedulerTest extends ConcourseBaseTest {
+
+    @Test
+    public void testBatchSizeAdaptsToLatencyAndDepth() {
+        TransportScheduler scheduler = new TransportScheduler(8192, 5, 100);
+        Assert.assertEquals(8192, scheduler.getTargetBatchSize(1));
+        scheduler.record(10, TimeUnit.MILLISECONDS.toNanos(1), 1);
+        int shallow = scheduler.getTargetBatchSize(1);
+        int deep = scheduler.getTargetBatchSize(4);
+        Assert.assertTrue(deep > shallow);
+        for (int i = 0; i < 50; ++i) {
+            scheduler.record(10, TimeUnit.MILLISECONDS.toNanos(10), 1);
+        }
+        Assert.assertTrue(scheduler.getTargetBatchSize(1) < shallow);
+        Assert.assertTrue(scheduler.getTargetBatchSize(1) >= 1);
+    }
+
+    @Test
+    public void testSleepTimeShrinksWithDepth() {
+        TransportScheduler scheduler = new TransportScheduler(8192, 5, 100);
+        Assert.assertEquals(100, scheduler.getSleepTimeInMs(0));
+        Assert.assertEquals(100, scheduler.getSleepTimeInMs(1));
+        Assert.assertEquals(50, scheduler.getSleepTimeInMs(2));
+        Assert.assertEquals(5, scheduler.getSleepTimeInMs(64));
+    }
+
+}